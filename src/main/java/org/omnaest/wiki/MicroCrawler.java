@@ -15,50 +15,102 @@
  ******************************************************************************/
 package org.omnaest.wiki;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import org.omnaest.utils.MatcherUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.internal.StringUtil;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 import org.omnaest.utils.PredicateUtils;
-import org.omnaest.utils.SetUtils;
-import org.omnaest.utils.StreamUtils;
 import org.omnaest.utils.URLUtils;
-import org.omnaest.utils.html.HtmlUtils;
-import org.omnaest.utils.html.HtmlUtils.HtmlAnker;
-import org.omnaest.utils.html.HtmlUtils.HtmlDocument;
-import org.omnaest.utils.html.HtmlUtils.HtmlElement;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.metrics.MetricsUtils.Counter;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.Timer;
+import org.omnaest.wiki.url.URLNormalizationUtils;
+import org.omnaest.wiki.url.URLNormalizationUtils.SeenURLFilter;
+import org.omnaest.wiki.url.URLNormalizationUtils.URLNormalizer;
 
 public class MicroCrawler
 {
-    private int     maxNumberOfRequests = 100;
-    private Pattern matcher;
+    public static final int  DEFAULT_NUMBER_OF_WORKERS                = 4;
+    public static final int  DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST = 2;
+    public static final long DEFAULT_MIN_DELAY_PER_HOST               = 100;
+    public static final int  EXPECTED_NUMBER_OF_LINKS_PER_PAGE        = 100;
+    public static final int  DEFAULT_CONTEXT_WINDOW                   = 100;
+    public static final int  DEFAULT_MAX_CONTEXTS_PER_VALUE           = 10;
+
+    private int                maxNumberOfRequests          = 100;
+    private int                numberOfWorkers              = DEFAULT_NUMBER_OF_WORKERS;
+    private int                maxConcurrentRequestsPerHost = DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST;
+    private long               minDelayPerHost              = DEFAULT_MIN_DELAY_PER_HOST;
+    private long               seenURLsMemory               = URLNormalizationUtils.DEFAULT_MEMORY;
+    private URLNormalizer      normalizer                   = URLNormalizationUtils.newNormalizer();
+    private int                contextWindow                = DEFAULT_CONTEXT_WINDOW;
+    private int                maxContextsPerValue          = DEFAULT_MAX_CONTEXTS_PER_VALUE;
+    private List<NamedMatcher> matchers                     = new CopyOnWriteArrayList<>();
+    private Counter            pages;
+    private Counter            errors;
+    private Timer              fetchLatency;
+    private Timer              analyzeLatency;
 
     public static interface RegexSupplier extends Supplier<String>
     {
+        /**
+         * Returns a literal which is contained in every match of the regex. The regex only runs on the blocks of a page, like paragraphs or
+         * table cells, which contain the literal, so its matches must not span several blocks.
+         * 
+         * @return
+         */
+        public default Optional<String> getRequiredLiteral()
+        {
+            return Optional.empty();
+        }
     }
 
     public static enum Matchers implements RegexSupplier
     {
-        EMAIL("(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)*|\"(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21\\x23-\\x5b\\x5d-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])*\")@(?:(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?|\\[(?:(?:(2(5[0-5]|[0-4][0-9])|1[0-9][0-9]|[1-9]?[0-9]))\\.){3}(?:(2(5[0-5]|[0-4][0-9])|1[0-9][0-9]|[1-9]?[0-9])|[a-z0-9-]*[a-z0-9]:(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])");
+        EMAIL("(?:[a-z0-9!#$%&'*+/=?^_`{|}~-]+(?:\\.[a-z0-9!#$%&'*+/=?^_`{|}~-]+)*|\"(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21\\x23-\\x5b\\x5d-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])*\")@(?:(?:[a-z0-9](?:[a-z0-9-]*[a-z0-9])?\\.)+[a-z0-9](?:[a-z0-9-]*[a-z0-9])?|\\[(?:(?:(2(5[0-5]|[0-4][0-9])|1[0-9][0-9]|[1-9]?[0-9]))\\.){3}(?:(2(5[0-5]|[0-4][0-9])|1[0-9][0-9]|[1-9]?[0-9])|[a-z0-9-]*[a-z0-9]:(?:[\\x01-\\x08\\x0b\\x0c\\x0e-\\x1f\\x21-\\x5a\\x53-\\x7f]|\\\\[\\x01-\\x09\\x0b\\x0c\\x0e-\\x7f])+)\\])", "@");
 
         private String regex;
+        private String requiredLiteral;
 
-        private Matchers(String regex)
+        private Matchers(String regex, String requiredLiteral)
         {
             this.regex = regex;
+            this.requiredLiteral = requiredLiteral;
         }
 
         @Override
@@ -66,13 +118,306 @@ public class MicroCrawler
         {
             return this.regex;
         }
+
+        @Override
+        public Optional<String> getRequiredLiteral()
+        {
+            return Optional.ofNullable(this.requiredLiteral);
+        }
+    }
+
+    private static class NamedMatcher
+    {
+        private String  name;
+        private Pattern pattern;
+        private String  requiredLiteral;
+
+        public NamedMatcher(String name, Pattern pattern, String requiredLiteral)
+        {
+            super();
+            this.name = name;
+            this.pattern = pattern;
+            this.requiredLiteral = requiredLiteral;
+        }
+
+        /**
+         * Returns the {@link Hit}s within the given {@link PageText} in order of their start offset. With a required literal the regex only
+         * runs on the blocks, which contain the literal.
+         * 
+         * @param pageText
+         * @return
+         */
+        public Stream<Hit> findIn(PageText pageText)
+        {
+            String text = pageText.text;
+            List<Hit> hits = new ArrayList<>();
+            Matcher matcher = this.pattern.matcher(text)
+                                          .useTransparentBounds(true)
+                                          .useAnchoringBounds(false);
+            if (StringUtils.isEmpty(this.requiredLiteral))
+            {
+                this.collectHits(matcher, hits);
+            }
+            else
+            {
+                int index = text.indexOf(this.requiredLiteral);
+                while (index >= 0)
+                {
+                    int blockEnd = pageText.determineBlockEnd(index + this.requiredLiteral.length());
+                    matcher.region(pageText.determineBlockStart(index), blockEnd);
+                    this.collectHits(matcher, hits);
+                    index = text.indexOf(this.requiredLiteral, blockEnd);
+                }
+            }
+            return hits.stream();
+        }
+
+        private void collectHits(Matcher matcher, List<Hit> hits)
+        {
+            while (matcher.find())
+            {
+                hits.add(new Hit(this.name, matcher.group(), matcher.start(), matcher.end()));
+            }
+        }
+    }
+
+    private static class Hit
+    {
+        private String matcher;
+        private String value;
+        private int    start;
+        private int    end;
+
+        public Hit(String matcher, String value, int start, int end)
+        {
+            super();
+            this.matcher = matcher;
+            this.value = value;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Text of a page built in one pass over its text nodes, together with the ranges of all elements within it in document order. The
+     * whitespace is normalized and blocks are separated like within the text of an element, so the range of an element covers its text.
+     * The offsets, where blocks start or end, are kept as boundaries.
+     */
+    private static class PageText implements NodeVisitor
+    {
+        private StringBuilder    builder         = new StringBuilder();
+        private List<TextRange>  ranges          = new ArrayList<>();
+        private Deque<TextRange> openRanges      = new ArrayDeque<>();
+        private List<Integer>    blockBoundaries = new ArrayList<>();
+        private String           text;
+        private int[]            starts;
+        private int[]            boundaries;
+
+        public static PageText of(Element root)
+        {
+            PageText pageText = new PageText();
+            NodeTraversor.traverse(pageText, root);
+            pageText.text = pageText.builder.toString();
+            pageText.starts = pageText.ranges.stream()
+                                             .mapToInt(range -> range.start)
+                                             .toArray();
+            pageText.boundaries = pageText.blockBoundaries.stream()
+                                                          .mapToInt(Integer::intValue)
+                                                          .toArray();
+            return pageText;
+        }
+
+        @Override
+        public void head(Node node, int depth)
+        {
+            if (node instanceof TextNode)
+            {
+                StringUtil.appendNormalisedWhitespace(this.builder, ((TextNode) node).getWholeText(), this.endsWithWhitespace());
+            }
+            else if (node instanceof Element)
+            {
+                Element element = (Element) node;
+                boolean block = element.isBlock() || element.tagName()
+                                                            .equals("br");
+                if (this.builder.length() > 0 && block && !this.endsWithWhitespace())
+                {
+                    this.builder.append(' ');
+                }
+                if (block)
+                {
+                    this.blockBoundaries.add(this.builder.length());
+                }
+                TextRange range = new TextRange(this.builder.length(), this.openRanges.peek());
+                this.ranges.add(range);
+                this.openRanges.push(range);
+            }
+        }
+
+        @Override
+        public void tail(Node node, int depth)
+        {
+            if (node instanceof Element)
+            {
+                this.openRanges.pop().end = this.builder.length();
+                if (((Element) node).isBlock())
+                {
+                    this.blockBoundaries.add(this.builder.length());
+                    if (node.nextSibling() instanceof TextNode && !this.endsWithWhitespace())
+                    {
+                        this.builder.append(' ');
+                    }
+                }
+            }
+        }
+
+        private boolean endsWithWhitespace()
+        {
+            return this.builder.length() > 0 && this.builder.charAt(this.builder.length() - 1) == ' ';
+        }
+
+        /**
+         * Returns the last block boundary at or before the given offset, or the start of the text
+         * 
+         * @param offset
+         * @return
+         */
+        public int determineBlockStart(int offset)
+        {
+            int index = Arrays.binarySearch(this.boundaries, offset);
+            if (index < 0)
+            {
+                index = -index - 2;
+            }
+            return index >= 0 ? this.boundaries[index] : 0;
+        }
+
+        /**
+         * Returns the first block boundary at or after the given offset, or the end of the text
+         * 
+         * @param offset
+         * @return
+         */
+        public int determineBlockEnd(int offset)
+        {
+            int index = Arrays.binarySearch(this.boundaries, offset);
+            if (index < 0)
+            {
+                index = -index - 1;
+            }
+            return index < this.boundaries.length ? this.boundaries[index] : this.text.length();
+        }
+
+        /**
+         * Returns the range of the innermost element, which contains the given {@link Hit} completely. The last range starting at or before the
+         * {@link Hit} is the innermost element containing it or one of its descendants, so its parents are walked up.
+         * 
+         * @param hit
+         * @return
+         */
+        public TextRange findInnermostRange(Hit hit)
+        {
+            int low = 0;
+            int high = this.starts.length - 1;
+            while (low < high)
+            {
+                int middle = (low + high + 1) >>> 1;
+                if (this.starts[middle] <= hit.start)
+                {
+                    low = middle;
+                }
+                else
+                {
+                    high = middle - 1;
+                }
+            }
+
+            TextRange range = this.ranges.get(low);
+            while (range.parent != null && range.end < hit.end)
+            {
+                range = range.parent;
+            }
+            return range;
+        }
+
+        /**
+         * Returns the text of the given range around the given {@link Hit}, at most the given number of characters before and after it. Words
+         * cut by the window are left out.
+         * 
+         * @param range
+         * @param hit
+         * @param window
+         * @return
+         */
+        public String extractContext(TextRange range, Hit hit, int window)
+        {
+            int contextStart = Math.max(range.start, hit.start - window);
+            int contextEnd = Math.min(range.end, hit.end + window);
+            if (contextStart > range.start)
+            {
+                int space = this.text.indexOf(' ', contextStart);
+                if (space >= 0 && space < hit.start)
+                {
+                    contextStart = space + 1;
+                }
+            }
+            if (contextEnd < range.end)
+            {
+                int space = this.text.lastIndexOf(' ', contextEnd);
+                if (space >= hit.end)
+                {
+                    contextEnd = space;
+                }
+            }
+            return this.text.substring(contextStart, contextEnd)
+                            .trim();
+        }
+    }
+
+    /**
+     * Range of the text of an element within the {@link PageText}
+     */
+    private static class TextRange
+    {
+        private int       start;
+        private int       end;
+        private TextRange parent;
+
+        public TextRange(int start, TextRange parent)
+        {
+            super();
+            this.start = start;
+            this.end = start;
+            this.parent = parent;
+        }
+
+        /**
+         * Returns the range of the third parent, or of the outermost parent if there are less
+         * 
+         * @return
+         */
+        public TextRange determineContextScope()
+        {
+            TextRange scope = this;
+            for (int ii = 0; ii < 3 && scope.parent != null; ii++)
+            {
+                scope = scope.parent;
+            }
+            return scope;
+        }
     }
 
     private MicroCrawler()
     {
         super();
+        this.withMetrics(MetricsUtils.shared());
     }
 
+    /**
+     * Maximum number of pages fetched by all workers of one {@link #analyze(String)} call together. Default is 100
+     * 
+     * @param maxNumberOfRequests
+     * @return
+     */
     public MicroCrawler withMaxNumberOfRequests(int maxNumberOfRequests)
     {
         this.maxNumberOfRequests = maxNumberOfRequests;
@@ -80,13 +425,111 @@ public class MicroCrawler
     }
 
     /**
+     * Number of workers fetching and analyzing pages in parallel. Default is {@value #DEFAULT_NUMBER_OF_WORKERS}
+     * 
+     * @param numberOfWorkers
+     * @return
+     */
+    public MicroCrawler withNumberOfWorkers(int numberOfWorkers)
+    {
+        this.numberOfWorkers = Math.max(1, numberOfWorkers);
+        return this;
+    }
+
+    /**
+     * Maximum number of pages fetched from a single host at the same time. The workers not needed for a host are used for the urls of other
+     * hosts. Default is {@value #DEFAULT_MAX_CONCURRENT_REQUESTS_PER_HOST}
+     * 
+     * @param maxConcurrentRequestsPerHost
+     * @return
+     */
+    public MicroCrawler withMaxConcurrentRequestsPerHost(int maxConcurrentRequestsPerHost)
+    {
+        this.maxConcurrentRequestsPerHost = Math.max(1, maxConcurrentRequestsPerHost);
+        return this;
+    }
+
+    /**
+     * Minimum delay in milliseconds between the starts of two requests to the same host. Default is {@value #DEFAULT_MIN_DELAY_PER_HOST}
+     * 
+     * @param minDelayPerHost
+     * @return
+     */
+    public MicroCrawler withMinDelayPerHost(long minDelayPerHost)
+    {
+        this.minDelayPerHost = Math.max(0, minDelayPerHost);
+        return this;
+    }
+
+    /**
+     * Memory in bytes of the {@link SeenURLFilter} of one {@link #analyze(String)} call. It is sized for
+     * {@value #EXPECTED_NUMBER_OF_LINKS_PER_PAGE} links per fetched page, beyond that rarely an unseen url is skipped. Default is
+     * {@value URLNormalizationUtils#DEFAULT_MEMORY}
+     * 
+     * @param seenURLsMemory
+     * @return
+     */
+    public MicroCrawler withSeenURLsMemory(long seenURLsMemory)
+    {
+        this.seenURLsMemory = seenURLsMemory;
+        return this;
+    }
+
+    /**
+     * Number of characters before and after a matched value, which are kept as its context. Default is {@value #DEFAULT_CONTEXT_WINDOW}
+     * 
+     * @param contextWindow
+     * @return
+     */
+    public MicroCrawler withContextWindow(int contextWindow)
+    {
+        this.contextWindow = Math.max(0, contextWindow);
+        return this;
+    }
+
+    /**
+     * Maximum number of distinct contexts kept per matched value, further contexts are dropped. Default is
+     * {@value #DEFAULT_MAX_CONTEXTS_PER_VALUE}
+     * 
+     * @param maxContextsPerValue
+     * @return
+     */
+    public MicroCrawler withMaxContextsPerValue(int maxContextsPerValue)
+    {
+        this.maxContextsPerValue = Math.max(1, maxContextsPerValue);
+        return this;
+    }
+
+    /**
+     * Reports the crawled pages, the failed pages and the latencies of loading and analyzing a page to the given {@link MetricRegistry} under
+     * the <code>crawler.</code> prefix. Default is {@link MetricsUtils#shared()}
+     * 
+     * @param registry
+     * @return
+     */
+    public MicroCrawler withMetrics(MetricRegistry registry)
+    {
+        this.pages = registry.counter("crawler.pages");
+        this.errors = registry.counter("crawler.errors");
+        this.fetchLatency = registry.timer("crawler.fetch.latency");
+        this.analyzeLatency = registry.timer("crawler.analyze.latency");
+        return this;
+    }
+
+    /**
+     * Adds a matcher named by the name of the {@link Matchers} constant or by the regex otherwise. All added matchers are evaluated in the
+     * same crawl.
+     * 
      * @see Matchers
+     * @see #addMatcher(String, Pattern, String)
      * @param matchers
      * @return
      */
     public MicroCrawler addMatcher(RegexSupplier matchers)
     {
-        return this.addMatcher(matchers.get());
+        String name = matchers instanceof Enum ? ((Enum<?>) matchers).name() : matchers.get();
+        return this.addMatcher(name, Pattern.compile(matchers.get()), matchers.getRequiredLiteral()
+                                                                              .orElse(null));
     }
 
     public MicroCrawler addMatcher(String regex)
@@ -96,22 +539,51 @@ public class MicroCrawler
 
     public MicroCrawler addMatcher(Pattern matcher)
     {
-        this.matcher = matcher;
+        return this.addMatcher(matcher.pattern(), matcher, null);
+    }
+
+    /**
+     * Adds a matcher under the given name, which is reported by {@link Match#getMatcher()}. Adding a matcher with the same name again
+     * replaces it.
+     * 
+     * @param name
+     * @param matcher
+     * @param requiredLiteral
+     *            literal contained in every match, blocks of a page without it are skipped before running the regex. Can be null.
+     * @return
+     */
+    public MicroCrawler addMatcher(String name, Pattern matcher, String requiredLiteral)
+    {
+        this.matchers.removeIf(namedMatcher -> namedMatcher.name.equals(name));
+        this.matchers.add(new NamedMatcher(name, matcher, requiredLiteral));
         return this;
     }
 
     public static class Match
     {
+        private String       matcher;
         private String       value;
         private List<String> contexts;
 
-        public Match(String value, List<String> contexts)
+        public Match(String matcher, String value, List<String> contexts)
         {
             super();
+            this.matcher = matcher;
             this.value = value;
             this.contexts = contexts;
         }
 
+        /**
+         * Returns the name of the matcher which found the value
+         * 
+         * @see MicroCrawler#addMatcher(String, Pattern, String)
+         * @return
+         */
+        public String getMatcher()
+        {
+            return this.matcher;
+        }
+
         public String getValue()
         {
             return this.value;
@@ -125,11 +597,29 @@ public class MicroCrawler
         @Override
         public String toString()
         {
-            return "Match [value=" + this.value + ", contexts=" + this.contexts + "]";
+            return "Match [matcher=" + this.matcher + ", value=" + this.value + ", contexts=" + this.contexts + "]";
         }
 
     }
 
+    /**
+     * Receives the matches while the crawl is still running
+     * 
+     * @see MicroCrawler#analyze(String, MatchListener)
+     */
+    @FunctionalInterface
+    public static interface MatchListener
+    {
+        /**
+         * Is called once per match value, when the value is found the first time. The given {@link Match} contains the contexts of the
+         * page the value is found on. The calls are made one after another from the crawling workers.
+         * 
+         * @param match
+         * @return false to stop the crawl, the pages in progress are completed but no further pages are fetched
+         */
+        public boolean onMatch(Match match);
+    }
+
     public static interface AnalysisResult
     {
 
@@ -137,53 +627,305 @@ public class MicroCrawler
 
     }
 
+    /**
+     * Wraps the exception of a {@link MatchListener}, which is thrown by {@link MicroCrawler#analyze(String, MatchListener)} after the crawl
+     * is stopped
+     */
+    private static class MatchListenerException extends RuntimeException
+    {
+        private static final long serialVersionUID = 1L;
+
+        public MatchListenerException(RuntimeException cause)
+        {
+            super(cause);
+        }
+
+        @Override
+        public synchronized RuntimeException getCause()
+        {
+            return (RuntimeException) super.getCause();
+        }
+    }
+
+    /**
+     * Collects the matched values with at most {@link #maxContextsPerValue} distinct contexts per value, so the memory stays bounded by the
+     * number of values instead of growing with the number of pages
+     */
     private static class MatchesCollector
     {
-        private Map<String, List<String>> valueToContexts = new HashMap<>();
+        private Map<String, Map<String, Set<String>>> matcherToValueToContexts = new LinkedHashMap<>();
+        private int                                   maxContextsPerValue;
+        private MatchListener                         listener;
+        private Runnable                              stopOperation;
+        private boolean                               stopped                  = false;
 
-        public void putAll(Map<HtmlElement, Set<String>> matches)
+        public MatchesCollector(int maxContextsPerValue, MatchListener listener, Runnable stopOperation)
         {
-            matches.forEach((key, values) ->
+            super();
+            this.maxContextsPerValue = maxContextsPerValue;
+            this.listener = listener;
+            this.stopOperation = stopOperation;
+        }
+
+        /**
+         * @param matcherToValueToContexts
+         *            the contexts of the matched values of a page per matcher name
+         */
+        public synchronized void putAll(Map<String, Map<String, Set<String>>> matcherToValueToContexts)
+        {
+            List<Match> firstSeenMatches = new ArrayList<>();
+            matcherToValueToContexts.forEach((matcher, valueToPageContexts) ->
             {
-                values.forEach(value ->
+                Map<String, Set<String>> valueToContexts = this.matcherToValueToContexts.computeIfAbsent(matcher, m -> new HashMap<>());
+                valueToPageContexts.forEach((value, pageContexts) ->
                 {
-                    this.valueToContexts.computeIfAbsent(value, v -> new ArrayList<>())
-                                        .addAll(StreamUtils.builder()
-                                                           .add(key)
-                                                           .addAll(key.getParents()
-                                                                      .limit(3))
-                                                           .build()
-                                                           .map(HtmlElement::asText)
-                                                           .collect(Collectors.toList()));
+                    Set<String> contexts = valueToContexts.get(value);
+                    boolean firstSeen = contexts == null;
+                    if (firstSeen)
+                    {
+                        contexts = new LinkedHashSet<>();
+                        valueToContexts.put(value, contexts);
+                    }
+
+                    Iterator<String> iterator = pageContexts.iterator();
+                    while (contexts.size() < this.maxContextsPerValue && iterator.hasNext())
+                    {
+                        contexts.add(iterator.next());
+                    }
+
+                    if (firstSeen)
+                    {
+                        firstSeenMatches.add(new Match(matcher, value, new ArrayList<>(contexts)));
+                    }
                 });
             });
+
+            for (Match match : firstSeenMatches)
+            {
+                if (!this.stopped && !this.notifyListener(match))
+                {
+                    this.stopped = true;
+                    this.stopOperation.run();
+                }
+            }
         }
 
-        public Stream<Match> getMatches()
+        /**
+         * A failing {@link MatchListener} stops the crawl, its exception is passed on as {@link MatchListenerException} to be distinguishable
+         * from the errors of a page
+         * 
+         * @param match
+         * @return
+         */
+        private boolean notifyListener(Match match)
         {
-            return this.valueToContexts.entrySet()
-                                       .stream()
-                                       .map(entry -> new Match(entry.getKey(), entry.getValue()));
+            try
+            {
+                return this.listener.onMatch(match);
+            }
+            catch (RuntimeException e)
+            {
+                this.stopped = true;
+                this.stopOperation.run();
+                throw new MatchListenerException(e);
+            }
+        }
+
+        public synchronized Stream<Match> getMatches()
+        {
+            List<Match> matches = new ArrayList<>();
+            this.matcherToValueToContexts.forEach((matcher, valueToContexts) ->
+            {
+                valueToContexts.forEach((value, contexts) -> matches.add(new Match(matcher, value, new ArrayList<>(contexts))));
+            });
+            return matches.stream();
         }
 
     }
 
+    /**
+     * Queue of the urls to crawl. Every url is queued at most once, and the number of urls handed out is limited by the budget. The urls are
+     * queued per host and the hosts are served round robin, while a host gets at most
+     * {@link MicroCrawler#withMaxConcurrentRequestsPerHost(int)} requests at the same time and its requests are started at least
+     * {@link MicroCrawler#withMinDelayPerHost(long)} milliseconds apart. The crawl is finished, if no url is queued and no worker is
+     * analyzing a page anymore, which could add new urls.
+     */
+    private static class Frontier
+    {
+        private Map<String, HostQueue> hostToQueue = new HashMap<>();
+        private Deque<HostQueue>       rotation    = new ArrayDeque<>();
+        private SeenURLFilter          visited;
+        private int                    pending     = 0;
+        private int                    budget;
+        private int                    maxConcurrentRequestsPerHost;
+        private long                   minDelayPerHost;
+
+        private static class HostQueue
+        {
+            private Deque<String> urls             = new ArrayDeque<>();
+            private int           numberOfRequests = 0;
+            private long          nextRequestTime  = 0;
+            private boolean       scheduled        = false;
+        }
+
+        public Frontier(SeenURLFilter visited, int maxNumberOfRequests, int maxConcurrentRequestsPerHost, long minDelayPerHost)
+        {
+            super();
+            this.visited = visited;
+            this.budget = maxNumberOfRequests;
+            this.maxConcurrentRequestsPerHost = maxConcurrentRequestsPerHost;
+            this.minDelayPerHost = minDelayPerHost;
+        }
+
+        public synchronized void offer(String url)
+        {
+            if (url != null && this.visited.add(url))
+            {
+                HostQueue hostQueue = this.hostToQueue.computeIfAbsent(determineHost(url), host -> new HostQueue());
+                hostQueue.urls.add(url);
+                if (!hostQueue.scheduled)
+                {
+                    hostQueue.scheduled = true;
+                    this.rotation.add(hostQueue);
+                }
+                this.pending++;
+                this.notifyAll();
+            }
+        }
+
+        /**
+         * Returns the next url of the first host in the rotation which is allowed to get another request, or null if the crawl is finished
+         * or the budget is used up. Blocks as long as all hosts with queued urls are busy or within their delay. Every returned url has to
+         * be confirmed by {@link #complete(String)} after its page is analyzed.
+         * 
+         * @return
+         * @throws InterruptedException
+         */
+        public synchronized String take() throws InterruptedException
+        {
+            while (this.pending > 0 && this.budget > 0)
+            {
+                long now = System.currentTimeMillis();
+                long waitTime = 50;
+                for (int ii = 0, size = this.rotation.size(); ii < size; ii++)
+                {
+                    HostQueue hostQueue = this.rotation.poll();
+                    if (hostQueue.numberOfRequests < this.maxConcurrentRequestsPerHost && hostQueue.nextRequestTime <= now)
+                    {
+                        String url = hostQueue.urls.poll();
+                        hostQueue.numberOfRequests++;
+                        hostQueue.nextRequestTime = now + this.minDelayPerHost;
+                        hostQueue.scheduled = !hostQueue.urls.isEmpty();
+                        if (hostQueue.scheduled)
+                        {
+                            this.rotation.add(hostQueue);
+                        }
+                        this.budget--;
+                        return url;
+                    }
+
+                    this.rotation.add(hostQueue);
+                    if (hostQueue.numberOfRequests < this.maxConcurrentRequestsPerHost)
+                    {
+                        waitTime = Math.min(waitTime, hostQueue.nextRequestTime - now);
+                    }
+                }
+                this.wait(Math.max(1, waitTime));
+            }
+            return null;
+        }
+
+        /**
+         * Hands out no further urls, the urls in progress still have to be completed
+         */
+        public synchronized void stop()
+        {
+            this.budget = 0;
+            this.notifyAll();
+        }
+
+        public synchronized void complete(String url)
+        {
+            this.hostToQueue.get(determineHost(url)).numberOfRequests--;
+            this.pending--;
+            this.notifyAll();
+        }
+
+        private static String determineHost(String url)
+        {
+            try
+            {
+                URL parsedUrl = new URL(url);
+                return StringUtils.lowerCase(parsedUrl.getHost()) + ":" + parsedUrl.getPort();
+            }
+            catch (MalformedURLException e)
+            {
+                return "";
+            }
+        }
+    }
+
+    /**
+     * Crawls the pages reachable from the given url in breadth first order with {@link #withNumberOfWorkers(int)} workers, until
+     * {@link #withMaxNumberOfRequests(int)} pages are fetched or no further links are found
+     * 
+     * @see #analyze(String, MatchListener)
+     * @param url
+     * @return
+     */
     public AnalysisResult analyze(String url)
     {
-        Set<String> urls = Collections.synchronizedSet(new LinkedHashSet<>(Arrays.asList(url)));
+        return this.analyze(url, match -> true);
+    }
 
-        MatchesCollector collector = new MatchesCollector();
+    /**
+     * Similar to {@link #analyze(String)}, but reports every match value to the given {@link MatchListener} as soon as its page is
+     * analyzed. If the {@link MatchListener} returns false, the crawl stops early and the returned {@link AnalysisResult} contains the
+     * matches found until then. If the {@link MatchListener} throws an exception, the crawl stops as well and the exception is rethrown.
+     * 
+     * @param url
+     * @param listener
+     * @return
+     */
+    public AnalysisResult analyze(String url, MatchListener listener)
+    {
+        SeenURLFilter visited = URLNormalizationUtils.newSeenFilter(this.seenURLsMemory,
+                                                                    this.maxNumberOfRequests * (long) EXPECTED_NUMBER_OF_LINKS_PER_PAGE);
+        Frontier frontier = new Frontier(visited, this.maxNumberOfRequests, this.maxConcurrentRequestsPerHost, this.minDelayPerHost);
+        MatchesCollector collector = new MatchesCollector(this.maxContextsPerValue, listener, frontier::stop);
+        this.normalizer.normalize(url)
+                       .ifPresent(frontier::offer);
 
-        IntStream.range(0, this.maxNumberOfRequests)
-                 .mapToObj(ii -> urls.stream()
-                                     .skip(ii)
-                                     .findFirst())
-                 .filter(Optional::isPresent)
-                 .map(Optional::get)
-                 .peek(System.out::println)
-                 .map(currentUrl -> this.fetchAndAnalyzePage(currentUrl, collector))
-                 .peek(System.out::println)
-                 .forEach(urls::addAll);
+        ExecutorService executor = Executors.newFixedThreadPool(this.numberOfWorkers, MicroCrawler::newWorkerThread);
+        try
+        {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int ii = 0; ii < this.numberOfWorkers; ii++)
+            {
+                workers.add(executor.submit(() -> this.crawl(frontier, collector)));
+            }
+            for (Future<?> worker : workers)
+            {
+                worker.get();
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+        }
+        catch (ExecutionException e)
+        {
+            if (e.getCause() instanceof MatchListenerException)
+            {
+                throw ((MatchListenerException) e.getCause()).getCause();
+            }
+            throw new IllegalStateException("Crawl failed: " + url, e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
 
         return new AnalysisResult()
         {
@@ -195,65 +937,148 @@ public class MicroCrawler
         };
     }
 
-    private Set<String> fetchAndAnalyzePage(String currentUrl, MatchesCollector collector)
+    private static Thread newWorkerThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, "micro-crawler");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private void crawl(Frontier frontier, MatchesCollector collector)
     {
         try
         {
-            HtmlDocument htmlDocument = HtmlUtils.load()
-                                                 .fromUrl(currentUrl);
+            for (String url = frontier.take(); url != null; url = frontier.take())
+            {
+                try
+                {
+                    this.fetchAndAnalyzePage(url, collector)
+                        .forEach(frontier::offer);
+                }
+                finally
+                {
+                    frontier.complete(url);
+                }
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
 
-            this.collectMatches(collector, htmlDocument);
+    /**
+     * Returns the normalized urls of the links on the given page, links which can't be resolved to a http url are dropped
+     * 
+     * @param currentUrl
+     * @param collector
+     * @return
+     */
+    private List<String> fetchAndAnalyzePage(String currentUrl, MatchesCollector collector)
+    {
+        try
+        {
+            Document document = this.fetchLatency.time(() -> this.loadDocument(currentUrl));
+            this.pages.increment();
 
-            return htmlDocument.findByTag("a")
-                               .map(HtmlElement::asAnker)
-                               .map(optional -> optional.orElse(null))
-                               .map(HtmlAnker::getHref)
+            return this.analyzeLatency.time(() ->
+            {
+                this.collectMatches(collector, document);
+
+                return document.select("a")
+                               .stream()
+                               .map(anker -> anker.attr("href"))
                                .filter(PredicateUtils.notBlank())
                                .distinct()
                                .map(relativeUrl -> URLUtils.from(currentUrl)
                                                            .navigateTo(relativeUrl)
-                                                           .map(u -> u.removeTrailingAnker())
                                                            .map(e -> e.get())
-                                                           .orElse(null))
-                               .collect(Collectors.toSet());
+                                                           .flatMap(this.normalizer::normalize))
+                               .filter(Optional::isPresent)
+                               .map(Optional::get)
+                               .distinct()
+                               .collect(Collectors.toList());
+            });
+        }
+        catch (MatchListenerException e)
+        {
+            throw e;
         }
         catch (Exception e)
         {
-            return SetUtils.empty();
+            this.errors.increment();
+            return Collections.emptyList();
         }
     }
 
-    private void collectMatches(MatchesCollector collector, HtmlDocument htmlDocument)
+    private Document loadDocument(String url)
     {
-        if (this.matcher != null)
+        try
         {
-            Map<HtmlElement, Set<String>> matches = new HashMap<>();
+            return Jsoup.connect(url)
+                        .get();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException("Unable to load page: " + url, e);
+        }
+    }
 
-            htmlDocument.visit((element, parents) ->
+    /**
+     * Builds the text of the document in one pass, runs all matchers once over it and assigns every {@link Hit} to the innermost element,
+     * whose text contains it. Like within a visit of the elements, which only keeps the deepest elements with a match, per matcher all
+     * {@link Hit}s of an element are dropped as soon as one of its children contains a {@link Hit}. The contexts are the texts of that
+     * element and its three next parents within the {@link #withContextWindow(int)} around the value.
+     * 
+     * @param collector
+     * @param document
+     */
+    private void collectMatches(MatchesCollector collector, Document document)
+    {
+        List<NamedMatcher> matchers = new ArrayList<>(this.matchers);
+        if (!matchers.isEmpty())
+        {
+            PageText pageText = PageText.of(Optional.ofNullable((Element) document.body())
+                                                    .orElse(document));
+            if (pageText.ranges.isEmpty())
             {
-                String input = element.asText();
-
-                AtomicBoolean hasMatchResults = new AtomicBoolean(false);
-                MatcherUtils.matcher()
-                            .of(this.matcher)
-                            .findIn(input)
-                            .ifPresent(result ->
-                            {
-                                Set<String> values = result.map(match -> match.getMatchRegion())
-                                                           .collect(Collectors.toSet());
-                                if (!values.isEmpty())
-                                {
-                                    matches.keySet()
-                                           .removeAll(parents.getElements());
-                                    matches.put(element, values);
-                                    hasMatchResults.set(true);
-                                }
-                            });
-
-                return hasMatchResults.get();
-            });
+                return;
+            }
 
-            collector.putAll(matches);
+            Map<String, Map<String, Set<String>>> matcherToValueToContexts = new LinkedHashMap<>();
+            for (NamedMatcher matcher : matchers)
+            {
+                List<Hit> hits = matcher.findIn(pageText)
+                                        .collect(Collectors.toList());
+                List<TextRange> ranges = hits.stream()
+                                             .map(pageText::findInnermostRange)
+                                             .collect(Collectors.toList());
+
+                Set<TextRange> parentsWithMatchingChildren = new HashSet<>();
+                ranges.forEach(range ->
+                {
+                    // stops at the first parent, which is marked already together with all its parents
+                    TextRange parent = range.parent;
+                    while (parent != null && parentsWithMatchingChildren.add(parent))
+                    {
+                        parent = parent.parent;
+                    }
+                });
+
+                for (int ii = 0; ii < hits.size(); ii++)
+                {
+                    Hit hit = hits.get(ii);
+                    TextRange range = ranges.get(ii);
+                    if (!parentsWithMatchingChildren.contains(range))
+                    {
+                        matcherToValueToContexts.computeIfAbsent(hit.matcher, name -> new LinkedHashMap<>())
+                                                .computeIfAbsent(hit.value, value -> new LinkedHashSet<>())
+                                                .add(pageText.extractContext(range.determineContextScope(), hit, this.contextWindow));
+                    }
+                }
+            }
+            collector.putAll(matcherToValueToContexts);
         }
     }
 
@@ -15,23 +15,27 @@
  ******************************************************************************/
 package org.omnaest.wiki;
 
-import java.util.Arrays;
-import java.util.Collections;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Function;
+import java.util.function.LongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.LongStream;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.omnaest.utils.CacheUtils;
-import org.omnaest.utils.CollectorUtils;
 import org.omnaest.utils.PredicateUtils;
 import org.omnaest.utils.StreamUtils;
-import org.omnaest.utils.cache.Cache;
-import org.omnaest.utils.cache.Cache.EvictionStrategy;
 import org.omnaest.utils.element.bi.BiElement;
 import org.omnaest.utils.element.cached.CachedElement;
 import org.omnaest.utils.html.HtmlUtils;
@@ -39,6 +43,34 @@ import org.omnaest.utils.html.HtmlUtils.HtmlDocumentLoader;
 import org.omnaest.utils.rest.client.RestHelper.RESTAccessExeption;
 import org.omnaest.utils.stream.Streamable;
 import org.omnaest.utils.supplier.EnumSupplier;
+import org.omnaest.wiki.cache.TextCacheUtils;
+import org.omnaest.wiki.cache.TextCacheUtils.TextCache;
+import org.omnaest.wiki.cache.TieredCacheUtils;
+import org.omnaest.wiki.cache.TieredCacheUtils.Codec;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCache;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCacheFactory;
+import org.omnaest.wiki.closure.SubclassClosureUtils;
+import org.omnaest.wiki.closure.SubclassClosureUtils.SubclassClosure;
+import org.omnaest.wiki.dump.WikiDumpUtils;
+import org.omnaest.wiki.export.ExportUtils;
+import org.omnaest.wiki.export.ExportUtils.Export;
+import org.omnaest.wiki.filter.FilterBitmapUtils;
+import org.omnaest.wiki.filter.FilterBitmapUtils.FilterBitmapCache;
+import org.omnaest.wiki.filter.FilterBitmapUtils.FilterQuery;
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdSet;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.metrics.MetricsUtils.Counter;
+import org.omnaest.wiki.metrics.MetricsUtils.Histogram;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.Timer;
+import org.omnaest.wiki.refresh.RevisionRefreshUtils;
+import org.omnaest.wiki.refresh.RevisionRefreshUtils.RefreshableCache;
+import org.omnaest.wiki.refresh.RevisionRefreshUtils.RevisionRefresher;
+import org.omnaest.wiki.rest.HttpTransportUtils;
+import org.omnaest.wiki.rest.HttpTransportUtils.DeadlineExceededException;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
 import org.omnaest.wiki.rest.WikiRESTUtils;
 import org.omnaest.wiki.rest.WikiRESTUtils.Binding;
 import org.omnaest.wiki.rest.WikiRESTUtils.EntityObject;
@@ -46,16 +78,31 @@ import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilterValueProvider;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLObjectValueProvider;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLProperties;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLPropertyValueProvider;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLResult;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLResults;
 import org.omnaest.wiki.rest.WikiRESTUtils.WikiRESTAccessor;
-import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.omnaest.wiki.rest.WikibaseRESTUtils;
+import org.omnaest.wiki.rest.WikibaseRESTUtils.WikibaseRESTAccessor;
+import org.omnaest.wiki.rest.WikipediaRESTUtils;
+import org.omnaest.wiki.rest.WikipediaRESTUtils.WikipediaRESTAccessor;
+import org.omnaest.wiki.search.LabelIndexUtils.LabelIndex;
+import org.omnaest.wiki.search.LabelIndexUtils.SearchHit;
+import org.omnaest.wiki.snapshot.SnapshotUtils;
+import org.omnaest.wiki.snapshot.SnapshotUtils.SnapshotStatistic;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+import org.roaringbitmap.RoaringBitmap;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
 import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
 import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
 import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
 import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
 import org.wikidata.wdtk.datamodel.interfaces.StringValue;
-import org.wikidata.wdtk.wikibaseapi.WbSearchEntitiesResult;
-import org.wikidata.wdtk.wikibaseapi.WikibaseDataFetcher;
+
+import com.fasterxml.jackson.core.type.TypeReference;
 
 public class WikiUtils
 {
@@ -66,13 +113,184 @@ public class WikiUtils
     {
         public WikiAccessor connectTo(String wikiDataUrl, String wikiPediaUrl);
 
+        /**
+         * Similar to {@link #connectTo(String, String)} but allows to specify the url of the wikibase api, which is used to fetch {@link Item}s
+         * and to search for them. Default is {@value WikibaseRESTAccessor#DEFAULT_WIKIBASE_URL}
+         * 
+         * @param wikiDataUrl
+         * @param wikiPediaUrl
+         * @param wikibaseUrl
+         * @return
+         */
+        public WikiAccessor connectTo(String wikiDataUrl, String wikiPediaUrl, String wikibaseUrl);
+
         public WikiAccessor connectToWikiDataAndWikipedia();
+
+        /**
+         * Similar to {@link #connectToWikiDataAndWikipedia()} but all {@link Item} data is read from the given {@link EntityStore} instead of
+         * the network. Searches for indexed property values are answered by the {@link EntityStore}, other searches and texts are still
+         * resolved remotely.
+         * 
+         * @see WikiDumpUtils
+         * @param store
+         * @return
+         */
+        public WikiAccessor connectToLocalStore(EntityStore store);
+
+        /**
+         * Warms up the caches of the connected {@link WikiAccessor} with the given snapshot file, if it exists. The snapshot is loaded in the
+         * background, so connecting is not blocked.
+         * 
+         * @see WikiAccessor#snapshotTo(File)
+         * @see WikiAccessor#loadSnapshot(File)
+         * @param snapshotFile
+         * @return
+         */
+        public WikiAccessorLoader withSnapshot(File snapshotFile);
+
+        /**
+         * Sends all requests of the connected {@link WikiAccessor}s using the given {@link HttpTransport}. Default is the
+         * {@link HttpTransportUtils#shared()} transport, so connections are reused across all {@link WikiAccessor}s of the process.
+         * 
+         * @param transport
+         * @return
+         */
+        public WikiAccessorLoader withTransport(HttpTransport transport);
+
+        /**
+         * Reports the SPARQL pages, the {@link Item} fetches, the hits and misses of the {@link Item} cache and the searches of the connected
+         * {@link WikiAccessor}s to the given {@link MetricRegistry}. Default is {@link MetricsUtils#shared()}. The requests itself are reported
+         * by the {@link HttpTransport}, see {@link HttpTransport#withMetrics(MetricRegistry)}.
+         * 
+         * @param registry
+         * @return
+         */
+        public WikiAccessorLoader withMetrics(MetricRegistry registry);
     }
 
     public static interface WikiAccessor
     {
         public WikiAccessor usingLocalCache();
 
+        /**
+         * Replaces the {@link TextCache} used for resolved Wikipedia texts. Default is an in memory {@link TextCache} of
+         * {@value TextCacheUtils#DEFAULT_MAX_SIZE_IN_BYTES} bytes, {@link #usingLocalCache()} adds a disk tier to it.
+         * 
+         * @param textCache
+         * @return
+         */
+        public WikiAccessor withTextCache(TextCache textCache);
+
+        /**
+         * Reads {@link Item}s from the given {@link EntityStore} first and falls back to the network only for entities which are not contained.
+         * Entities fetched from the network are written to the {@link EntityStore}.
+         * <br>
+         * <br>
+         * {@link #searchFor(SPARQLPropertyValueProvider, SPARQLObjectValueProvider)} is answered by the {@link EntityStore} if the property is
+         * indexed and the {@link EntityStore} contains matching entities.
+         * 
+         * @see EntityStoreUtils#newLocalIndexedStore(String)
+         * @param store
+         * @return
+         */
+        public WikiAccessor usingEntityStore(EntityStore store);
+
+        /**
+         * Adds all entities resolved by this {@link WikiAccessor} to the given {@link LabelIndex}, including the ones already contained in the
+         * {@link EntityStore} of {@link #usingEntityStore(EntityStore)}. {@link #searchFor(String)} is only answered by the {@link LabelIndex},
+         * if it was filled from a complete {@link EntityStore}, see {@link EntityStore#isComplete()}. Otherwise the index holds only the
+         * entities resolved so far and the remote search is used.
+         * 
+         * @param labelIndex
+         * @return
+         */
+        public WikiAccessor usingLabelIndex(LabelIndex labelIndex);
+
+        /**
+         * Answers {@link #searchFor(SPARQLFilterValueProvider...)} locally by the intersection of the cached bitmaps of the single filters. Only
+         * filters which are not cached yet are queried from the server. The {@link Item}s are returned in ascending order of their entity id.
+         * 
+         * @see #searchFor(FilterQuery)
+         * @return
+         */
+        public WikiAccessor usingFilterBitmaps();
+
+        /**
+         * Replaces the {@link FilterBitmapCache} used by {@link #searchFor(FilterQuery)}. Default is an in memory {@link FilterBitmapCache}.
+         * 
+         * @param cache
+         * @return
+         */
+        public WikiAccessor withFilterBitmapCache(FilterBitmapCache cache);
+
+        /**
+         * Maintains a local {@link SubclassClosure} of the subclass of relation. {@link SPARQLProperties#INSTANCE_OF} filters are then sent as
+         * plain instance of lookup of the locally resolved subclasses and {@link Item#getInstanceOf()} is answered by the superclasses of the direct
+         * classes of an {@link Item}.
+         * 
+         * @see #withSubclassClosure(SubclassClosure)
+         * @return
+         */
+        public WikiAccessor usingSubclassClosure();
+
+        /**
+         * Similar to {@link #usingSubclassClosure()} but with the given {@link SubclassClosure}
+         * 
+         * @see SubclassClosureUtils#newBatchInstance(Function, Function)
+         * @param subclassClosure
+         * @return
+         */
+        public WikiAccessor withSubclassClosure(SubclassClosure subclassClosure);
+
+        /**
+         * Returns a new {@link RevisionRefresher} for the in memory cache of entities. It compares the revisions of the cached entities with the
+         * last revisions on the server and replaces changed entities, which are also written to the {@link EntityStore} and {@link LabelIndex} if
+         * configured. The refresh has to be started explicitly by {@link RevisionRefresher#start()} and stopped by
+         * {@link RevisionRefresher#close()}.
+         * 
+         * @return
+         */
+        public RevisionRefresher newRevisionRefresher();
+
+        /**
+         * Writes the entities of the in memory cache and the filter bitmaps of {@link #searchFor(FilterQuery)} into the given snapshot file
+         * 
+         * @see WikiAccessorLoader#withSnapshot(File)
+         * @param snapshotFile
+         * @return
+         */
+        public SnapshotStatistic snapshotTo(File snapshotFile);
+
+        /**
+         * Routes the entity cache, the SPARQL result pages and the results of {@link #searchFor(String)} through {@link TieredCache}s of the
+         * given {@link TieredCacheFactory}. The in memory entity cache stays the L1 tier for entities, the other tiers of the factory are used
+         * as its backing tiers.
+         * 
+         * @see TieredCacheUtils#newFactory()
+         * @see TieredCacheFactory#getStatistics()
+         * @param factory
+         * @return
+         */
+        public WikiAccessor usingTieredCache(TieredCacheFactory factory);
+
+        /**
+         * Loads the given snapshot file in the background and in parallel into the in memory caches. Entities which are already cached are not
+         * replaced and the snapshot fills the entity cache only up to its capacity.
+         * 
+         * @param snapshotFile
+         * @return
+         */
+        public CompletableFuture<SnapshotStatistic> loadSnapshot(File snapshotFile);
+
+        /**
+         * Returns an {@link Export} of the given {@link SearchResult}, which fetches the {@link Item}s in parallel blocks and writes them in
+         * order as ndjson or column oriented file.
+         * 
+         * @param result
+         * @return
+         */
+        public Export export(SearchResult result);
+
         public SearchResult searchFor(String query);
 
         public SearchResult searchFor(SPARQLFilterValueProvider filter);
@@ -81,10 +299,53 @@ public class WikiUtils
 
         public SearchResult searchFor(SPARQLPropertyValueProvider property, SPARQLObjectValueProvider object);
 
+        /**
+         * Evaluates the given {@link FilterQuery} locally on the cached bitmaps of its single filters, e.g.<br>
+         * <br>
+         * 
+         * <pre>
+         * FilterQuery.of(SPARQLFilters.INSTANCE_OF_HOSPITAL)
+         *            .and(SPARQLFilters.COUNTRY_GERMANY)
+         *            .andNot(SPARQLFilters.INSTANCE_OF_UNIVERSITY_HOSPITAL)
+         * </pre>
+         * 
+         * Only filters which are not cached yet are queried from the server. The {@link Item}s are returned in ascending order of their entity
+         * id.
+         * 
+         * @param query
+         * @return
+         */
+        public SearchResult searchFor(FilterQuery query);
+
         Optional<Item> findByEntityId(String entityId);
 
+        /**
+         * Resolves the Wikipedia plain texts of the given {@link Item}s. The article titles are requested in blocks, so this is the preferred way
+         * over {@link Item#resolveText()} for larger numbers of {@link Item}s. {@link Item}s without a Wikipedia article are skipped.
+         * 
+         * @param items
+         * @return
+         */
+        public Stream<ItemText> resolveTexts(Stream<Item> items);
+
     }
 
+    public static interface ItemText
+    {
+        public String getEntityId();
+
+        public String getTitle();
+
+        public String getText();
+    }
+
+    /**
+     * The {@link Item}s of a {@link SearchResult} are fetched lazily in blocks. If a block can not be fetched, the methods of its {@link Item}s
+     * throw the failure, e.g. a {@link DeadlineExceededException} if the wikibase api did not answer in time, instead of the {@link Item}s
+     * being empty.
+     * 
+     * @see HttpTransport#withDeadline(long)
+     */
     public static interface SearchResult extends Streamable<Item>
     {
     }
@@ -93,6 +354,14 @@ public class WikiUtils
     {
         public Optional<String> resolveText();
 
+        /**
+         * Returns the title of the english Wikipedia article linked to this {@link Item}. Falls back to {@link #getTitle()} if no site link is
+         * present.
+         * 
+         * @return
+         */
+        public Optional<String> getWikipediaTitle();
+
         public Optional<String> getTitle();
 
         public Optional<String> getTitle(LanguageProvider language);
@@ -111,6 +380,8 @@ public class WikiUtils
 
         public Optional<StatementResult> getStatement(SPARQLProperties sparqlProperties);
 
+        public Stream<StatementResult> getStatements(SPARQLProperties sparqlProperties);
+
         public Stream<Item> getInstanceOf();
 
         public Stream<Item> getExactInstanceOf();
@@ -163,10 +434,20 @@ public class WikiUtils
     {
         return new WikiAccessorLoader()
         {
+            private File           snapshotFile;
+            private HttpTransport  transport = HttpTransportUtils.shared();
+            private MetricRegistry metrics   = MetricsUtils.shared();
+
             @Override
             public WikiAccessor connectTo(String wikiDataUrl, String wikiPediaUrl)
             {
-                return new WikiAccessorImpl(wikiDataUrl, wikiPediaUrl);
+                return this.connectTo(wikiDataUrl, wikiPediaUrl, WikibaseRESTAccessor.DEFAULT_WIKIBASE_URL);
+            }
+
+            @Override
+            public WikiAccessor connectTo(String wikiDataUrl, String wikiPediaUrl, String wikibaseUrl)
+            {
+                return this.warmUp(new WikiAccessorImpl(wikiDataUrl, wikiPediaUrl, wikibaseUrl, this.transport, this.metrics));
             }
 
             @Override
@@ -174,56 +455,146 @@ public class WikiUtils
             {
                 return this.connectTo(WikiRESTAccessor.DEFAULT_WIKIDATA_URL, DEFAULT_WIKIPEDIA_EN_URL);
             }
+
+            @Override
+            public WikiAccessor connectToLocalStore(EntityStore store)
+            {
+                return this.warmUp(new WikiAccessorImpl(WikiRESTAccessor.DEFAULT_WIKIDATA_URL, DEFAULT_WIKIPEDIA_EN_URL,
+                                                        WikibaseRESTAccessor.DEFAULT_WIKIBASE_URL, this.transport, this.metrics,
+                                                        entityIds -> new EntityIdMap<>()).usingEntityStore(store));
+            }
+
+            @Override
+            public WikiAccessorLoader withSnapshot(File snapshotFile)
+            {
+                this.snapshotFile = snapshotFile;
+                return this;
+            }
+
+            @Override
+            public WikiAccessorLoader withTransport(HttpTransport transport)
+            {
+                this.transport = transport;
+                return this;
+            }
+
+            @Override
+            public WikiAccessorLoader withMetrics(MetricRegistry registry)
+            {
+                this.metrics = registry;
+                return this;
+            }
+
+            private WikiAccessor warmUp(WikiAccessor accessor)
+            {
+                if (this.snapshotFile != null && this.snapshotFile.exists())
+                {
+                    accessor.loadSnapshot(this.snapshotFile);
+                }
+                return accessor;
+            }
         };
     }
 
     private static class WikiAccessorImpl implements WikiAccessor
     {
-        private static final Language DEFAULT_LANGUAGE = Language.EN;
+        private static final Language DEFAULT_LANGUAGE                = Language.EN;
+        private static final int      MAX_NUMBER_OF_LOCAL_SEARCH_HITS = 1000;
+        private static final int      MAX_CLASSES_PER_QUERY           = 100;
+
+        private static final Codec<List<String>> SEARCH_RESULT_CODEC = Codec.json(new TypeReference<List<String>>()
+        {
+        });
+
+        private static final ThreadLocal<JsonDeserializer> DESERIALIZER        = ThreadLocal.withInitial(() -> new JsonDeserializer(Datamodel.SITE_WIKIDATA));
+        private static final Codec<ItemDocument>            ITEM_DOCUMENT_CODEC = Codec.of(document -> JsonSerializer.getJsonString(document)
+                                                                                                                     .getBytes(StandardCharsets.UTF_8),
+                                                                                           WikiAccessorImpl::deserializeItemDocument);
 
         private String wikiDataUrl;
         private String wikiPediaUrl;
 
-        private WikiRESTAccessor    wikiAccessor;
-        private ItemDocumentFetcher fetcher = this.initFetcher()
-                                                  .withCache();
-        private HtmlDocumentLoader  htmlDocumentLoader;
+        private WikiRESTAccessor             wikiAccessor;
+        private WikipediaRESTAccessor        wikipediaAccessor;
+        private ItemDocumentFetcher          sourceFetcher;
+        private WikibaseRESTAccessor         wikibaseAccessor;
+        private ItemDocumentFetcherCacheImpl fetcher;
+        private EntityStore                  entityStore;
+        private LabelIndex                   labelIndex;
+        private boolean                      completeLabelIndex;
+        private HtmlDocumentLoader           htmlDocumentLoader;
+        private TextCache                    textCache         = TextCacheUtils.newInstance();
+        private FilterBitmapCache            filterBitmapCache = FilterBitmapUtils.newCache();
+        private boolean                      useFilterBitmaps  = false;
+        private SubclassClosure              subclassClosure;
+        private MetricRegistry               metrics;
+        private Timer                        searchLatency;
+
+        private CachedElement<Function<String, List<String>>> searchFunction = CachedElement.of(this::newSearchFunction);
+
+        private WikiAccessorImpl(String wikiDataUrl, String wikiPediaUrl, String wikibaseUrl, HttpTransport transport, MetricRegistry metrics)
+        {
+            this(wikiDataUrl, wikiPediaUrl, wikibaseUrl, transport, metrics, null);
+        }
 
-        private WikiAccessorImpl(String wikiDataUrl, String wikiPediaUrl)
+        private WikiAccessorImpl(String wikiDataUrl, String wikiPediaUrl, String wikibaseUrl, HttpTransport transport, MetricRegistry metrics,
+                                 ItemDocumentFetcher fetcher)
         {
             this.wikiDataUrl = wikiDataUrl;
             this.wikiPediaUrl = wikiPediaUrl;
+            this.metrics = metrics;
+            this.searchLatency = metrics.timer("search.latency");
             this.wikiAccessor = WikiRESTUtils.newInstance()
-                                             .connectTo(wikiDataUrl);
+                                             .connectTo(wikiDataUrl)
+                                             .withTransport(transport)
+                                             .withMetrics(metrics);
+            this.wikipediaAccessor = WikipediaRESTUtils.newInstance()
+                                                       .connectTo(wikiPediaUrl)
+                                                       .withTransport(transport);
+            this.wikibaseAccessor = WikibaseRESTUtils.newInstance()
+                                                     .connectTo(wikibaseUrl)
+                                                     .withTransport(transport);
             this.htmlDocumentLoader = HtmlUtils.load();
+            this.sourceFetcher = fetcher != null ? fetcher : initFetcher(this.wikibaseAccessor).withMetrics(metrics);
+            this.updateFetcher();
         }
 
-        private ItemDocumentFetcher initFetcher()
+        private void updateFetcher()
         {
-            WikibaseDataFetcher fetcher = WikibaseDataFetcher.getWikidataDataFetcher();
-            //            fetcher.getFilter()
-            //                   .setSiteLinkFilter(Collections.singleton("enwiki"));
-            //            fetcher.getFilter()
-            //                   .setLanguageFilter(Collections.singleton(DEFAULT_LANGUAGE_KEY));
-            return new ItemDocumentFetcher()
+            ItemDocumentFetcher fetcher = this.sourceFetcher;
+            if (this.entityStore != null)
             {
-                @Override
-                public Map<String, ItemDocument> apply(List<String> entityIds)
-                {
-                    try
-                    {
-                        Map<String, EntityDocument> entityIdsToEntityDocument = fetcher.getEntityDocuments(entityIds);
-                        return entityIdsToEntityDocument.entrySet()
-                                                        .stream()
-                                                        .filter(entry -> entry.getValue() instanceof ItemDocument)
-                                                        .map(entry -> BiElement.of(entry.getKey(), (ItemDocument) entry.getValue()))
-                                                        .collect(CollectorUtils.toMapByBiElement());
-                    }
-                    catch (Exception e)
-                    {
-                        return Collections.emptyMap();
-                    }
-                }
+                fetcher = fetcher.withEntityStore(this.entityStore);
+            }
+            if (this.labelIndex != null)
+            {
+                fetcher = fetcher.withLabelIndex(this.labelIndex);
+            }
+            this.fetcher = this.fetcher != null ? this.fetcher.withParent(fetcher)
+                    : new ItemDocumentFetcherCacheImpl(fetcher).withMetrics(this.metrics);
+        }
+
+        private static ItemDocument deserializeItemDocument(byte[] data)
+        {
+            try
+            {
+                return DESERIALIZER.get()
+                                   .deserializeItemDocument(new String(data, StandardCharsets.UTF_8));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to deserialize item document", e);
+            }
+        }
+
+        private static ItemDocumentFetcher initFetcher(WikibaseRESTAccessor wikibaseAccessor)
+        {
+            return entityIds ->
+            {
+                EntityIdMap<ItemDocument> entityIdToDocument = new EntityIdMap<>(entityIds.length);
+                wikibaseAccessor.fetchItemDocuments(EntityIdUtils.toStrings(entityIds))
+                                .forEach((entityId, document) -> entityIdToDocument.put(EntityIdUtils.parse(entityId), document));
+                return entityIdToDocument;
             };
         }
 
@@ -232,26 +603,23 @@ public class WikiUtils
         {
             try
             {
-                Function<String, List<String>> queryFunction = CacheUtils.newLocalJsonFolderCache("wikiSearch")
-                                                                         .<List<String>>asUnaryCache(List.class)
-                                                                         .asSuppliedFunction(iQuery ->
-                                                                         {
-                                                                             try
-                                                                             {
-                                                                                 return WikibaseDataFetcher.getWikidataDataFetcher()
-                                                                                                           .searchEntities(iQuery)
-                                                                                                           .stream()
-                                                                                                           .map(WbSearchEntitiesResult::getEntityId)
-                                                                                                           .filter(PredicateUtils.notBlank())
-                                                                                                           .collect(Collectors.toList());
-                                                                             }
-                                                                             catch (Exception e)
-                                                                             {
-                                                                                 throw new IllegalStateException(e);
-                                                                             }
-                                                                         });
-                List<String> entityIds = queryFunction.apply(query);
-                return this.newSearchResult(StreamUtils.framedNonNullAsList(25, entityIds.stream()));
+                if (this.labelIndex != null && this.completeLabelIndex)
+                {
+                    long[] entityIds = this.labelIndex.search(query, MAX_NUMBER_OF_LOCAL_SEARCH_HITS)
+                                                      .stream()
+                                                      .map(SearchHit::getEntityId)
+                                                      .mapToLong(EntityIdUtils::parse)
+                                                      .filter(EntityIdUtils::isValid)
+                                                      .toArray();
+                    if (entityIds.length > 0)
+                    {
+                        return this.newSearchResult(EntityIdUtils.framed(25, LongStream.of(entityIds)));
+                    }
+                }
+
+                long[] entityIds = EntityIdUtils.parseAll(this.searchFunction.get()
+                                                                             .apply(query));
+                return this.newSearchResult(EntityIdUtils.framed(25, LongStream.of(entityIds)));
             }
             catch (Exception e)
             {
@@ -259,6 +627,17 @@ public class WikiUtils
             }
         }
 
+        private Function<String, List<String>> newSearchFunction()
+        {
+            return this.newSearchFunction(TieredCacheUtils.newLocalCache("wikiSearch", SEARCH_RESULT_CODEC));
+        }
+
+        private Function<String, List<String>> newSearchFunction(TieredCache<List<String>> cache)
+        {
+            return query -> cache.computeIfAbsent(query, () -> this.searchLatency.time(() -> this.wikibaseAccessor.searchEntities(query,
+                                                                                                                                   DEFAULT_LANGUAGE.getKey())));
+        }
+
         @Override
         public SearchResult searchFor(SPARQLFilterValueProvider filter)
         {
@@ -268,21 +647,44 @@ public class WikiUtils
         @Override
         public SearchResult searchFor(SPARQLFilterValueProvider... filters)
         {
+            if (this.useFilterBitmaps)
+            {
+                return this.searchFor(FilterQuery.allOf(filters));
+            }
+
             SPARQLResults results = this.wikiAccessor.fetchStream(filters);
-            Stream<String> entityIds = results.getBindings()
-                                              .map(Binding::getFirstValue)
-                                              .filter(Optional::isPresent)
-                                              .map(Optional::get)
-                                              .map(EntityObject::getValue)
-                                              .map(this::determineEntityIdFromUrl)
-                                              .filter(PredicateUtils.notBlank());
+            LongStream entityIds = results.getBindings()
+                                          .map(Binding::getFirstValue)
+                                          .filter(Optional::isPresent)
+                                          .map(Optional::get)
+                                          .map(EntityObject::getValue)
+                                          .mapToLong(EntityIdUtils::parseFromUrl)
+                                          .filter(EntityIdUtils::isValid);
 
-            Stream<List<String>> entityIdBlocks = StreamUtils.framedAsList(20, entityIds);
+            Stream<long[]> entityIdBlocks = EntityIdUtils.framed(20, entityIds);
 
             return this.newSearchResult(entityIdBlocks);
         }
 
-        private SearchResult newSearchResult(Stream<List<String>> entityIdBlocks)
+        @Override
+        public SearchResult searchFor(FilterQuery query)
+        {
+            RoaringBitmap bitmap = this.filterBitmapCache.evaluate(query, this::fetchFilterBitmap);
+            return this.newSearchResult(EntityIdUtils.framed(20, FilterBitmapUtils.toEntityIds(bitmap)));
+        }
+
+        private RoaringBitmap fetchFilterBitmap(SPARQLFilterValueProvider filter)
+        {
+            return FilterBitmapUtils.toBitmap(this.wikiAccessor.fetchStream(filter)
+                                                               .getBindings()
+                                                               .map(Binding::getFirstValue)
+                                                               .filter(Optional::isPresent)
+                                                               .map(Optional::get)
+                                                               .map(EntityObject::getValue)
+                                                               .mapToLong(EntityIdUtils::parseFromUrl));
+        }
+
+        private SearchResult newSearchResult(Stream<long[]> entityIdBlocks)
         {
             return new SearchResult()
             {
@@ -292,14 +694,14 @@ public class WikiUtils
                     return entityIdBlocks.flatMap(entityIds -> this.newItemBlock(entityIds));
                 }
 
-                private Stream<Item> newItemBlock(List<String> entityIds)
+                private Stream<Item> newItemBlock(long[] entityIds)
                 {
                     ItemDocumentResolver itemDocumentResolver = new ItemDocumentResolver(entityIds, WikiAccessorImpl.this.fetcher);
-                    return entityIds.stream()
-                                    .map(entityId -> this.newItem(entityId, itemDocumentResolver));
+                    return LongStream.of(entityIds)
+                                     .mapToObj(entityId -> this.newItem(entityId, itemDocumentResolver));
                 }
 
-                private Item newItem(String entityId, Function<String, ItemDocument> itemDocumentResolver)
+                private Item newItem(long entityId, LongFunction<ItemDocument> itemDocumentResolver)
                 {
                     return new ItemImpl(entityId, itemDocumentResolver);
                 }
@@ -307,42 +709,76 @@ public class WikiUtils
             };
         }
 
-        protected static class ItemDocumentResolver implements Function<String, ItemDocument>
+        /**
+         * Fetches the {@link ItemDocument}s of a block of entity ids once. If the fetch of the block fails, e.g. with a
+         * {@link DeadlineExceededException}, the failure is rethrown for every {@link Item} of the block instead of fetching the block again.
+         */
+        protected static class ItemDocumentResolver implements LongFunction<ItemDocument>
         {
-            private CachedElement<Map<String, ItemDocument>> entityIdToItemDocument;
-            private ItemDocumentFetcher                      fetcher;
+            private long[]                    entityIds;
+            private ItemDocumentFetcher       fetcher;
+            private EntityIdMap<ItemDocument> entityIdToItemDocument;
+            private EntityIdSet               blockEntityIds;
+            private RuntimeException          failure;
 
-            public ItemDocumentResolver(List<String> entityIds, ItemDocumentFetcher fetcher)
+            public ItemDocumentResolver(long[] entityIds, ItemDocumentFetcher fetcher)
             {
                 super();
+                this.entityIds = entityIds;
                 this.fetcher = fetcher;
-                this.entityIdToItemDocument = CachedElement.of(() -> fetcher.apply(entityIds));
             }
 
             @Override
-            public ItemDocument apply(String entityId)
+            public ItemDocument apply(long entityId)
             {
-                return Optional.ofNullable(this.entityIdToItemDocument.get()
-                                                                      .get(entityId))
-                               .orElseGet(() -> this.fetcher.apply(Arrays.asList(entityId))
-                                                            .get(entityId));
+                // an entity of the block which is absent in the block result does not exist, only entities outside of the block like the
+                // related items of a statement are fetched on their own
+                EntityIdMap<ItemDocument> entityIdToItemDocument = this.resolveBlock();
+                if (this.blockEntityIds.contains(entityId))
+                {
+                    return entityIdToItemDocument.get(entityId);
+                }
+                return this.fetcher.apply(new long[] { entityId })
+                                   .get(entityId);
             }
 
-        }
+            private synchronized EntityIdMap<ItemDocument> resolveBlock()
+            {
+                if (this.failure != null)
+                {
+                    throw this.failure;
+                }
+                if (this.entityIdToItemDocument == null)
+                {
+                    try
+                    {
+                        this.entityIdToItemDocument = this.fetcher.apply(this.entityIds);
+                        this.blockEntityIds = new EntityIdSet(this.entityIds.length);
+                        for (long blockEntityId : this.entityIds)
+                        {
+                            this.blockEntityIds.add(blockEntityId);
+                        }
+                    }
+                    catch (RuntimeException e)
+                    {
+                        this.failure = e;
+                        throw e;
+                    }
+                }
+                return this.entityIdToItemDocument;
+            }
 
-        private String determineEntityIdFromUrl(String entityUrl)
-        {
-            return StringUtils.substringAfterLast(entityUrl, "/");
         }
 
         private String resolveWikiText(String title)
         {
-            return this.htmlDocumentLoader.fromUrl(this.wikiPediaUrl + "/wiki/" + this.determineWikiEncodedTitle(title))
-                                          .findById("bodyContent")
-                                          .map(element -> element.findByTag("p"))
-                                          .get()
-                                          .map(element -> element.asText())
-                                          .collect(Collectors.joining("\n"));
+            String baseUrl = this.wikiPediaUrl + "/wiki/";
+            return this.textCache.computeIfAbsent(baseUrl, title, () -> this.htmlDocumentLoader.fromUrl(baseUrl + this.determineWikiEncodedTitle(title))
+                                                                                               .findById("bodyContent")
+                                                                                               .map(element -> element.findByTag("p"))
+                                                                                               .get()
+                                                                                               .map(element -> element.asText())
+                                                                                               .collect(Collectors.joining("\n")));
         }
 
         private String determineWikiEncodedTitle(String title)
@@ -353,13 +789,28 @@ public class WikiUtils
         @Override
         public SearchResult searchFor(SPARQLPropertyValueProvider property, SPARQLObjectValueProvider object)
         {
+            // the index of the store is only a final answer if the store holds all entities, otherwise it would hide the entities not stored yet
+            List<String> propertyIds = property.get();
+            if (this.entityStore != null && this.entityStore.isComplete() && propertyIds.size() == 1
+                    && this.entityStore.isIndexed(propertyIds.get(0)))
+            {
+                return this.newSearchResult(EntityIdUtils.framed(20, this.entityStore.findByPropertyValue(propertyIds.get(0), object.get())
+                                                                                     .mapToLong(EntityIdUtils::parse)
+                                                                                     .filter(EntityIdUtils::isValid)));
+            }
             return this.searchFor(SPARQLFilterValueProvider.of(property, object));
         }
 
         @Override
-        public Optional<Item> findByEntityId(String entityId)
+        public Optional<Item> findByEntityId(String id)
         {
-            ItemDocumentResolver itemDocumentResolver = new ItemDocumentResolver(Arrays.asList(entityId), this.fetcher);
+            long entityId = EntityIdUtils.parse(id);
+            if (!EntityIdUtils.isValid(entityId))
+            {
+                return Optional.empty();
+            }
+
+            ItemDocumentResolver itemDocumentResolver = new ItemDocumentResolver(new long[] { entityId }, this.fetcher);
             if (itemDocumentResolver.apply(entityId) != null)
             {
                 return Optional.of(this.newItem(entityId, itemDocumentResolver));
@@ -370,67 +821,680 @@ public class WikiUtils
             }
         }
 
-        private Item newItem(String entityId, Function<String, ItemDocument> itemDocumentResolver)
+        private Item newItem(long entityId, LongFunction<ItemDocument> itemDocumentResolver)
         {
             return new ItemImpl(entityId, itemDocumentResolver);
         }
 
+        @Override
+        public Stream<ItemText> resolveTexts(Stream<Item> items)
+        {
+            return StreamUtils.framedNonNullAsList(WikipediaRESTAccessor.MAX_TITLES_PER_REQUEST, items)
+                              .flatMap(block ->
+                              {
+                                  List<BiElement<Item, String>> itemAndTitles = block.stream()
+                                                                                     .map(item -> BiElement.of(item, item.getWikipediaTitle()
+                                                                                                                         .orElse(null)))
+                                                                                     .filter(bi -> !bi.hasAnyNullValue())
+                                                                                     .collect(Collectors.toList());
+                                  Map<String, String> titleToText = this.resolvePlainTexts(itemAndTitles.stream()
+                                                                                                        .map(BiElement::getSecond)
+                                                                                                        .collect(Collectors.toList()));
+                                  return itemAndTitles.stream()
+                                                      .filter(bi -> titleToText.containsKey(bi.getSecond()))
+                                                      .map(bi -> this.newItemText(bi.getFirst()
+                                                                                    .getEntityId(),
+                                                                                  bi.getSecond(), titleToText.get(bi.getSecond())));
+                              });
+        }
+
+        private Map<String, String> resolvePlainTexts(List<String> titles)
+        {
+            String baseUrl = this.wikiPediaUrl + "/w/api.php";
+
+            Map<String, String> titleToText = new HashMap<>();
+            List<String> missingTitles = new ArrayList<>();
+            for (String title : titles)
+            {
+                Optional<String> text = this.textCache.get(baseUrl, title);
+                if (text.isPresent())
+                {
+                    titleToText.put(title, text.get());
+                }
+                else
+                {
+                    missingTitles.add(title);
+                }
+            }
+            if (!missingTitles.isEmpty())
+            {
+                this.wikipediaAccessor.fetchPlainTexts(missingTitles)
+                                      .forEach((title, text) ->
+                                      {
+                                          this.textCache.put(baseUrl, title, text);
+                                          titleToText.put(title, text);
+                                      });
+            }
+            return titleToText;
+        }
+
+        private ItemText newItemText(String entityId, String title, String text)
+        {
+            return new ItemText()
+            {
+                @Override
+                public String getEntityId()
+                {
+                    return entityId;
+                }
+
+                @Override
+                public String getTitle()
+                {
+                    return title;
+                }
+
+                @Override
+                public String getText()
+                {
+                    return text;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "ItemText [entityId=" + entityId + ", title=" + title + "]";
+                }
+            };
+        }
+
         @Override
         public WikiAccessor usingLocalCache()
         {
             this.wikiAccessor = this.wikiAccessor.usingLocalCache();
-            this.htmlDocumentLoader = this.htmlDocumentLoader.usingLocalCache();
+            this.wikipediaAccessor = this.wikipediaAccessor.usingLocalCache();
+            this.textCache = this.textCache.withDiskTier(new File("cache", "wiki-texts-" + this.determineFileNameFromUrl(this.wikiPediaUrl)));
+            return this;
+        }
+
+        private String determineFileNameFromUrl(String url)
+        {
+            return StringUtils.removeEnd(RegExUtils.replaceAll(url, "[^a-zA-Z]+", "-"), "-");
+        }
+
+        @Override
+        public Export export(SearchResult result)
+        {
+            return ExportUtils.newExport(result);
+        }
+
+        @Override
+        public WikiAccessor usingEntityStore(EntityStore store)
+        {
+            this.entityStore = store;
+            this.updateFetcher();
+            return this;
+        }
+
+        @Override
+        public WikiAccessor usingLabelIndex(LabelIndex labelIndex)
+        {
+            this.labelIndex = labelIndex;
+            this.completeLabelIndex = this.entityStore != null && this.entityStore.isComplete();
+            if (this.entityStore != null)
+            {
+                labelIndex.addAll(this.entityStore.getEntityIds()
+                                                  .map(this.entityStore::get)
+                                                  .filter(Optional::isPresent)
+                                                  .map(Optional::get));
+            }
+            this.updateFetcher();
+            return this;
+        }
+
+        @Override
+        public WikiAccessor usingFilterBitmaps()
+        {
+            this.useFilterBitmaps = true;
+            return this;
+        }
+
+        @Override
+        public WikiAccessor withFilterBitmapCache(FilterBitmapCache cache)
+        {
+            this.filterBitmapCache = cache;
+            return this;
+        }
+
+        @Override
+        public WikiAccessor usingSubclassClosure()
+        {
+            return this.withSubclassClosure(SubclassClosureUtils.newBatchInstance(this::resolveDirectSubclasses, this::resolveDirectSuperclasses));
+        }
+
+        @Override
+        public WikiAccessor withSubclassClosure(SubclassClosure subclassClosure)
+        {
+            this.subclassClosure = subclassClosure;
+            this.wikiAccessor = this.wikiAccessor.withSubclassClosure(subclassClosure);
+            return this;
+        }
+
+        /**
+         * Resolves the direct subclasses of all given classes with one SPARQL query per {@value #MAX_CLASSES_PER_QUERY} classes. The queries
+         * bypass the cache of the SPARQL pages, so the {@link SubclassClosure} reloads its expired edges from the server.
+         * 
+         * @param classIds
+         * @return
+         */
+        private Map<String, List<String>> resolveDirectSubclasses(List<String> classIds)
+        {
+            Map<String, List<String>> classIdToSubclassIds = new LinkedHashMap<>();
+            for (int ii = 0; ii < classIds.size(); ii += MAX_CLASSES_PER_QUERY)
+            {
+                String values = classIds.subList(ii, Math.min(classIds.size(), ii + MAX_CLASSES_PER_QUERY))
+                                        .stream()
+                                        .map(classId -> "wd:" + classId)
+                                        .collect(Collectors.joining(" "));
+                String filter = "wdt:P279 ?superclass. VALUES ?superclass { " + values + " }";
+                this.wikiAccessor.withoutCache()
+                                 .fetchStream(expression -> expression.addFilter("subclass", filter)
+                                                                      .addFilter("superclass", "^wdt:P279 ?subclass"))
+                                 .getBindings()
+                                 .forEach(binding ->
+                                 {
+                                     long subclassId = this.parseEntityIdFromBinding(binding, "subclass");
+                                     long superclassId = this.parseEntityIdFromBinding(binding, "superclass");
+                                     if (EntityIdUtils.isValid(subclassId) && EntityIdUtils.isValid(superclassId))
+                                     {
+                                         classIdToSubclassIds.computeIfAbsent(EntityIdUtils.toString(superclassId), classId -> new ArrayList<>())
+                                                             .add(EntityIdUtils.toString(subclassId));
+                                     }
+                                 });
+            }
+            return classIdToSubclassIds;
+        }
+
+        private long parseEntityIdFromBinding(Binding binding, String variable)
+        {
+            return Optional.ofNullable(binding.get(variable))
+                           .map(EntityObject::getValue)
+                           .map(EntityIdUtils::parseFromUrl)
+                           .orElse(EntityIdUtils.NO_ENTITY_ID);
+        }
+
+        /**
+         * Resolves the direct superclasses of all given classes from their {@link ItemDocument}s, which are fetched at once
+         * 
+         * @param classIds
+         * @return
+         */
+        private Map<String, List<String>> resolveDirectSuperclasses(List<String> classIds)
+        {
+            Map<String, List<String>> classIdToSuperclassIds = new LinkedHashMap<>();
+            this.fetcher.apply(EntityIdUtils.parseAll(classIds))
+                        .forEach((classId, document) -> classIdToSuperclassIds.put(EntityIdUtils.toString(classId),
+                                                                                   this.determineEntityValues(document, SPARQLProperties.SUBCLASS_OF)));
+            return classIdToSuperclassIds;
+        }
+
+        private List<String> determineEntityValues(ItemDocument document, SPARQLProperties property)
+        {
+            return property.get()
+                           .stream()
+                           .map(document::findStatementGroup)
+                           .filter(PredicateUtils.notNull())
+                           .flatMap(statementGroup -> statementGroup.getStatements()
+                                                                    .stream())
+                           .map(Statement::getValue)
+                           .filter(value -> value instanceof EntityIdValue)
+                           .map(value -> ((EntityIdValue) value).getId())
+                           .collect(Collectors.toList());
+        }
+
+        @Override
+        public RevisionRefresher newRevisionRefresher()
+        {
+            return RevisionRefreshUtils.newRefresher(new RefreshableCache()
+            {
+                @Override
+                public long[] getEntityIds()
+                {
+                    return WikiAccessorImpl.this.fetcher.getEntityIds();
+                }
+
+                @Override
+                public long getRevisionId(long entityId)
+                {
+                    return Optional.ofNullable(WikiAccessorImpl.this.fetcher.getCached(entityId))
+                                   .map(ItemDocument::getRevisionId)
+                                   .orElse(RevisionRefreshUtils.NO_REVISION_ID);
+                }
+
+                @Override
+                public void replace(EntityIdMap<ItemDocument> entityIdToDocument)
+                {
+                    if (WikiAccessorImpl.this.entityStore != null)
+                    {
+                        WikiAccessorImpl.this.entityStore.putAll(entityIdToDocument.values());
+                    }
+                    if (WikiAccessorImpl.this.labelIndex != null)
+                    {
+                        WikiAccessorImpl.this.labelIndex.addAll(entityIdToDocument.values());
+                    }
+                    WikiAccessorImpl.this.fetcher.replace(entityIdToDocument);
+                }
+
+                @Override
+                public void remove(long[] entityIds)
+                {
+                    WikiAccessorImpl.this.fetcher.remove(entityIds);
+                }
+            }, this.wikibaseAccessor::fetchRevisionIds, this.sourceFetcher::apply);
+        }
+
+        @Override
+        public WikiAccessor usingTieredCache(TieredCacheFactory factory)
+        {
+            String urlName = this.determineFileNameFromUrl(this.wikiDataUrl);
+            this.wikiAccessor = this.wikiAccessor.withCache(factory.newCache("sparql-" + urlName, Codec.json(SPARQLResult.class)));
+            TieredCache<List<String>> searchCache = factory.newCache("search-" + urlName, SEARCH_RESULT_CODEC);
+            this.searchFunction = CachedElement.of(() -> this.newSearchFunction(searchCache));
+            this.fetcher = this.fetcher.withBackingCache(factory.newBackingCache("entities-" + urlName, ITEM_DOCUMENT_CODEC));
+            return this;
+        }
+
+        @Override
+        public SnapshotStatistic snapshotTo(File snapshotFile)
+        {
+            return SnapshotUtils.newWriter()
+                                .withDocuments(this.fetcher.getDocuments())
+                                .withFilterBitmaps(this.filterBitmapCache)
+                                .writeTo(snapshotFile);
+        }
+
+        @Override
+        public CompletableFuture<SnapshotStatistic> loadSnapshot(File snapshotFile)
+        {
+            return SnapshotUtils.newLoader()
+                                .load(snapshotFile, entityIdToDocument -> this.fetcher.warmUp(entityIdToDocument), this.filterBitmapCache);
+        }
+
+        @Override
+        public WikiAccessor withTextCache(TextCache textCache)
+        {
+            this.textCache = textCache;
             return this;
         }
 
-        public static interface ItemDocumentFetcher extends Function<List<String>, Map<String, ItemDocument>>
+        /**
+         * Fetches the {@link ItemDocument}s for a block of packed entity ids, see {@link EntityIdUtils}
+         */
+        @FunctionalInterface
+        public static interface ItemDocumentFetcher
         {
+            public EntityIdMap<ItemDocument> apply(long[] entityIds);
+
             public default ItemDocumentFetcher withCache()
             {
                 return new ItemDocumentFetcherCacheImpl(this);
             }
+
+            /**
+             * Reports the number of entity ids per call, the latency and the failed calls to the given {@link MetricRegistry}
+             * 
+             * @param registry
+             * @return
+             */
+            public default ItemDocumentFetcher withMetrics(MetricRegistry registry)
+            {
+                Histogram batchSize = registry.histogram("entity.fetch.batch.size");
+                Timer latency = registry.timer("entity.fetch.latency");
+                Counter errors = registry.counter("entity.fetch.errors");
+                return entityIds ->
+                {
+                    batchSize.record(entityIds.length);
+                    try
+                    {
+                        return latency.time(() -> this.apply(entityIds));
+                    }
+                    catch (RuntimeException e)
+                    {
+                        errors.increment();
+                        throw e;
+                    }
+                };
+            }
+
+            /**
+             * Reads the {@link ItemDocument}s from the given {@link EntityStore} first and writes the ones fetched for missing entity ids into it
+             * 
+             * @param store
+             * @return
+             */
+            public default ItemDocumentFetcher withEntityStore(EntityStore store)
+            {
+                return entityIds ->
+                {
+                    EntityIdMap<ItemDocument> entityIdToDocument = new EntityIdMap<>(entityIds.length);
+                    store.getAll(EntityIdUtils.toStrings(entityIds))
+                         .forEach((entityId, document) -> entityIdToDocument.put(EntityIdUtils.parse(entityId), document));
+                    long[] missingEntityIds = LongStream.of(entityIds)
+                                                        .filter(entityId -> !entityIdToDocument.containsKey(entityId))
+                                                        .toArray();
+                    if (missingEntityIds.length > 0)
+                    {
+                        EntityIdMap<ItemDocument> fetchedEntityIdToDocument = this.apply(missingEntityIds);
+                        store.putAll(fetchedEntityIdToDocument.values());
+                        entityIdToDocument.putAll(fetchedEntityIdToDocument);
+                    }
+                    return entityIdToDocument;
+                };
+            }
+
+            /**
+             * Adds all fetched {@link ItemDocument}s to the given {@link LabelIndex}
+             * 
+             * @param labelIndex
+             * @return
+             */
+            public default ItemDocumentFetcher withLabelIndex(LabelIndex labelIndex)
+            {
+                return entityIds ->
+                {
+                    EntityIdMap<ItemDocument> entityIdToDocument = this.apply(entityIds);
+                    entityIdToDocument.values()
+                                      .stream()
+                                      .filter(document -> !labelIndex.contains(document.getEntityId()
+                                                                                       .getId()))
+                                      .forEach(labelIndex::add);
+                    return entityIdToDocument;
+                };
+            }
         }
 
+        /**
+         * Bounded in memory cache keyed by the packed entity ids. If the capacity is reached a random fraction of the entries is evicted.
+         */
         public static class ItemDocumentFetcherCacheImpl implements ItemDocumentFetcher
         {
-            private ItemDocumentFetcher parent;
-            private Cache               cache = CacheUtils.newConcurrentInMemoryCache()
-                                                          .withCapacityLimit(10000, EvictionStrategy.RANDOM)
-                                                          .withEvictionRatio(0.8);
+            private static final int    CAPACITY       = 10000;
+            private static final double EVICTION_RATIO = 0.2;
+
+            private ItemDocumentFetcher       parent;
+            private EntityIdMap<ItemDocument> cache;
+            private TieredCache<ItemDocument> backingCache;
+            private Random                    random = new Random();
+            private Counter                   hits;
+            private Counter                   misses;
 
             public ItemDocumentFetcherCacheImpl(ItemDocumentFetcher parent)
+            {
+                this(parent, new EntityIdMap<>(CAPACITY), null, MetricsUtils.noop());
+            }
+
+            private ItemDocumentFetcherCacheImpl(ItemDocumentFetcher parent, EntityIdMap<ItemDocument> cache, TieredCache<ItemDocument> backingCache,
+                                                 MetricRegistry registry)
+            {
+                this(parent, cache, backingCache, registry.counter("entity.cache.hits"), registry.counter("entity.cache.misses"));
+            }
+
+            private ItemDocumentFetcherCacheImpl(ItemDocumentFetcher parent, EntityIdMap<ItemDocument> cache, TieredCache<ItemDocument> backingCache,
+                                                 Counter hits, Counter misses)
             {
                 super();
                 this.parent = parent;
+                this.cache = cache;
+                this.backingCache = backingCache;
+                this.hits = hits;
+                this.misses = misses;
+            }
+
+            /**
+             * Returns a new {@link ItemDocumentFetcherCacheImpl} sharing the cached {@link ItemDocument}s with this instance, which reports its
+             * hits and misses to the given {@link MetricRegistry}
+             * 
+             * @param registry
+             * @return
+             */
+            public ItemDocumentFetcherCacheImpl withMetrics(MetricRegistry registry)
+            {
+                return new ItemDocumentFetcherCacheImpl(this.parent, this.cache, this.backingCache, registry);
+            }
+
+            /**
+             * Returns a new {@link ItemDocumentFetcherCacheImpl} sharing the cached {@link ItemDocument}s with this instance, which reads from the
+             * given {@link TieredCache} before the parent is asked and writes the fetched {@link ItemDocument}s into it
+             * 
+             * @param backingCache
+             * @return
+             */
+            public ItemDocumentFetcherCacheImpl withBackingCache(TieredCache<ItemDocument> backingCache)
+            {
+                return new ItemDocumentFetcherCacheImpl(this.parent, this.cache, backingCache, this.hits, this.misses);
+            }
+
+            /**
+             * Returns a new {@link ItemDocumentFetcherCacheImpl} with the given parent, which shares the cached {@link ItemDocument}s with this
+             * instance
+             * 
+             * @param parent
+             * @return
+             */
+            public ItemDocumentFetcherCacheImpl withParent(ItemDocumentFetcher parent)
+            {
+                return new ItemDocumentFetcherCacheImpl(parent, this.cache, this.backingCache, this.hits, this.misses);
             }
 
             @Override
-            public Map<String, ItemDocument> apply(List<String> entityIds)
-            {
-                return entityIds.stream()
-                                .distinct()
-                                .map(entityId ->
-                                {
-                                    ItemDocument document = Optional.ofNullable(this.cache.get(entityId, ItemDocument.class))
-                                                                    .orElseGet(() ->
-                                                                    {
-                                                                        Map<String, ItemDocument> result = this.parent.apply(entityIds);
-                                                                        this.cache.putAll(result);
-                                                                        return result.get(entityId);
-                                                                    });
-                                    return BiElement.of(entityId, document);
-                                })
-                                .filter(bi -> !bi.hasAnyNullValue())
-                                .collect(CollectorUtils.toMapByBiElement());
+            public EntityIdMap<ItemDocument> apply(long[] entityIds)
+            {
+                EntityIdMap<ItemDocument> entityIdToDocument = new EntityIdMap<>(entityIds.length);
+                EntityIdSet missingEntityIds = new EntityIdSet(entityIds.length);
+                synchronized (this.cache)
+                {
+                    for (long entityId : entityIds)
+                    {
+                        ItemDocument document = this.cache.get(entityId);
+                        if (document != null)
+                        {
+                            entityIdToDocument.put(entityId, document);
+                        }
+                        else
+                        {
+                            missingEntityIds.add(entityId);
+                        }
+                    }
+                }
+
+                this.hits.add(entityIdToDocument.size());
+                this.misses.add(missingEntityIds.size());
+                if (!missingEntityIds.isEmpty())
+                {
+                    EntityIdMap<ItemDocument> fetchedEntityIdToDocument = this.fetchMissing(missingEntityIds.toArray());
+                    synchronized (this.cache)
+                    {
+                        this.putBounded(fetchedEntityIdToDocument);
+                    }
+                    entityIdToDocument.putAll(fetchedEntityIdToDocument);
+                }
+                return entityIdToDocument;
+            }
+
+            private EntityIdMap<ItemDocument> fetchMissing(long[] entityIds)
+            {
+                if (this.backingCache == null)
+                {
+                    return this.parent.apply(entityIds);
+                }
+
+                EntityIdMap<ItemDocument> entityIdToDocument = new EntityIdMap<>(entityIds.length);
+                EntityIdSet missingEntityIds = new EntityIdSet(entityIds.length);
+                for (long entityId : entityIds)
+                {
+                    Optional<ItemDocument> document = this.backingCache.get(EntityIdUtils.toString(entityId));
+                    if (document.isPresent())
+                    {
+                        entityIdToDocument.put(entityId, document.get());
+                    }
+                    else
+                    {
+                        missingEntityIds.add(entityId);
+                    }
+                }
+                if (!missingEntityIds.isEmpty())
+                {
+                    this.parent.apply(missingEntityIds.toArray())
+                               .forEach((entityId, document) ->
+                               {
+                                   this.backingCache.put(EntityIdUtils.toString(entityId), document);
+                                   entityIdToDocument.put(entityId, document);
+                               });
+                }
+                return entityIdToDocument;
+            }
+
+            public long[] getEntityIds()
+            {
+                synchronized (this.cache)
+                {
+                    return this.cache.toArray();
+                }
+            }
+
+            public List<ItemDocument> getDocuments()
+            {
+                synchronized (this.cache)
+                {
+                    return this.cache.values();
+                }
+            }
+
+            /**
+             * Adds the given {@link ItemDocument}s as long as the capacity is not reached. Already cached {@link ItemDocument}s are kept.
+             * 
+             * @param entityIdToDocument
+             */
+            public void warmUp(EntityIdMap<ItemDocument> entityIdToDocument)
+            {
+                synchronized (this.cache)
+                {
+                    entityIdToDocument.forEach((entityId, document) ->
+                    {
+                        if (this.cache.size() < CAPACITY && !this.cache.containsKey(entityId))
+                        {
+                            this.cache.put(entityId, document);
+                        }
+                    });
+                }
+            }
+
+            public ItemDocument getCached(long entityId)
+            {
+                synchronized (this.cache)
+                {
+                    return this.cache.get(entityId);
+                }
+            }
+
+            /**
+             * Replaces the given {@link ItemDocument}s at once, {@link ItemDocument}s which are not cached anymore are skipped. The backing
+             * {@link TieredCache} gets all given {@link ItemDocument}s, so a later miss does not load the outdated revision from it.
+             * 
+             * @param entityIdToDocument
+             */
+            public void replace(EntityIdMap<ItemDocument> entityIdToDocument)
+            {
+                synchronized (this.cache)
+                {
+                    entityIdToDocument.forEach((entityId, document) ->
+                    {
+                        if (this.cache.containsKey(entityId))
+                        {
+                            this.cache.put(entityId, document);
+                        }
+                    });
+                }
+                if (this.backingCache != null)
+                {
+                    entityIdToDocument.forEach((entityId, document) -> this.backingCache.put(EntityIdUtils.toString(entityId), document));
+                }
+            }
+
+            /**
+             * Removes the given entities from this cache and from the backing {@link TieredCache}
+             * 
+             * @param entityIds
+             */
+            public void remove(long[] entityIds)
+            {
+                synchronized (this.cache)
+                {
+                    for (long entityId : entityIds)
+                    {
+                        this.cache.remove(entityId);
+                    }
+                }
+                if (this.backingCache != null)
+                {
+                    for (long entityId : entityIds)
+                    {
+                        this.backingCache.remove(EntityIdUtils.toString(entityId));
+                    }
+                }
+            }
+
+            /**
+             * Puts the given {@link ItemDocument}s and evicts random entries before, so the cache never exceeds its capacity. At least the excess
+             * entries are evicted, but not less than the {@link #EVICTION_RATIO} of the capacity, to avoid an eviction for every fetch.
+             * 
+             * @param entityIdToDocument
+             */
+            private void putBounded(EntityIdMap<ItemDocument> entityIdToDocument)
+            {
+                int numberOfExcessEntries = this.cache.size() + entityIdToDocument.size() - CAPACITY;
+                if (numberOfExcessEntries > 0)
+                {
+                    this.evict(Math.max(numberOfExcessEntries, (int) Math.ceil(CAPACITY * EVICTION_RATIO)));
+                }
+
+                if (entityIdToDocument.size() <= CAPACITY)
+                {
+                    this.cache.putAll(entityIdToDocument);
+                }
+                else
+                {
+                    entityIdToDocument.forEach((entityId, document) ->
+                    {
+                        if (this.cache.size() < CAPACITY)
+                        {
+                            this.cache.put(entityId, document);
+                        }
+                    });
+                }
+            }
+
+            private void evict(int numberOfEntries)
+            {
+                long[] entityIds = this.cache.toArray();
+                int numberOfEvictions = Math.min(entityIds.length, numberOfEntries);
+                for (int ii = 0; ii < numberOfEvictions; ii++)
+                {
+                    int index = ii + this.random.nextInt(entityIds.length - ii);
+                    long entityId = entityIds[index];
+                    entityIds[index] = entityIds[ii];
+                    entityIds[ii] = entityId;
+                    this.cache.remove(entityId);
+                }
             }
         }
 
         private class ItemImpl implements Item
         {
-            private final String                   entityId;
-            private Function<String, ItemDocument> itemDocumentResolver;
+            private final long                 entityId;
+            private LongFunction<ItemDocument> itemDocumentResolver;
 
-            private ItemImpl(String entityId, Function<String, ItemDocument> itemDocumentResolver)
+            private ItemImpl(long entityId, LongFunction<ItemDocument> itemDocumentResolver)
             {
                 this.entityId = entityId;
                 this.itemDocumentResolver = itemDocumentResolver;
@@ -457,12 +1521,8 @@ public class WikiUtils
             {
                 try
                 {
-                    String title = Optional.ofNullable(this.itemDocumentResolver.apply(this.entityId))
-                                           .map(document -> document.getSiteLinks())
-                                           .map(links -> links.get("enwiki"))
-                                           .map(link -> link.getPageTitle())
-                                           .orElseGet(() -> this.getTitle()
-                                                                .orElse(null));
+                    String title = this.getWikipediaTitle()
+                                       .orElse(null);
                     //
                     //                    String url = "https://www.wikidata.org/w/api.php?action=wbgetentities&sites=" + siteKey + "&titles=" + pageTitle + "&languages="
                     //                            + language.getKey();
@@ -483,6 +1543,16 @@ public class WikiUtils
                 }
             }
 
+            @Override
+            public Optional<String> getWikipediaTitle()
+            {
+                Optional<String> siteLinkTitle = Optional.ofNullable(this.itemDocumentResolver.apply(this.entityId))
+                                                         .map(document -> document.getSiteLinks())
+                                                         .map(links -> links.get("enwiki"))
+                                                         .map(link -> link.getPageTitle());
+                return siteLinkTitle.isPresent() ? siteLinkTitle : this.getTitle();
+            }
+
             @Override
             public Optional<String> getDescription()
             {
@@ -526,8 +1596,21 @@ public class WikiUtils
             @Override
             public Stream<Item> getInstanceOf()
             {
-                return this.getStatements(SPARQLProperties.INSTANCE_OF)
-                           .map(StatementResult::asItem);
+                SubclassClosure subclassClosure = WikiAccessorImpl.this.subclassClosure;
+                if (subclassClosure == null)
+                {
+                    return this.getStatements(SPARQLProperties.INSTANCE_OF)
+                               .map(StatementResult::asItem);
+                }
+                return this.getExactInstanceOf()
+                           .filter(PredicateUtils.notNull())
+                           .map(Item::getEntityId)
+                           .flatMap(classId -> subclassClosure.getSuperclasses(classId)
+                                                              .stream())
+                           .mapToLong(EntityIdUtils::parse)
+                           .filter(EntityIdUtils::isValid)
+                           .distinct()
+                           .mapToObj(classId -> new ItemImpl(classId, this.itemDocumentResolver));
             }
 
             @Override
@@ -565,13 +1648,14 @@ public class WikiUtils
                            .findFirst();
             }
 
+            @Override
             public Stream<StatementResult> getStatements(SPARQLProperties property)
             {
                 return Optional.ofNullable(property)
                                .map(SPARQLProperties::get)
                                .map(List::stream)
                                .orElse(Stream.empty())
-                               .flatMap(propertyId ->
+                               .flatMap((String propertyId) ->
                                {
                                    ItemDocument itemDocument = this.itemDocumentResolver.apply(this.entityId);
                                    return Optional.ofNullable(itemDocument)
@@ -600,6 +1684,8 @@ public class WikiUtils
                                                       .filter(value -> value instanceof EntityIdValue)
                                                       .map(value -> ((EntityIdValue) value))
                                                       .map(EntityIdValue::getId)
+                                                      .map(EntityIdUtils::parse)
+                                                      .filter(EntityIdUtils::isValid)
                                                       .map(entityId -> new ItemImpl(entityId, ItemImpl.this.itemDocumentResolver))
                                                       .orElse(null);
                                    }
@@ -609,7 +1695,7 @@ public class WikiUtils
             @Override
             public String getEntityId()
             {
-                return this.entityId;
+                return EntityIdUtils.toString(this.entityId);
             }
         }
     }
@@ -0,0 +1,699 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.cache;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Append only key value store within a directory, used as the backend of the local caches instead of one file per cached value.
+ * <br>
+ * <br>
+ * The values are appended as compressed records to segment files of a bounded size. The offsets of the latest record per key are held in
+ * memory and are rebuilt by scanning the segments when the store is opened. Overwritten and removed values remain in the segments as
+ * garbage, which is removed by copying the live records of the older segments forward.
+ * 
+ * @see LogStoreUtils#open(File)
+ */
+public class LogStoreUtils
+{
+    public static final long   DEFAULT_MAX_SEGMENT_SIZE = 64l * 1024 * 1024;
+    public static final double DEFAULT_COMPACTION_RATIO = 0.5;
+
+    private static final String SEGMENT_FILE_SUFFIX = ".log";
+    private static final int    HEADER_LENGTH       = 8;
+    private static final byte   TYPE_RAW            = 0;
+    private static final byte   TYPE_DEFLATED       = 1;
+    private static final byte   TYPE_TOMBSTONE      = 2;
+
+    private static final Map<File, LogStoreImpl> DIRECTORY_TO_STORE = new HashMap<>();
+
+    public static interface LogStore extends AutoCloseable
+    {
+        public Optional<byte[]> get(String key);
+
+        public boolean contains(String key);
+
+        public LogStore put(String key, byte[] value);
+
+        public LogStore remove(String key);
+
+        public Set<String> keySet();
+
+        /**
+         * Segments are rolled over if they exceed the given number of bytes. Default is {@value LogStoreUtils#DEFAULT_MAX_SEGMENT_SIZE}
+         * 
+         * @param maxSegmentSize
+         * @return
+         */
+        public LogStore withMaxSegmentSize(long maxSegmentSize);
+
+        /**
+         * If the ratio of garbage within the older segments exceeds the given ratio at the time a segment is rolled over, the store is
+         * compacted. Default is {@value LogStoreUtils#DEFAULT_COMPACTION_RATIO}
+         * 
+         * @param compactionRatio
+         * @return
+         */
+        public LogStore withCompactionRatio(double compactionRatio);
+
+        /**
+         * Copies the live records of all older segments into the current segment and deletes the older segments afterwards
+         * 
+         * @return
+         */
+        public LogStore compact();
+
+        /**
+         * Forces all written records to the disk
+         * 
+         * @return
+         */
+        public LogStore flush();
+
+        public int size();
+
+        public int getNumberOfSegments();
+
+        public long getSizeInBytes();
+
+        public long getGarbageInBytes();
+
+        /**
+         * Closes the segment files. Because {@link LogStoreUtils#open(File)} shares the store of a directory, this closes it for all users.
+         */
+        @Override
+        public void close();
+    }
+
+    private static class Location
+    {
+        private final int  segment;
+        private final long offset;
+        private final int  length;
+
+        public Location(int segment, long offset, int length)
+        {
+            super();
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    private static class Segment
+    {
+        private final int         number;
+        private final File        file;
+        private final FileChannel channel;
+        private long              size;
+        private long              garbage;
+
+        public Segment(int number, File file) throws IOException
+        {
+            super();
+            this.number = number;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = this.channel.size();
+        }
+    }
+
+    private static class Record
+    {
+        private final String key;
+        private final byte   type;
+        private final int    length;
+
+        public Record(String key, byte type, int length)
+        {
+            super();
+            this.key = key;
+            this.type = type;
+            this.length = length;
+        }
+    }
+
+    private static class LogStoreImpl implements LogStore
+    {
+        private final File                      directory;
+        private final TreeMap<Integer, Segment> segments        = new TreeMap<>();
+        private final Map<String, Location>     keyToLocation   = new HashMap<>();
+        private long                            maxSegmentSize  = DEFAULT_MAX_SEGMENT_SIZE;
+        private double                          compactionRatio = DEFAULT_COMPACTION_RATIO;
+        private boolean                         compacting      = false;
+        private boolean                         closed          = false;
+
+        public LogStoreImpl(File directory)
+        {
+            super();
+            this.directory = directory;
+            directory.mkdirs();
+            try
+            {
+                File[] files = Optional.ofNullable(directory.listFiles((dir, name) -> name.matches("[0-9]{8}\\" + SEGMENT_FILE_SUFFIX)))
+                                       .orElse(new File[0]);
+                Arrays.sort(files, Comparator.comparing(File::getName));
+                for (File file : files)
+                {
+                    this.recover(new Segment(Integer.parseInt(file.getName()
+                                                                  .substring(0, 8)),
+                                             file));
+                }
+                if (this.segments.isEmpty())
+                {
+                    this.roll();
+                }
+            }
+            catch (IOException e)
+            {
+                this.closeChannels();
+                throw new UncheckedIOException("Unable to open log store: " + directory, e);
+            }
+        }
+
+        private void recover(Segment segment) throws IOException
+        {
+            this.segments.put(segment.number, segment);
+            long offset = 0;
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file), 64 * 1024)))
+            {
+                while (offset < segment.size)
+                {
+                    Record record = this.readRecord(inputStream, segment.size - offset);
+                    if (record == null)
+                    {
+                        break;
+                    }
+                    if (record.type == TYPE_TOMBSTONE)
+                    {
+                        this.markAsGarbage(this.keyToLocation.remove(record.key));
+                        segment.garbage += record.length;
+                    }
+                    else
+                    {
+                        this.markAsGarbage(this.keyToLocation.put(record.key, new Location(segment.number, offset, record.length)));
+                    }
+                    offset += record.length;
+                }
+            }
+            if (offset < segment.size)
+            {
+                // a torn write at the end of the segment, the records behind it are not reachable
+                segment.channel.truncate(offset);
+                segment.size = offset;
+            }
+        }
+
+        private Record readRecord(DataInputStream inputStream, long remaining) throws IOException
+        {
+            try
+            {
+                if (remaining < HEADER_LENGTH)
+                {
+                    return null;
+                }
+                int bodyLength = inputStream.readInt();
+                int checksum = inputStream.readInt();
+                if (bodyLength < 5 || bodyLength > remaining - HEADER_LENGTH)
+                {
+                    return null;
+                }
+                byte[] body = new byte[bodyLength];
+                inputStream.readFully(body);
+                if (checksum != this.determineChecksum(body))
+                {
+                    return null;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(body);
+                int keyLength = buffer.getInt();
+                String key = new String(body, 4, keyLength, StandardCharsets.UTF_8);
+                byte type = body[4 + keyLength];
+                return new Record(key, type, HEADER_LENGTH + bodyLength);
+            }
+            catch (EOFException | IndexOutOfBoundsException e)
+            {
+                return null;
+            }
+        }
+
+        @Override
+        public Optional<byte[]> get(String key)
+        {
+            byte[] record;
+            synchronized (this)
+            {
+                this.assertNotClosed();
+                Location location = this.keyToLocation.get(key);
+                if (location == null)
+                {
+                    return Optional.empty();
+                }
+                record = this.readRecord(location);
+            }
+            return Optional.ofNullable(this.decodeValue(record));
+        }
+
+        @Override
+        public synchronized boolean contains(String key)
+        {
+            return this.keyToLocation.containsKey(key);
+        }
+
+        @Override
+        public LogStore put(String key, byte[] value)
+        {
+            byte[] record = this.encodeRecord(key, value);
+            synchronized (this)
+            {
+                this.assertNotClosed();
+                Location location = this.append(record);
+                this.markAsGarbage(this.keyToLocation.put(key, location));
+            }
+            return this;
+        }
+
+        @Override
+        public synchronized LogStore remove(String key)
+        {
+            this.assertNotClosed();
+            Location previousLocation = this.keyToLocation.remove(key);
+            if (previousLocation != null)
+            {
+                this.markAsGarbage(previousLocation);
+                Location location = this.append(this.encodeRecord(key, null));
+                this.markAsGarbage(location);
+            }
+            return this;
+        }
+
+        @Override
+        public synchronized Set<String> keySet()
+        {
+            return this.keyToLocation.keySet()
+                                     .stream()
+                                     .collect(Collectors.toSet());
+        }
+
+        @Override
+        public synchronized LogStore withMaxSegmentSize(long maxSegmentSize)
+        {
+            this.maxSegmentSize = maxSegmentSize;
+            return this;
+        }
+
+        @Override
+        public synchronized LogStore withCompactionRatio(double compactionRatio)
+        {
+            this.compactionRatio = compactionRatio;
+            return this;
+        }
+
+        @Override
+        public synchronized LogStore compact()
+        {
+            this.assertNotClosed();
+            List<Segment> olderSegments = new ArrayList<>(this.segments.headMap(this.segments.lastKey())
+                                                                       .values());
+            if (olderSegments.isEmpty())
+            {
+                return this;
+            }
+
+            this.compacting = true;
+            try
+            {
+                Set<Integer> olderSegmentNumbers = olderSegments.stream()
+                                                                .map(segment -> segment.number)
+                                                                .collect(Collectors.toSet());
+                List<Map.Entry<String, Location>> liveEntries = this.keyToLocation.entrySet()
+                                                                                  .stream()
+                                                                                  .filter(entry -> olderSegmentNumbers.contains(entry.getValue().segment))
+                                                                                  .sorted(Comparator.comparing((Map.Entry<String, Location> entry) -> entry.getValue().segment)
+                                                                                                    .thenComparing(entry -> entry.getValue().offset))
+                                                                                  .collect(Collectors.toList());
+                for (Map.Entry<String, Location> entry : liveEntries)
+                {
+                    // the records are copied as they are, tombstones of the older segments are dropped since no older value remains
+                    entry.setValue(this.append(this.readRecord(entry.getValue())));
+                }
+                this.flush();
+                for (Segment segment : olderSegments)
+                {
+                    this.segments.remove(segment.number);
+                    segment.channel.close();
+                    if (!segment.file.delete())
+                    {
+                        throw new IllegalStateException("Unable to delete compacted segment: " + segment.file);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Unable to compact log store: " + this.directory, e);
+            }
+            finally
+            {
+                this.compacting = false;
+            }
+            return this;
+        }
+
+        @Override
+        public synchronized LogStore flush()
+        {
+            this.assertNotClosed();
+            try
+            {
+                this.segments.lastEntry()
+                             .getValue().channel.force(false);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Unable to flush log store: " + this.directory, e);
+            }
+            return this;
+        }
+
+        @Override
+        public synchronized int size()
+        {
+            return this.keyToLocation.size();
+        }
+
+        @Override
+        public synchronized int getNumberOfSegments()
+        {
+            return this.segments.size();
+        }
+
+        @Override
+        public synchronized long getSizeInBytes()
+        {
+            return this.segments.values()
+                                .stream()
+                                .mapToLong(segment -> segment.size)
+                                .sum();
+        }
+
+        @Override
+        public synchronized long getGarbageInBytes()
+        {
+            return this.segments.values()
+                                .stream()
+                                .mapToLong(segment -> segment.garbage)
+                                .sum();
+        }
+
+        @Override
+        public void close()
+        {
+            synchronized (DIRECTORY_TO_STORE)
+            {
+                DIRECTORY_TO_STORE.remove(this.directory, this);
+            }
+            synchronized (this)
+            {
+                if (!this.closed)
+                {
+                    this.closed = true;
+                    this.closeChannels();
+                }
+            }
+        }
+
+        private void closeChannels()
+        {
+            this.segments.values()
+                         .forEach(segment ->
+                         {
+                             try
+                             {
+                                 segment.channel.close();
+                             }
+                             catch (IOException e)
+                             {
+                                 // nothing left to release
+                             }
+                         });
+        }
+
+        private void assertNotClosed()
+        {
+            if (this.closed)
+            {
+                throw new IllegalStateException("Log store is closed: " + this.directory);
+            }
+        }
+
+        private void markAsGarbage(Location location)
+        {
+            if (location != null)
+            {
+                Segment segment = this.segments.get(location.segment);
+                if (segment != null)
+                {
+                    segment.garbage += location.length;
+                }
+            }
+        }
+
+        private Location append(byte[] record)
+        {
+            try
+            {
+                Segment segment = this.segments.lastEntry()
+                                               .getValue();
+                if (segment.size > 0 && segment.size + record.length > this.maxSegmentSize)
+                {
+                    segment = this.roll();
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                long offset = segment.size;
+                while (buffer.hasRemaining())
+                {
+                    segment.channel.write(buffer, offset + buffer.position());
+                }
+                segment.size += record.length;
+                return new Location(segment.number, offset, record.length);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Unable to append to log store: " + this.directory, e);
+            }
+        }
+
+        private Segment roll() throws IOException
+        {
+            int number = this.segments.isEmpty() ? 1 : this.segments.lastKey() + 1;
+            Segment segment = new Segment(number, new File(this.directory, String.format("%08d", number) + SEGMENT_FILE_SUFFIX));
+            this.segments.put(number, segment);
+            if (!this.compacting && this.determineGarbageRatioOfOlderSegments() >= this.compactionRatio)
+            {
+                this.compact();
+            }
+            return segment;
+        }
+
+        private double determineGarbageRatioOfOlderSegments()
+        {
+            long size = 0;
+            long garbage = 0;
+            for (Segment segment : this.segments.headMap(this.segments.lastKey())
+                                                .values())
+            {
+                size += segment.size;
+                garbage += segment.garbage;
+            }
+            return size > 0 ? garbage / (double) size : 0.0;
+        }
+
+        private byte[] readRecord(Location location)
+        {
+            try
+            {
+                ByteBuffer buffer = ByteBuffer.allocate(location.length);
+                FileChannel channel = this.segments.get(location.segment).channel;
+                while (buffer.hasRemaining())
+                {
+                    if (channel.read(buffer, location.offset + buffer.position()) < 0)
+                    {
+                        throw new EOFException("Record exceeds segment " + location.segment);
+                    }
+                }
+                return buffer.array();
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException("Unable to read from log store: " + this.directory, e);
+            }
+        }
+
+        private byte[] encodeRecord(String key, byte[] value)
+        {
+            byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            byte type = value == null ? TYPE_TOMBSTONE : TYPE_RAW;
+            byte[] content = value != null ? value : new byte[0];
+            if (value != null)
+            {
+                byte[] compressedValue = this.compress(value);
+                if (compressedValue.length < value.length)
+                {
+                    type = TYPE_DEFLATED;
+                    content = compressedValue;
+                }
+            }
+
+            int bodyLength = 4 + keyBytes.length + 1 + content.length;
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + bodyLength);
+            buffer.putInt(bodyLength)
+                  .putInt(0)
+                  .putInt(keyBytes.length)
+                  .put(keyBytes)
+                  .put(type)
+                  .put(content);
+            byte[] record = buffer.array();
+            buffer.putInt(4, this.determineChecksum(Arrays.copyOfRange(record, HEADER_LENGTH, record.length)));
+            return record;
+        }
+
+        private byte[] decodeValue(byte[] record)
+        {
+            ByteBuffer buffer = ByteBuffer.wrap(record);
+            int bodyLength = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (checksum != this.determineChecksum(Arrays.copyOfRange(record, HEADER_LENGTH, HEADER_LENGTH + bodyLength)))
+            {
+                return null;
+            }
+            int keyLength = buffer.getInt();
+            int contentOffset = HEADER_LENGTH + 4 + keyLength + 1;
+            byte type = record[contentOffset - 1];
+            byte[] content = Arrays.copyOfRange(record, contentOffset, record.length);
+            return type == TYPE_DEFLATED ? this.decompress(content) : type == TYPE_RAW ? content : null;
+        }
+
+        private int determineChecksum(byte[] body)
+        {
+            CRC32 crc = new CRC32();
+            crc.update(body);
+            return (int) crc.getValue();
+        }
+
+        private byte[] compress(byte[] value)
+        {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try
+            {
+                deflater.setInput(value);
+                deflater.finish();
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(value.length / 3 + 16);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished())
+                {
+                    int length = deflater.deflate(buffer);
+                    outputStream.write(buffer, 0, length);
+                }
+                return outputStream.toByteArray();
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+
+        private byte[] decompress(byte[] content)
+        {
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(content);
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length * 3);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished())
+                {
+                    int length = inflater.inflate(buffer);
+                    if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    {
+                        return null;
+                    }
+                    outputStream.write(buffer, 0, length);
+                }
+                return outputStream.toByteArray();
+            }
+            catch (DataFormatException e)
+            {
+                return null;
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Opens the {@link LogStore} within the given directory. Stores are shared per directory within the process, so opening the same directory
+     * twice returns the same instance.
+     * 
+     * @param directory
+     * @return
+     */
+    public static LogStore open(File directory)
+    {
+        File canonicalDirectory = determineCanonicalFile(directory);
+        synchronized (DIRECTORY_TO_STORE)
+        {
+            return DIRECTORY_TO_STORE.computeIfAbsent(canonicalDirectory, LogStoreImpl::new);
+        }
+    }
+
+    private static File determineCanonicalFile(File directory)
+    {
+        try
+        {
+            return directory.getCanonicalFile();
+        }
+        catch (IOException e)
+        {
+            return directory.getAbsoluteFile();
+        }
+    }
+}
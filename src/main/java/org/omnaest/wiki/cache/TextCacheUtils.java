@@ -0,0 +1,261 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.omnaest.wiki.cache.LogStoreUtils.LogStore;
+
+public class TextCacheUtils
+{
+    public static final long DEFAULT_MAX_SIZE_IN_BYTES = 64l * 1024 * 1024;
+
+    /**
+     * Cache for extracted article texts, keyed by the wiki url and the article title. The texts are held compressed and the in memory part is
+     * bounded by the total number of compressed bytes, least recently used texts are evicted first.
+     * 
+     * @see TextCacheUtils#newInstance()
+     */
+    public static interface TextCache
+    {
+        public Optional<String> get(String wikiUrl, String title);
+
+        public TextCache put(String wikiUrl, String title, String text);
+
+        /**
+         * Returns the cached text or resolves it using the given {@link Supplier}. A null text is not cached.
+         * 
+         * @param wikiUrl
+         * @param title
+         * @param textSupplier
+         * @return
+         */
+        public String computeIfAbsent(String wikiUrl, String title, Supplier<String> textSupplier);
+
+        /**
+         * Adds a second tier in the given directory which holds all texts which have been put into the cache, including the ones evicted from
+         * memory. The texts are appended to a {@link LogStore} within the directory.
+         * 
+         * @param directory
+         * @return
+         */
+        public TextCache withDiskTier(File directory);
+
+        public TextCache withMaxSizeInBytes(long maxSizeInBytes);
+
+        /**
+         * Returns the number of compressed bytes currently held in memory
+         * 
+         * @return
+         */
+        public long getSizeInBytes();
+
+        public int size();
+    }
+
+    private static class TextCacheImpl implements TextCache
+    {
+        private long                maxSizeInBytes;
+        private long                sizeInBytes  = 0;
+        private Map<String, byte[]> keyToContent = new LinkedHashMap<>(16, 0.75f, true);
+        private LogStore            diskTier;
+
+        public TextCacheImpl(long maxSizeInBytes)
+        {
+            super();
+            this.maxSizeInBytes = maxSizeInBytes;
+        }
+
+        @Override
+        public Optional<String> get(String wikiUrl, String title)
+        {
+            String key = this.determineKey(wikiUrl, title);
+            byte[] content = this.getFromMemory(key);
+            if (content == null && this.diskTier != null)
+            {
+                content = this.diskTier.get(key)
+                                       .orElse(null);
+                if (content != null)
+                {
+                    this.putIntoMemory(key, content);
+                }
+            }
+            return Optional.ofNullable(content)
+                           .map(this::decompress);
+        }
+
+        @Override
+        public TextCache put(String wikiUrl, String title, String text)
+        {
+            if (text != null)
+            {
+                String key = this.determineKey(wikiUrl, title);
+                byte[] content = this.compress(text);
+                this.putIntoMemory(key, content);
+                if (this.diskTier != null)
+                {
+                    this.diskTier.put(key, content);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public String computeIfAbsent(String wikiUrl, String title, Supplier<String> textSupplier)
+        {
+            return this.get(wikiUrl, title)
+                       .orElseGet(() ->
+                       {
+                           String text = textSupplier.get();
+                           this.put(wikiUrl, title, text);
+                           return text;
+                       });
+        }
+
+        @Override
+        public TextCache withDiskTier(File directory)
+        {
+            this.diskTier = LogStoreUtils.open(directory);
+            return this;
+        }
+
+        @Override
+        public synchronized TextCache withMaxSizeInBytes(long maxSizeInBytes)
+        {
+            this.maxSizeInBytes = maxSizeInBytes;
+            this.evictIfNecessary();
+            return this;
+        }
+
+        @Override
+        public synchronized long getSizeInBytes()
+        {
+            return this.sizeInBytes;
+        }
+
+        @Override
+        public synchronized int size()
+        {
+            return this.keyToContent.size();
+        }
+
+        private synchronized byte[] getFromMemory(String key)
+        {
+            return this.keyToContent.get(key);
+        }
+
+        private synchronized void putIntoMemory(String key, byte[] content)
+        {
+            byte[] previousContent = this.keyToContent.put(key, content);
+            this.sizeInBytes += this.determineSize(key, content) - (previousContent != null ? this.determineSize(key, previousContent) : 0);
+            this.evictIfNecessary();
+        }
+
+        private void evictIfNecessary()
+        {
+            Iterator<Map.Entry<String, byte[]>> iterator = this.keyToContent.entrySet()
+                                                                            .iterator();
+            while (this.sizeInBytes > this.maxSizeInBytes && iterator.hasNext())
+            {
+                Map.Entry<String, byte[]> entry = iterator.next();
+                this.sizeInBytes -= this.determineSize(entry.getKey(), entry.getValue());
+                iterator.remove();
+            }
+        }
+
+        private long determineSize(String key, byte[] content)
+        {
+            return 2l * key.length() + content.length;
+        }
+
+        private String determineKey(String wikiUrl, String title)
+        {
+            return wikiUrl + "|" + title;
+        }
+
+        private byte[] compress(String text)
+        {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try
+            {
+                deflater.setInput(text.getBytes(StandardCharsets.UTF_8));
+                deflater.finish();
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(text.length() / 3 + 16);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished())
+                {
+                    int length = deflater.deflate(buffer);
+                    outputStream.write(buffer, 0, length);
+                }
+                return outputStream.toByteArray();
+            }
+            finally
+            {
+                deflater.end();
+            }
+        }
+
+        private String decompress(byte[] content)
+        {
+            Inflater inflater = new Inflater();
+            try
+            {
+                inflater.setInput(content);
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream(content.length * 3);
+                byte[] buffer = new byte[8192];
+                while (!inflater.finished())
+                {
+                    int length = inflater.inflate(buffer);
+                    if (length == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    {
+                        throw new IllegalStateException("Truncated text cache content");
+                    }
+                    outputStream.write(buffer, 0, length);
+                }
+                return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+            }
+            catch (DataFormatException e)
+            {
+                throw new IllegalStateException("Corrupt text cache content", e);
+            }
+            finally
+            {
+                inflater.end();
+            }
+        }
+
+    }
+
+    public static TextCache newInstance()
+    {
+        return newInstance(DEFAULT_MAX_SIZE_IN_BYTES);
+    }
+
+    public static TextCache newInstance(long maxSizeInBytes)
+    {
+        return new TextCacheImpl(maxSizeInBytes);
+    }
+}
@@ -0,0 +1,891 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.WeakReference;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import org.omnaest.wiki.cache.LogStoreUtils.LogStore;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.metrics.MetricsUtils.Counter;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.Timer;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility;
+import com.fasterxml.jackson.annotation.PropertyAccessor;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Multi tier cache with an on heap L1 tier, an optional memory mapped L2 tier and an optional L3 tier in a directory which can be shared by
+ * several processes on the same host.<br>
+ * <br>
+ * Reads go through the tiers in order and promote hits into the upper tiers. Writes go to the L1 tier synchronously and are written behind into
+ * the lower tiers by a background thread per cache, which ends after some idle time. Further tiers can be plugged in by implementing {@link CacheTier}.
+ */
+public class TieredCacheUtils
+{
+    public static final int    DEFAULT_HEAP_CAPACITY = 10000;
+    public static final String LOCAL_CACHE_DIRECTORY = "cache";
+
+    private static final int  WRITE_BEHIND_QUEUE_CAPACITY    = 10000;
+    private static final long WRITE_BEHIND_KEEP_ALIVE_MILLIS = 5000;
+
+    /**
+     * Values are written by their fields, so getters with derived values like {@link Optional}s do not end up in the cached json
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+                                                                        .setVisibility(PropertyAccessor.ALL, Visibility.NONE)
+                                                                        .setVisibility(PropertyAccessor.FIELD, Visibility.ANY);
+
+    private static final TieredCacheFactory LOCAL_CACHE_FACTORY = newFactory().withLogStoreTier(new File(LOCAL_CACHE_DIRECTORY));
+
+    /**
+     * Converts cached values into bytes for the lower tiers
+     * 
+     * @param <V>
+     */
+    public static interface Codec<V>
+    {
+        public byte[] encode(V value);
+
+        public V decode(byte[] data);
+
+        public static <V> Codec<V> of(Function<V, byte[]> encoder, Function<byte[], V> decoder)
+        {
+            return new Codec<V>()
+            {
+                @Override
+                public byte[] encode(V value)
+                {
+                    return encoder.apply(value);
+                }
+
+                @Override
+                public V decode(byte[] data)
+                {
+                    return decoder.apply(data);
+                }
+            };
+        }
+
+        public static Codec<String> string()
+        {
+            return of(value -> value.getBytes(StandardCharsets.UTF_8), data -> new String(data, StandardCharsets.UTF_8));
+        }
+
+        public static <V> Codec<V> json(Class<V> type)
+        {
+            return of(TieredCacheUtils::writeJson, data -> readJson(data, OBJECT_MAPPER.getTypeFactory()
+                                                                                       .constructType(type)));
+        }
+
+        public static <V> Codec<V> json(TypeReference<V> type)
+        {
+            return of(TieredCacheUtils::writeJson, data -> readJson(data, OBJECT_MAPPER.getTypeFactory()
+                                                                                       .constructType(type)));
+        }
+    }
+
+    private static byte[] writeJson(Object value)
+    {
+        try
+        {
+            return OBJECT_MAPPER.writeValueAsBytes(value);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to serialize cache value", e);
+        }
+    }
+
+    private static <V> V readJson(byte[] data, JavaType type)
+    {
+        try
+        {
+            return OBJECT_MAPPER.readValue(data, type);
+        }
+        catch (IOException e)
+        {
+            throw new IllegalStateException("Unable to deserialize cache value", e);
+        }
+    }
+
+    public static interface TierStatistic
+    {
+        public String getName();
+
+        public long getHits();
+
+        public long getMisses();
+
+        public long getWrites();
+
+        public default double getHitRatio()
+        {
+            long requests = this.getHits() + this.getMisses();
+            return requests > 0 ? this.getHits() / (double) requests : 0.0;
+        }
+    }
+
+    /**
+     * SPI of a byte oriented cache tier
+     */
+    public static interface CacheTier
+    {
+        public Optional<byte[]> get(String key);
+
+        public void put(String key, byte[] value);
+
+        public void remove(String key);
+
+        public TierStatistic getStatistic();
+    }
+
+    public static interface TieredCache<V>
+    {
+        public Optional<V> get(String key);
+
+        /**
+         * Read through: returns the cached value or loads it with the given {@link Supplier} and caches it. A null value is not cached.
+         * 
+         * @param key
+         * @param loader
+         * @return
+         */
+        public V computeIfAbsent(String key, Supplier<V> loader);
+
+        /**
+         * Puts the value into the L1 tier and writes it behind into the lower tiers
+         * 
+         * @param key
+         * @param value
+         * @return
+         */
+        public TieredCache<V> put(String key, V value);
+
+        /**
+         * Removes the value from the L1 tier and behind the pending writes from the lower tiers. Until then the lower tiers are not read for
+         * the given key.
+         * 
+         * @param key
+         * @return
+         */
+        public TieredCache<V> remove(String key);
+
+        /**
+         * Blocks until all pending writes into the lower tiers are done
+         * 
+         * @return
+         */
+        public TieredCache<V> flush();
+
+        /**
+         * Returns the statistics of all tiers in the order of the tiers
+         * 
+         * @return
+         */
+        public List<TierStatistic> getStatistics();
+    }
+
+    /**
+     * Creates named {@link TieredCache}s which share the same tier configuration
+     */
+    public static interface TieredCacheFactory
+    {
+        /**
+         * Number of values held on heap per cache. Default is {@value TieredCacheUtils#DEFAULT_HEAP_CAPACITY}
+         * 
+         * @param numberOfValues
+         * @return
+         */
+        public TieredCacheFactory withHeapCapacity(int numberOfValues);
+
+        /**
+         * Adds a memory mapped L2 tier per cache within the given directory. The files are recreated on start, the oldest values are overwritten
+         * first when the capacity is reached.
+         * 
+         * @param directory
+         * @param capacityInBytes
+         * @return
+         */
+        public TieredCacheFactory withOffHeapTier(File directory, long capacityInBytes);
+
+        /**
+         * Adds a L3 tier within the given directory, which can be shared by several processes on the same host
+         * 
+         * @param directory
+         * @return
+         */
+        public TieredCacheFactory withSharedTier(File directory);
+
+        /**
+         * Adds a persistent tier which appends the values of each cache to a {@link LogStore} in a sub directory of the given directory,
+         * instead of writing one file per value
+         * 
+         * @see LogStoreUtils#open(File)
+         * @param directory
+         * @return
+         */
+        public TieredCacheFactory withLogStoreTier(File directory);
+
+        /**
+         * Adds a custom tier, the given {@link Function} receives the cache name
+         * 
+         * @param tierFactory
+         * @return
+         */
+        public TieredCacheFactory withTier(Function<String, CacheTier> tierFactory);
+
+        /**
+         * Reports the hits and misses of the created caches and the latency of the loaders of {@link TieredCache#computeIfAbsent(String, Supplier)}
+         * to the given {@link MetricRegistry} under the <code>cache.&lt;name&gt;.</code> prefix. Default is {@link MetricsUtils#shared()}
+         * 
+         * @param registry
+         * @return
+         */
+        public TieredCacheFactory withMetrics(MetricRegistry registry);
+
+        public <V> TieredCache<V> newCache(String name, Codec<V> codec);
+
+        /**
+         * Similar to {@link #newCache(String, Codec)} but without the on heap tier, for callers which hold their own L1 tier
+         * 
+         * @param name
+         * @param codec
+         * @return
+         */
+        public <V> TieredCache<V> newBackingCache(String name, Codec<V> codec);
+
+        /**
+         * Returns the tier statistics of all created caches, which are still in use, by their name
+         * 
+         * @return
+         */
+        public Map<String, List<TierStatistic>> getStatistics();
+    }
+
+    private static class TierStatisticImpl implements TierStatistic
+    {
+        private String     name;
+        private AtomicLong hits   = new AtomicLong();
+        private AtomicLong misses = new AtomicLong();
+        private AtomicLong writes = new AtomicLong();
+
+        public TierStatisticImpl(String name)
+        {
+            super();
+            this.name = name;
+        }
+
+        public <V> Optional<V> count(Optional<V> value)
+        {
+            (value.isPresent() ? this.hits : this.misses).incrementAndGet();
+            return value;
+        }
+
+        public void countWrite()
+        {
+            this.writes.incrementAndGet();
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public long getHits()
+        {
+            return this.hits.get();
+        }
+
+        @Override
+        public long getMisses()
+        {
+            return this.misses.get();
+        }
+
+        @Override
+        public long getWrites()
+        {
+            return this.writes.get();
+        }
+
+        @Override
+        public String toString()
+        {
+            return "TierStatistic [name=" + this.name + ", hits=" + this.hits + ", misses=" + this.misses + ", writes=" + this.writes + "]";
+        }
+
+    }
+
+    /**
+     * Ring buffer within a memory mapped file. The offsets of the values are held in memory, values which are overwritten by newer ones are
+     * dropped from the index.
+     */
+    private static class MappedFileTier implements CacheTier
+    {
+        private MappedByteBuffer         buffer;
+        private Map<String, Integer>     keyToOffset = new HashMap<>();
+        private TreeMap<Integer, String> offsetToKey = new TreeMap<>();
+        private int                      position    = 0;
+        private TierStatisticImpl        statistic;
+
+        public MappedFileTier(File file, long capacityInBytes)
+        {
+            this.statistic = new TierStatisticImpl("off-heap");
+            file.getAbsoluteFile()
+                .getParentFile()
+                .mkdirs();
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw"))
+            {
+                randomAccessFile.setLength(0);
+                this.buffer = randomAccessFile.getChannel()
+                                              .map(FileChannel.MapMode.READ_WRITE, 0, Math.min(Integer.MAX_VALUE, capacityInBytes));
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to map cache file: " + file, e);
+            }
+        }
+
+        @Override
+        public synchronized Optional<byte[]> get(String key)
+        {
+            Integer offset = this.keyToOffset.get(key);
+            if (offset == null)
+            {
+                return this.statistic.count(Optional.empty());
+            }
+            byte[] value = new byte[this.buffer.getInt(offset)];
+            MappedByteBuffer view = (MappedByteBuffer) this.buffer.duplicate();
+            view.position(offset + 4);
+            view.get(value);
+            return this.statistic.count(Optional.of(value));
+        }
+
+        @Override
+        public synchronized void put(String key, byte[] value)
+        {
+            int length = 4 + value.length;
+            if (length > this.buffer.capacity())
+            {
+                return;
+            }
+            if (this.position + length > this.buffer.capacity())
+            {
+                this.dropOffsets(this.position, this.buffer.capacity());
+                this.position = 0;
+            }
+            this.dropOffsets(this.position, this.position + length);
+            this.remove(key);
+
+            this.buffer.putInt(this.position, value.length);
+            MappedByteBuffer view = (MappedByteBuffer) this.buffer.duplicate();
+            view.position(this.position + 4);
+            view.put(value);
+
+            this.keyToOffset.put(key, this.position);
+            this.offsetToKey.put(this.position, key);
+            this.position += length;
+            this.statistic.countWrite();
+        }
+
+        private void dropOffsets(int fromOffset, int toOffset)
+        {
+            NavigableMap<Integer, String> overwrittenOffsets = this.offsetToKey.subMap(fromOffset, true, toOffset, false);
+            overwrittenOffsets.values()
+                              .forEach(this.keyToOffset::remove);
+            overwrittenOffsets.clear();
+        }
+
+        @Override
+        public synchronized void remove(String key)
+        {
+            Integer offset = this.keyToOffset.remove(key);
+            if (offset != null)
+            {
+                this.offsetToKey.remove(offset);
+            }
+        }
+
+        @Override
+        public TierStatistic getStatistic()
+        {
+            return this.statistic;
+        }
+    }
+
+    /**
+     * One file per value within a directory, written via atomic moves so several processes can read and write the same directory
+     */
+    private static class SharedDirectoryTier implements CacheTier
+    {
+        private File              directory;
+        private TierStatisticImpl statistic = new TierStatisticImpl("shared");
+
+        public SharedDirectoryTier(File directory)
+        {
+            this.directory = directory;
+        }
+
+        @Override
+        public Optional<byte[]> get(String key)
+        {
+            File file = this.determineFile(key);
+            try
+            {
+                return this.statistic.count(file.exists() ? Optional.of(Files.readAllBytes(file.toPath())) : Optional.empty());
+            }
+            catch (IOException e)
+            {
+                // the file can be replaced or removed by another process concurrently
+                return this.statistic.count(Optional.empty());
+            }
+        }
+
+        @Override
+        public void put(String key, byte[] value)
+        {
+            File file = this.determineFile(key);
+            file.getParentFile()
+                .mkdirs();
+            try
+            {
+                File temporaryFile = File.createTempFile(file.getName(), ".tmp", file.getParentFile());
+                Files.write(temporaryFile.toPath(), value);
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                this.statistic.countWrite();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write shared cache file: " + file, e);
+            }
+        }
+
+        @Override
+        public void remove(String key)
+        {
+            this.determineFile(key)
+                .delete();
+        }
+
+        private File determineFile(String key)
+        {
+            try
+            {
+                byte[] hash = MessageDigest.getInstance("SHA-1")
+                                           .digest(key.getBytes(StandardCharsets.UTF_8));
+                StringBuilder fileName = new StringBuilder();
+                for (byte value : hash)
+                {
+                    fileName.append(Character.forDigit((value >> 4) & 0xF, 16))
+                            .append(Character.forDigit(value & 0xF, 16));
+                }
+                return new File(new File(this.directory, fileName.substring(0, 2)), fileName.append(".bin")
+                                                                                            .toString());
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public TierStatistic getStatistic()
+        {
+            return this.statistic;
+        }
+    }
+
+    private static class LogStoreTier implements CacheTier
+    {
+        private LogStore          logStore;
+        private TierStatisticImpl statistic = new TierStatisticImpl("log");
+
+        public LogStoreTier(LogStore logStore)
+        {
+            this.logStore = logStore;
+        }
+
+        @Override
+        public Optional<byte[]> get(String key)
+        {
+            return this.statistic.count(this.logStore.get(key));
+        }
+
+        @Override
+        public void put(String key, byte[] value)
+        {
+            this.logStore.put(key, value);
+            this.statistic.countWrite();
+        }
+
+        @Override
+        public void remove(String key)
+        {
+            this.logStore.remove(key);
+        }
+
+        @Override
+        public TierStatistic getStatistic()
+        {
+            return this.statistic;
+        }
+    }
+
+    private static class TieredCacheImpl<V> implements TieredCache<V>
+    {
+        private Map<String, V>       heap;
+        private TierStatisticImpl    heapStatistic   = new TierStatisticImpl("heap");
+        private List<CacheTier>      tiers;
+        private Codec<V>             codec;
+        private ThreadPoolExecutor   writeBehindExecutor;
+        private Map<String, Integer> pendingRemovals = new ConcurrentHashMap<>();
+        private Counter              hits;
+        private Counter              misses;
+        private Timer                loadLatency;
+
+        public TieredCacheImpl(String name, int heapCapacity, List<CacheTier> tiers, Codec<V> codec, MetricRegistry registry)
+        {
+            super();
+            this.hits = registry.counter("cache." + name + ".hits");
+            this.misses = registry.counter("cache." + name + ".misses");
+            this.loadLatency = registry.timer("cache." + name + ".load");
+            this.heap = heapCapacity > 0 ? new LinkedHashMap<String, V>(16, 0.75f, true)
+            {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, V> eldest)
+                {
+                    return this.size() > heapCapacity;
+                }
+            } : null;
+            this.tiers = tiers;
+            this.codec = codec;
+            this.writeBehindExecutor = new ThreadPoolExecutor(1, 1, WRITE_BEHIND_KEEP_ALIVE_MILLIS, TimeUnit.MILLISECONDS,
+                                                              new ArrayBlockingQueue<>(WRITE_BEHIND_QUEUE_CAPACITY), runnable ->
+                                                              {
+                                                                  Thread thread = new Thread(runnable, "wiki-cache-write-behind");
+                                                                  thread.setDaemon(true);
+                                                                  return thread;
+                                                              }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+            // caches are created per accessor and never closed, so an idle cache must not hold its thread
+            this.writeBehindExecutor.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public Optional<V> get(String key)
+        {
+            if (this.heap != null)
+            {
+                synchronized (this.heap)
+                {
+                    Optional<V> value = this.heapStatistic.count(Optional.ofNullable(this.heap.get(key)));
+                    if (value.isPresent())
+                    {
+                        this.hits.increment();
+                        return value;
+                    }
+                }
+            }
+
+            if (this.pendingRemovals.containsKey(key))
+            {
+                this.misses.increment();
+                return Optional.empty();
+            }
+
+            for (int ii = 0; ii < this.tiers.size(); ii++)
+            {
+                Optional<byte[]> data = this.tiers.get(ii)
+                                                  .get(key);
+                if (data.isPresent())
+                {
+                    V value = this.codec.decode(data.get());
+                    this.putIntoHeap(key, value);
+                    this.writeBehind(key, data.get(), this.tiers.subList(0, ii));
+                    this.hits.increment();
+                    return Optional.ofNullable(value);
+                }
+            }
+            this.misses.increment();
+            return Optional.empty();
+        }
+
+        @Override
+        public V computeIfAbsent(String key, Supplier<V> loader)
+        {
+            Optional<V> cachedValue = this.get(key);
+            if (cachedValue.isPresent())
+            {
+                return cachedValue.get();
+            }
+            V value = this.loadLatency.time(loader);
+            if (value != null)
+            {
+                this.put(key, value);
+            }
+            return value;
+        }
+
+        @Override
+        public TieredCache<V> put(String key, V value)
+        {
+            this.putIntoHeap(key, value);
+            if (!this.tiers.isEmpty())
+            {
+                this.writeBehindExecutor.execute(() ->
+                {
+                    byte[] data = this.codec.encode(value);
+                    this.tiers.forEach(tier -> tier.put(key, data));
+                });
+            }
+            return this;
+        }
+
+        private void putIntoHeap(String key, V value)
+        {
+            if (this.heap != null)
+            {
+                synchronized (this.heap)
+                {
+                    this.heap.put(key, value);
+                    this.heapStatistic.countWrite();
+                }
+            }
+        }
+
+        private void writeBehind(String key, byte[] data, List<CacheTier> tiers)
+        {
+            if (!tiers.isEmpty())
+            {
+                this.writeBehindExecutor.execute(() -> tiers.forEach(tier -> tier.put(key, data)));
+            }
+        }
+
+        @Override
+        public TieredCache<V> remove(String key)
+        {
+            if (this.heap != null)
+            {
+                synchronized (this.heap)
+                {
+                    this.heap.remove(key);
+                }
+            }
+            if (!this.tiers.isEmpty())
+            {
+                // the removal is queued behind the pending writes of the key, which would otherwise restore the value afterwards
+                this.pendingRemovals.merge(key, 1, Integer::sum);
+                this.writeBehindExecutor.execute(() ->
+                {
+                    try
+                    {
+                        this.tiers.forEach(tier -> tier.remove(key));
+                    }
+                    finally
+                    {
+                        this.pendingRemovals.computeIfPresent(key, (iKey, count) -> count > 1 ? count - 1 : null);
+                    }
+                });
+            }
+            return this;
+        }
+
+        @Override
+        public TieredCache<V> flush()
+        {
+            try
+            {
+                this.writeBehindExecutor.submit(() ->
+                {
+                    // all writes submitted before are done
+                })
+                                        .get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException(e);
+            }
+            return this;
+        }
+
+        @Override
+        public List<TierStatistic> getStatistics()
+        {
+            List<TierStatistic> statistics = new ArrayList<>();
+            if (this.heap != null)
+            {
+                statistics.add(this.heapStatistic);
+            }
+            this.tiers.forEach(tier -> statistics.add(tier.getStatistic()));
+            return statistics;
+        }
+    }
+
+    private static class TieredCacheFactoryImpl implements TieredCacheFactory
+    {
+        private int                                        heapCapacity  = DEFAULT_HEAP_CAPACITY;
+        private List<Function<String, CacheTier>>          tierFactories = new ArrayList<>();
+        private Map<String, WeakReference<TieredCache<?>>> nameToCache   = Collections.synchronizedMap(new LinkedHashMap<>());
+        private MetricRegistry                             registry      = MetricsUtils.shared();
+
+        @Override
+        public TieredCacheFactory withHeapCapacity(int numberOfValues)
+        {
+            this.heapCapacity = numberOfValues;
+            return this;
+        }
+
+        @Override
+        public TieredCacheFactory withOffHeapTier(File directory, long capacityInBytes)
+        {
+            return this.withTier(name -> new MappedFileTier(new File(directory, name + ".l2"), capacityInBytes));
+        }
+
+        @Override
+        public TieredCacheFactory withSharedTier(File directory)
+        {
+            return this.withTier(name -> new SharedDirectoryTier(new File(directory, name)));
+        }
+
+        @Override
+        public TieredCacheFactory withLogStoreTier(File directory)
+        {
+            return this.withTier(name -> new LogStoreTier(LogStoreUtils.open(new File(directory, name))));
+        }
+
+        @Override
+        public TieredCacheFactory withTier(Function<String, CacheTier> tierFactory)
+        {
+            this.tierFactories.add(tierFactory);
+            return this;
+        }
+
+        @Override
+        public TieredCacheFactory withMetrics(MetricRegistry registry)
+        {
+            this.registry = registry;
+            return this;
+        }
+
+        @Override
+        public <V> TieredCache<V> newCache(String name, Codec<V> codec)
+        {
+            return this.newCache(name, codec, this.heapCapacity);
+        }
+
+        @Override
+        public <V> TieredCache<V> newBackingCache(String name, Codec<V> codec)
+        {
+            return this.newCache(name, codec, 0);
+        }
+
+        private <V> TieredCache<V> newCache(String name, Codec<V> codec, int heapCapacity)
+        {
+            List<CacheTier> tiers = this.tierFactories.stream()
+                                                      .map(tierFactory -> tierFactory.apply(name))
+                                                      .collect(Collectors.toList());
+            TieredCache<V> cache = new TieredCacheImpl<>(name, heapCapacity, tiers, codec, this.registry);
+            synchronized (this.nameToCache)
+            {
+                this.dropUnusedCaches();
+                this.nameToCache.put(name, new WeakReference<>(cache));
+            }
+            return cache;
+        }
+
+        /**
+         * The caches are only weakly referenced, so the ones no longer used by anyone are dropped
+         */
+        private void dropUnusedCaches()
+        {
+            this.nameToCache.values()
+                            .removeIf(reference -> reference.get() == null);
+        }
+
+        @Override
+        public Map<String, List<TierStatistic>> getStatistics()
+        {
+            synchronized (this.nameToCache)
+            {
+                this.dropUnusedCaches();
+
+                Map<String, List<TierStatistic>> nameToStatistics = new LinkedHashMap<>();
+                this.nameToCache.forEach((name, reference) -> Optional.ofNullable(reference.get())
+                                                                      .ifPresent(cache -> nameToStatistics.put(name, cache.getStatistics())));
+                return nameToStatistics;
+            }
+        }
+    }
+
+    /**
+     * Returns a {@link TieredCache} without heap tier, which appends the values to a {@link LogStore} within the local
+     * {@value #LOCAL_CACHE_DIRECTORY} folder. Caches of the same name share the same {@link LogStore}.
+     * 
+     * @param name
+     * @param codec
+     * @return
+     */
+    public static <V> TieredCache<V> newLocalCache(String name, Codec<V> codec)
+    {
+        return LOCAL_CACHE_FACTORY.newBackingCache(name, codec);
+    }
+
+    public static TieredCacheFactory newFactory()
+    {
+        return new TieredCacheFactoryImpl();
+    }
+}
@@ -0,0 +1,322 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.closure;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdSet;
+
+/**
+ * Locally maintained transitive closure of the subclass of (P279) relation.<br>
+ * <br>
+ * Only the direct subclasses and superclasses of a class are loaded, each of them once per time to live. The closures are computed locally by
+ * traversing these cached edges level by level, so expired edges are refreshed incrementally on the next traversal and all classes of a level
+ * are loaded with a single request of the resolver.
+ */
+public class SubclassClosureUtils
+{
+    public static final int DEFAULT_MAX_SIZE = 500;
+
+    public static interface SubclassClosure
+    {
+        /**
+         * Returns all transitive subclasses of the given class including the class itself. If the closure exceeds the maximum size
+         * {@link Optional#empty()} is returned.
+         * 
+         * @see #withMaxSize(int)
+         * @param classId
+         * @return
+         */
+        public Optional<Set<String>> getSubclasses(String classId);
+
+        /**
+         * Returns all transitive superclasses of the given class including the class itself. If the closure exceeds the maximum size only the
+         * nearest superclasses up to the maximum size are returned.
+         * 
+         * @see #withMaxSize(int)
+         * @param classId
+         * @return
+         */
+        public Set<String> getSuperclasses(String classId);
+
+        /**
+         * Maximum number of classes of a sub- or superclass closure. Default is {@value SubclassClosureUtils#DEFAULT_MAX_SIZE}
+         * 
+         * @param maxSize
+         * @return
+         */
+        public SubclassClosure withMaxSize(int maxSize);
+
+        /**
+         * Time after which the loaded direct sub- and superclasses of a class are reloaded. Default is one day.
+         * 
+         * @param duration
+         * @param timeUnit
+         * @return
+         */
+        public SubclassClosure withTimeToLive(long duration, TimeUnit timeUnit);
+
+        /**
+         * Returns the number of classes with cached direct sub- or superclasses
+         * 
+         * @return
+         */
+        public int size();
+    }
+
+    private static class Edges
+    {
+        private long[] classIds;
+        private long   loadedAt;
+
+        public Edges(long[] classIds, long loadedAt)
+        {
+            super();
+            this.classIds = classIds;
+            this.loadedAt = loadedAt;
+        }
+
+        public long[] getClassIds()
+        {
+            return this.classIds;
+        }
+
+        public boolean isExpired(long now, long timeToLive)
+        {
+            return now - this.loadedAt > timeToLive;
+        }
+    }
+
+    private static class EdgeCache
+    {
+        private EntityIdMap<Edges>                                classIdToEdges = new EntityIdMap<>();
+        private Function<List<String>, Map<String, List<String>>> loader;
+
+        public EdgeCache(Function<List<String>, Map<String, List<String>>> loader)
+        {
+            super();
+            this.loader = loader;
+        }
+
+        /**
+         * Returns the related classes of all given classes, the missing and expired ones are loaded at once
+         * 
+         * @param classIds
+         * @param timeToLive
+         * @return
+         */
+        public EntityIdMap<long[]> getAll(long[] classIds, long timeToLive)
+        {
+            long now = System.currentTimeMillis();
+            EntityIdMap<long[]> classIdToRelatedClassIds = new EntityIdMap<>(classIds.length);
+            List<String> classIdsToLoad = new ArrayList<>();
+            synchronized (this.classIdToEdges)
+            {
+                for (long classId : classIds)
+                {
+                    Edges edges = this.classIdToEdges.get(classId);
+                    if (edges == null || edges.isExpired(now, timeToLive))
+                    {
+                        classIdsToLoad.add(EntityIdUtils.toString(classId));
+                    }
+                    else
+                    {
+                        classIdToRelatedClassIds.put(classId, edges.getClassIds());
+                    }
+                }
+            }
+
+            if (!classIdsToLoad.isEmpty())
+            {
+                Map<String, List<String>> loadedClassIds = this.loader.apply(classIdsToLoad);
+                synchronized (this.classIdToEdges)
+                {
+                    for (String classId : classIdsToLoad)
+                    {
+                        long[] relatedClassIds = EntityIdUtils.parseAll(loadedClassIds.getOrDefault(classId, Collections.emptyList()));
+                        this.classIdToEdges.put(EntityIdUtils.parse(classId), new Edges(relatedClassIds, now));
+                        classIdToRelatedClassIds.put(EntityIdUtils.parse(classId), relatedClassIds);
+                    }
+                }
+            }
+            return classIdToRelatedClassIds;
+        }
+
+        public EntityIdSet getClassIds()
+        {
+            synchronized (this.classIdToEdges)
+            {
+                EntityIdSet classIds = new EntityIdSet(this.classIdToEdges.size());
+                this.classIdToEdges.forEach((classId, edges) -> classIds.add(classId));
+                return classIds;
+            }
+        }
+    }
+
+    private static class SubclassClosureImpl implements SubclassClosure
+    {
+        private EdgeCache subclasses;
+        private EdgeCache superclasses;
+        private int       maxSize    = DEFAULT_MAX_SIZE;
+        private long      timeToLive = TimeUnit.DAYS.toMillis(1);
+
+        public SubclassClosureImpl(Function<List<String>, Map<String, List<String>>> directSubclassesResolver,
+                                   Function<List<String>, Map<String, List<String>>> directSuperclassesResolver)
+        {
+            super();
+            this.subclasses = new EdgeCache(directSubclassesResolver);
+            this.superclasses = new EdgeCache(directSuperclassesResolver);
+        }
+
+        @Override
+        public Optional<Set<String>> getSubclasses(String classId)
+        {
+            return Optional.of(this.traverse(classId, this.subclasses, this.maxSize))
+                           .filter(classIds -> classIds.size() <= this.maxSize);
+        }
+
+        @Override
+        public Set<String> getSuperclasses(String classId)
+        {
+            return this.traverse(classId, this.superclasses, this.maxSize)
+                       .stream()
+                       .limit(this.maxSize)
+                       .collect(Collectors.toCollection(LinkedHashSet::new));
+        }
+
+        /**
+         * Traverses the edges level by level and stops as soon as more than the given maximum size of classes is reached
+         * 
+         * @param classId
+         * @param edgeCache
+         * @param maxSize
+         * @return
+         */
+        private Set<String> traverse(String classId, EdgeCache edgeCache, int maxSize)
+        {
+            long startClassId = EntityIdUtils.parse(classId);
+            if (!EntityIdUtils.isValid(startClassId))
+            {
+                throw new IllegalArgumentException("Invalid class id: " + classId);
+            }
+
+            Set<String> result = new LinkedHashSet<>();
+            EntityIdSet visited = new EntityIdSet();
+            visited.add(startClassId);
+            long[] level = { startClassId };
+            while (level.length > 0)
+            {
+                for (long currentClassId : level)
+                {
+                    result.add(EntityIdUtils.toString(currentClassId));
+                }
+                if (result.size() > maxSize)
+                {
+                    return result;
+                }
+
+                EntityIdMap<long[]> classIdToRelatedClassIds = edgeCache.getAll(level, this.timeToLive);
+                LongStream.Builder nextLevel = LongStream.builder();
+                for (long currentClassId : level)
+                {
+                    for (long relatedClassId : classIdToRelatedClassIds.get(currentClassId))
+                    {
+                        if (visited.add(relatedClassId))
+                        {
+                            nextLevel.add(relatedClassId);
+                        }
+                    }
+                }
+                level = nextLevel.build()
+                                 .toArray();
+            }
+            return result;
+        }
+
+        @Override
+        public SubclassClosure withMaxSize(int maxSize)
+        {
+            this.maxSize = maxSize;
+            return this;
+        }
+
+        @Override
+        public SubclassClosure withTimeToLive(long duration, TimeUnit timeUnit)
+        {
+            this.timeToLive = timeUnit.toMillis(duration);
+            return this;
+        }
+
+        @Override
+        public int size()
+        {
+            EntityIdSet classIds = this.subclasses.getClassIds();
+            this.superclasses.getClassIds()
+                             .stream()
+                             .forEach(classIds::add);
+            return classIds.size();
+        }
+    }
+
+    /**
+     * Returns a new {@link SubclassClosure} which loads the direct subclasses and the direct superclasses of a class by the given resolvers,
+     * one call per class
+     * 
+     * @see #newBatchInstance(Function, Function)
+     * @param directSubclassesResolver
+     * @param directSuperclassesResolver
+     * @return
+     */
+    public static SubclassClosure newInstance(Function<String, List<String>> directSubclassesResolver,
+                                              Function<String, List<String>> directSuperclassesResolver)
+    {
+        return newBatchInstance(toBatchResolver(directSubclassesResolver), toBatchResolver(directSuperclassesResolver));
+    }
+
+    /**
+     * Returns a new {@link SubclassClosure} which loads the direct subclasses and the direct superclasses of all classes of a traversal level
+     * by a single call of the given resolvers. The resolvers return the related classes per given class id, class ids without an entry have
+     * no related classes.
+     * 
+     * @param directSubclassesResolver
+     * @param directSuperclassesResolver
+     * @return
+     */
+    public static SubclassClosure newBatchInstance(Function<List<String>, Map<String, List<String>>> directSubclassesResolver,
+                                                   Function<List<String>, Map<String, List<String>>> directSuperclassesResolver)
+    {
+        return new SubclassClosureImpl(directSubclassesResolver, directSuperclassesResolver);
+    }
+
+    private static Function<List<String>, Map<String, List<String>>> toBatchResolver(Function<String, List<String>> resolver)
+    {
+        return classIds -> classIds.stream()
+                                   .collect(Collectors.toMap(classId -> classId, resolver, (first, second) -> first, LinkedHashMap::new));
+    }
+}
@@ -0,0 +1,463 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.dump;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.WikiUtils.LanguageProvider;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLPropertyValueProvider;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelFilter;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.datamodel.implementation.DataObjectFactoryImpl;
+import org.wikidata.wdtk.datamodel.interfaces.DocumentDataFilter;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+/**
+ * Ingestion of the <a href="https://www.wikidata.org/wiki/Wikidata:Database_download">Wikidata json dumps</a> into a local {@link EntityStore}.
+ * The dump is read line by line and the lines are parsed in chunks in parallel. The number of chunks in flight is bounded, so the memory
+ * consumption does not depend on the size of the dump.
+ */
+public class WikiDumpUtils
+{
+    private static final Pattern PROPERTY_ID_PATTERN = Pattern.compile("P[0-9]+");
+
+    public static interface DumpIngestion
+    {
+        /**
+         * Restricts the labels, descriptions and aliases to the given languages. Default is all languages.
+         * 
+         * @param languages
+         * @return
+         */
+        public DumpIngestion withLanguages(LanguageProvider... languages);
+
+        /**
+         * Restricts the statements to the given property ids, e.g. "P31". Default is all properties.
+         * 
+         * @param propertyIds
+         * @return
+         */
+        public DumpIngestion withProperties(String... propertyIds);
+
+        /**
+         * Similar to {@link #withProperties(String...)}. Property paths like "P279*" are ignored.
+         * 
+         * @param properties
+         * @return
+         */
+        public DumpIngestion withProperties(SPARQLPropertyValueProvider... properties);
+
+        /**
+         * Restricts the site links to the given site keys, e.g. "enwiki". Default is all site links.
+         * 
+         * @param siteKeys
+         * @return
+         */
+        public DumpIngestion withSiteLinks(String... siteKeys);
+
+        public DumpIngestion withParallelism(int parallelism);
+
+        /**
+         * Defines the number of dump lines which are parsed as one unit of work
+         * 
+         * @param chunkSize
+         * @return
+         */
+        public DumpIngestion withChunkSize(int chunkSize);
+
+        /**
+         * Defines if the dump contains all entities of its source. If so, the store is marked as complete after an ingestion without errors
+         * and without a property restriction. Default is true, use false for partial dumps.
+         * 
+         * @see EntityStore#isComplete()
+         * @param completeDump
+         * @return
+         */
+        public DumpIngestion withCompleteDump(boolean completeDump);
+
+        /**
+         * Ingests the given dump file. Files ending with ".gz" or ".bz2" are decompressed.
+         * 
+         * @param dumpFile
+         * @param store
+         * @return
+         */
+        public IngestionStatistic ingest(File dumpFile, EntityStore store);
+
+        public IngestionStatistic ingest(InputStream dump, EntityStore store);
+    }
+
+    public static interface IngestionStatistic
+    {
+        public long getNumberOfItems();
+
+        /**
+         * Returns the number of non item entities, like properties or lexemes, which have been skipped
+         * 
+         * @return
+         */
+        public long getNumberOfSkippedEntities();
+
+        public long getNumberOfErrors();
+
+        public Duration getDuration();
+    }
+
+    private static class IngestionRun
+    {
+        private DatamodelFilter                   datamodelFilter;
+        private EntityStore                       store;
+        private ThreadLocal<JsonDeserializer>     deserializer            = ThreadLocal.withInitial(() -> new JsonDeserializer(Datamodel.SITE_WIKIDATA));
+        private AtomicLong                        numberOfItems           = new AtomicLong();
+        private AtomicLong                        numberOfSkippedEntities = new AtomicLong();
+        private AtomicLong                        numberOfErrors          = new AtomicLong();
+        private AtomicReference<RuntimeException> storeException          = new AtomicReference<>();
+
+        public IngestionRun(DatamodelFilter datamodelFilter, EntityStore store)
+        {
+            super();
+            this.datamodelFilter = datamodelFilter;
+            this.store = store;
+        }
+
+        public void process(List<String> chunk)
+        {
+            JsonDeserializer deserializer = this.deserializer.get();
+            List<ItemDocument> documents = new ArrayList<>(chunk.size());
+            for (String line : chunk)
+            {
+                String json = StringUtils.removeEnd(line.trim(), ",");
+                if (json.isEmpty() || json.equals("[") || json.equals("]"))
+                {
+                    continue;
+                }
+
+                try
+                {
+                    EntityDocument document = deserializer.deserializeEntityDocument(json);
+                    if (document instanceof ItemDocument)
+                    {
+                        documents.add(this.datamodelFilter.filter((ItemDocument) document));
+                    }
+                    else
+                    {
+                        this.numberOfSkippedEntities.incrementAndGet();
+                    }
+                }
+                catch (Exception e)
+                {
+                    this.numberOfErrors.incrementAndGet();
+                }
+            }
+
+            try
+            {
+                this.store.putAll(documents);
+                this.numberOfItems.addAndGet(documents.size());
+            }
+            catch (RuntimeException e)
+            {
+                this.storeException.compareAndSet(null, e);
+            }
+        }
+
+        public boolean hasFailed()
+        {
+            return this.storeException.get() != null;
+        }
+
+        /**
+         * Returns true if no entity has been lost due to an error or an interruption
+         * 
+         * @return
+         */
+        public boolean isComplete()
+        {
+            return !this.hasFailed() && this.numberOfErrors.get() == 0 && !Thread.currentThread()
+                                                                                 .isInterrupted();
+        }
+
+        public void rethrowStoreException()
+        {
+            if (this.hasFailed())
+            {
+                throw this.storeException.get();
+            }
+        }
+
+        public IngestionStatistic toStatistic(Duration duration)
+        {
+            long numberOfItems = this.numberOfItems.get();
+            long numberOfSkippedEntities = this.numberOfSkippedEntities.get();
+            long numberOfErrors = this.numberOfErrors.get();
+            return new IngestionStatistic()
+            {
+                @Override
+                public long getNumberOfItems()
+                {
+                    return numberOfItems;
+                }
+
+                @Override
+                public long getNumberOfSkippedEntities()
+                {
+                    return numberOfSkippedEntities;
+                }
+
+                @Override
+                public long getNumberOfErrors()
+                {
+                    return numberOfErrors;
+                }
+
+                @Override
+                public Duration getDuration()
+                {
+                    return duration;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "IngestionStatistic [numberOfItems=" + numberOfItems + ", numberOfSkippedEntities=" + numberOfSkippedEntities
+                            + ", numberOfErrors=" + numberOfErrors + ", duration=" + duration + "]";
+                }
+            };
+        }
+    }
+
+    private static class DumpIngestionImpl implements DumpIngestion
+    {
+        private DocumentDataFilter filter       = new DocumentDataFilter();
+        private int                parallelism  = Runtime.getRuntime()
+                                                         .availableProcessors();
+        private int                chunkSize    = 1000;
+        private boolean            completeDump = true;
+
+        @Override
+        public DumpIngestion withLanguages(LanguageProvider... languages)
+        {
+            this.filter.setLanguageFilter(Arrays.asList(languages)
+                                                .stream()
+                                                .map(LanguageProvider::getKey)
+                                                .collect(Collectors.toSet()));
+            return this;
+        }
+
+        @Override
+        public DumpIngestion withProperties(String... propertyIds)
+        {
+            this.filter.setPropertyFilter(Arrays.asList(propertyIds)
+                                                .stream()
+                                                .filter(propertyId -> PROPERTY_ID_PATTERN.matcher(propertyId)
+                                                                                         .matches())
+                                                .map(Datamodel::makeWikidataPropertyIdValue)
+                                                .collect(Collectors.toSet()));
+            return this;
+        }
+
+        @Override
+        public DumpIngestion withProperties(SPARQLPropertyValueProvider... properties)
+        {
+            return this.withProperties(Arrays.asList(properties)
+                                             .stream()
+                                             .flatMap(property -> property.get()
+                                                                          .stream())
+                                             .toArray(String[]::new));
+        }
+
+        @Override
+        public DumpIngestion withSiteLinks(String... siteKeys)
+        {
+            Set<String> siteLinkFilter = Arrays.asList(siteKeys)
+                                               .stream()
+                                               .collect(Collectors.toSet());
+            this.filter.setSiteLinkFilter(siteLinkFilter);
+            return this;
+        }
+
+        @Override
+        public DumpIngestion withParallelism(int parallelism)
+        {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        @Override
+        public DumpIngestion withChunkSize(int chunkSize)
+        {
+            this.chunkSize = Math.max(1, chunkSize);
+            return this;
+        }
+
+        @Override
+        public DumpIngestion withCompleteDump(boolean completeDump)
+        {
+            this.completeDump = completeDump;
+            return this;
+        }
+
+        @Override
+        public IngestionStatistic ingest(File dumpFile, EntityStore store)
+        {
+            try (InputStream inputStream = this.openDumpFile(dumpFile))
+            {
+                return this.ingest(inputStream, store);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to read dump file: " + dumpFile, e);
+            }
+        }
+
+        private InputStream openDumpFile(File dumpFile) throws IOException
+        {
+            InputStream inputStream = new BufferedInputStream(new FileInputStream(dumpFile), 1024 * 1024);
+            if (StringUtils.endsWithIgnoreCase(dumpFile.getName(), ".gz"))
+            {
+                return new GZIPInputStream(inputStream, 1024 * 1024);
+            }
+            else if (StringUtils.endsWithIgnoreCase(dumpFile.getName(), ".bz2"))
+            {
+                return new BZip2CompressorInputStream(inputStream, true);
+            }
+            else
+            {
+                return inputStream;
+            }
+        }
+
+        @Override
+        public IngestionStatistic ingest(InputStream dump, EntityStore store)
+        {
+            long startTime = System.currentTimeMillis();
+
+            IngestionRun run = new IngestionRun(new DatamodelFilter(new DataObjectFactoryImpl(), this.filter), store);
+            ExecutorService executorService = Executors.newFixedThreadPool(this.parallelism);
+            Semaphore chunksInFlight = new Semaphore(2 * this.parallelism);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(dump, StandardCharsets.UTF_8), 1024 * 1024))
+            {
+                List<String> chunk = new ArrayList<>(this.chunkSize);
+                String line;
+                while ((line = reader.readLine()) != null && !run.hasFailed())
+                {
+                    chunk.add(line);
+                    if (chunk.size() >= this.chunkSize)
+                    {
+                        this.submitChunk(chunk, run, executorService, chunksInFlight);
+                        chunk = new ArrayList<>(this.chunkSize);
+                    }
+                }
+                this.submitChunk(chunk, run, executorService, chunksInFlight);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to read dump", e);
+            }
+            finally
+            {
+                executorService.shutdown();
+                this.awaitTermination(executorService);
+            }
+
+            run.rethrowStoreException();
+            if (this.completeDump && this.filter.getPropertyFilter() == null && run.isComplete())
+            {
+                store.markComplete(true);
+            }
+            return run.toStatistic(Duration.ofMillis(System.currentTimeMillis() - startTime));
+        }
+
+        private void submitChunk(List<String> chunk, IngestionRun run, ExecutorService executorService, Semaphore chunksInFlight)
+        {
+            if (chunk.isEmpty())
+            {
+                return;
+            }
+
+            try
+            {
+                chunksInFlight.acquire();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IllegalStateException("Dump ingestion has been interrupted", e);
+            }
+
+            executorService.submit(() ->
+            {
+                try
+                {
+                    run.process(chunk);
+                }
+                finally
+                {
+                    chunksInFlight.release();
+                }
+            });
+        }
+
+        private void awaitTermination(ExecutorService executorService)
+        {
+            try
+            {
+                while (!executorService.awaitTermination(1, TimeUnit.MINUTES))
+                {
+                    // wait for the remaining chunks
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+                executorService.shutdownNow();
+            }
+        }
+    }
+
+    public static DumpIngestion newIngestion()
+    {
+        return new DumpIngestionImpl();
+    }
+}
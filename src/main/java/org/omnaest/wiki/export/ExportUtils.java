@@ -0,0 +1,474 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.export;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.utils.StreamUtils;
+import org.omnaest.utils.stream.Streamable;
+import org.omnaest.wiki.WikiUtils.Item;
+import org.omnaest.wiki.WikiUtils.Item.StatementResult;
+import org.omnaest.wiki.WikiUtils.LanguageProvider;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLProperties;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+public class ExportUtils
+{
+    public static final String ENTITY_ID_COLUMN = "entityId";
+
+    public static enum ExportFormat
+    {
+        /**
+         * One json object per {@link Item} and line
+         */
+        NDJSON,
+
+        /**
+         * A header line with the column names followed by row groups. Each row group consists of one json line per column holding the values
+         * of all {@link Item}s of the row group.
+         */
+        COLUMNAR
+    }
+
+    /**
+     * Bulk export of {@link Item}s. The {@link Item}s are resolved in blocks on a thread pool, while the number of blocks in flight is bounded.
+     * The output keeps the order of the {@link Item}s.
+     * 
+     * @see ExportUtils#newExport(Streamable)
+     */
+    public static interface Export
+    {
+        public Export withTitle(LanguageProvider... languages);
+
+        public Export withDescription(LanguageProvider... languages);
+
+        /**
+         * Adds a column per given property, which contains the entity ids or string values of all statements
+         * 
+         * @param properties
+         * @return
+         */
+        public Export withStatements(SPARQLProperties... properties);
+
+        public Export withFormat(ExportFormat format);
+
+        /**
+         * Number of {@link Item}s which are resolved together and form a row group in the {@link ExportFormat#COLUMNAR} format
+         * 
+         * @param blockSize
+         * @return
+         */
+        public Export withBlockSize(int blockSize);
+
+        public Export withParallelism(int parallelism);
+
+        /**
+         * The given {@link Consumer} is called with the current {@link ExportStatistic} after each written block
+         * 
+         * @param progressListener
+         * @return
+         */
+        public Export withProgressListener(Consumer<ExportStatistic> progressListener);
+
+        /**
+         * Writes the export to the given {@link File}. Files ending with ".gz" are compressed.
+         * 
+         * @param file
+         * @return
+         */
+        public ExportStatistic writeTo(File file);
+
+        public ExportStatistic writeTo(OutputStream outputStream);
+    }
+
+    public static interface ExportStatistic
+    {
+        public long getNumberOfItems();
+
+        public long getNumberOfBytes();
+
+        public Duration getDuration();
+
+        public default double getItemsPerSecond()
+        {
+            long millis = Math.max(1, this.getDuration()
+                                          .toMillis());
+            return this.getNumberOfItems() * 1000.0 / millis;
+        }
+    }
+
+    private static class Column
+    {
+        private String                 name;
+        private Function<Item, Object> valueFunction;
+
+        public Column(String name, Function<Item, Object> valueFunction)
+        {
+            super();
+            this.name = name;
+            this.valueFunction = valueFunction;
+        }
+
+        public String getName()
+        {
+            return this.name;
+        }
+
+        public Object determineValue(Item item)
+        {
+            return this.valueFunction.apply(item);
+        }
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        private long numberOfBytes = 0;
+
+        public CountingOutputStream(OutputStream outputStream)
+        {
+            super(outputStream);
+        }
+
+        @Override
+        public void write(int value) throws IOException
+        {
+            this.out.write(value);
+            this.numberOfBytes++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException
+        {
+            this.out.write(buffer, offset, length);
+            this.numberOfBytes += length;
+        }
+
+        public long getNumberOfBytes()
+        {
+            return this.numberOfBytes;
+        }
+    }
+
+    private static class ExportImpl implements Export
+    {
+        private Streamable<Item>          items;
+        private List<Column>              columns          = new ArrayList<>();
+        private ExportFormat              format           = ExportFormat.NDJSON;
+        private int                       blockSize        = 100;
+        private int                       parallelism      = 4;
+        private Consumer<ExportStatistic> progressListener = null;
+        private ObjectMapper              objectMapper     = new ObjectMapper();
+
+        public ExportImpl(Streamable<Item> items)
+        {
+            super();
+            this.items = items;
+            this.columns.add(new Column(ENTITY_ID_COLUMN, Item::getEntityId));
+        }
+
+        @Override
+        public Export withTitle(LanguageProvider... languages)
+        {
+            Arrays.asList(languages)
+                  .forEach(language -> this.columns.add(new Column("title_" + language.getKey(), item -> item.getTitle(language)
+                                                                                                                 .orElse(null))));
+            return this;
+        }
+
+        @Override
+        public Export withDescription(LanguageProvider... languages)
+        {
+            Arrays.asList(languages)
+                  .forEach(language -> this.columns.add(new Column("description_" + language.getKey(), item -> item.getDescription(language)
+                                                                                                                       .orElse(null))));
+            return this;
+        }
+
+        @Override
+        public Export withStatements(SPARQLProperties... properties)
+        {
+            Arrays.asList(properties)
+                  .forEach(property -> this.columns.add(new Column(property.name()
+                                                                           .toLowerCase(),
+                                                                   item -> item.getStatements(property)
+                                                                               .map(this::determineStatementValue)
+                                                                               .filter(Objects::nonNull)
+                                                                               .collect(Collectors.toList()))));
+            return this;
+        }
+
+        private String determineStatementValue(StatementResult statement)
+        {
+            Item item = statement.asItem();
+            return item != null ? item.getEntityId() : statement.asString();
+        }
+
+        @Override
+        public Export withFormat(ExportFormat format)
+        {
+            this.format = format;
+            return this;
+        }
+
+        @Override
+        public Export withBlockSize(int blockSize)
+        {
+            this.blockSize = Math.max(1, blockSize);
+            return this;
+        }
+
+        @Override
+        public Export withParallelism(int parallelism)
+        {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        @Override
+        public Export withProgressListener(Consumer<ExportStatistic> progressListener)
+        {
+            this.progressListener = progressListener;
+            return this;
+        }
+
+        @Override
+        public ExportStatistic writeTo(File file)
+        {
+            try (OutputStream outputStream = StringUtils.endsWithIgnoreCase(file.getName(), ".gz")
+                    ? new GZIPOutputStream(new FileOutputStream(file), 64 * 1024)
+                    : new BufferedOutputStream(new FileOutputStream(file), 64 * 1024))
+            {
+                return this.writeTo(outputStream);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write export file: " + file, e);
+            }
+        }
+
+        @Override
+        public ExportStatistic writeTo(OutputStream outputStream)
+        {
+            long startTime = System.currentTimeMillis();
+            CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+            long[] numberOfItems = new long[1];
+
+            ExecutorService executorService = Executors.newFixedThreadPool(this.parallelism, runnable ->
+            {
+                Thread thread = new Thread(runnable, "wiki-export");
+                thread.setDaemon(true);
+                return thread;
+            });
+            try
+            {
+                if (this.format == ExportFormat.COLUMNAR)
+                {
+                    this.writeLine(countingOutputStream, this.toJson(this.singletonMap("columns", this.columns.stream()
+                                                                                                              .map(Column::getName)
+                                                                                                              .collect(Collectors.toList()))));
+                }
+
+                Deque<Future<List<List<Object>>>> blocksInFlight = new ArrayDeque<>();
+                StreamUtils.framedNonNullAsList(this.blockSize, this.items.stream())
+                           .forEach(block ->
+                           {
+                               blocksInFlight.add(executorService.submit(() -> this.resolveRows(block)));
+                               if (blocksInFlight.size() >= 2 * this.parallelism)
+                               {
+                                   numberOfItems[0] += this.writeBlock(blocksInFlight.poll(), countingOutputStream);
+                                   this.notifyProgress(numberOfItems[0], countingOutputStream, startTime);
+                               }
+                           });
+                while (!blocksInFlight.isEmpty())
+                {
+                    numberOfItems[0] += this.writeBlock(blocksInFlight.poll(), countingOutputStream);
+                    this.notifyProgress(numberOfItems[0], countingOutputStream, startTime);
+                }
+                countingOutputStream.flush();
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write export", e);
+            }
+            finally
+            {
+                executorService.shutdownNow();
+            }
+
+            return this.newStatistic(numberOfItems[0], countingOutputStream, startTime);
+        }
+
+        private void notifyProgress(long numberOfItems, CountingOutputStream outputStream, long startTime)
+        {
+            if (this.progressListener != null)
+            {
+                this.progressListener.accept(this.newStatistic(numberOfItems, outputStream, startTime));
+            }
+        }
+
+        private List<List<Object>> resolveRows(List<Item> block)
+        {
+            return block.stream()
+                        .map(item -> this.columns.stream()
+                                                 .map(column -> column.determineValue(item))
+                                                 .collect(Collectors.toList()))
+                        .collect(Collectors.toList());
+        }
+
+        private int writeBlock(Future<List<List<Object>>> block, OutputStream outputStream)
+        {
+            try
+            {
+                List<List<Object>> rows = block.get();
+                if (this.format == ExportFormat.COLUMNAR)
+                {
+                    for (int columnIndex = 0; columnIndex < this.columns.size(); columnIndex++)
+                    {
+                        int currentColumnIndex = columnIndex;
+                        Map<String, Object> columnData = new LinkedHashMap<>();
+                        columnData.put("column", this.columns.get(columnIndex)
+                                                             .getName());
+                        columnData.put("values", rows.stream()
+                                                     .map(row -> row.get(currentColumnIndex))
+                                                     .collect(Collectors.toList()));
+                        this.writeLine(outputStream, this.toJson(columnData));
+                    }
+                }
+                else
+                {
+                    for (List<Object> row : rows)
+                    {
+                        Map<String, Object> rowData = new LinkedHashMap<>();
+                        for (int columnIndex = 0; columnIndex < this.columns.size(); columnIndex++)
+                        {
+                            rowData.put(this.columns.get(columnIndex)
+                                                    .getName(),
+                                        row.get(columnIndex));
+                        }
+                        this.writeLine(outputStream, this.toJson(rowData));
+                    }
+                }
+                return rows.size();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IllegalStateException("Export has been interrupted", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw new IllegalStateException("Unable to resolve items for export", e.getCause());
+            }
+        }
+
+        private Map<String, Object> singletonMap(String key, Object value)
+        {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put(key, value);
+            return map;
+        }
+
+        private String toJson(Map<String, Object> data)
+        {
+            try
+            {
+                return this.objectMapper.writeValueAsString(data);
+            }
+            catch (JsonProcessingException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void writeLine(OutputStream outputStream, String line)
+        {
+            try
+            {
+                outputStream.write(line.getBytes(StandardCharsets.UTF_8));
+                outputStream.write('\n');
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write export", e);
+            }
+        }
+
+        private ExportStatistic newStatistic(long numberOfItems, CountingOutputStream outputStream, long startTime)
+        {
+            long numberOfBytes = outputStream.getNumberOfBytes();
+            Duration duration = Duration.ofMillis(System.currentTimeMillis() - startTime);
+            return new ExportStatistic()
+            {
+                @Override
+                public long getNumberOfItems()
+                {
+                    return numberOfItems;
+                }
+
+                @Override
+                public long getNumberOfBytes()
+                {
+                    return numberOfBytes;
+                }
+
+                @Override
+                public Duration getDuration()
+                {
+                    return duration;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "ExportStatistic [numberOfItems=" + numberOfItems + ", numberOfBytes=" + numberOfBytes + ", duration=" + duration
+                            + ", itemsPerSecond=" + this.getItemsPerSecond() + "]";
+                }
+            };
+        }
+    }
+
+    public static Export newExport(Streamable<Item> items)
+    {
+        return new ExportImpl(items);
+    }
+}
@@ -0,0 +1,279 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.filter;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Optional;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.StreamSupport;
+
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityKind;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilterValueProvider;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.RoaringBitmap;
+
+/**
+ * Materializes the results of single {@link SPARQLFilterValueProvider}s as compressed bitmaps of the item numbers and evaluates combinations of
+ * them locally via {@link FilterQuery}s.<br>
+ * <br>
+ * Only item ids are held within the bitmaps, other entity kinds like properties are dropped.
+ */
+public class FilterBitmapUtils
+{
+    /**
+     * Boolean combination of filters, which is evaluated on the bitmaps of the single filters
+     */
+    @FunctionalInterface
+    public static interface FilterQuery
+    {
+        /**
+         * Evaluates the query. The given resolver returns the bitmap for a single filter, which must not be modified.
+         * 
+         * @param filterResolver
+         * @return
+         */
+        public RoaringBitmap evaluate(Function<SPARQLFilterValueProvider, RoaringBitmap> filterResolver);
+
+        public default FilterQuery and(FilterQuery query)
+        {
+            return filterResolver -> RoaringBitmap.and(this.evaluate(filterResolver), query.evaluate(filterResolver));
+        }
+
+        public default FilterQuery and(SPARQLFilterValueProvider filter)
+        {
+            return this.and(of(filter));
+        }
+
+        public default FilterQuery or(FilterQuery query)
+        {
+            return filterResolver -> RoaringBitmap.or(this.evaluate(filterResolver), query.evaluate(filterResolver));
+        }
+
+        public default FilterQuery or(SPARQLFilterValueProvider filter)
+        {
+            return this.or(of(filter));
+        }
+
+        /**
+         * Removes all matches of the given {@link FilterQuery} from the matches of this {@link FilterQuery}
+         * 
+         * @param query
+         * @return
+         */
+        public default FilterQuery andNot(FilterQuery query)
+        {
+            return filterResolver -> RoaringBitmap.andNot(this.evaluate(filterResolver), query.evaluate(filterResolver));
+        }
+
+        public default FilterQuery andNot(SPARQLFilterValueProvider filter)
+        {
+            return this.andNot(of(filter));
+        }
+
+        public static FilterQuery of(SPARQLFilterValueProvider filter)
+        {
+            return filterResolver -> filterResolver.apply(filter);
+        }
+
+        public static FilterQuery allOf(SPARQLFilterValueProvider... filters)
+        {
+            return filterResolver -> Arrays.stream(filters)
+                                           .map(filterResolver)
+                                           .reduce((left, right) -> RoaringBitmap.and(left, right))
+                                           .orElseGet(RoaringBitmap::new);
+        }
+
+        public static FilterQuery anyOf(SPARQLFilterValueProvider... filters)
+        {
+            return filterResolver -> RoaringBitmap.or(Arrays.stream(filters)
+                                                            .map(filterResolver)
+                                                            .iterator());
+        }
+    }
+
+    /**
+     * Cache of filter bitmaps keyed by the filter value, see {@link SPARQLFilterValueProvider#get()}
+     */
+    public static interface FilterBitmapCache
+    {
+        public Optional<RoaringBitmap> get(String filterKey);
+
+        public FilterBitmapCache put(String filterKey, RoaringBitmap bitmap);
+
+        public FilterBitmapCache invalidate(String filterKey);
+
+        public Set<String> getFilterKeys();
+
+        public int size();
+
+        public long getSizeInBytes();
+
+        public default Optional<RoaringBitmap> get(SPARQLFilterValueProvider filter)
+        {
+            return this.get(filter.get());
+        }
+
+        public default FilterBitmapCache put(SPARQLFilterValueProvider filter, RoaringBitmap bitmap)
+        {
+            return this.put(filter.get(), bitmap);
+        }
+
+        public default boolean contains(SPARQLFilterValueProvider filter)
+        {
+            return this.get(filter)
+                       .isPresent();
+        }
+
+        /**
+         * Returns the cached bitmap or loads and caches it. The loader is called without holding any lock, so concurrent calls for the same filter
+         * can load it twice.
+         * 
+         * @param filter
+         * @param loader
+         * @return
+         */
+        public default RoaringBitmap computeIfAbsent(SPARQLFilterValueProvider filter, Supplier<RoaringBitmap> loader)
+        {
+            Optional<RoaringBitmap> bitmap = this.get(filter);
+            if (bitmap.isPresent())
+            {
+                return bitmap.get();
+            }
+            RoaringBitmap loadedBitmap = loader.get();
+            this.put(filter, loadedBitmap);
+            return loadedBitmap;
+        }
+
+        /**
+         * Evaluates the given {@link FilterQuery} and uses the given loader only for filters which are not cached yet
+         * 
+         * @param query
+         * @param loader
+         * @return
+         */
+        public default RoaringBitmap evaluate(FilterQuery query, Function<SPARQLFilterValueProvider, RoaringBitmap> loader)
+        {
+            return query.evaluate(filter -> this.computeIfAbsent(filter, () -> loader.apply(filter)));
+        }
+    }
+
+    private static class FilterBitmapCacheImpl implements FilterBitmapCache
+    {
+        private Map<String, RoaringBitmap> filterKeyToBitmap = new ConcurrentHashMap<>();
+
+        @Override
+        public Optional<RoaringBitmap> get(String filterKey)
+        {
+            return Optional.ofNullable(this.filterKeyToBitmap.get(filterKey));
+        }
+
+        @Override
+        public FilterBitmapCache put(String filterKey, RoaringBitmap bitmap)
+        {
+            bitmap.runOptimize();
+            this.filterKeyToBitmap.put(filterKey, bitmap);
+            return this;
+        }
+
+        @Override
+        public FilterBitmapCache invalidate(String filterKey)
+        {
+            this.filterKeyToBitmap.remove(filterKey);
+            return this;
+        }
+
+        @Override
+        public Set<String> getFilterKeys()
+        {
+            return this.filterKeyToBitmap.keySet()
+                                         .stream()
+                                         .collect(Collectors.toSet());
+        }
+
+        @Override
+        public int size()
+        {
+            return this.filterKeyToBitmap.size();
+        }
+
+        @Override
+        public long getSizeInBytes()
+        {
+            return this.filterKeyToBitmap.values()
+                                         .stream()
+                                         .mapToLong(RoaringBitmap::getSizeInBytes)
+                                         .sum();
+        }
+    }
+
+    /**
+     * Collects the item ids of the given packed entity ids into a bitmap. All other entity kinds are dropped.
+     * 
+     * @param entityIds
+     * @return
+     */
+    public static RoaringBitmap toBitmap(LongStream entityIds)
+    {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        entityIds.filter(EntityIdUtils::isValid)
+                 .filter(entityId -> EntityIdUtils.kindOf(entityId) == EntityKind.ITEM)
+                 .map(EntityIdUtils::numberOf)
+                 .filter(number -> number <= Integer.MAX_VALUE)
+                 .forEach(number -> bitmap.add((int) number));
+        bitmap.runOptimize();
+        return bitmap;
+    }
+
+    /**
+     * Lazily returns the packed item ids of the given bitmap in ascending order
+     * 
+     * @param bitmap
+     * @return
+     */
+    public static LongStream toEntityIds(RoaringBitmap bitmap)
+    {
+        IntIterator iterator = bitmap.getIntIterator();
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(new PrimitiveIterator.OfLong()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public long nextLong()
+            {
+                return EntityIdUtils.of(EntityKind.ITEM, iterator.next());
+            }
+        }, Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT), false);
+    }
+
+    public static FilterBitmapCache newCache()
+    {
+        return new FilterBitmapCacheImpl();
+    }
+}
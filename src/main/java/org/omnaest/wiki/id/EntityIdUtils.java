@@ -0,0 +1,576 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.id;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Compact numeric representation of wikidata entity ids like "Q42" or "P31".<br>
+ * <br>
+ * An entity id is packed into a single positive long, the {@link EntityKind} is held within the top bits and the number of the entity within the
+ * lower {@value #NUMBER_BITS} bits. Since {@link EntityKind#ITEM} has the ordinal 0 the packed form of an item id is its plain number.<br>
+ * <br>
+ * The {@link EntityIdMap} and {@link EntityIdSet} are open addressing hash structures keyed by the packed ids, which avoids the boxing and
+ * {@link String} hashing of the entity ids on the hot paths. The {@link String} form should only be created at the public api.
+ */
+public class EntityIdUtils
+{
+    /**
+     * Returned by the parse methods for anything that is not a valid entity id
+     */
+    public static final long NO_ENTITY_ID = -1L;
+
+    private static final int  NUMBER_BITS = 56;
+    private static final long NUMBER_MASK = (1L << NUMBER_BITS) - 1;
+
+    public static enum EntityKind
+    {
+        ITEM('Q'), PROPERTY('P'), LEXEME('L');
+
+        private char prefix;
+
+        private EntityKind(char prefix)
+        {
+            this.prefix = prefix;
+        }
+
+        public char getPrefix()
+        {
+            return this.prefix;
+        }
+
+        public static EntityKind of(char prefix)
+        {
+            for (EntityKind kind : values())
+            {
+                if (kind.prefix == prefix)
+                {
+                    return kind;
+                }
+            }
+            return null;
+        }
+    }
+
+    public static long of(EntityKind kind, long number)
+    {
+        if (kind == null || number < 0 || number > NUMBER_MASK)
+        {
+            throw new IllegalArgumentException("Invalid entity id: " + kind + " " + number);
+        }
+        return ((long) kind.ordinal() << NUMBER_BITS) | number;
+    }
+
+    /**
+     * Parses entity ids like "Q42". Returns {@link #NO_ENTITY_ID} for blank or invalid ids.
+     * 
+     * @param entityId
+     * @return
+     */
+    public static long parse(CharSequence entityId)
+    {
+        return entityId != null ? parse(entityId, 0, entityId.length()) : NO_ENTITY_ID;
+    }
+
+    /**
+     * Parses the entity id from the last path token of an entity url like "http://www.wikidata.org/entity/Q42" without creating intermediate
+     * {@link String}s
+     * 
+     * @param entityUrl
+     * @return
+     */
+    public static long parseFromUrl(String entityUrl)
+    {
+        if (entityUrl == null)
+        {
+            return NO_ENTITY_ID;
+        }
+        return parse(entityUrl, entityUrl.lastIndexOf('/') + 1, entityUrl.length());
+    }
+
+    private static long parse(CharSequence entityId, int start, int end)
+    {
+        if (end - start < 2)
+        {
+            return NO_ENTITY_ID;
+        }
+        EntityKind kind = EntityKind.of(entityId.charAt(start));
+        if (kind == null)
+        {
+            return NO_ENTITY_ID;
+        }
+        long number = 0;
+        for (int ii = start + 1; ii < end; ii++)
+        {
+            char character = entityId.charAt(ii);
+            if (character < '0' || character > '9')
+            {
+                return NO_ENTITY_ID;
+            }
+            number = number * 10 + (character - '0');
+            if (number > NUMBER_MASK)
+            {
+                return NO_ENTITY_ID;
+            }
+        }
+        return of(kind, number);
+    }
+
+    public static boolean isValid(long entityId)
+    {
+        return entityId >= 0 && (entityId >>> NUMBER_BITS) < EntityKind.values().length;
+    }
+
+    public static EntityKind kindOf(long entityId)
+    {
+        return EntityKind.values()[(int) (entityId >>> NUMBER_BITS)];
+    }
+
+    public static long numberOf(long entityId)
+    {
+        return entityId & NUMBER_MASK;
+    }
+
+    public static String toString(long entityId)
+    {
+        if (!isValid(entityId))
+        {
+            throw new IllegalArgumentException("Invalid entity id: " + entityId);
+        }
+        return kindOf(entityId).getPrefix() + Long.toString(numberOf(entityId));
+    }
+
+    /**
+     * Parses the given entity ids and drops all invalid ones
+     * 
+     * @param entityIds
+     * @return
+     */
+    public static long[] parseAll(Collection<String> entityIds)
+    {
+        return entityIds.stream()
+                        .mapToLong(EntityIdUtils::parse)
+                        .filter(EntityIdUtils::isValid)
+                        .toArray();
+    }
+
+    public static List<String> toStrings(long[] entityIds)
+    {
+        List<String> result = new ArrayList<>(entityIds.length);
+        for (long entityId : entityIds)
+        {
+            result.add(toString(entityId));
+        }
+        return result;
+    }
+
+    /**
+     * Lazily frames the given entity ids into blocks of the given size. The last block can be smaller.
+     * 
+     * @param size
+     * @param entityIds
+     * @return
+     */
+    public static Stream<long[]> framed(int size, LongStream entityIds)
+    {
+        PrimitiveIterator.OfLong iterator = entityIds.iterator();
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new Iterator<long[]>()
+        {
+            @Override
+            public boolean hasNext()
+            {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public long[] next()
+            {
+                if (!iterator.hasNext())
+                {
+                    throw new NoSuchElementException();
+                }
+                long[] block = new long[size];
+                int length = 0;
+                while (length < size && iterator.hasNext())
+                {
+                    block[length++] = iterator.nextLong();
+                }
+                return length < size ? Arrays.copyOf(block, length) : block;
+            }
+        }, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                            .onClose(entityIds::close);
+    }
+
+    /**
+     * Linear probing table over packed entity ids. Slots are removed by backward shifting, so no tombstones are necessary.
+     */
+    private static abstract class EntityIdTable
+    {
+        private static final long FREE = -1L;
+
+        protected long[] keys;
+        protected int    size;
+
+        protected EntityIdTable(int expectedSize)
+        {
+            int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+            this.keys = this.newKeys(capacity);
+        }
+
+        private long[] newKeys(int capacity)
+        {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, FREE);
+            return keys;
+        }
+
+        private static int hash(long key)
+        {
+            long hash = key * 0x9E3779B97F4A7C15L;
+            return (int) (hash ^ (hash >>> 32));
+        }
+
+        /**
+         * Returns the slot of the given key or the free slot the key would be placed into
+         * 
+         * @param key
+         * @return
+         */
+        protected int slotOf(long key)
+        {
+            int mask = this.keys.length - 1;
+            int slot = hash(key) & mask;
+            while (this.keys[slot] != FREE && this.keys[slot] != key)
+            {
+                slot = (slot + 1) & mask;
+            }
+            return slot;
+        }
+
+        protected boolean isOccupied(int slot)
+        {
+            return this.keys[slot] != FREE;
+        }
+
+        protected static void validate(long key)
+        {
+            if (!isValid(key))
+            {
+                throw new IllegalArgumentException("Invalid entity id: " + key);
+            }
+        }
+
+        /**
+         * Occupies the given free slot with the key and grows the table if necessary
+         * 
+         * @param slot
+         * @param key
+         * @return
+         */
+        protected void occupy(int slot, long key)
+        {
+            this.keys[slot] = key;
+            this.size++;
+            if (this.size * 2 > this.keys.length)
+            {
+                long[] previousKeys = this.keys;
+                this.keys = this.newKeys(previousKeys.length * 2);
+                this.resize(this.keys.length);
+                for (int previousSlot = 0; previousSlot < previousKeys.length; previousSlot++)
+                {
+                    if (previousKeys[previousSlot] != FREE)
+                    {
+                        int newSlot = this.slotOf(previousKeys[previousSlot]);
+                        this.keys[newSlot] = previousKeys[previousSlot];
+                        this.transfer(previousSlot, newSlot);
+                    }
+                }
+                this.afterResize();
+            }
+        }
+
+        protected void release(int slot)
+        {
+            int mask = this.keys.length - 1;
+            int gap = slot;
+            int next = (gap + 1) & mask;
+            while (this.keys[next] != FREE)
+            {
+                int home = hash(this.keys[next]) & mask;
+                if (((next - home) & mask) >= ((next - gap) & mask))
+                {
+                    this.keys[gap] = this.keys[next];
+                    this.move(next, gap);
+                    gap = next;
+                }
+                next = (next + 1) & mask;
+            }
+            this.keys[gap] = FREE;
+            this.clearSlot(gap);
+            this.size--;
+        }
+
+        protected void resize(int capacity)
+        {
+        }
+
+        protected void transfer(int previousSlot, int newSlot)
+        {
+        }
+
+        protected void afterResize()
+        {
+        }
+
+        protected void move(int fromSlot, int toSlot)
+        {
+        }
+
+        protected void clearSlot(int slot)
+        {
+        }
+
+        public int size()
+        {
+            return this.size;
+        }
+
+        public boolean isEmpty()
+        {
+            return this.size == 0;
+        }
+
+        /**
+         * Returns the contained entity ids in no particular order
+         * 
+         * @return
+         */
+        public long[] toArray()
+        {
+            long[] result = new long[this.size];
+            int index = 0;
+            for (long key : this.keys)
+            {
+                if (key != FREE)
+                {
+                    result[index++] = key;
+                }
+            }
+            return result;
+        }
+
+        public LongStream stream()
+        {
+            return Arrays.stream(this.toArray());
+        }
+    }
+
+    /**
+     * Set of packed entity ids. Not thread safe.
+     */
+    public static class EntityIdSet extends EntityIdTable
+    {
+        public EntityIdSet()
+        {
+            this(16);
+        }
+
+        public EntityIdSet(int expectedSize)
+        {
+            super(expectedSize);
+        }
+
+        /**
+         * Returns true if the entity id was not contained before
+         * 
+         * @param entityId
+         * @return
+         */
+        public boolean add(long entityId)
+        {
+            validate(entityId);
+            int slot = this.slotOf(entityId);
+            if (this.isOccupied(slot))
+            {
+                return false;
+            }
+            this.occupy(slot, entityId);
+            return true;
+        }
+
+        public boolean contains(long entityId)
+        {
+            return isValid(entityId) && this.isOccupied(this.slotOf(entityId));
+        }
+
+        public boolean remove(long entityId)
+        {
+            if (!this.contains(entityId))
+            {
+                return false;
+            }
+            this.release(this.slotOf(entityId));
+            return true;
+        }
+    }
+
+    @FunctionalInterface
+    public static interface EntityIdMapConsumer<V>
+    {
+        public void accept(long entityId, V value);
+    }
+
+    /**
+     * Map from packed entity ids to values. Not thread safe.
+     * 
+     * @param <V>
+     */
+    public static class EntityIdMap<V> extends EntityIdTable
+    {
+        private Object[] values;
+        private Object[] previousValues;
+
+        public EntityIdMap()
+        {
+            this(16);
+        }
+
+        public EntityIdMap(int expectedSize)
+        {
+            super(expectedSize);
+            this.values = new Object[this.keys.length];
+        }
+
+        @SuppressWarnings("unchecked")
+        public V get(long entityId)
+        {
+            if (!isValid(entityId))
+            {
+                return null;
+            }
+            int slot = this.slotOf(entityId);
+            return this.isOccupied(slot) ? (V) this.values[slot] : null;
+        }
+
+        public boolean containsKey(long entityId)
+        {
+            return isValid(entityId) && this.isOccupied(this.slotOf(entityId));
+        }
+
+        /**
+         * Returns the previous value or null
+         * 
+         * @param entityId
+         * @param value
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public V put(long entityId, V value)
+        {
+            validate(entityId);
+            int slot = this.slotOf(entityId);
+            if (this.isOccupied(slot))
+            {
+                V previousValue = (V) this.values[slot];
+                this.values[slot] = value;
+                return previousValue;
+            }
+            this.values[slot] = value;
+            this.occupy(slot, entityId);
+            return null;
+        }
+
+        public EntityIdMap<V> putAll(EntityIdMap<V> map)
+        {
+            map.forEach(this::put);
+            return this;
+        }
+
+        @SuppressWarnings("unchecked")
+        public V remove(long entityId)
+        {
+            if (!this.containsKey(entityId))
+            {
+                return null;
+            }
+            int slot = this.slotOf(entityId);
+            V previousValue = (V) this.values[slot];
+            this.release(slot);
+            return previousValue;
+        }
+
+        @SuppressWarnings("unchecked")
+        public void forEach(EntityIdMapConsumer<V> consumer)
+        {
+            for (int slot = 0; slot < this.keys.length; slot++)
+            {
+                if (this.isOccupied(slot))
+                {
+                    consumer.accept(this.keys[slot], (V) this.values[slot]);
+                }
+            }
+        }
+
+        public List<V> values()
+        {
+            List<V> result = new ArrayList<>(this.size);
+            this.forEach((entityId, value) -> result.add(value));
+            return result;
+        }
+
+        @Override
+        protected void resize(int capacity)
+        {
+            this.previousValues = this.values;
+            this.values = new Object[capacity];
+        }
+
+        @Override
+        protected void transfer(int previousSlot, int newSlot)
+        {
+            this.values[newSlot] = this.previousValues[previousSlot];
+        }
+
+        @Override
+        protected void afterResize()
+        {
+            this.previousValues = null;
+        }
+
+        @Override
+        protected void move(int fromSlot, int toSlot)
+        {
+            this.values[toSlot] = this.values[fromSlot];
+        }
+
+        @Override
+        protected void clearSlot(int slot)
+        {
+            this.values[slot] = null;
+        }
+    }
+}
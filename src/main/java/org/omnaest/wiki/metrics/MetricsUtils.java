@@ -0,0 +1,418 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Instrumentation of the network and cache paths. The accessors report their counters, histograms and timers to a {@link MetricRegistry},
+ * which is by default the in memory {@link #shared()} registry. Other metric systems can be attached by implementing {@link MetricRegistry}.
+ * 
+ * @see MetricRegistry#snapshot()
+ */
+public class MetricsUtils
+{
+    /**
+     * Values below this are counted exactly, larger values are counted in buckets with a relative width of 1/{@value #SUB_BUCKETS}
+     */
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKETS    = 8;
+    private static final int BUCKETS        = LINEAR_BUCKETS + (63 - 4) * SUB_BUCKETS;
+
+    public static interface Counter
+    {
+        public default void increment()
+        {
+            this.add(1);
+        }
+
+        public void add(long delta);
+    }
+
+    public static interface Histogram
+    {
+        public void record(long value);
+    }
+
+    public static interface Timer
+    {
+        public void record(long duration, TimeUnit timeUnit);
+
+        /**
+         * Records the duration of the given operation, also if it fails
+         * 
+         * @param operation
+         * @return
+         */
+        public default <T> T time(Supplier<T> operation)
+        {
+            long startTime = System.nanoTime();
+            try
+            {
+                return operation.get();
+            }
+            finally
+            {
+                this.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * Starts a {@link Stopwatch} which records its duration into this {@link Timer} when it is stopped
+         * 
+         * @return
+         */
+        public default Stopwatch start()
+        {
+            long startTime = System.nanoTime();
+            return () -> this.record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static interface Stopwatch extends AutoCloseable
+    {
+        public void stop();
+
+        @Override
+        public default void close()
+        {
+            this.stop();
+        }
+    }
+
+    /**
+     * SPI of the metrics. Metrics are identified by their names, requesting the same name again returns the same metric.
+     */
+    public static interface MetricRegistry
+    {
+        public Counter counter(String name);
+
+        public Histogram histogram(String name);
+
+        /**
+         * Returns a {@link Timer}, its durations are kept in nanoseconds
+         * 
+         * @param name
+         * @return
+         */
+        public Timer timer(String name);
+
+        public MetricsSnapshot snapshot();
+    }
+
+    public static interface MetricsSnapshot
+    {
+        public Map<String, Long> getCounters();
+
+        public Map<String, HistogramSnapshot> getHistograms();
+
+        /**
+         * Returns the {@link HistogramSnapshot}s of the {@link Timer}s with values in nanoseconds
+         * 
+         * @return
+         */
+        public Map<String, HistogramSnapshot> getTimers();
+    }
+
+    public static interface HistogramSnapshot
+    {
+        public long getCount();
+
+        public long getSum();
+
+        public long getMin();
+
+        public long getMax();
+
+        public default double getMean()
+        {
+            return this.getCount() > 0 ? this.getSum() / (double) this.getCount() : 0.0;
+        }
+
+        /**
+         * Returns the given percentile, exact for small values and with a relative error below 1/8 otherwise
+         * 
+         * @param percentile
+         *            between 0.0 and 1.0
+         * @return
+         */
+        public long getPercentile(double percentile);
+    }
+
+    private static class CounterImpl implements Counter
+    {
+        private LongAdder count = new LongAdder();
+
+        @Override
+        public void add(long delta)
+        {
+            this.count.add(delta);
+        }
+    }
+
+    private static class HistogramImpl implements Histogram, Timer
+    {
+        private AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+        private LongAdder       count   = new LongAdder();
+        private LongAdder       sum     = new LongAdder();
+        private LongAccumulator min     = new LongAccumulator(Math::min, Long.MAX_VALUE);
+        private LongAccumulator max     = new LongAccumulator(Math::max, Long.MIN_VALUE);
+
+        @Override
+        public void record(long value)
+        {
+            long boundedValue = Math.max(0, value);
+            this.buckets.incrementAndGet(determineBucket(boundedValue));
+            this.count.increment();
+            this.sum.add(boundedValue);
+            this.min.accumulate(boundedValue);
+            this.max.accumulate(boundedValue);
+        }
+
+        @Override
+        public void record(long duration, TimeUnit timeUnit)
+        {
+            this.record(timeUnit.toNanos(duration));
+        }
+
+        public HistogramSnapshot snapshot()
+        {
+            long[] counts = new long[BUCKETS];
+            for (int ii = 0; ii < BUCKETS; ii++)
+            {
+                counts[ii] = this.buckets.get(ii);
+            }
+            long count = this.count.sum();
+            long sum = this.sum.sum();
+            long min = count > 0 ? this.min.get() : 0;
+            long max = count > 0 ? this.max.get() : 0;
+            return new HistogramSnapshot()
+            {
+                @Override
+                public long getCount()
+                {
+                    return count;
+                }
+
+                @Override
+                public long getSum()
+                {
+                    return sum;
+                }
+
+                @Override
+                public long getMin()
+                {
+                    return min;
+                }
+
+                @Override
+                public long getMax()
+                {
+                    return max;
+                }
+
+                @Override
+                public long getPercentile(double percentile)
+                {
+                    long total = 0;
+                    for (long bucketCount : counts)
+                    {
+                        total += bucketCount;
+                    }
+                    long rank = Math.max(1, (long) Math.ceil(percentile * total));
+                    long current = 0;
+                    for (int ii = 0; ii < BUCKETS; ii++)
+                    {
+                        current += counts[ii];
+                        if (current >= rank)
+                        {
+                            return Math.max(min, Math.min(max, determineUpperBound(ii)));
+                        }
+                    }
+                    return max;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "HistogramSnapshot [count=" + count + ", mean=" + this.getMean() + ", min=" + min + ", max=" + max + ", p50="
+                            + this.getPercentile(0.5) + ", p99=" + this.getPercentile(0.99) + "]";
+                }
+            };
+        }
+
+        private static int determineBucket(long value)
+        {
+            if (value < LINEAR_BUCKETS)
+            {
+                return (int) value;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(value);
+            int subBucket = (int) (value >>> (exponent - 3)) & (SUB_BUCKETS - 1);
+            return LINEAR_BUCKETS + (exponent - 4) * SUB_BUCKETS + subBucket;
+        }
+
+        private static long determineUpperBound(int bucket)
+        {
+            if (bucket < LINEAR_BUCKETS)
+            {
+                return bucket;
+            }
+            int exponent = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 4;
+            int subBucket = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS;
+            return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - 3)) - 1;
+        }
+    }
+
+    private static class MetricRegistryImpl implements MetricRegistry
+    {
+        private Map<String, CounterImpl>   counters   = new ConcurrentHashMap<>();
+        private Map<String, HistogramImpl> histograms = new ConcurrentHashMap<>();
+        private Map<String, HistogramImpl> timers     = new ConcurrentHashMap<>();
+
+        @Override
+        public Counter counter(String name)
+        {
+            return this.counters.computeIfAbsent(name, n -> new CounterImpl());
+        }
+
+        @Override
+        public Histogram histogram(String name)
+        {
+            return this.histograms.computeIfAbsent(name, n -> new HistogramImpl());
+        }
+
+        @Override
+        public Timer timer(String name)
+        {
+            return this.timers.computeIfAbsent(name, n -> new HistogramImpl());
+        }
+
+        @Override
+        public MetricsSnapshot snapshot()
+        {
+            Map<String, Long> counters = new TreeMap<>();
+            this.counters.forEach((name, counter) -> counters.put(name, counter.count.sum()));
+            Map<String, HistogramSnapshot> histograms = new TreeMap<>();
+            this.histograms.forEach((name, histogram) -> histograms.put(name, histogram.snapshot()));
+            Map<String, HistogramSnapshot> timers = new TreeMap<>();
+            this.timers.forEach((name, timer) -> timers.put(name, timer.snapshot()));
+            return new MetricsSnapshot()
+            {
+                @Override
+                public Map<String, Long> getCounters()
+                {
+                    return Collections.unmodifiableMap(counters);
+                }
+
+                @Override
+                public Map<String, HistogramSnapshot> getHistograms()
+                {
+                    return Collections.unmodifiableMap(histograms);
+                }
+
+                @Override
+                public Map<String, HistogramSnapshot> getTimers()
+                {
+                    return Collections.unmodifiableMap(timers);
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "MetricsSnapshot [counters=" + counters + ", histograms=" + histograms + ", timers=" + timers + "]";
+                }
+            };
+        }
+    }
+
+    private static class NoOpMetricRegistry implements MetricRegistry
+    {
+        private static final Counter   COUNTER   = delta ->
+                                                 {
+                                                 };
+        private static final Histogram HISTOGRAM = value ->
+                                                 {
+                                                 };
+        private static final Timer     TIMER     = (duration, timeUnit) ->
+                                                 {
+                                                 };
+
+        @Override
+        public Counter counter(String name)
+        {
+            return COUNTER;
+        }
+
+        @Override
+        public Histogram histogram(String name)
+        {
+            return HISTOGRAM;
+        }
+
+        @Override
+        public Timer timer(String name)
+        {
+            return TIMER;
+        }
+
+        @Override
+        public MetricsSnapshot snapshot()
+        {
+            return new MetricRegistryImpl().snapshot();
+        }
+    }
+
+    private static class SharedRegistryHolder
+    {
+        private static final MetricRegistry INSTANCE = new MetricRegistryImpl();
+    }
+
+    /**
+     * Returns the in memory {@link MetricRegistry} all accessors of this process report to, if they are not given an own
+     * {@link MetricRegistry}
+     * 
+     * @return
+     */
+    public static MetricRegistry shared()
+    {
+        return SharedRegistryHolder.INSTANCE;
+    }
+
+    public static MetricRegistry newRegistry()
+    {
+        return new MetricRegistryImpl();
+    }
+
+    /**
+     * Returns a {@link MetricRegistry} which discards all values
+     * 
+     * @return
+     */
+    public static MetricRegistry noop()
+    {
+        return new NoOpMetricRegistry();
+    }
+}
@@ -0,0 +1,329 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.refresh;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdSet;
+import org.omnaest.wiki.rest.WikibaseRESTUtils.WikibaseRESTAccessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+/**
+ * Revalidates cached {@link ItemDocument}s by comparing their revision id with the last revision id on the server. The last revision ids are
+ * requested in lightweight batches, only changed entities are downloaded again.
+ */
+public class RevisionRefreshUtils
+{
+    public static final long NO_REVISION_ID = -1L;
+
+    /**
+     * Cache of {@link ItemDocument}s which can be refreshed by a {@link RevisionRefresher}
+     */
+    public static interface RefreshableCache
+    {
+        public long[] getEntityIds();
+
+        /**
+         * Returns the revision id of the cached entity or {@value RevisionRefreshUtils#NO_REVISION_ID}
+         * 
+         * @param entityId
+         * @return
+         */
+        public long getRevisionId(long entityId);
+
+        /**
+         * Replaces the given {@link ItemDocument}s at once
+         * 
+         * @param entityIdToDocument
+         */
+        public void replace(EntityIdMap<ItemDocument> entityIdToDocument);
+
+        public void remove(long[] entityIds);
+    }
+
+    public static interface RefreshStatistic
+    {
+        public long getNumberOfChecked();
+
+        public long getNumberOfChanged();
+
+        public long getNumberOfRemoved();
+
+        public long getNumberOfErrors();
+    }
+
+    public static interface RevisionRefresher extends AutoCloseable
+    {
+        /**
+         * Interval between two refresh runs. Default is 10 minutes.
+         * 
+         * @param interval
+         * @param timeUnit
+         * @return
+         */
+        public RevisionRefresher withInterval(long interval, TimeUnit timeUnit);
+
+        /**
+         * Number of entity ids per revision request. Default and maximum is {@value WikibaseRESTAccessor#MAX_IDS_PER_REQUEST}.
+         * 
+         * @param batchSize
+         * @return
+         */
+        public RevisionRefresher withBatchSize(int batchSize);
+
+        /**
+         * Limits the revision and download requests to the given number per second. Default is 1.
+         * 
+         * @param maxRequestsPerSecond
+         * @return
+         */
+        public RevisionRefresher withMaxRequestsPerSecond(double maxRequestsPerSecond);
+
+        /**
+         * Starts the periodic refresh in a background thread
+         * 
+         * @return
+         */
+        public RevisionRefresher start();
+
+        /**
+         * Refreshes all cached entities within the current thread
+         * 
+         * @return
+         */
+        public RefreshStatistic refresh();
+
+        public RefreshStatistic getLastStatistic();
+
+        @Override
+        public void close();
+    }
+
+    private static class RefreshStatisticImpl implements RefreshStatistic
+    {
+        private long numberOfChecked;
+        private long numberOfChanged;
+        private long numberOfRemoved;
+        private long numberOfErrors;
+
+        @Override
+        public long getNumberOfChecked()
+        {
+            return this.numberOfChecked;
+        }
+
+        @Override
+        public long getNumberOfChanged()
+        {
+            return this.numberOfChanged;
+        }
+
+        @Override
+        public long getNumberOfRemoved()
+        {
+            return this.numberOfRemoved;
+        }
+
+        @Override
+        public long getNumberOfErrors()
+        {
+            return this.numberOfErrors;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "RefreshStatistic [numberOfChecked=" + this.numberOfChecked + ", numberOfChanged=" + this.numberOfChanged + ", numberOfRemoved="
+                    + this.numberOfRemoved + ", numberOfErrors=" + this.numberOfErrors + "]";
+        }
+
+    }
+
+    private static class RevisionRefresherImpl implements RevisionRefresher
+    {
+        private RefreshableCache                            cache;
+        private Function<List<String>, Map<String, Long>>   revisionIdsResolver;
+        private Function<long[], EntityIdMap<ItemDocument>> downloader;
+        private long                                        interval             = TimeUnit.MINUTES.toMillis(10);
+        private int                                         batchSize            = WikibaseRESTAccessor.MAX_IDS_PER_REQUEST;
+        private double                                      maxRequestsPerSecond = 1.0;
+        private long                                        nextRequestAt        = 0;
+        private volatile RefreshStatistic                   lastStatistic        = new RefreshStatisticImpl();
+        private ScheduledExecutorService                    executor;
+        private Object                                      refreshLock          = new Object();
+
+        public RevisionRefresherImpl(RefreshableCache cache, Function<List<String>, Map<String, Long>> revisionIdsResolver,
+                                     Function<long[], EntityIdMap<ItemDocument>> downloader)
+        {
+            super();
+            this.cache = cache;
+            this.revisionIdsResolver = revisionIdsResolver;
+            this.downloader = downloader;
+        }
+
+        @Override
+        public RevisionRefresher withInterval(long interval, TimeUnit timeUnit)
+        {
+            this.interval = timeUnit.toMillis(interval);
+            return this;
+        }
+
+        @Override
+        public RevisionRefresher withBatchSize(int batchSize)
+        {
+            this.batchSize = Math.max(1, Math.min(WikibaseRESTAccessor.MAX_IDS_PER_REQUEST, batchSize));
+            return this;
+        }
+
+        @Override
+        public RevisionRefresher withMaxRequestsPerSecond(double maxRequestsPerSecond)
+        {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            return this;
+        }
+
+        @Override
+        public synchronized RevisionRefresher start()
+        {
+            if (this.executor == null)
+            {
+                this.executor = Executors.newSingleThreadScheduledExecutor(runnable ->
+                {
+                    Thread thread = new Thread(runnable, "wiki-revision-refresher");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                this.executor.scheduleWithFixedDelay(this::refresh, this.interval, this.interval, TimeUnit.MILLISECONDS);
+            }
+            return this;
+        }
+
+        @Override
+        public RefreshStatistic refresh()
+        {
+            synchronized (this.refreshLock)
+            {
+                RefreshStatisticImpl statistic = new RefreshStatisticImpl();
+                long[] entityIds = this.cache.getEntityIds();
+                for (int ii = 0; ii < entityIds.length; ii += this.batchSize)
+                {
+                    try
+                    {
+                        this.refresh(Arrays.copyOfRange(entityIds, ii, Math.min(entityIds.length, ii + this.batchSize)), statistic);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread()
+                              .interrupt();
+                        break;
+                    }
+                    catch (Exception e)
+                    {
+                        statistic.numberOfErrors++;
+                    }
+                }
+                this.lastStatistic = statistic;
+                return statistic;
+            }
+        }
+
+        private void refresh(long[] entityIds, RefreshStatisticImpl statistic) throws InterruptedException
+        {
+            this.awaitRequestPermit();
+            Map<String, Long> entityIdToRevisionId = this.revisionIdsResolver.apply(EntityIdUtils.toStrings(entityIds));
+
+            EntityIdSet changedEntityIds = new EntityIdSet();
+            EntityIdSet removedEntityIds = new EntityIdSet();
+            for (long entityId : entityIds)
+            {
+                Long revisionId = entityIdToRevisionId.get(EntityIdUtils.toString(entityId));
+                if (revisionId == null)
+                {
+                    removedEntityIds.add(entityId);
+                }
+                else if (revisionId.longValue() != this.cache.getRevisionId(entityId))
+                {
+                    changedEntityIds.add(entityId);
+                }
+            }
+            statistic.numberOfChecked += entityIds.length;
+
+            if (!changedEntityIds.isEmpty())
+            {
+                this.awaitRequestPermit();
+                EntityIdMap<ItemDocument> entityIdToDocument = this.downloader.apply(changedEntityIds.toArray());
+                this.cache.replace(entityIdToDocument);
+                statistic.numberOfChanged += entityIdToDocument.size();
+            }
+            if (!removedEntityIds.isEmpty())
+            {
+                this.cache.remove(removedEntityIds.toArray());
+                statistic.numberOfRemoved += removedEntityIds.size();
+            }
+        }
+
+        private void awaitRequestPermit() throws InterruptedException
+        {
+            long now = System.currentTimeMillis();
+            if (this.nextRequestAt > now)
+            {
+                Thread.sleep(this.nextRequestAt - now);
+            }
+            this.nextRequestAt = Math.max(now, this.nextRequestAt) + (long) (1000 / this.maxRequestsPerSecond);
+        }
+
+        @Override
+        public RefreshStatistic getLastStatistic()
+        {
+            return this.lastStatistic;
+        }
+
+        @Override
+        public synchronized void close()
+        {
+            if (this.executor != null)
+            {
+                this.executor.shutdownNow();
+                this.executor = null;
+            }
+        }
+    }
+
+    /**
+     * Returns a new {@link RevisionRefresher} for the given {@link RefreshableCache}
+     * 
+     * @see WikibaseRESTAccessor#fetchRevisionIds(List)
+     * @param cache
+     * @param revisionIdsResolver
+     *            returns the last revision ids of the given entity ids, not existing entities must not be contained
+     * @param downloader
+     *            downloads the current {@link ItemDocument}s of the given entity ids
+     * @return
+     */
+    public static RevisionRefresher newRefresher(RefreshableCache cache, Function<List<String>, Map<String, Long>> revisionIdsResolver,
+                                                 Function<long[], EntityIdMap<ItemDocument>> downloader)
+    {
+        return new RevisionRefresherImpl(cache, revisionIdsResolver, downloader);
+    }
+}
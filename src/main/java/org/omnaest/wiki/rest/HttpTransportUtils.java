@@ -0,0 +1,865 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.rest;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpHeaders;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.utils.URIBuilder;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.metrics.MetricsUtils.Counter;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.Timer;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Shared http transport of the accessors. All requests go through one pool of keep-alive connections, so connections and TLS sessions are
+ * reused across accessors and calls.
+ * 
+ * @see HttpTransportUtils#shared()
+ */
+public class HttpTransportUtils
+{
+    public static final int    DEFAULT_MAX_CONNECTIONS          = 64;
+    public static final int    DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+    public static final int    DEFAULT_CONNECT_TIMEOUT          = 10000;
+    public static final int    DEFAULT_READ_TIMEOUT             = 60000;
+    public static final long   DEFAULT_IDLE_TIMEOUT             = 30000;
+    public static final long   DEFAULT_DEADLINE                 = 120000;
+    public static final String DEFAULT_USER_AGENT               = "WikiApi4J/0.0.1 (https://github.com/omnaest/WikiApi4J)";
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    /**
+     * Number of latencies per host, the hedging threshold is determined from
+     */
+    private static final int LATENCY_WINDOW_SIZE = 256;
+
+    /**
+     * Minimum number of latencies of a host before requests to it are hedged
+     */
+    private static final int MIN_HEDGING_SAMPLES = 20;
+
+    public static interface HttpTransport extends AutoCloseable
+    {
+        /**
+         * Returns a new {@link HttpRequest} to the given base url
+         * 
+         * @param baseUrl
+         * @return
+         */
+        public HttpRequest request(String baseUrl);
+
+        /**
+         * Maximum number of pooled connections over all hosts. Default is {@value HttpTransportUtils#DEFAULT_MAX_CONNECTIONS}
+         * 
+         * @param maxConnections
+         * @return
+         */
+        public HttpTransport withMaxConnections(int maxConnections);
+
+        /**
+         * Maximum number of concurrent connections to a single host. Default is {@value HttpTransportUtils#DEFAULT_MAX_CONNECTIONS_PER_HOST}
+         * 
+         * @param maxConnectionsPerHost
+         * @return
+         */
+        public HttpTransport withMaxConnectionsPerHost(int maxConnectionsPerHost);
+
+        /**
+         * Connect timeout in milliseconds. Default is {@value HttpTransportUtils#DEFAULT_CONNECT_TIMEOUT}
+         * 
+         * @param connectTimeout
+         * @return
+         */
+        public HttpTransport withConnectTimeout(int connectTimeout);
+
+        /**
+         * Socket read timeout in milliseconds. Default is {@value HttpTransportUtils#DEFAULT_READ_TIMEOUT}
+         * 
+         * @param readTimeout
+         * @return
+         */
+        public HttpTransport withReadTimeout(int readTimeout);
+
+        /**
+         * User agent sent with every request, the wikimedia apis require a descriptive one. Default is
+         * {@value HttpTransportUtils#DEFAULT_USER_AGENT}
+         * 
+         * @param userAgent
+         * @return
+         */
+        public HttpTransport withUserAgent(String userAgent);
+
+        /**
+         * Default deadline in milliseconds for the whole call, including all hedged attempts and reading the response. Calls exceeding it fail
+         * with a {@link DeadlineExceededException}. A deadline of 0 disables it. Default is {@value HttpTransportUtils#DEFAULT_DEADLINE}
+         * 
+         * @see HttpRequest#withDeadline(long)
+         * @param deadline
+         * @return
+         */
+        public HttpTransport withDeadline(long deadline);
+
+        /**
+         * Enables hedged requests: if a call is not answered within the given latency percentile of the recent calls to the same host, a
+         * duplicate request is sent and the first response wins, the other request is aborted. E.g. 0.95 hedges the slowest 5% of the calls.
+         * Hedging is disabled by default, since it sends additional requests.
+         * 
+         * @param percentile
+         *            between 0.0 and 1.0
+         * @return
+         */
+        public HttpTransport withHedging(double percentile);
+
+        /**
+         * Reports the requests, their latencies, the read bytes, the errors, the hedged requests and the exceeded deadlines to the given
+         * {@link MetricRegistry} under the <code>http.</code> prefix. Default is {@link MetricsUtils#shared()}
+         * 
+         * @param registry
+         * @return
+         */
+        public HttpTransport withMetrics(MetricRegistry registry);
+
+        public HttpTransportStatistic getStatistic();
+
+        @Override
+        public void close();
+    }
+
+    public static interface HttpRequest
+    {
+        public HttpRequest addPathToken(String pathToken);
+
+        public HttpRequest addQueryParameter(String key, String value);
+
+        public HttpRequest withHeader(String name, String value);
+
+        /**
+         * Overrides the deadline of the {@link HttpTransport} for this call
+         * 
+         * @see HttpTransport#withDeadline(long)
+         * @param deadline
+         * @return
+         */
+        public HttpRequest withDeadline(long deadline);
+
+        /**
+         * Executes the request and returns the response body
+         * 
+         * @throws HttpStatusException
+         *             if the response status is not 2xx
+         * @throws DeadlineExceededException
+         *             if no response is received within the deadline
+         * @return
+         */
+        public String get();
+
+        /**
+         * Executes the request and reads the json response body as the given type
+         * 
+         * @throws HttpStatusException
+         *             if the response status is not 2xx
+         * @throws DeadlineExceededException
+         *             if no response is received within the deadline
+         * @param type
+         * @return
+         */
+        public <T> T get(Class<T> type);
+    }
+
+    public static interface HttpTransportStatistic
+    {
+        public long getNumberOfRequests();
+
+        public int getNumberOfLeasedConnections();
+
+        public int getNumberOfAvailableConnections();
+
+        public int getNumberOfPendingRequests();
+
+        /**
+         * Number of duplicate requests sent because the first request exceeded the hedging threshold
+         * 
+         * @return
+         */
+        public long getNumberOfHedgedRequests();
+
+        public long getNumberOfExceededDeadlines();
+    }
+
+    public static class HttpStatusException extends IllegalStateException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        public HttpStatusException(URI uri, int statusCode)
+        {
+            super("Request failed with status " + statusCode + ": " + uri);
+            this.statusCode = statusCode;
+        }
+
+        public int getStatusCode()
+        {
+            return this.statusCode;
+        }
+    }
+
+    /**
+     * A call which has not been answered within its deadline. The requests of the call are aborted.
+     */
+    public static class DeadlineExceededException extends IllegalStateException
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final long deadline;
+
+        public DeadlineExceededException(URI uri, long deadline)
+        {
+            super("No response within " + deadline + "ms: " + uri);
+            this.deadline = deadline;
+        }
+
+        public long getDeadline()
+        {
+            return this.deadline;
+        }
+    }
+
+    private static class LatencyWindow
+    {
+        private long[] latencies = new long[LATENCY_WINDOW_SIZE];
+        private int    count     = 0;
+
+        public synchronized void record(long latency)
+        {
+            this.latencies[this.count++ % LATENCY_WINDOW_SIZE] = latency;
+        }
+
+        /**
+         * Returns the given percentile of the recent latencies or -1 if not enough latencies are known yet
+         * 
+         * @param percentile
+         * @return
+         */
+        public synchronized long determinePercentile(double percentile)
+        {
+            int size = Math.min(this.count, LATENCY_WINDOW_SIZE);
+            if (size < MIN_HEDGING_SAMPLES)
+            {
+                return -1;
+            }
+            long[] sortedLatencies = Arrays.copyOf(this.latencies, size);
+            Arrays.sort(sortedLatencies);
+            return sortedLatencies[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+        }
+    }
+
+    /**
+     * The first successful attempt of a call, or the failure of the last attempt if all attempts failed
+     * 
+     * @param <T>
+     */
+    private static class FirstResult<T>
+    {
+        private CompletableFuture<T> future          = new CompletableFuture<>();
+        private AtomicInteger        pendingAttempts = new AtomicInteger();
+        private List<HttpGet>        requests        = new CopyOnWriteArrayList<>();
+
+        public void add(HttpGet request)
+        {
+            this.pendingAttempts.incrementAndGet();
+            this.requests.add(request);
+        }
+
+        public void complete(T result)
+        {
+            this.future.complete(result);
+        }
+
+        public void fail(RuntimeException exception)
+        {
+            if (this.pendingAttempts.decrementAndGet() <= 0)
+            {
+                this.future.completeExceptionally(exception);
+            }
+        }
+
+        public T get(long timeout) throws TimeoutException
+        {
+            try
+            {
+                return timeout > 0 ? this.future.get(timeout, TimeUnit.MILLISECONDS) : this.future.get();
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IllegalStateException("Interrupted while waiting for the response", e);
+            }
+            catch (ExecutionException e)
+            {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : new IllegalStateException(e.getCause());
+            }
+        }
+
+        public void abort()
+        {
+            this.requests.forEach(HttpGet::abort);
+        }
+    }
+
+    private static class TransportMetrics
+    {
+        private Counter requests;
+        private Counter errors;
+        private Counter bytes;
+        private Counter hedgedRequests;
+        private Counter exceededDeadlines;
+        private Timer   latency;
+
+        public TransportMetrics(MetricRegistry registry)
+        {
+            super();
+            this.requests = registry.counter("http.requests");
+            this.errors = registry.counter("http.errors");
+            this.bytes = registry.counter("http.bytes");
+            this.hedgedRequests = registry.counter("http.hedged");
+            this.exceededDeadlines = registry.counter("http.deadline.exceeded");
+            this.latency = registry.timer("http.latency");
+        }
+    }
+
+    /**
+     * Counts the bytes read from the response body
+     */
+    private static class CountingEntity extends HttpEntityWrapper
+    {
+        private Counter bytes;
+
+        public CountingEntity(HttpEntity entity, Counter bytes)
+        {
+            super(entity);
+            this.bytes = bytes;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException
+        {
+            Counter bytes = this.bytes;
+            return new FilterInputStream(super.getContent())
+            {
+                @Override
+                public int read() throws IOException
+                {
+                    int value = super.read();
+                    if (value >= 0)
+                    {
+                        bytes.increment();
+                    }
+                    return value;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException
+                {
+                    int count = super.read(buffer, offset, length);
+                    if (count > 0)
+                    {
+                        bytes.add(count);
+                    }
+                    return count;
+                }
+            };
+        }
+    }
+
+    private static class HttpTransportImpl implements HttpTransport
+    {
+        private PoolingHttpClientConnectionManager connectionManager;
+        private CloseableHttpClient                httpClient;
+        private AtomicLong                         numberOfRequests          = new AtomicLong();
+        private AtomicLong                         numberOfHedgedRequests    = new AtomicLong();
+        private AtomicLong                         numberOfExceededDeadlines = new AtomicLong();
+        private Map<String, LatencyWindow>         hostToLatencies           = new ConcurrentHashMap<>();
+        private ExecutorService                    executor                  = Executors.newCachedThreadPool(HttpTransportImpl::newDaemonThread);
+        private volatile RequestConfig             requestConfig;
+        private volatile int                       connectTimeout            = DEFAULT_CONNECT_TIMEOUT;
+        private volatile int                       readTimeout               = DEFAULT_READ_TIMEOUT;
+        private volatile String                    userAgent                 = DEFAULT_USER_AGENT;
+        private volatile long                      deadline                  = DEFAULT_DEADLINE;
+        private volatile double                    hedgingPercentile         = 0.0;
+        private volatile TransportMetrics          metrics                   = new TransportMetrics(MetricsUtils.shared());
+
+        public HttpTransportImpl()
+        {
+            super();
+            this.connectionManager = new PoolingHttpClientConnectionManager(DEFAULT_IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+            this.connectionManager.setMaxTotal(DEFAULT_MAX_CONNECTIONS);
+            this.connectionManager.setDefaultMaxPerRoute(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+            this.connectionManager.setValidateAfterInactivity(2000);
+            this.httpClient = HttpClients.custom()
+                                         .setConnectionManager(this.connectionManager)
+                                         .evictExpiredConnections()
+                                         .evictIdleConnections(DEFAULT_IDLE_TIMEOUT, TimeUnit.MILLISECONDS)
+                                         .build();
+            this.updateRequestConfig();
+        }
+
+        private static Thread newDaemonThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "wiki-http-call");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+        @Override
+        public HttpRequest request(String baseUrl)
+        {
+            return new HttpRequestImpl(this, baseUrl);
+        }
+
+        @Override
+        public HttpTransport withMaxConnections(int maxConnections)
+        {
+            this.connectionManager.setMaxTotal(maxConnections);
+            return this;
+        }
+
+        @Override
+        public HttpTransport withMaxConnectionsPerHost(int maxConnectionsPerHost)
+        {
+            this.connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+            return this;
+        }
+
+        @Override
+        public HttpTransport withConnectTimeout(int connectTimeout)
+        {
+            this.connectTimeout = connectTimeout;
+            this.updateRequestConfig();
+            return this;
+        }
+
+        @Override
+        public HttpTransport withReadTimeout(int readTimeout)
+        {
+            this.readTimeout = readTimeout;
+            this.updateRequestConfig();
+            return this;
+        }
+
+        @Override
+        public HttpTransport withUserAgent(String userAgent)
+        {
+            this.userAgent = userAgent;
+            return this;
+        }
+
+        @Override
+        public HttpTransport withDeadline(long deadline)
+        {
+            this.deadline = deadline;
+            return this;
+        }
+
+        @Override
+        public HttpTransport withHedging(double percentile)
+        {
+            this.hedgingPercentile = percentile;
+            return this;
+        }
+
+        @Override
+        public HttpTransport withMetrics(MetricRegistry registry)
+        {
+            this.metrics = new TransportMetrics(registry);
+            return this;
+        }
+
+        private void updateRequestConfig()
+        {
+            this.requestConfig = RequestConfig.custom()
+                                              .setConnectTimeout(this.connectTimeout)
+                                              .setConnectionRequestTimeout(this.connectTimeout)
+                                              .setSocketTimeout(this.readTimeout)
+                                              .build();
+        }
+
+        @Override
+        public HttpTransportStatistic getStatistic()
+        {
+            PoolStats poolStats = this.connectionManager.getTotalStats();
+            long numberOfRequests = this.numberOfRequests.get();
+            long numberOfHedgedRequests = this.numberOfHedgedRequests.get();
+            long numberOfExceededDeadlines = this.numberOfExceededDeadlines.get();
+            return new HttpTransportStatistic()
+            {
+                @Override
+                public long getNumberOfRequests()
+                {
+                    return numberOfRequests;
+                }
+
+                @Override
+                public int getNumberOfLeasedConnections()
+                {
+                    return poolStats.getLeased();
+                }
+
+                @Override
+                public int getNumberOfAvailableConnections()
+                {
+                    return poolStats.getAvailable();
+                }
+
+                @Override
+                public int getNumberOfPendingRequests()
+                {
+                    return poolStats.getPending();
+                }
+
+                @Override
+                public long getNumberOfHedgedRequests()
+                {
+                    return numberOfHedgedRequests;
+                }
+
+                @Override
+                public long getNumberOfExceededDeadlines()
+                {
+                    return numberOfExceededDeadlines;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "HttpTransportStatistic [requests=" + numberOfRequests + ", hedged=" + numberOfHedgedRequests + ", exceededDeadlines="
+                            + numberOfExceededDeadlines + ", leased=" + poolStats.getLeased() + ", available=" + poolStats.getAvailable()
+                            + ", pending=" + poolStats.getPending() + "]";
+                }
+            };
+        }
+
+        @Override
+        public void close()
+        {
+            this.executor.shutdownNow();
+            try
+            {
+                this.httpClient.close();
+            }
+            catch (IOException e)
+            {
+                // the pool is shut down anyhow
+            }
+        }
+
+        /**
+         * Executes the call and records its latency for the hedging from the start of the first attempt, including calls which exceed their
+         * deadline, so the slow calls are not missing within the recent latencies
+         * 
+         * @param uri
+         * @param headers
+         * @param callDeadline
+         * @param reader
+         * @return
+         */
+        private <T> T execute(URI uri, Map<String, String> headers, long callDeadline, ResponseReader<T> reader)
+        {
+            long deadline = callDeadline >= 0 ? callDeadline : this.deadline;
+            long hedgeDelay = this.hedgingPercentile > 0.0 ? this.determineLatencies(uri).determinePercentile(this.hedgingPercentile) : -1;
+            long startTime = System.currentTimeMillis();
+            if (deadline <= 0 && hedgeDelay < 0)
+            {
+                T value = this.executeAttempt(this.newRequest(uri, headers), reader);
+                this.recordLatency(uri, startTime);
+                return value;
+            }
+
+            FirstResult<T> result = new FirstResult<>();
+            try
+            {
+                T value = this.awaitFirstResult(uri, headers, reader, result, deadline, hedgeDelay, startTime);
+                this.recordLatency(uri, startTime);
+                return value;
+            }
+            catch (TimeoutException e)
+            {
+                this.recordLatency(uri, startTime);
+                this.numberOfExceededDeadlines.incrementAndGet();
+                this.metrics.exceededDeadlines.increment();
+                throw new DeadlineExceededException(uri, deadline);
+            }
+            finally
+            {
+                // aborts the slower attempts, completed ones have released their connections already
+                result.abort();
+            }
+        }
+
+        private <T> T awaitFirstResult(URI uri, Map<String, String> headers, ResponseReader<T> reader, FirstResult<T> result, long deadline,
+                                       long hedgeDelay, long startTime)
+                throws TimeoutException
+        {
+            this.submitAttempt(uri, headers, reader, result);
+            if (hedgeDelay >= 0 && (deadline <= 0 || hedgeDelay < deadline))
+            {
+                try
+                {
+                    return result.get(Math.max(1, hedgeDelay));
+                }
+                catch (TimeoutException e)
+                {
+                    this.numberOfHedgedRequests.incrementAndGet();
+                    this.metrics.hedgedRequests.increment();
+                    this.submitAttempt(uri, headers, reader, result);
+                }
+            }
+            long remainingTime = deadline - (System.currentTimeMillis() - startTime);
+            if (deadline > 0 && remainingTime <= 0)
+            {
+                throw new TimeoutException();
+            }
+            return result.get(deadline > 0 ? remainingTime : 0);
+        }
+
+        private void recordLatency(URI uri, long startTime)
+        {
+            this.determineLatencies(uri)
+                .record(System.currentTimeMillis() - startTime);
+        }
+
+        private <T> void submitAttempt(URI uri, Map<String, String> headers, ResponseReader<T> reader, FirstResult<T> result)
+        {
+            HttpGet request = this.newRequest(uri, headers);
+            result.add(request);
+            this.executor.execute(() ->
+            {
+                try
+                {
+                    result.complete(this.executeAttempt(request, reader));
+                }
+                catch (RuntimeException e)
+                {
+                    result.fail(e);
+                }
+            });
+        }
+
+        private HttpGet newRequest(URI uri, Map<String, String> headers)
+        {
+            HttpGet request = new HttpGet(uri);
+            request.setConfig(this.requestConfig);
+            request.setHeader(HttpHeaders.USER_AGENT, this.userAgent);
+            headers.forEach(request::setHeader);
+            return request;
+        }
+
+        private LatencyWindow determineLatencies(URI uri)
+        {
+            return this.hostToLatencies.computeIfAbsent(uri.getHost() + ":" + uri.getPort(), host -> new LatencyWindow());
+        }
+
+        private <T> T executeAttempt(HttpGet request, ResponseReader<T> reader)
+        {
+            URI uri = request.getURI();
+            TransportMetrics metrics = this.metrics;
+            long startTime = System.currentTimeMillis();
+            this.numberOfRequests.incrementAndGet();
+            metrics.requests.increment();
+            try (CloseableHttpResponse response = this.httpClient.execute(request))
+            {
+                int statusCode = response.getStatusLine()
+                                         .getStatusCode();
+                HttpEntity entity = response.getEntity();
+                if (statusCode < 200 || statusCode >= 300)
+                {
+                    // consuming the entity releases the connection back into the pool
+                    EntityUtils.consumeQuietly(entity);
+                    throw new HttpStatusException(uri, statusCode);
+                }
+                if (entity == null)
+                {
+                    return null;
+                }
+                try
+                {
+                    T result = reader.read(new CountingEntity(entity, metrics.bytes));
+                    metrics.latency.record(System.currentTimeMillis() - startTime, TimeUnit.MILLISECONDS);
+                    return result;
+                }
+                finally
+                {
+                    EntityUtils.consumeQuietly(entity);
+                }
+            }
+            catch (IOException e)
+            {
+                metrics.errors.increment();
+                throw new UncheckedIOException("Request failed: " + uri, e);
+            }
+            catch (RuntimeException e)
+            {
+                metrics.errors.increment();
+                throw e;
+            }
+        }
+    }
+
+    private static interface ResponseReader<T>
+    {
+        public T read(HttpEntity entity) throws IOException;
+    }
+
+    private static class HttpRequestImpl implements HttpRequest
+    {
+        private HttpTransportImpl   transport;
+        private String              baseUrl;
+        private List<String>        pathTokens      = new ArrayList<>();
+        private Map<String, String> queryParameters = new LinkedHashMap<>();
+        private Map<String, String> headers         = new LinkedHashMap<>();
+        private long                deadline        = -1;
+
+        public HttpRequestImpl(HttpTransportImpl transport, String baseUrl)
+        {
+            super();
+            this.transport = transport;
+            this.baseUrl = baseUrl;
+            this.headers.put(HttpHeaders.ACCEPT, "application/json");
+        }
+
+        @Override
+        public HttpRequest addPathToken(String pathToken)
+        {
+            this.pathTokens.add(pathToken);
+            return this;
+        }
+
+        @Override
+        public HttpRequest addQueryParameter(String key, String value)
+        {
+            this.queryParameters.put(key, value);
+            return this;
+        }
+
+        @Override
+        public HttpRequest withHeader(String name, String value)
+        {
+            this.headers.put(name, value);
+            return this;
+        }
+
+        @Override
+        public HttpRequest withDeadline(long deadline)
+        {
+            this.deadline = deadline;
+            return this;
+        }
+
+        @Override
+        public String get()
+        {
+            return this.transport.execute(this.toUri(), this.headers, this.deadline, entity -> EntityUtils.toString(entity, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public <T> T get(Class<T> type)
+        {
+            return this.transport.execute(this.toUri(), this.headers, this.deadline, entity ->
+            {
+                try (InputStream inputStream = entity.getContent())
+                {
+                    return OBJECT_MAPPER.readValue(inputStream, type);
+                }
+            });
+        }
+
+        private URI toUri()
+        {
+            try
+            {
+                URIBuilder builder = new URIBuilder(this.baseUrl);
+                if (!this.pathTokens.isEmpty())
+                {
+                    builder.setPath(StringUtils.removeEnd(StringUtils.defaultString(builder.getPath()), "/") + "/"
+                            + String.join("/", this.pathTokens));
+                }
+                this.queryParameters.forEach(builder::addParameter);
+                return builder.build();
+            }
+            catch (URISyntaxException e)
+            {
+                throw new IllegalArgumentException("Invalid url: " + this.baseUrl, e);
+            }
+        }
+    }
+
+    private static class SharedTransportHolder
+    {
+        private static final HttpTransport INSTANCE = new HttpTransportImpl();
+    }
+
+    /**
+     * Returns the {@link HttpTransport} shared by all accessors of this process, which are not given an own {@link HttpTransport}
+     * 
+     * @return
+     */
+    public static HttpTransport shared()
+    {
+        return SharedTransportHolder.INSTANCE;
+    }
+
+    public static HttpTransport newInstance()
+    {
+        return new HttpTransportImpl();
+    }
+}
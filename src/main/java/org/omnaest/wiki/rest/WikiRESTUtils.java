@@ -20,18 +20,31 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 import org.apache.commons.lang3.RegExUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.HttpHeaders;
 import org.omnaest.utils.ListUtils;
 import org.omnaest.utils.PredicateUtils;
 import org.omnaest.utils.StreamUtils;
-import org.omnaest.utils.rest.client.RestClient;
+import org.omnaest.wiki.cache.TieredCacheUtils;
+import org.omnaest.wiki.cache.TieredCacheUtils.Codec;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCache;
+import org.omnaest.wiki.closure.SubclassClosureUtils.SubclassClosure;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.metrics.MetricsUtils.Counter;
+import org.omnaest.wiki.metrics.MetricsUtils.Histogram;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.Timer;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonIgnore;
@@ -447,6 +460,12 @@ public class WikiRESTUtils
     {
         public static final String DEFAULT_WIKIDATA_URL = "https://query.wikidata.org";
 
+        /**
+         * Caches the {@link SPARQLResult} pages within a local log store
+         * 
+         * @see TieredCacheUtils#newLocalCache(String, Codec)
+         * @return
+         */
         public WikiRESTAccessor usingLocalCache();
 
         public SPARQLResult fetch(Consumer<SPARQLExpression> expressionConsumer);
@@ -467,18 +486,74 @@ public class WikiRESTUtils
          */
         public WikiRESTAccessor connectTo(String url);
 
+        /**
+         * Rewrites {@link SPARQLProperties#INSTANCE_OF} filters like "wdt:P31/wdt:P279* wd:Q5" into a plain "wdt:P31" lookup joined with a
+         * VALUES set of the subclasses resolved by the given {@link SubclassClosure}. Filters of classes with a subclass closure exceeding the
+         * maximum size of the {@link SubclassClosure} are sent unchanged.
+         * 
+         * @param subclassClosure
+         * @return
+         */
+        public WikiRESTAccessor withSubclassClosure(SubclassClosure subclassClosure);
+
+        /**
+         * Caches the {@link SPARQLResult} pages within the given {@link TieredCache}, keyed by the url and the query
+         * 
+         * @see TieredCacheUtils#newFactory()
+         * @param cache
+         * @return
+         */
+        public WikiRESTAccessor withCache(TieredCache<SPARQLResult> cache);
+
+        /**
+         * Returns a new {@link WikiRESTAccessor} with the same settings, which sends every query to the server without the {@link TieredCache}
+         * of this one, e.g. for results which are refreshed by the caller
+         * 
+         * @return
+         */
+        public WikiRESTAccessor withoutCache();
+
+        /**
+         * Sends the queries using the given {@link HttpTransport}. Default is {@link HttpTransportUtils#shared()}
+         * 
+         * @param transport
+         * @return
+         */
+        public WikiRESTAccessor withTransport(HttpTransport transport);
+
+        /**
+         * Reports the number of fetched {@link SPARQLResult} pages, the latency of the pages not answered by the cache and the number of bindings
+         * per page to the given {@link MetricRegistry} under the <code>sparql.</code> prefix. Default is {@link MetricsUtils#shared()}
+         * 
+         * @param registry
+         * @return
+         */
+        public WikiRESTAccessor withMetrics(MetricRegistry registry);
+
     }
 
     private static class WikiRESTAccessorImpl implements WikiRESTAccessor
     {
-        private RestClient restClient = RestClient.newJSONRestClient();
-        private String     url        = DEFAULT_WIKIDATA_URL;
+        private static final Pattern INSTANCE_OF_FILTER = Pattern.compile("^wdt:P31/wdt:P279\\* wd:(Q[0-9]+)$");
+
+        private HttpTransport             transport  = HttpTransportUtils.shared();
+        private String                    url        = DEFAULT_WIKIDATA_URL;
+        private SubclassClosure           subclassClosure;
+        private TieredCache<SPARQLResult> cache;
+        private Counter                   pages;
+        private Timer                     latency;
+        private Histogram                 bindings;
+
+        public WikiRESTAccessorImpl()
+        {
+            super();
+            this.withMetrics(MetricsUtils.shared());
+        }
 
         @Override
         public SPARQLResults fetchStream(Consumer<SPARQLFilterExpression> expressionConsumer)
         {
-            SPARQLFilterExpression expression = new SPARQLFilterExpression();
-            expressionConsumer.accept(expression);
+            SPARQLFilterExpression expression = this.rewriteInstanceOfFilters(expressionConsumer);
             return new SPARQLResults()
             {
                 @Override
@@ -501,26 +576,89 @@ public class WikiRESTUtils
             };
         }
 
+        private SPARQLFilterExpression rewriteInstanceOfFilters(Consumer<SPARQLFilterExpression> expressionConsumer)
+        {
+            SPARQLFilterExpression expression = new SPARQLFilterExpression();
+            expressionConsumer.accept(expression);
+            if (this.subclassClosure == null)
+            {
+                return expression;
+            }
+
+            SPARQLFilterExpression rewrittenExpression = new SPARQLFilterExpression();
+            List<SPARQLFilter> filters = expression.getFilters();
+            for (int ii = 0; ii < filters.size(); ii++)
+            {
+                SPARQLFilter filter = filters.get(ii);
+                rewrittenExpression.addFilter(filter.getName(), this.rewriteInstanceOfFilter(filter.getValue(), "class" + (ii + 1)));
+            }
+            return rewrittenExpression;
+        }
+
+        private String rewriteInstanceOfFilter(String filterValue, String classVariable)
+        {
+            Matcher matcher = INSTANCE_OF_FILTER.matcher(filterValue);
+            if (!matcher.matches())
+            {
+                return filterValue;
+            }
+            return this.subclassClosure.getSubclasses(matcher.group(1))
+                                       .map(classIds -> this.createClassValuesFilter(classVariable, classIds))
+                                       .orElse(filterValue);
+        }
+
+        private String createClassValuesFilter(String classVariable, Set<String> classIds)
+        {
+            String values = classIds.stream()
+                                    .map(classId -> "wd:" + classId)
+                                    .collect(Collectors.joining(" "));
+            return "wdt:P31 ?" + classVariable + ". VALUES ?" + classVariable + " { " + values + " }";
+        }
+
         @Override
         public SPARQLResult fetch(Consumer<SPARQLExpression> expressionConsumer)
         {
             SPARQLExpression expression = new SPARQLExpression();
             expressionConsumer.accept(expression);
             String expressionBody = expression.asString();
-            return this.restClient.request()
-                                  .toUrl(builder -> builder.setBaseUrl(this.url)
-                                                           .addPathToken("sparql")
-                                                           .addQueryParameter("query", expressionBody))
-                                  .get(SPARQLResult.class);
+            Supplier<SPARQLResult> request = () -> this.latency.time(() -> this.transport.request(this.url)
+                                                                                         .addPathToken("sparql")
+                                                                                         .addQueryParameter("query", expressionBody)
+                                                                                         .withHeader(HttpHeaders.ACCEPT,
+                                                                                                     "application/sparql-results+json")
+                                                                                         .get(SPARQLResult.class));
+            SPARQLResult result = this.cache != null ? this.cache.computeIfAbsent(this.url + "/sparql?" + expressionBody, request) : request.get();
+            this.pages.increment();
+            this.bindings.record(Optional.ofNullable(result)
+                                         .map(SPARQLResult::getBindings)
+                                         .map(List::size)
+                                         .orElse(0));
+            return result;
         }
 
         @Override
-        public WikiRESTAccessor usingLocalCache()
+        public WikiRESTAccessor withMetrics(MetricRegistry registry)
+        {
+            this.pages = registry.counter("sparql.pages");
+            this.latency = registry.timer("sparql.page.latency");
+            this.bindings = registry.histogram("sparql.page.bindings");
+            return this;
+        }
+
+        @Override
+        public WikiRESTAccessor withTransport(HttpTransport transport)
         {
-            this.restClient = this.restClient.withLocalCache("wiki-rest-calls-" + this.determineFileNameFromUrl(this.url));
+            this.transport = transport;
             return this;
         }
 
+        @Override
+        public WikiRESTAccessor usingLocalCache()
+        {
+            return this.withCache(TieredCacheUtils.newLocalCache("wiki-rest-calls-" + this.determineFileNameFromUrl(this.url),
+                                                                 Codec.json(SPARQLResult.class)));
+        }
+
         private String determineFileNameFromUrl(String url)
         {
             return StringUtils.removeEnd(RegExUtils.replaceAll(url, "[^a-zA-Z]+", "-"), "-");
@@ -550,6 +688,33 @@ public class WikiRESTUtils
             this.url = url;
             return this;
         }
+
+        @Override
+        public WikiRESTAccessor withCache(TieredCache<SPARQLResult> cache)
+        {
+            this.cache = cache;
+            return this;
+        }
+
+        @Override
+        public WikiRESTAccessor withoutCache()
+        {
+            WikiRESTAccessorImpl accessor = new WikiRESTAccessorImpl();
+            accessor.transport = this.transport;
+            accessor.url = this.url;
+            accessor.subclassClosure = this.subclassClosure;
+            accessor.pages = this.pages;
+            accessor.latency = this.latency;
+            accessor.bindings = this.bindings;
+            return accessor;
+        }
+
+        @Override
+        public WikiRESTAccessor withSubclassClosure(SubclassClosure subclassClosure)
+        {
+            this.subclassClosure = subclassClosure;
+            return this;
+        }
     }
 
     public static WikiRESTAccessor newInstance()
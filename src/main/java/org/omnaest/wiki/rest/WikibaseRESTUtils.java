@@ -0,0 +1,431 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.rest;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpRequest;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.DatamodelMapper;
+import org.wikidata.wdtk.datamodel.implementation.EntityDocumentImpl;
+import org.wikidata.wdtk.datamodel.interfaces.EntityDocument;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Access to the Wikibase action api (api.php) of wikidata
+ */
+public class WikibaseRESTUtils
+{
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class EntityInfo
+    {
+        @JsonProperty
+        private String id;
+
+        @JsonProperty("lastrevid")
+        private long lastRevisionId;
+
+        @JsonProperty
+        private String missing;
+
+        public String getId()
+        {
+            return this.id;
+        }
+
+        public long getLastRevisionId()
+        {
+            return this.lastRevisionId;
+        }
+
+        public boolean isMissing()
+        {
+            return this.missing != null;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "EntityInfo [id=" + this.id + ", lastRevisionId=" + this.lastRevisionId + ", missing=" + this.isMissing() + "]";
+        }
+
+    }
+
+    /**
+     * Error of the api, which is answered with status 200, e.g. for the codes "ratelimited", "maxlag" or "readonly"
+     */
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ApiError
+    {
+        @JsonProperty
+        private String code;
+
+        @JsonProperty
+        private String info;
+
+        public String getCode()
+        {
+            return this.code;
+        }
+
+        public String getInfo()
+        {
+            return this.info;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "ApiError [code=" + this.code + ", info=" + this.info + "]";
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static abstract class EntitiesResponse
+    {
+        @JsonProperty
+        private ApiError error;
+
+        public Optional<ApiError> getError()
+        {
+            return Optional.ofNullable(this.error);
+        }
+
+        /**
+         * Returns true, if the response contains the entities field, which is absent for an {@link ApiError}
+         * 
+         * @return
+         */
+        public abstract boolean hasEntities();
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class EntityInfos extends EntitiesResponse
+    {
+        @JsonProperty
+        private Map<String, EntityInfo> entities;
+
+        @Override
+        public boolean hasEntities()
+        {
+            return this.entities != null;
+        }
+
+        public Map<String, EntityInfo> getEntities()
+        {
+            return Optional.ofNullable(this.entities)
+                           .orElse(Collections.emptyMap());
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class EntityDocuments extends EntitiesResponse
+    {
+        @JsonProperty
+        private Map<String, JsonNode> entities;
+
+        @Override
+        public boolean hasEntities()
+        {
+            return this.entities != null;
+        }
+
+        public Map<String, JsonNode> getEntities()
+        {
+            return Optional.ofNullable(this.entities)
+                           .orElse(Collections.emptyMap());
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SearchHit
+    {
+        @JsonProperty
+        private String id;
+
+        public String getId()
+        {
+            return this.id;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "SearchHit [id=" + this.id + "]";
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class SearchHits
+    {
+        @JsonProperty
+        private List<SearchHit> search;
+
+        public List<SearchHit> getSearch()
+        {
+            return Optional.ofNullable(this.search)
+                           .orElse(Collections.emptyList());
+        }
+
+    }
+
+    public static interface WikibaseRESTAccessor
+    {
+        public static final String DEFAULT_WIKIBASE_URL = "https://www.wikidata.org";
+
+        /**
+         * The maximum number of entity ids the api accepts in a single request
+         */
+        public static final int MAX_IDS_PER_REQUEST = 50;
+
+        /**
+         * Fetches the last revision ids of the given entities with the lightweight info properties only. The ids are sent in blocks of
+         * {@value #MAX_IDS_PER_REQUEST}.
+         * <br>
+         * <br>
+         * The returned {@link Map} is keyed by the requested entity ids, entities which do not exist (anymore) are not contained. An
+         * {@link ApiError} or a response without entities fails with an {@link IllegalStateException}, so they are never mistaken for
+         * deleted entities.
+         * 
+         * @param entityIds
+         * @return
+         */
+        public Map<String, Long> fetchRevisionIds(List<String> entityIds);
+
+        /**
+         * Fetches the full {@link ItemDocument}s of the given entities. The ids are sent in blocks of {@value #MAX_IDS_PER_REQUEST}.
+         * <br>
+         * <br>
+         * The returned {@link Map} is keyed by the requested entity ids, entities which do not exist or are no items are not contained. A
+         * redirected entity is returned under its requested id with the {@link ItemDocument} of the redirect target.
+         * 
+         * @param entityIds
+         * @return
+         */
+        public Map<String, ItemDocument> fetchItemDocuments(List<String> entityIds);
+
+        /**
+         * Searches items by their labels and aliases in the given language and returns the ids of the matching items in the order of their
+         * relevance
+         * 
+         * @param query
+         * @param languageKey
+         * @return
+         */
+        public List<String> searchEntities(String query, String languageKey);
+
+        /**
+         * Allows to specify the wikibase url. Default is {@value #DEFAULT_WIKIBASE_URL}
+         * 
+         * @param url
+         * @return
+         */
+        public WikibaseRESTAccessor connectTo(String url);
+
+        /**
+         * Sends the requests using the given {@link HttpTransport}. Default is {@link HttpTransportUtils#shared()}
+         * 
+         * @param transport
+         * @return
+         */
+        public WikibaseRESTAccessor withTransport(HttpTransport transport);
+    }
+
+    private static class WikibaseRESTAccessorImpl implements WikibaseRESTAccessor
+    {
+        private HttpTransport   transport       = HttpTransportUtils.shared();
+        private String          url             = DEFAULT_WIKIBASE_URL;
+        private DatamodelMapper datamodelMapper = new DatamodelMapper(Datamodel.SITE_WIKIDATA);
+
+        @Override
+        public Map<String, Long> fetchRevisionIds(List<String> entityIds)
+        {
+            Map<String, Long> entityIdToRevisionId = new LinkedHashMap<>();
+            for (int ii = 0; ii < entityIds.size(); ii += MAX_IDS_PER_REQUEST)
+            {
+                this.fetchEntityInfos(entityIds.subList(ii, Math.min(entityIds.size(), ii + MAX_IDS_PER_REQUEST)))
+                    .getEntities()
+                    .forEach((entityId, info) ->
+                    {
+                        if (!info.isMissing() && StringUtils.isNotBlank(info.getId()))
+                        {
+                            entityIdToRevisionId.put(entityId, info.getLastRevisionId());
+                        }
+                    });
+            }
+            return entityIdToRevisionId;
+        }
+
+        private EntityInfos fetchEntityInfos(List<String> entityIds)
+        {
+            String idsParameter = entityIds.stream()
+                                           .filter(StringUtils::isNotBlank)
+                                           .distinct()
+                                           .collect(Collectors.joining("|"));
+            if (idsParameter.isEmpty())
+            {
+                return new EntityInfos();
+            }
+
+            return validate(Optional.ofNullable(this.newApiRequest("wbgetentities")
+                                                    .addQueryParameter("props", "info")
+                                                    .addQueryParameter("ids", idsParameter)
+                                                    .get(EntityInfos.class))
+                                    .orElseThrow(() -> new IllegalStateException("No entity infos received for: " + idsParameter)),
+                            idsParameter);
+        }
+
+        @Override
+        public Map<String, ItemDocument> fetchItemDocuments(List<String> entityIds)
+        {
+            Map<String, ItemDocument> entityIdToDocument = new LinkedHashMap<>();
+            for (int ii = 0; ii < entityIds.size(); ii += MAX_IDS_PER_REQUEST)
+            {
+                this.fetchEntityDocuments(entityIds.subList(ii, Math.min(entityIds.size(), ii + MAX_IDS_PER_REQUEST)))
+                    .getEntities()
+                    .forEach((entityId, node) ->
+                    {
+                        // the entities are keyed by the requested id, which differs from the id of the document for a redirect
+                        if (!node.has("missing"))
+                        {
+                            EntityDocument document = this.toEntityDocument(node);
+                            if (document instanceof ItemDocument)
+                            {
+                                entityIdToDocument.put(entityId, (ItemDocument) document);
+                            }
+                        }
+                    });
+            }
+            return entityIdToDocument;
+        }
+
+        private EntityDocuments fetchEntityDocuments(List<String> entityIds)
+        {
+            String idsParameter = entityIds.stream()
+                                           .filter(StringUtils::isNotBlank)
+                                           .distinct()
+                                           .collect(Collectors.joining("|"));
+            if (idsParameter.isEmpty())
+            {
+                return new EntityDocuments();
+            }
+
+            return validate(Optional.ofNullable(this.newApiRequest("wbgetentities")
+                                                    .addQueryParameter("ids", idsParameter)
+                                                    .get(EntityDocuments.class))
+                                    .orElseThrow(() -> new IllegalStateException("No entity documents received for: " + idsParameter)),
+                            idsParameter);
+        }
+
+        private static <R extends EntitiesResponse> R validate(R response, String idsParameter)
+        {
+            response.getError()
+                    .ifPresent(error ->
+                    {
+                        throw new IllegalStateException("Api error for: " + idsParameter + " " + error);
+                    });
+            if (!response.hasEntities())
+            {
+                throw new IllegalStateException("No entities received for: " + idsParameter);
+            }
+            return response;
+        }
+
+        private EntityDocument toEntityDocument(JsonNode node)
+        {
+            try
+            {
+                return this.datamodelMapper.reader()
+                                           .with(DeserializationFeature.ACCEPT_EMPTY_ARRAY_AS_NULL_OBJECT)
+                                           .treeToValue(node, EntityDocumentImpl.class);
+            }
+            catch (JsonProcessingException e)
+            {
+                throw new IllegalStateException("Unable to read entity document: " + node.path("id")
+                                                                                         .asText(),
+                                                e);
+            }
+        }
+
+        @Override
+        public List<String> searchEntities(String query, String languageKey)
+        {
+            if (StringUtils.isBlank(query))
+            {
+                return Collections.emptyList();
+            }
+
+            return Optional.ofNullable(this.newApiRequest("wbsearchentities")
+                                           .addQueryParameter("search", query)
+                                           .addQueryParameter("language", languageKey)
+                                           .addQueryParameter("type", "item")
+                                           .get(SearchHits.class))
+                           .map(SearchHits::getSearch)
+                           .orElse(Collections.emptyList())
+                           .stream()
+                           .map(SearchHit::getId)
+                           .filter(StringUtils::isNotBlank)
+                           .collect(Collectors.toList());
+        }
+
+        private HttpRequest newApiRequest(String action)
+        {
+            return this.transport.request(this.url)
+                                 .addPathToken("w")
+                                 .addPathToken("api.php")
+                                 .addQueryParameter("action", action)
+                                 .addQueryParameter("format", "json");
+        }
+
+        @Override
+        public WikibaseRESTAccessor connectTo(String url)
+        {
+            this.url = url;
+            this.datamodelMapper = new DatamodelMapper(DEFAULT_WIKIBASE_URL.equals(url) ? Datamodel.SITE_WIKIDATA
+                    : StringUtils.removeEnd(url, "/") + "/entity/");
+            return this;
+        }
+
+        @Override
+        public WikibaseRESTAccessor withTransport(HttpTransport transport)
+        {
+            this.transport = transport;
+            return this;
+        }
+    }
+
+    public static WikibaseRESTAccessor newInstance()
+    {
+        return new WikibaseRESTAccessorImpl();
+    }
+}
@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.rest;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.RegExUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.cache.TieredCacheUtils;
+import org.omnaest.wiki.cache.TieredCacheUtils.Codec;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCache;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpRequest;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+public class WikipediaRESTUtils
+{
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class TitleMapping
+    {
+        @JsonProperty
+        private String from;
+
+        @JsonProperty
+        private String to;
+
+        public String getFrom()
+        {
+            return this.from;
+        }
+
+        public String getTo()
+        {
+            return this.to;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "TitleMapping [from=" + this.from + ", to=" + this.to + "]";
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Page
+    {
+        @JsonProperty
+        private String title;
+
+        @JsonProperty
+        private String extract;
+
+        @JsonProperty
+        private boolean missing;
+
+        public String getTitle()
+        {
+            return this.title;
+        }
+
+        public String getExtract()
+        {
+            return this.extract;
+        }
+
+        public boolean isMissing()
+        {
+            return this.missing;
+        }
+
+        @Override
+        public String toString()
+        {
+            return "Page [title=" + this.title + ", missing=" + this.missing + "]";
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class Query
+    {
+        @JsonProperty
+        private List<TitleMapping> normalized;
+
+        @JsonProperty
+        private List<TitleMapping> redirects;
+
+        @JsonProperty
+        private List<Page> pages;
+
+        public List<TitleMapping> getNormalized()
+        {
+            return Optional.ofNullable(this.normalized)
+                           .orElse(Collections.emptyList());
+        }
+
+        public List<TitleMapping> getRedirects()
+        {
+            return Optional.ofNullable(this.redirects)
+                           .orElse(Collections.emptyList());
+        }
+
+        public List<Page> getPages()
+        {
+            return Optional.ofNullable(this.pages)
+                           .orElse(Collections.emptyList());
+        }
+
+    }
+
+    @JsonIgnoreProperties(ignoreUnknown = true)
+    public static class ExtractsResult
+    {
+        @JsonProperty("continue")
+        private Map<String, String> continuation;
+
+        @JsonProperty
+        private Query query;
+
+        public Map<String, String> getContinuation()
+        {
+            return Optional.ofNullable(this.continuation)
+                           .orElse(Collections.emptyMap());
+        }
+
+        public Optional<Query> getQuery()
+        {
+            return Optional.ofNullable(this.query);
+        }
+
+    }
+
+    public static interface WikipediaRESTAccessor
+    {
+        public static final String DEFAULT_WIKIPEDIA_URL = "https://en.wikipedia.org";
+
+        /**
+         * The maximum number of titles the api accepts in a single request
+         */
+        public static final int MAX_TITLES_PER_REQUEST = 50;
+
+        /**
+         * The maximum number of extracts the api returns per response for whole articles. Further extracts of the same titles are only
+         * returned by following the continuation, so whole articles are requested one title at a time.
+         */
+        public static final int MAX_ARTICLE_EXTRACTS_PER_REQUEST = 1;
+
+        /**
+         * The maximum number of extracts the api returns per response for the introductions of the articles
+         * 
+         * @see #usingIntroductionsOnly()
+         */
+        public static final int MAX_INTRODUCTION_EXTRACTS_PER_REQUEST = 20;
+
+        /**
+         * Caches the responses of the api within a local log store
+         * 
+         * @see TieredCacheUtils#newLocalCache(String, Codec)
+         * @return
+         */
+        public WikipediaRESTAccessor usingLocalCache();
+
+        /**
+         * Fetches only the introductions of the articles, that is the text before the first section. The api returns up to
+         * {@value #MAX_INTRODUCTION_EXTRACTS_PER_REQUEST} introductions per response, instead of a single whole article.
+         * 
+         * @return
+         */
+        public WikipediaRESTAccessor usingIntroductionsOnly();
+
+        /**
+         * Fetches the plain text extracts of the given article titles. The api returns only {@value #MAX_ARTICLE_EXTRACTS_PER_REQUEST} whole
+         * article per response, so the titles are requested one at a time. With {@link #usingIntroductionsOnly()} the titles are sent in
+         * blocks of {@value #MAX_TITLES_PER_REQUEST} and the continuation of the api is followed until all extracts of a block are returned.
+         * <br>
+         * <br>
+         * The returned {@link Map} is keyed by the given titles, titles without an article are not contained.
+         * 
+         * @param titles
+         * @return
+         */
+        public Map<String, String> fetchPlainTexts(List<String> titles);
+
+        /**
+         * Allows to specify the wikipedia url. Default is {@value #DEFAULT_WIKIPEDIA_URL}
+         * 
+         * @param url
+         * @return
+         */
+        public WikipediaRESTAccessor connectTo(String url);
+
+        /**
+         * Sends the requests using the given {@link HttpTransport}. Default is {@link HttpTransportUtils#shared()}
+         * 
+         * @param transport
+         * @return
+         */
+        public WikipediaRESTAccessor withTransport(HttpTransport transport);
+    }
+
+    private static class WikipediaRESTAccessorImpl implements WikipediaRESTAccessor
+    {
+        private HttpTransport               transport         = HttpTransportUtils.shared();
+        private String                      url               = DEFAULT_WIKIPEDIA_URL;
+        private TieredCache<ExtractsResult> cache;
+        private boolean                     introductionsOnly = false;
+
+        @Override
+        public Map<String, String> fetchPlainTexts(List<String> titles)
+        {
+            int blockSize = this.introductionsOnly ? MAX_TITLES_PER_REQUEST : MAX_ARTICLE_EXTRACTS_PER_REQUEST;
+            Map<String, String> titleToText = new LinkedHashMap<>();
+            for (int ii = 0; ii < titles.size(); ii += blockSize)
+            {
+                titleToText.putAll(this.fetchPlainTextBlock(titles.subList(ii, Math.min(titles.size(), ii + blockSize))));
+            }
+            return titleToText;
+        }
+
+        private Map<String, String> fetchPlainTextBlock(List<String> titles)
+        {
+            String titlesParameter = titles.stream()
+                                           .filter(StringUtils::isNotBlank)
+                                           .distinct()
+                                           .collect(Collectors.joining("|"));
+            if (titlesParameter.isEmpty())
+            {
+                return Collections.emptyMap();
+            }
+
+            Map<String, String> titleToResolvedTitle = new HashMap<>();
+            Map<String, String> resolvedTitleToText = new HashMap<>();
+            Map<String, String> continuation = Collections.emptyMap();
+            do
+            {
+                ExtractsResult result = this.fetchExtracts(titlesParameter, continuation);
+                if (result == null)
+                {
+                    break;
+                }
+
+                result.getQuery()
+                      .ifPresent(query ->
+                      {
+                          query.getNormalized()
+                               .forEach(mapping -> titleToResolvedTitle.put(mapping.getFrom(), mapping.getTo()));
+                          query.getRedirects()
+                               .forEach(mapping -> titleToResolvedTitle.put(mapping.getFrom(), mapping.getTo()));
+                          query.getPages()
+                               .stream()
+                               .filter(page -> !page.isMissing())
+                               .filter(page -> StringUtils.isNotBlank(page.getExtract()))
+                               .forEach(page -> resolvedTitleToText.put(page.getTitle(), page.getExtract()));
+                      });
+                continuation = result.getContinuation();
+            } while (!continuation.isEmpty());
+
+            Map<String, String> titleToText = new LinkedHashMap<>();
+            titles.forEach(title ->
+            {
+                String resolvedTitle = title;
+                for (int depth = 0; depth < 3 && titleToResolvedTitle.containsKey(resolvedTitle); depth++)
+                {
+                    resolvedTitle = titleToResolvedTitle.get(resolvedTitle);
+                }
+                String text = resolvedTitleToText.get(resolvedTitle);
+                if (text != null)
+                {
+                    titleToText.put(title, text);
+                }
+            });
+            return titleToText;
+        }
+
+        private ExtractsResult fetchExtracts(String titlesParameter, Map<String, String> continuation)
+        {
+            if (this.cache == null)
+            {
+                return this.requestExtracts(titlesParameter, continuation);
+            }
+            String path = this.introductionsOnly ? "/introductions?" : "/extracts?";
+            String key = this.url + path + titlesParameter + "&" + new TreeMap<>(continuation);
+            return this.cache.computeIfAbsent(key, () -> this.requestExtracts(titlesParameter, continuation));
+        }
+
+        private ExtractsResult requestExtracts(String titlesParameter, Map<String, String> continuation)
+        {
+            HttpRequest request = this.transport.request(this.url)
+                                                .addPathToken("w")
+                                                .addPathToken("api.php")
+                                                .addQueryParameter("action", "query")
+                                                .addQueryParameter("format", "json")
+                                                .addQueryParameter("formatversion", "2")
+                                                .addQueryParameter("prop", "extracts")
+                                                .addQueryParameter("explaintext", "1")
+                                                .addQueryParameter("exsectionformat", "plain")
+                                                .addQueryParameter("exlimit", "max")
+                                                .addQueryParameter("redirects", "1")
+                                                .addQueryParameter("titles", titlesParameter);
+            if (this.introductionsOnly)
+            {
+                request.addQueryParameter("exintro", "1");
+            }
+            continuation.forEach(request::addQueryParameter);
+            return request.get(ExtractsResult.class);
+        }
+
+        @Override
+        public WikipediaRESTAccessor usingIntroductionsOnly()
+        {
+            this.introductionsOnly = true;
+            return this;
+        }
+
+        @Override
+        public WikipediaRESTAccessor usingLocalCache()
+        {
+            this.cache = TieredCacheUtils.newLocalCache("wikipedia-rest-calls-" + this.determineFileNameFromUrl(this.url),
+                                                        Codec.json(ExtractsResult.class));
+            return this;
+        }
+
+        private String determineFileNameFromUrl(String url)
+        {
+            return StringUtils.removeEnd(RegExUtils.replaceAll(url, "[^a-zA-Z]+", "-"), "-");
+        }
+
+        @Override
+        public WikipediaRESTAccessor connectTo(String url)
+        {
+            this.url = url;
+            return this;
+        }
+
+        @Override
+        public WikipediaRESTAccessor withTransport(HttpTransport transport)
+        {
+            this.transport = transport;
+            return this;
+        }
+    }
+
+    public static WikipediaRESTAccessor newInstance()
+    {
+        return new WikipediaRESTAccessorImpl();
+    }
+}
@@ -0,0 +1,486 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.WikiUtils.LanguageProvider;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.MonolingualTextValue;
+
+/**
+ * In memory inverted index over the labels, aliases and descriptions of {@link ItemDocument}s
+ */
+public class LabelIndexUtils
+{
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    public static enum Field
+    {
+        LABEL(4.0f), ALIAS(2.0f), DESCRIPTION(1.0f);
+
+        private float weight;
+
+        private Field(float weight)
+        {
+            this.weight = weight;
+        }
+
+        public float getWeight()
+        {
+            return this.weight;
+        }
+    }
+
+    public static interface LabelIndex
+    {
+        /**
+         * Adds the labels, aliases and descriptions of the given {@link ItemDocument} to the index. Already indexed entities are replaced.
+         * 
+         * @param document
+         * @return
+         */
+        public LabelIndex add(ItemDocument document);
+
+        public default LabelIndex addAll(Collection<ItemDocument> documents)
+        {
+            documents.forEach(this::add);
+            return this;
+        }
+
+        public default LabelIndex addAll(Stream<ItemDocument> documents)
+        {
+            documents.forEach(this::add);
+            return this;
+        }
+
+        /**
+         * Restricts the indexed texts to the given languages. Has to be called before any {@link ItemDocument} is added. Default is all
+         * languages.
+         * 
+         * @param languages
+         * @return
+         */
+        public LabelIndex withLanguages(LanguageProvider... languages);
+
+        /**
+         * Returns the best matching entities for the given query. All tokens of the query have to match a token of the entity, the last token
+         * of the query is matched as prefix. Hits are ordered by descending score, which prefers label over alias over description matches
+         * and exact token over prefix matches.
+         * 
+         * @param query
+         * @param limit
+         * @return
+         */
+        public List<SearchHit> search(String query, int limit);
+
+        public boolean contains(String entityId);
+
+        public int size();
+    }
+
+    public static interface SearchHit
+    {
+        public String getEntityId();
+
+        public float getScore();
+    }
+
+    private static class Postings
+    {
+        private int[]   documents = new int[2];
+        private float[] weights   = new float[2];
+        private int     size      = 0;
+
+        public void add(int document, float weight)
+        {
+            if (this.size > 0 && this.documents[this.size - 1] == document)
+            {
+                this.weights[this.size - 1] = Math.max(this.weights[this.size - 1], weight);
+                return;
+            }
+            if (this.size == this.documents.length)
+            {
+                this.documents = Arrays.copyOf(this.documents, this.size * 2);
+                this.weights = Arrays.copyOf(this.weights, this.size * 2);
+            }
+            this.documents[this.size] = document;
+            this.weights[this.size] = weight;
+            this.size++;
+        }
+
+        public void remove(int document)
+        {
+            int target = 0;
+            for (int ii = 0; ii < this.size; ii++)
+            {
+                if (this.documents[ii] != document)
+                {
+                    this.documents[target] = this.documents[ii];
+                    this.weights[target] = this.weights[ii];
+                    target++;
+                }
+            }
+            this.size = target;
+        }
+
+        public boolean isEmpty()
+        {
+            return this.size == 0;
+        }
+    }
+
+    private static class LabelIndexImpl implements LabelIndex
+    {
+        private static final int MAX_PREFIX_EXPANSIONS = 512;
+
+        private ReadWriteLock                  lock               = new ReentrantReadWriteLock();
+        private Set<String>                    languages          = null;
+        private List<String>                   documentToEntityId = new ArrayList<>();
+        private Map<String, Integer>           entityIdToDocument = new HashMap<>();
+        private Map<Integer, Set<String>>      documentToTokens   = new HashMap<>();
+        private Map<Integer, Set<String>>      documentToLabels   = new HashMap<>();
+        private NavigableMap<String, Postings> tokenToPostings    = new TreeMap<>();
+        private Map<String, Postings>          labelToPostings    = new HashMap<>();
+
+        @Override
+        public LabelIndex withLanguages(LanguageProvider... languages)
+        {
+            this.languages = Arrays.asList(languages)
+                                   .stream()
+                                   .map(LanguageProvider::getKey)
+                                   .collect(Collectors.toSet());
+            return this;
+        }
+
+        @Override
+        public LabelIndex add(ItemDocument document)
+        {
+            String entityId = document.getEntityId()
+                                      .getId();
+
+            Map<String, Float> tokenToWeight = new HashMap<>();
+            Set<String> labels = new HashSet<>();
+            document.getLabels()
+                    .values()
+                    .stream()
+                    .filter(this::isIndexedLanguage)
+                    .forEach(label ->
+                    {
+                        this.tokenize(label.getText(), Field.LABEL, tokenToWeight);
+                        labels.add(this.normalize(label.getText()));
+                    });
+            document.getAliases()
+                    .values()
+                    .stream()
+                    .flatMap(List::stream)
+                    .filter(this::isIndexedLanguage)
+                    .forEach(alias ->
+                    {
+                        this.tokenize(alias.getText(), Field.ALIAS, tokenToWeight);
+                        labels.add(this.normalize(alias.getText()));
+                    });
+            document.getDescriptions()
+                    .values()
+                    .stream()
+                    .filter(this::isIndexedLanguage)
+                    .forEach(description -> this.tokenize(description.getText(), Field.DESCRIPTION, tokenToWeight));
+
+            this.lock.writeLock()
+                     .lock();
+            try
+            {
+                Integer documentIndex = this.entityIdToDocument.get(entityId);
+                if (documentIndex != null)
+                {
+                    this.removeDocument(documentIndex);
+                }
+                else
+                {
+                    documentIndex = this.documentToEntityId.size();
+                    this.documentToEntityId.add(entityId);
+                    this.entityIdToDocument.put(entityId, documentIndex);
+                }
+
+                int currentDocumentIndex = documentIndex;
+                tokenToWeight.forEach((token, weight) -> this.tokenToPostings.computeIfAbsent(token, t -> new Postings())
+                                                                             .add(currentDocumentIndex, weight));
+                labels.forEach(label -> this.labelToPostings.computeIfAbsent(label, l -> new Postings())
+                                                            .add(currentDocumentIndex, Field.LABEL.getWeight()));
+                this.documentToTokens.put(documentIndex, tokenToWeight.keySet());
+                this.documentToLabels.put(documentIndex, labels);
+            }
+            finally
+            {
+                this.lock.writeLock()
+                         .unlock();
+            }
+            return this;
+        }
+
+        private void removeDocument(int documentIndex)
+        {
+            this.documentToTokens.getOrDefault(documentIndex, Collections.emptySet())
+                                 .forEach(token -> this.removePosting(this.tokenToPostings, token, documentIndex));
+            this.documentToLabels.getOrDefault(documentIndex, Collections.emptySet())
+                                 .forEach(label -> this.removePosting(this.labelToPostings, label, documentIndex));
+        }
+
+        private void removePosting(Map<String, Postings> keyToPostings, String key, int documentIndex)
+        {
+            Postings postings = keyToPostings.get(key);
+            if (postings != null)
+            {
+                postings.remove(documentIndex);
+                if (postings.isEmpty())
+                {
+                    keyToPostings.remove(key);
+                }
+            }
+        }
+
+        private boolean isIndexedLanguage(MonolingualTextValue value)
+        {
+            return this.languages == null || this.languages.contains(value.getLanguageCode());
+        }
+
+        private void tokenize(String text, Field field, Map<String, Float> tokenToWeight)
+        {
+            for (String token : this.tokenize(text))
+            {
+                tokenToWeight.merge(token, field.getWeight(), Math::max);
+            }
+        }
+
+        private List<String> tokenize(String text)
+        {
+            return Arrays.asList(TOKEN_SEPARATOR.split(this.normalize(text)))
+                         .stream()
+                         .filter(StringUtils::isNotEmpty)
+                         .collect(Collectors.toList());
+        }
+
+        private String normalize(String text)
+        {
+            return StringUtils.stripAccents(StringUtils.defaultString(text))
+                              .toLowerCase(Locale.ROOT)
+                              .trim();
+        }
+
+        @Override
+        public List<SearchHit> search(String query, int limit)
+        {
+            List<String> tokens = this.tokenize(query);
+            if (tokens.isEmpty() || limit <= 0)
+            {
+                return Collections.emptyList();
+            }
+
+            this.lock.readLock()
+                     .lock();
+            try
+            {
+                Map<Integer, float[]> documentToScore = null;
+                for (int ii = 0; ii < tokens.size(); ii++)
+                {
+                    boolean isLastToken = ii == tokens.size() - 1;
+                    Map<Integer, float[]> tokenDocumentToScore = this.determineTokenScores(tokens.get(ii), isLastToken);
+                    if (documentToScore == null)
+                    {
+                        documentToScore = tokenDocumentToScore;
+                    }
+                    else
+                    {
+                        Map<Integer, float[]> previousDocumentToScore = documentToScore;
+                        documentToScore = new HashMap<>();
+                        for (Map.Entry<Integer, float[]> entry : tokenDocumentToScore.entrySet())
+                        {
+                            float[] previousScore = previousDocumentToScore.get(entry.getKey());
+                            if (previousScore != null)
+                            {
+                                previousScore[0] += entry.getValue()[0];
+                                documentToScore.put(entry.getKey(), previousScore);
+                            }
+                        }
+                    }
+                    if (documentToScore.isEmpty())
+                    {
+                        return Collections.emptyList();
+                    }
+                }
+
+                Postings exactLabelMatches = this.labelToPostings.get(this.normalize(query));
+                if (exactLabelMatches != null)
+                {
+                    for (int ii = 0; ii < exactLabelMatches.size; ii++)
+                    {
+                        float[] score = documentToScore.get(exactLabelMatches.documents[ii]);
+                        if (score != null)
+                        {
+                            score[0] += 2 * Field.LABEL.getWeight() * tokens.size();
+                        }
+                    }
+                }
+
+                return this.determineTopHits(documentToScore, limit);
+            }
+            finally
+            {
+                this.lock.readLock()
+                         .unlock();
+            }
+        }
+
+        private Map<Integer, float[]> determineTokenScores(String token, boolean matchPrefix)
+        {
+            Map<Integer, float[]> documentToScore = new HashMap<>();
+            Postings exactPostings = this.tokenToPostings.get(token);
+            if (exactPostings != null)
+            {
+                this.mergeScores(documentToScore, exactPostings, 1.0f);
+            }
+            if (matchPrefix)
+            {
+                this.tokenToPostings.subMap(token, false, token + Character.MAX_VALUE, false)
+                                    .values()
+                                    .stream()
+                                    .limit(MAX_PREFIX_EXPANSIONS)
+                                    .forEach(postings -> this.mergeScores(documentToScore, postings, 0.5f));
+            }
+            return documentToScore;
+        }
+
+        private void mergeScores(Map<Integer, float[]> documentToScore, Postings postings, float factor)
+        {
+            for (int ii = 0; ii < postings.size; ii++)
+            {
+                float weight = postings.weights[ii] * factor;
+                float[] score = documentToScore.computeIfAbsent(postings.documents[ii], document -> new float[1]);
+                score[0] = Math.max(score[0], weight);
+            }
+        }
+
+        private List<SearchHit> determineTopHits(Map<Integer, float[]> documentToScore, int limit)
+        {
+            Comparator<Map.Entry<Integer, float[]>> comparator = Comparator.comparing((Map.Entry<Integer, float[]> entry) -> entry.getValue()[0])
+                                                                           .thenComparing(entry -> -this.determineEntityNumber(entry.getKey()));
+            PriorityQueue<Map.Entry<Integer, float[]>> topEntries = new PriorityQueue<>(limit + 1, comparator);
+            for (Map.Entry<Integer, float[]> entry : documentToScore.entrySet())
+            {
+                topEntries.add(entry);
+                if (topEntries.size() > limit)
+                {
+                    topEntries.poll();
+                }
+            }
+
+            List<SearchHit> hits = new ArrayList<>(topEntries.size());
+            while (!topEntries.isEmpty())
+            {
+                Map.Entry<Integer, float[]> entry = topEntries.poll();
+                hits.add(this.newSearchHit(this.documentToEntityId.get(entry.getKey()), entry.getValue()[0]));
+            }
+            Collections.reverse(hits);
+            return hits;
+        }
+
+        private long determineEntityNumber(int document)
+        {
+            String entityId = this.documentToEntityId.get(document);
+            return StringUtils.isNumeric(entityId.substring(1)) ? Long.parseLong(entityId.substring(1)) : Long.MAX_VALUE;
+        }
+
+        private SearchHit newSearchHit(String entityId, float score)
+        {
+            return new SearchHit()
+            {
+                @Override
+                public String getEntityId()
+                {
+                    return entityId;
+                }
+
+                @Override
+                public float getScore()
+                {
+                    return score;
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "SearchHit [entityId=" + entityId + ", score=" + score + "]";
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(String entityId)
+        {
+            this.lock.readLock()
+                     .lock();
+            try
+            {
+                return this.entityIdToDocument.containsKey(entityId);
+            }
+            finally
+            {
+                this.lock.readLock()
+                         .unlock();
+            }
+        }
+
+        @Override
+        public int size()
+        {
+            this.lock.readLock()
+                     .lock();
+            try
+            {
+                return this.entityIdToDocument.size();
+            }
+            finally
+            {
+                this.lock.readLock()
+                         .unlock();
+            }
+        }
+    }
+
+    public static LabelIndex newInstance()
+    {
+        return new LabelIndexImpl();
+    }
+}
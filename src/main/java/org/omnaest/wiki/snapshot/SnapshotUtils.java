@@ -0,0 +1,378 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.snapshot;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.omnaest.wiki.filter.FilterBitmapUtils;
+import org.omnaest.wiki.filter.FilterBitmapUtils.FilterBitmapCache;
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.roaringbitmap.RoaringBitmap;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+/**
+ * Snapshots of the in memory caches of a {@link org.omnaest.wiki.WikiUtils.WikiAccessor} within a single gzip compressed file.<br>
+ * <br>
+ * The file contains the filter bitmaps of a {@link FilterBitmapCache} first, followed by the {@link ItemDocument}s as length prefixed json
+ * records. A snapshot is loaded in a background thread and the json records are parsed in parallel chunks, so the caches fill up while the
+ * loading is still in progress.
+ */
+public class SnapshotUtils
+{
+    private static final int MAGIC       = 0x57534E50;
+    private static final int VERSION     = 1;
+    private static final int END_OF_DATA = -1;
+
+    public static interface SnapshotStatistic
+    {
+        public long getNumberOfEntities();
+
+        public int getNumberOfFilters();
+
+        public Duration getDuration();
+    }
+
+    public static interface SnapshotWriter
+    {
+        public SnapshotWriter withDocuments(Collection<ItemDocument> documents);
+
+        public SnapshotWriter withFilterBitmaps(FilterBitmapCache filterBitmapCache);
+
+        /**
+         * Writes the snapshot into a temporary file first and moves it to the given {@link File} afterwards, so a concurrently loaded snapshot is
+         * never partially written.
+         * 
+         * @param file
+         * @return
+         */
+        public SnapshotStatistic writeTo(File file);
+    }
+
+    public static interface SnapshotLoader
+    {
+        /**
+         * Number of threads parsing the entity records. Default is the number of available processors.
+         * 
+         * @param parallelism
+         * @return
+         */
+        public SnapshotLoader withParallelism(int parallelism);
+
+        /**
+         * Number of entity records per parsed chunk. Default is 1000.
+         * 
+         * @param chunkSize
+         * @return
+         */
+        public SnapshotLoader withChunkSize(int chunkSize);
+
+        /**
+         * Loads the given snapshot file in the background. The filter bitmaps are put into the given {@link FilterBitmapCache} and the parsed
+         * {@link ItemDocument}s are passed chunk wise to the given {@link Consumer}, which is called from multiple threads.
+         * 
+         * @param file
+         * @param documentsConsumer
+         * @param filterBitmapCache
+         * @return
+         */
+        public CompletableFuture<SnapshotStatistic> load(File file, Consumer<EntityIdMap<ItemDocument>> documentsConsumer,
+                                                         FilterBitmapCache filterBitmapCache);
+    }
+
+    private static SnapshotStatistic newStatistic(long numberOfEntities, int numberOfFilters, Duration duration)
+    {
+        return new SnapshotStatistic()
+        {
+            @Override
+            public long getNumberOfEntities()
+            {
+                return numberOfEntities;
+            }
+
+            @Override
+            public int getNumberOfFilters()
+            {
+                return numberOfFilters;
+            }
+
+            @Override
+            public Duration getDuration()
+            {
+                return duration;
+            }
+
+            @Override
+            public String toString()
+            {
+                return "SnapshotStatistic [numberOfEntities=" + numberOfEntities + ", numberOfFilters=" + numberOfFilters + ", duration=" + duration
+                        + "]";
+            }
+        };
+    }
+
+    private static class SnapshotWriterImpl implements SnapshotWriter
+    {
+        private Collection<ItemDocument> documents         = Collections.emptyList();
+        private FilterBitmapCache        filterBitmapCache = FilterBitmapUtils.newCache();
+
+        @Override
+        public SnapshotWriter withDocuments(Collection<ItemDocument> documents)
+        {
+            this.documents = documents;
+            return this;
+        }
+
+        @Override
+        public SnapshotWriter withFilterBitmaps(FilterBitmapCache filterBitmapCache)
+        {
+            this.filterBitmapCache = filterBitmapCache;
+            return this;
+        }
+
+        @Override
+        public SnapshotStatistic writeTo(File file)
+        {
+            long startTime = System.currentTimeMillis();
+            File temporaryFile = new File(file.getAbsoluteFile()
+                                              .getParentFile(),
+                                          file.getName() + ".tmp");
+            temporaryFile.getParentFile()
+                         .mkdirs();
+
+            int numberOfFilters = 0;
+            long numberOfEntities = 0;
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temporaryFile),
+                                                                                                                   64 * 1024))))
+            {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(VERSION);
+
+                List<String> filterKeys = new ArrayList<>(this.filterBitmapCache.getFilterKeys());
+                outputStream.writeInt(filterKeys.size());
+                for (String filterKey : filterKeys)
+                {
+                    RoaringBitmap bitmap = this.filterBitmapCache.get(filterKey)
+                                                                 .orElseGet(RoaringBitmap::new);
+                    outputStream.writeUTF(filterKey);
+                    bitmap.serialize(outputStream);
+                    numberOfFilters++;
+                }
+
+                for (ItemDocument document : this.documents)
+                {
+                    byte[] json = JsonSerializer.getJsonString(document)
+                                                .getBytes(StandardCharsets.UTF_8);
+                    outputStream.writeInt(json.length);
+                    outputStream.write(json);
+                    numberOfEntities++;
+                }
+                outputStream.writeInt(END_OF_DATA);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to write snapshot: " + file, e);
+            }
+
+            try
+            {
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to move snapshot to: " + file, e);
+            }
+            return newStatistic(numberOfEntities, numberOfFilters, Duration.ofMillis(System.currentTimeMillis() - startTime));
+        }
+    }
+
+    private static class SnapshotLoaderImpl implements SnapshotLoader
+    {
+        private int parallelism = Runtime.getRuntime()
+                                         .availableProcessors();
+        private int chunkSize   = 1000;
+
+        @Override
+        public SnapshotLoader withParallelism(int parallelism)
+        {
+            this.parallelism = Math.max(1, parallelism);
+            return this;
+        }
+
+        @Override
+        public SnapshotLoader withChunkSize(int chunkSize)
+        {
+            this.chunkSize = Math.max(1, chunkSize);
+            return this;
+        }
+
+        @Override
+        public CompletableFuture<SnapshotStatistic> load(File file, Consumer<EntityIdMap<ItemDocument>> documentsConsumer,
+                                                         FilterBitmapCache filterBitmapCache)
+        {
+            CompletableFuture<SnapshotStatistic> result = new CompletableFuture<>();
+            Thread thread = new Thread(() ->
+            {
+                try
+                {
+                    result.complete(this.loadSynchronously(file, documentsConsumer, filterBitmapCache));
+                }
+                catch (Throwable e)
+                {
+                    result.completeExceptionally(e);
+                }
+            }, "wiki-snapshot-loader");
+            thread.setDaemon(true);
+            thread.start();
+            return result;
+        }
+
+        private SnapshotStatistic loadSynchronously(File file, Consumer<EntityIdMap<ItemDocument>> documentsConsumer,
+                                                    FilterBitmapCache filterBitmapCache)
+            throws IOException, InterruptedException
+        {
+            long startTime = System.currentTimeMillis();
+            AtomicLong numberOfEntities = new AtomicLong();
+            AtomicReference<Exception> parseException = new AtomicReference<>();
+            int numberOfFilters;
+
+            ExecutorService executorService = Executors.newFixedThreadPool(this.parallelism, runnable ->
+            {
+                Thread thread = new Thread(runnable, "wiki-snapshot-parser");
+                thread.setDaemon(true);
+                return thread;
+            });
+            Semaphore chunksInFlight = new Semaphore(2 * this.parallelism);
+            try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file), 64 * 1024))))
+            {
+                if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION)
+                {
+                    throw new IllegalStateException("Not a snapshot of a supported version: " + file);
+                }
+
+                numberOfFilters = inputStream.readInt();
+                for (int ii = 0; ii < numberOfFilters; ii++)
+                {
+                    String filterKey = inputStream.readUTF();
+                    RoaringBitmap bitmap = new RoaringBitmap();
+                    bitmap.deserialize(inputStream);
+                    filterBitmapCache.put(filterKey, bitmap);
+                }
+
+                List<byte[]> chunk = new ArrayList<>(this.chunkSize);
+                int length;
+                while ((length = inputStream.readInt()) != END_OF_DATA && parseException.get() == null)
+                {
+                    byte[] json = new byte[length];
+                    inputStream.readFully(json);
+                    chunk.add(json);
+                    if (chunk.size() >= this.chunkSize)
+                    {
+                        this.submitChunk(chunk, documentsConsumer, numberOfEntities, parseException, executorService, chunksInFlight);
+                        chunk = new ArrayList<>(this.chunkSize);
+                    }
+                }
+                this.submitChunk(chunk, documentsConsumer, numberOfEntities, parseException, executorService, chunksInFlight);
+            }
+            finally
+            {
+                executorService.shutdown();
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            }
+
+            if (parseException.get() != null)
+            {
+                throw new IllegalStateException("Unable to parse snapshot: " + file, parseException.get());
+            }
+            return newStatistic(numberOfEntities.get(), numberOfFilters, Duration.ofMillis(System.currentTimeMillis() - startTime));
+        }
+
+        private void submitChunk(List<byte[]> chunk, Consumer<EntityIdMap<ItemDocument>> documentsConsumer, AtomicLong numberOfEntities,
+                                 AtomicReference<Exception> parseException, ExecutorService executorService, Semaphore chunksInFlight)
+            throws InterruptedException
+        {
+            if (chunk.isEmpty())
+            {
+                return;
+            }
+
+            chunksInFlight.acquire();
+            executorService.submit(() ->
+            {
+                try
+                {
+                    JsonDeserializer deserializer = new JsonDeserializer(Datamodel.SITE_WIKIDATA);
+                    EntityIdMap<ItemDocument> entityIdToDocument = new EntityIdMap<>(chunk.size());
+                    for (byte[] json : chunk)
+                    {
+                        ItemDocument document = deserializer.deserializeItemDocument(new String(json, StandardCharsets.UTF_8));
+                        entityIdToDocument.put(EntityIdUtils.parse(document.getEntityId()
+                                                                           .getId()),
+                                               document);
+                    }
+                    documentsConsumer.accept(entityIdToDocument);
+                    numberOfEntities.addAndGet(entityIdToDocument.size());
+                }
+                catch (Exception e)
+                {
+                    parseException.compareAndSet(null, e);
+                }
+                finally
+                {
+                    chunksInFlight.release();
+                }
+            });
+        }
+    }
+
+    public static SnapshotWriter newWriter()
+    {
+        return new SnapshotWriterImpl();
+    }
+
+    public static SnapshotLoader newLoader()
+    {
+        return new SnapshotLoaderImpl();
+    }
+}
@@ -0,0 +1,474 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.store;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.repository.nitrite.NitriteRepositoryUtils;
+import org.omnaest.utils.cache.Cache;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.helpers.JsonDeserializer;
+import org.wikidata.wdtk.datamodel.helpers.JsonSerializer;
+import org.wikidata.wdtk.datamodel.interfaces.EntityIdValue;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+import org.wikidata.wdtk.datamodel.interfaces.Statement;
+import org.wikidata.wdtk.datamodel.interfaces.StatementGroup;
+
+public class EntityStoreUtils
+{
+    /**
+     * instance of (P31), country (P17) and located in the administrative territorial entity (P131)
+     */
+    public static final String[] DEFAULT_INDEXED_PROPERTIES = { "P31", "P17", "P131" };
+
+    /**
+     * Local store of {@link ItemDocument}s indexed by their entity id
+     * 
+     * @see EntityStoreUtils#newInMemoryStore()
+     * @see EntityStoreUtils#newLocalStore(String)
+     */
+    public static interface EntityStore
+    {
+        public EntityStore put(ItemDocument document);
+
+        public default EntityStore putAll(Collection<ItemDocument> documents)
+        {
+            documents.forEach(this::put);
+            return this;
+        }
+
+        public Optional<ItemDocument> get(String entityId);
+
+        /**
+         * Returns the {@link ItemDocument}s for the given entity ids, entity ids not contained in the store are omitted.
+         * 
+         * @param entityIds
+         * @return
+         */
+        public default Map<String, ItemDocument> getAll(List<String> entityIds)
+        {
+            Map<String, ItemDocument> entityIdToDocument = new LinkedHashMap<>();
+            entityIds.forEach(entityId -> this.get(entityId)
+                                              .ifPresent(document -> entityIdToDocument.put(entityId, document)));
+            return entityIdToDocument;
+        }
+
+        public Stream<String> getEntityIds();
+
+        public default boolean contains(String entityId)
+        {
+            return this.get(entityId)
+                       .isPresent();
+        }
+
+        /**
+         * Returns true if the values of the given property are indexed and can be queried using {@link #findByPropertyValue(String, String)}
+         * 
+         * @param propertyId
+         * @return
+         */
+        public default boolean isIndexed(String propertyId)
+        {
+            return false;
+        }
+
+        /**
+         * Returns the entity ids of all {@link ItemDocument}s which have a statement of the given property with the given entity as value, e.g.
+         * ("P31", "Q5") returns all humans within the store. Returns an empty {@link Stream} if the property is not indexed.
+         * 
+         * @see #isIndexed(String)
+         * @see #isComplete()
+         * @param propertyId
+         * @param valueEntityId
+         * @return
+         */
+        public default Stream<String> findByPropertyValue(String propertyId, String valueEntityId)
+        {
+            return Stream.empty();
+        }
+
+        /**
+         * Returns true if the store contains all entities of its source including all their statements, e.g. after the ingestion of a full
+         * dump. Only then the result of {@link #findByPropertyValue(String, String)} is final, otherwise it can miss entities which have not
+         * been stored yet.
+         * 
+         * @return
+         */
+        public default boolean isComplete()
+        {
+            return false;
+        }
+
+        /**
+         * Marks the store as containing all entities of its source or not. Stores which can not keep this flag ignore it and stay incomplete.
+         * 
+         * @see #isComplete()
+         * @param complete
+         * @return
+         */
+        public default EntityStore markComplete(boolean complete)
+        {
+            return this;
+        }
+    }
+
+    private static class InMemoryEntityStore implements EntityStore
+    {
+        private Map<String, ItemDocument> entityIdToDocument = new ConcurrentHashMap<>();
+        private volatile boolean          complete           = false;
+
+        @Override
+        public EntityStore put(ItemDocument document)
+        {
+            this.entityIdToDocument.put(document.getEntityId()
+                                                .getId(),
+                                        document);
+            return this;
+        }
+
+        @Override
+        public Optional<ItemDocument> get(String entityId)
+        {
+            return Optional.ofNullable(this.entityIdToDocument.get(entityId));
+        }
+
+        @Override
+        public Stream<String> getEntityIds()
+        {
+            return this.entityIdToDocument.keySet()
+                                          .stream();
+        }
+
+        @Override
+        public boolean contains(String entityId)
+        {
+            return this.entityIdToDocument.containsKey(entityId);
+        }
+
+        @Override
+        public boolean isComplete()
+        {
+            return this.complete;
+        }
+
+        @Override
+        public EntityStore markComplete(boolean complete)
+        {
+            this.complete = complete;
+            return this;
+        }
+    }
+
+    private static class CacheEntityStore implements EntityStore
+    {
+        private static final String COMPLETE_KEY = "#complete";
+
+        private Cache                         cache;
+        private ThreadLocal<JsonDeserializer> deserializer = ThreadLocal.withInitial(() -> new JsonDeserializer(Datamodel.SITE_WIKIDATA));
+
+        public CacheEntityStore(Cache cache)
+        {
+            super();
+            this.cache = cache;
+        }
+
+        @Override
+        public EntityStore put(ItemDocument document)
+        {
+            this.cache.put(document.getEntityId()
+                                   .getId(),
+                           JsonSerializer.getJsonString(document));
+            return this;
+        }
+
+        @Override
+        public Optional<ItemDocument> get(String entityId)
+        {
+            return Optional.ofNullable(this.cache.get(entityId, String.class))
+                           .map(this::deserialize);
+        }
+
+        private ItemDocument deserialize(String json)
+        {
+            try
+            {
+                return this.deserializer.get()
+                                        .deserializeItemDocument(json);
+            }
+            catch (IOException e)
+            {
+                throw new IllegalStateException("Unable to read item document from store", e);
+            }
+        }
+
+        @Override
+        public Stream<String> getEntityIds()
+        {
+            return this.cache.keySet()
+                             .stream()
+                             .filter(key -> !COMPLETE_KEY.equals(key));
+        }
+
+        @Override
+        public boolean isComplete()
+        {
+            return Boolean.TRUE.equals(this.cache.get(COMPLETE_KEY, Boolean.class));
+        }
+
+        @Override
+        public EntityStore markComplete(boolean complete)
+        {
+            this.cache.put(COMPLETE_KEY, complete);
+            return this;
+        }
+    }
+
+    /**
+     * {@link EntityStore} which maintains an index of the entity values of the given properties. The index is held within a {@link Cache} as
+     * pages of entity ids per property value, so appending an entity id does not rewrite the whole posting list.
+     */
+    private static class IndexedEntityStore implements EntityStore
+    {
+        private static final int    PAGE_SIZE    = 1000;
+        private static final String COMPLETE_KEY = "#complete";
+
+        private EntityStore store;
+        private Cache       index;
+        private Set<String> propertyIds;
+
+        public IndexedEntityStore(EntityStore store, Cache index, Set<String> propertyIds)
+        {
+            super();
+            this.store = store;
+            this.index = index;
+            this.propertyIds = propertyIds;
+        }
+
+        @Override
+        public synchronized EntityStore put(ItemDocument document)
+        {
+            String entityId = document.getEntityId()
+                                      .getId();
+            Optional<ItemDocument> previousDocument = this.store.get(entityId);
+            this.store.put(document);
+            this.propertyIds.forEach(propertyId ->
+            {
+                Set<String> previousValues = previousDocument.map(iDocument -> this.determinePropertyValues(iDocument, propertyId))
+                                                             .orElse(Collections.emptySet());
+                Set<String> values = this.determinePropertyValues(document, propertyId);
+                values.stream()
+                      .filter(value -> !previousValues.contains(value))
+                      .forEach(value -> this.addToIndex(this.determineIndexKey(propertyId, value), entityId));
+                previousValues.stream()
+                              .filter(value -> !values.contains(value))
+                              .forEach(value -> this.removeFromIndex(this.determineIndexKey(propertyId, value), entityId));
+            });
+            return this;
+        }
+
+        @Override
+        public Optional<ItemDocument> get(String entityId)
+        {
+            return this.store.get(entityId);
+        }
+
+        @Override
+        public Map<String, ItemDocument> getAll(List<String> entityIds)
+        {
+            return this.store.getAll(entityIds);
+        }
+
+        @Override
+        public Stream<String> getEntityIds()
+        {
+            return this.store.getEntityIds();
+        }
+
+        @Override
+        public boolean contains(String entityId)
+        {
+            return this.store.contains(entityId);
+        }
+
+        @Override
+        public boolean isIndexed(String propertyId)
+        {
+            return this.propertyIds.contains(propertyId);
+        }
+
+        @Override
+        public boolean isComplete()
+        {
+            return Boolean.TRUE.equals(this.index.get(COMPLETE_KEY, Boolean.class));
+        }
+
+        @Override
+        public EntityStore markComplete(boolean complete)
+        {
+            this.index.put(COMPLETE_KEY, complete);
+            return this;
+        }
+
+        @Override
+        public Stream<String> findByPropertyValue(String propertyId, String valueEntityId)
+        {
+            if (!this.isIndexed(propertyId))
+            {
+                return Stream.empty();
+            }
+
+            String key = this.determineIndexKey(propertyId, valueEntityId);
+            int numberOfPages = this.determineNumberOfPages(key);
+            return IntStream.range(0, numberOfPages)
+                            .mapToObj(page -> this.readPage(key, page))
+                            .flatMap(List::stream);
+        }
+
+        private Set<String> determinePropertyValues(ItemDocument document, String propertyId)
+        {
+            return Optional.ofNullable(document.findStatementGroup(propertyId))
+                           .map(StatementGroup::getStatements)
+                           .map(List::stream)
+                           .orElse(Stream.empty())
+                           .map(Statement::getValue)
+                           .filter(value -> value instanceof EntityIdValue)
+                           .map(value -> ((EntityIdValue) value).getId())
+                           .collect(Collectors.toSet());
+        }
+
+        private String determineIndexKey(String propertyId, String valueEntityId)
+        {
+            return propertyId + "=" + valueEntityId;
+        }
+
+        private int determineNumberOfPages(String key)
+        {
+            return Optional.ofNullable(this.index.get(key, Integer.class))
+                           .orElse(0);
+        }
+
+        private List<String> readPage(String key, int page)
+        {
+            return Optional.ofNullable(this.index.get(key + "/" + page, String.class))
+                           .filter(StringUtils::isNotEmpty)
+                           .map(entityIds -> Arrays.asList(StringUtils.split(entityIds, ',')))
+                           .orElse(Collections.emptyList());
+        }
+
+        private void writePage(String key, int page, List<String> entityIds)
+        {
+            this.index.put(key + "/" + page, String.join(",", entityIds));
+        }
+
+        private void addToIndex(String key, String entityId)
+        {
+            int numberOfPages = this.determineNumberOfPages(key);
+            List<String> lastPage = numberOfPages > 0 ? new ArrayList<>(this.readPage(key, numberOfPages - 1)) : new ArrayList<>();
+            if (numberOfPages == 0 || lastPage.size() >= PAGE_SIZE)
+            {
+                this.writePage(key, numberOfPages, Arrays.asList(entityId));
+                this.index.put(key, numberOfPages + 1);
+            }
+            else
+            {
+                lastPage.add(entityId);
+                this.writePage(key, numberOfPages - 1, lastPage);
+            }
+        }
+
+        private void removeFromIndex(String key, String entityId)
+        {
+            int numberOfPages = this.determineNumberOfPages(key);
+            for (int page = 0; page < numberOfPages; page++)
+            {
+                List<String> entityIds = new ArrayList<>(this.readPage(key, page));
+                if (entityIds.remove(entityId))
+                {
+                    this.writePage(key, page, entityIds);
+                }
+            }
+        }
+    }
+
+    public static EntityStore newInMemoryStore()
+    {
+        return new InMemoryEntityStore();
+    }
+
+    /**
+     * Returns a persistent {@link EntityStore} with the given name backed by a local NitriteRepository
+     * 
+     * @param name
+     * @return
+     */
+    public static EntityStore newLocalStore(String name)
+    {
+        return newCacheStore(NitriteRepositoryUtils.newLocalCache(name));
+    }
+
+    /**
+     * Returns a persistent {@link EntityStore} with the given name backed by a local NitriteRepository, which indexes the values of the
+     * {@link #DEFAULT_INDEXED_PROPERTIES}
+     * 
+     * @see EntityStore#findByPropertyValue(String, String)
+     * @param name
+     * @return
+     */
+    public static EntityStore newLocalIndexedStore(String name)
+    {
+        return newIndexedStore(newLocalStore(name), NitriteRepositoryUtils.newLocalCache(name + "-index"), DEFAULT_INDEXED_PROPERTIES);
+    }
+
+    /**
+     * Returns an {@link EntityStore} which wraps the given {@link EntityStore} and indexes the entity values of the given properties within the
+     * given {@link Cache}.
+     * 
+     * @param store
+     * @param index
+     * @param propertyIds
+     * @return
+     */
+    public static EntityStore newIndexedStore(EntityStore store, Cache index, String... propertyIds)
+    {
+        return new IndexedEntityStore(store, index, new LinkedHashSet<>(Arrays.asList(propertyIds)));
+    }
+
+    /**
+     * Returns an {@link EntityStore} which holds the {@link ItemDocument}s as json within the given {@link Cache}
+     * 
+     * @param cache
+     * @return
+     */
+    public static EntityStore newCacheStore(Cache cache)
+    {
+        return new CacheEntityStore(cache);
+    }
+}
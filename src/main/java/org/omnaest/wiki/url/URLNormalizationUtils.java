@@ -0,0 +1,334 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.url;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Canonical form of crawled urls and a memory bounded set of the already seen urls.
+ * 
+ * @see #newNormalizer()
+ * @see #newSeenFilter(long, long)
+ */
+public class URLNormalizationUtils
+{
+    /**
+     * Query parameters which only track the visitor and don't change the content of a page. A trailing <code>*</code> matches any suffix.
+     */
+    public static final String[] DEFAULT_TRACKING_PARAMETERS = { "utm_*", "gclid", "dclid", "fbclid", "msclkid", "yclid", "igshid", "mc_cid",
+                                                                 "mc_eid", "_ga", "_hsenc", "_hsmi" };
+
+    public static final long DEFAULT_MEMORY                  = 2 * 1024 * 1024;
+    public static final long DEFAULT_EXPECTED_NUMBER_OF_URLS = 1000000;
+
+    private static final int MAX_NUMBER_OF_HASHES = 16;
+
+    public static interface URLNormalizer
+    {
+        /**
+         * Returns the canonical form of the given absolute http or https url. The scheme and host are lower cased, the default port, the
+         * fragment, dot segments of the path and tracking query parameters are removed and the remaining query parameters are sorted by
+         * their name. Relative, malformed and non http urls result in {@link Optional#empty()}.
+         * 
+         * @param url
+         * @return
+         */
+        public Optional<String> normalize(String url);
+
+        /**
+         * Adds query parameters to strip in addition to the {@link URLNormalizationUtils#DEFAULT_TRACKING_PARAMETERS}. A trailing
+         * <code>*</code> matches any suffix.
+         * 
+         * @param parameters
+         * @return
+         */
+        public URLNormalizer withStrippedParameters(String... parameters);
+    }
+
+    /**
+     * Set of seen urls with a fixed memory size. Every url is kept as a few bits of a bloom filter, so an url which was not seen before is
+     * reported as seen with a small probability, which grows with the number of urls beyond the expected number. An url which was seen is
+     * never reported as unseen.
+     */
+    public static interface SeenURLFilter
+    {
+        /**
+         * Marks the given url as seen and returns true, if it was not seen before
+         * 
+         * @param url
+         * @return
+         */
+        public boolean add(String url);
+
+        public boolean contains(String url);
+
+        /**
+         * Returns the size of the filter in bytes
+         * 
+         * @return
+         */
+        public long getMemory();
+    }
+
+    private static class URLNormalizerImpl implements URLNormalizer
+    {
+        private Set<String> strippedParameters = ConcurrentHashMap.newKeySet();
+
+        public URLNormalizerImpl()
+        {
+            super();
+            this.withStrippedParameters(DEFAULT_TRACKING_PARAMETERS);
+        }
+
+        @Override
+        public Optional<String> normalize(String url)
+        {
+            if (StringUtils.isBlank(url))
+            {
+                return Optional.empty();
+            }
+
+            try
+            {
+                URI uri = new URI(url.trim()).normalize();
+                String scheme = StringUtils.lowerCase(uri.getScheme());
+                String host = StringUtils.lowerCase(uri.getHost());
+                if (!StringUtils.equalsAny(scheme, "http", "https") || StringUtils.isBlank(host))
+                {
+                    return Optional.empty();
+                }
+
+                StringBuilder result = new StringBuilder().append(scheme)
+                                                          .append("://");
+                if (uri.getRawUserInfo() != null)
+                {
+                    result.append(uri.getRawUserInfo())
+                          .append("@");
+                }
+                result.append(host);
+                if (!this.isDefaultPort(scheme, uri.getPort()))
+                {
+                    result.append(":")
+                          .append(uri.getPort());
+                }
+                result.append(this.normalizePath(uri.getRawPath()));
+
+                String query = this.normalizeQuery(uri.getRawQuery());
+                if (!query.isEmpty())
+                {
+                    result.append("?")
+                          .append(query);
+                }
+                return Optional.of(result.toString());
+            }
+            catch (URISyntaxException e)
+            {
+                return Optional.empty();
+            }
+        }
+
+        private boolean isDefaultPort(String scheme, int port)
+        {
+            return port < 0 || ("http".equals(scheme) && port == 80) || ("https".equals(scheme) && port == 443);
+        }
+
+        private String normalizePath(String path)
+        {
+            // dot segments above the root are left over by URI#normalize()
+            String result = StringUtils.defaultIfEmpty(path, "/");
+            while (result.startsWith("/../"))
+            {
+                result = result.substring(3);
+            }
+            return "/..".equals(result) ? "/" : result;
+        }
+
+        private String normalizeQuery(String query)
+        {
+            if (StringUtils.isEmpty(query))
+            {
+                return "";
+            }
+            return Arrays.stream(query.split("&"))
+                         .filter(StringUtils::isNotEmpty)
+                         .filter(parameter -> !this.isStripped(StringUtils.substringBefore(parameter, "=")))
+                         .sorted(Comparator.comparing(parameter -> StringUtils.substringBefore(parameter, "=")))
+                         .collect(Collectors.joining("&"));
+        }
+
+        private boolean isStripped(String name)
+        {
+            String lowerCaseName = StringUtils.lowerCase(name);
+            return this.strippedParameters.stream()
+                                          .anyMatch(parameter -> this.matches(parameter, lowerCaseName));
+        }
+
+        private boolean matches(String parameter, String name)
+        {
+            if (parameter.endsWith("*"))
+            {
+                return name.startsWith(StringUtils.removeEnd(parameter, "*"));
+            }
+            return name.equals(parameter);
+        }
+
+        @Override
+        public URLNormalizer withStrippedParameters(String... parameters)
+        {
+            Arrays.stream(parameters)
+                  .map(StringUtils::lowerCase)
+                  .forEach(this.strippedParameters::add);
+            return this;
+        }
+    }
+
+    private static class BloomSeenURLFilter implements SeenURLFilter
+    {
+        private AtomicLongArray bits;
+        private long            numberOfBits;
+        private int             numberOfHashes;
+
+        public BloomSeenURLFilter(long memory, long expectedNumberOfURLs)
+        {
+            super();
+            int numberOfWords = (int) Math.max(1, Math.min(Integer.MAX_VALUE - 8, memory / 8));
+            this.bits = new AtomicLongArray(numberOfWords);
+            this.numberOfBits = numberOfWords * 64L;
+
+            // the optimal number of hashes is bits per url * ln(2)
+            double bitsPerURL = this.numberOfBits / (double) Math.max(1, expectedNumberOfURLs);
+            this.numberOfHashes = (int) Math.max(1, Math.min(MAX_NUMBER_OF_HASHES, Math.round(bitsPerURL * Math.log(2))));
+        }
+
+        @Override
+        public boolean add(String url)
+        {
+            long hash = fingerprint(url);
+            long increment = mix(hash) | 1;
+
+            boolean added = false;
+            for (int ii = 0; ii < this.numberOfHashes; ii++)
+            {
+                long index = Math.floorMod(hash + ii * increment, this.numberOfBits);
+                added |= this.setBit(index);
+            }
+            return added;
+        }
+
+        private boolean setBit(long index)
+        {
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            while (true)
+            {
+                long current = this.bits.get(word);
+                if ((current & mask) != 0)
+                {
+                    return false;
+                }
+                if (this.bits.compareAndSet(word, current, current | mask))
+                {
+                    return true;
+                }
+            }
+        }
+
+        @Override
+        public boolean contains(String url)
+        {
+            long hash = fingerprint(url);
+            long increment = mix(hash) | 1;
+
+            for (int ii = 0; ii < this.numberOfHashes; ii++)
+            {
+                long index = Math.floorMod(hash + ii * increment, this.numberOfBits);
+                if ((this.bits.get((int) (index >>> 6)) & (1L << index)) == 0)
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public long getMemory()
+        {
+            return this.numberOfBits / 8;
+        }
+
+        private static long fingerprint(String value)
+        {
+            // FNV-1a
+            long hash = 0xcbf29ce484222325L;
+            for (int ii = 0; ii < value.length(); ii++)
+            {
+                hash ^= value.charAt(ii);
+                hash *= 0x100000001b3L;
+            }
+            return mix(hash);
+        }
+
+        private static long mix(long value)
+        {
+            // finalizer of MurmurHash3
+            long result = value;
+            result ^= result >>> 33;
+            result *= 0xff51afd7ed558ccdL;
+            result ^= result >>> 33;
+            result *= 0xc4ceb9fe1a85ec53L;
+            result ^= result >>> 33;
+            return result;
+        }
+    }
+
+    public static URLNormalizer newNormalizer()
+    {
+        return new URLNormalizerImpl();
+    }
+
+    /**
+     * Returns a {@link SeenURLFilter} with {@value #DEFAULT_MEMORY} bytes for {@value #DEFAULT_EXPECTED_NUMBER_OF_URLS} urls
+     * 
+     * @return
+     */
+    public static SeenURLFilter newSeenFilter()
+    {
+        return newSeenFilter(DEFAULT_MEMORY, DEFAULT_EXPECTED_NUMBER_OF_URLS);
+    }
+
+    /**
+     * Returns a {@link SeenURLFilter} using the given memory in bytes. The number of hashes per url is chosen to keep the false positive
+     * probability low up to the expected number of urls.
+     * 
+     * @param memory
+     * @param expectedNumberOfURLs
+     * @return
+     */
+    public static SeenURLFilter newSeenFilter(long memory, long expectedNumberOfURLs)
+    {
+        return new BloomSeenURLFilter(memory, expectedNumberOfURLs);
+    }
+}
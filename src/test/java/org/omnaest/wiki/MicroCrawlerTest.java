@@ -15,13 +15,34 @@
  ******************************************************************************/
 package org.omnaest.wiki;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.junit.Test;
 import org.omnaest.utils.JSONHelper;
+import org.omnaest.utils.html.HtmlUtils;
+import org.omnaest.utils.html.HtmlUtils.HtmlElement;
+import org.omnaest.wiki.MicroCrawler.AnalysisResult;
+import org.omnaest.wiki.MicroCrawler.Match;
 import org.omnaest.wiki.MicroCrawler.Matchers;
+import org.omnaest.wiki.standin.StandInServerUtils;
+import org.omnaest.wiki.standin.StandInServerUtils.StandInServer;
 
 public class MicroCrawlerTest
 {
@@ -40,6 +61,335 @@ public class MicroCrawlerTest
                     });
     }
 
+    @Test
+    public void testAnalyzeConcurrently() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            Set<String> values = MicroCrawler.newInstance()
+                                             .withNumberOfWorkers(4)
+                                             .withMaxNumberOfRequests(20)
+                                             .addMatcher(Matchers.EMAIL)
+                                             .analyze(server.getUrl() + "/start.html")
+                                             .getMatches()
+                                             .map(Match::getValue)
+                                             .collect(Collectors.toCollection(TreeSet::new));
+            assertEquals(new TreeSet<>(Arrays.asList("ambulanz.innere@klinikum-example.de", "lehre.innere@klinikum-example.de",
+                                                     "privat.innere@klinikum-example.de", "regine.zimmermann@klinikum-example.de",
+                                                     "sekretariat.innere@klinikum-example.de", "webmaster@klinikum-example.de")),
+                         values);
+
+            // every local page of the fixture is fetched exactly once
+            assertEquals(12, server.getStatistic()
+                                   .getNumberOfRequests());
+        }
+    }
+
+    @Test
+    public void testAnalyzeWithinBudget() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            MicroCrawler.newInstance()
+                        .withNumberOfWorkers(4)
+                        .withMaxNumberOfRequests(3)
+                        .analyze(server.getUrl() + "/start.html");
+            assertTrue(server.getStatistic()
+                             .getNumberOfRequests() <= 3);
+        }
+    }
+
+    @Test
+    public void testAnalyzeWithListener() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            List<String> values = new ArrayList<>();
+            MicroCrawler.newInstance()
+                        .withMaxNumberOfRequests(20)
+                        .addMatcher(Matchers.EMAIL)
+                        .analyze(server.getUrl() + "/start.html", match -> values.add(match.getValue()));
+
+            // every value is reported once, although all pages of the fixture contain the same values
+            assertEquals(6, values.size());
+            assertEquals(6, new HashSet<>(values).size());
+        }
+    }
+
+    @Test
+    public void testAnalyzeWithEarlyStop() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            List<Match> matches = new ArrayList<>();
+            AnalysisResult result = MicroCrawler.newInstance()
+                                                .withMaxNumberOfRequests(20)
+                                                .addMatcher(Matchers.EMAIL)
+                                                .analyze(server.getUrl() + "/start.html", match -> !matches.add(match));
+
+            assertEquals(1, matches.size());
+            assertTrue(matches.get(0)
+                              .getContexts()
+                              .size() > 0);
+            assertTrue(result.getMatches()
+                             .count() >= 1);
+            assertTrue(server.getStatistic()
+                             .getNumberOfRequests() < 12);
+        }
+    }
+
+    @Test
+    public void testAnalyzeWithFailingListener() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            IllegalStateException exception = new IllegalStateException("listener failed");
+            try
+            {
+                MicroCrawler.newInstance()
+                            .withMaxNumberOfRequests(20)
+                            .addMatcher(Matchers.EMAIL)
+                            .analyze(server.getUrl() + "/start.html", match ->
+                            {
+                                throw exception;
+                            });
+                fail();
+            }
+            catch (IllegalStateException e)
+            {
+                // the exception of the listener stops the crawl and is not counted as an error of the page
+                assertSame(exception, e);
+            }
+            assertTrue(server.getStatistic()
+                             .getNumberOfRequests() < 12);
+        }
+    }
+
+    @Test
+    public void testAnalyzeWithMultipleMatchers() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            Map<String, Set<String>> matcherToValues = MicroCrawler.newInstance()
+                                                                   .withMaxNumberOfRequests(1)
+                                                                   .addMatcher(Matchers.EMAIL)
+                                                                   .addMatcher("PHONE", Pattern.compile("0234 299-\\d{4}"), "0234")
+                                                                   .analyze(server.getUrl() + "/start.html")
+                                                                   .getMatches()
+                                                                   .collect(Collectors.groupingBy(Match::getMatcher, TreeMap::new,
+                                                                                                  Collectors.mapping(Match::getValue,
+                                                                                                                     Collectors.toCollection(TreeSet::new))));
+            assertEquals(Arrays.asList("EMAIL", "PHONE"), new ArrayList<>(matcherToValues.keySet()));
+            assertEquals(6, matcherToValues.get("EMAIL")
+                                           .size());
+            assertTrue(matcherToValues.get("PHONE")
+                                      .containsAll(Arrays.asList("0234 299-3401", "0234 299-3409", "0234 299-3500", "0234 299-3510")));
+        }
+    }
+
+    @Test
+    public void testAnalyzeKeepsDeepestElements() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            String url = server.getUrl() + "/start.html";
+            this.assertDeepestElements(url, 6);
+        }
+    }
+
+    @Test
+    public void testAnalyzeKeepsDeepestElementsOfNestedRepeatedText() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withPage("/nested.html",
+                                                                "<html><body>"
+                                                                        + "<div>Kontakt: info@example.de <p>Sekretariat: info@example.de</p><p>info@example.de</p></div>"
+                                                                        + "<div><span>team@example.de</span> team@example.de <b>team</b>@example.de</div>"
+                                                                        + "<ul><li>Fax <i>0234</i><li>post@example.de <i>post@example.de</i></ul>"
+                                                                        + "</body></html>"))
+        {
+            this.assertDeepestElements(server.getUrl() + "/nested.html", 3);
+        }
+    }
+
+    @Test
+    public void testAnalyzeDropsValuesOfParentsWithMatchingChildren() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withPage("/parents.html",
+                                                                "<html><body>"
+                                                                        + "<div>Zentrale: zentrale@example.de <p>Sekretariat: sekretariat@example.de</p></div>"
+                                                                        + "<div>Team: team@example.de <span>team@example.de</span> Fax: fax@example.de</div>"
+                                                                        + "<p>Presse: presse@example.de</p>"
+                                                                        + "</body></html>"))
+        {
+            // the values within the own text of a parent are dropped, as soon as one of its children contains a value
+            assertEquals(new TreeSet<>(Arrays.asList("presse@example.de", "sekretariat@example.de", "team@example.de")),
+                         this.assertDeepestElements(server.getUrl() + "/parents.html", 3));
+        }
+    }
+
+    /**
+     * Compares the matches of the {@link MicroCrawler} with a reference, which runs the regex on the text of every element and keeps only the
+     * deepest elements with a match
+     * 
+     * @param url
+     * @param numberOfValues
+     * @return the matched values
+     */
+    private Set<String> assertDeepestElements(String url, int numberOfValues)
+    {
+        Pattern pattern = Pattern.compile(Matchers.EMAIL.get());
+        Map<HtmlElement, Set<String>> matches = new HashMap<>();
+        HtmlUtils.load()
+                 .fromUrl(url)
+                 .visit((element, parents) ->
+                 {
+                     Set<String> values = new HashSet<>();
+                     Matcher matcher = pattern.matcher(element.asText());
+                     while (matcher.find())
+                     {
+                         values.add(matcher.group());
+                     }
+                     if (!values.isEmpty())
+                     {
+                         matches.keySet()
+                                .removeAll(parents.getElements());
+                         matches.put(element, values);
+                     }
+                     return !values.isEmpty();
+                 });
+        Map<String, List<String>> expected = new TreeMap<>();
+        matches.forEach((element, values) -> values.forEach(value ->
+        {
+            expected.computeIfAbsent(value, v -> new ArrayList<>())
+                    .addAll(Stream.concat(Stream.of(element), element.getParents()
+                                                                     .limit(3))
+                                  .map(HtmlElement::asText)
+                                  .collect(Collectors.toList()));
+        }));
+
+        Map<String, List<String>> actual = new TreeMap<>();
+        MicroCrawler.newInstance()
+                    .withMaxNumberOfRequests(1)
+                    .withContextWindow(50)
+                    .addMatcher(Matchers.EMAIL)
+                    .analyze(url)
+                    .getMatches()
+                    .forEach(match -> actual.put(match.getValue(), match.getContexts()));
+
+        assertEquals(numberOfValues, actual.size());
+        assertEquals(expected.keySet(), actual.keySet());
+
+        // the contexts are windows around the value within the texts of the deepest element and its parents
+        actual.forEach((value, contexts) ->
+        {
+            assertEquals(new HashSet<>(contexts).size(), contexts.size());
+            contexts.forEach(context ->
+            {
+                assertTrue(context.contains(value));
+                assertTrue(context.length() <= value.length() + 2 * 50);
+                assertTrue(expected.get(value)
+                                   .stream()
+                                   .anyMatch(text -> text.contains(context)));
+            });
+        });
+        return actual.keySet();
+    }
+
+    @Test
+    public void testAnalyzeWithRequiredLiteral() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withPage("/fax.html", "<html><body><p>Fax 0234 299-3401</p><div>Fax 0234 299-3409 <b>@</b></div>"
+                                                              + "<table><tr><td>Fax 0234 299-3500</td><td>@</td></tr></table></body></html>"))
+        {
+            Pattern pattern = Pattern.compile(Matchers.EMAIL.get());
+            Map<String, List<String>> expected = new TreeMap<>();
+            MicroCrawler.newInstance()
+                        .withMaxNumberOfRequests(1)
+                        .addMatcher("EMAIL", pattern, null)
+                        .analyze(server.getUrl() + "/start.html")
+                        .getMatches()
+                        .forEach(match -> expected.put(match.getValue(), match.getContexts()));
+            Map<String, List<String>> actual = new TreeMap<>();
+            MicroCrawler.newInstance()
+                        .withMaxNumberOfRequests(1)
+                        .addMatcher("EMAIL", pattern, "@")
+                        .analyze(server.getUrl() + "/start.html")
+                        .getMatches()
+                        .forEach(match -> actual.put(match.getValue(), match.getContexts()));
+            assertEquals(6, actual.size());
+            assertEquals(expected, actual);
+
+            // the regex only runs on the blocks containing the literal
+            Set<String> values = MicroCrawler.newInstance()
+                                             .withMaxNumberOfRequests(1)
+                                             .addMatcher("FAX", Pattern.compile("Fax [\\d -]+"), "@")
+                                             .analyze(server.getUrl() + "/fax.html")
+                                             .getMatches()
+                                             .map(Match::getValue)
+                                             .map(String::trim)
+                                             .collect(Collectors.toCollection(TreeSet::new));
+            assertEquals(new TreeSet<>(Arrays.asList("Fax 0234 299-3409")), values);
+        }
+    }
+
+    @Test
+    public void testAnalyzeWithBoundedContexts() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            List<Match> matches = MicroCrawler.newInstance()
+                                              .withMaxNumberOfRequests(20)
+                                              .withContextWindow(20)
+                                              .withMaxContextsPerValue(2)
+                                              .addMatcher(Matchers.EMAIL)
+                                              .analyze(server.getUrl() + "/start.html")
+                                              .getMatches()
+                                              .collect(Collectors.toList());
+
+            // all pages of the fixture contain the same text, so their contexts are deduplicated
+            assertEquals(6, matches.size());
+            matches.forEach(match ->
+            {
+                assertTrue(match.getContexts()
+                                .size() <= 2);
+                assertEquals(new HashSet<>(match.getContexts()).size(), match.getContexts()
+                                                                            .size());
+            });
+        }
+    }
+
+    @Test
+    public void testAnalyzePolitely() throws Exception
+    {
+        try (StandInServer otherServer = StandInServerUtils.newInstance();
+                StandInServer server = StandInServerUtils.newInstance()
+                                                         .withPage("/start.html", "<html><body><a href=\"/index.html\">Startseite</a> <a href=\""
+                                                                 + otherServer.getUrl() + "/index.html\">Partner</a></body></html>"))
+        {
+            long start = System.currentTimeMillis();
+            MicroCrawler.newInstance()
+                        .withNumberOfWorkers(4)
+                        .withMaxConcurrentRequestsPerHost(1)
+                        .withMinDelayPerHost(50)
+                        .withMaxNumberOfRequests(8)
+                        .analyze(server.getUrl() + "/start.html");
+            long duration = System.currentTimeMillis() - start;
+
+            // the budget is shared round robin by both servers, the requests to the same server are started one after another with the
+            // minimum delay in between
+            long numberOfRequests = server.getStatistic()
+                                          .getNumberOfRequests();
+            long numberOfOtherRequests = otherServer.getStatistic()
+                                                    .getNumberOfRequests();
+            assertTrue(numberOfRequests >= 2 && numberOfOtherRequests >= 2);
+            assertTrue(numberOfRequests + numberOfOtherRequests <= 8);
+            assertTrue(duration >= (Math.max(numberOfRequests, numberOfOtherRequests) - 1) * 50);
+        }
+    }
+
     @Test
     public void testMatchers()
     {
@@ -15,13 +15,28 @@
  ******************************************************************************/
 package org.omnaest.wiki;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Ignore;
 import org.junit.Test;
 import org.omnaest.repository.nitrite.NitriteRepositoryUtils;
+import org.omnaest.utils.CacheUtils;
 import org.omnaest.utils.cache.Cache;
+import org.omnaest.wiki.WikiUtils.Item;
+import org.omnaest.wiki.WikiUtils.WikiAccessor;
+import org.omnaest.wiki.dump.WikiDumpUtils;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilters;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLObjects;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLProperties;
+import org.omnaest.wiki.search.LabelIndexUtils;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
 
 public class WikiUtilsTest
 {
@@ -193,4 +208,42 @@ public class WikiUtilsTest
 
     }
 
+    @Test
+    public void testConnectToLocalStore() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newIndexedStore(EntityStoreUtils.newInMemoryStore(), CacheUtils.newConcurrentInMemoryCache(),
+                                                             EntityStoreUtils.DEFAULT_INDEXED_PROPERTIES);
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .ingest(inputStream, store);
+        }
+
+        WikiAccessor accessor = WikiUtils.newInstance()
+                                         .connectToLocalStore(store);
+
+        Item berlin = accessor.findByEntityId("Q64")
+                              .get();
+        assertEquals("Berlin", berlin.getTitle()
+                                     .get());
+        assertEquals("https://www.berlin.de/", berlin.getHomePage()
+                                                     .get());
+        assertEquals("Germany", berlin.getCountry()
+                                      .get());
+        assertFalse(accessor.findByEntityId("Q5")
+                            .isPresent());
+
+        assertEquals(Arrays.asList("Q64"), accessor.searchFor(SPARQLProperties.COUNTRY, SPARQLObjects.GERMANY)
+                                                   .stream()
+                                                   .map(Item::getEntityId)
+                                                   .collect(Collectors.toList()));
+
+        assertEquals(Arrays.asList("Q183", "Q64"), accessor.usingLabelIndex(LabelIndexUtils.newInstance())
+                                                           .searchFor("germany")
+                                                           .stream()
+                                                           .map(Item::getEntityId)
+                                                           .collect(Collectors.toList()));
+    }
+
 }
@@ -0,0 +1,122 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.WikiUtils;
+import org.omnaest.wiki.WikiUtils.Item;
+import org.omnaest.wiki.WikiUtils.Item.StatementResult;
+import org.omnaest.wiki.WikiUtils.WikiAccessor;
+import org.omnaest.wiki.dump.WikiDumpUtils;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLProperties;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Resolution of {@link Item}s through the item document cache of a {@link WikiAccessor} connected to an in memory {@link EntityStore}.
+ * The store holds copies of the recorded "universe" item of the sample dump under distinct entity ids. Numbers of items above the cache
+ * capacity of 10000 include the evictions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ItemBenchmark
+{
+    private static final long FIRST_ENTITY_ID = 1000000;
+
+    @Param({ "1000", "50000" })
+    private int numberOfItems;
+
+    private WikiAccessor accessor;
+    private Item         item;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        String recordedItem;
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json");
+                BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)))
+        {
+            recordedItem = reader.lines()
+                                 .filter(line -> line.startsWith("{\"type\":\"item\",\"id\":\"Q1\""))
+                                 .map(line -> StringUtils.removeEnd(line, ","))
+                                 .findFirst()
+                                 .get();
+        }
+        StringBuilder dump = new StringBuilder("[\n");
+        for (int ii = 0; ii < this.numberOfItems; ii++)
+        {
+            dump.append(StringUtils.replaceOnce(recordedItem, "\"id\":\"Q1\"", "\"id\":\"Q" + (FIRST_ENTITY_ID + ii) + "\""))
+                .append(ii < this.numberOfItems - 1 ? ",\n" : "\n");
+        }
+        dump.append("]\n");
+
+        EntityStore store = EntityStoreUtils.newInMemoryStore();
+        WikiDumpUtils.newIngestion()
+                     .ingest(new ByteArrayInputStream(dump.toString()
+                                                          .getBytes(StandardCharsets.UTF_8)),
+                             store);
+        this.accessor = WikiUtils.newInstance()
+                                 .withMetrics(MetricsUtils.noop())
+                                 .connectToLocalStore(store);
+        this.item = this.accessor.findByEntityId("Q" + FIRST_ENTITY_ID)
+                                 .get();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Item> findByEntityIdConcurrently()
+    {
+        long entityId = FIRST_ENTITY_ID + ThreadLocalRandom.current()
+                                                           .nextInt(this.numberOfItems);
+        return this.accessor.findByEntityId("Q" + entityId);
+    }
+
+    @Benchmark
+    public List<StatementResult> getStatements()
+    {
+        return this.item.getStatements(SPARQLProperties.INSTANCE_OF)
+                        .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.benchmark;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.MicroCrawler;
+import org.omnaest.wiki.MicroCrawler.Match;
+import org.omnaest.wiki.MicroCrawler.Matchers;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Matching of a single large page by the {@link MicroCrawler}. The page is served from a local server and consists of the content of the
+ * recorded fixture page repeated the given number of times, so the measurement is dominated by parsing and matching.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MicroCrawlerBenchmark
+{
+    @Param({ "1", "100" })
+    private int numberOfRepetitions;
+
+    private HttpServer   server;
+    private String       url;
+    private MicroCrawler crawler;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        String recordedPage;
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/fixtures/page.html"))
+        {
+            recordedPage = new String(toByteArray(inputStream), StandardCharsets.UTF_8);
+        }
+        String content = StringUtils.substringBetween(recordedPage, "<body>", "</body>");
+        byte[] page = (StringUtils.substringBefore(recordedPage, "<body>") + "<body>" + StringUtils.repeat(content, this.numberOfRepetitions)
+                + "</body></html>").getBytes(StandardCharsets.UTF_8);
+
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/page.html", exchange ->
+        {
+            exchange.getResponseHeaders()
+                    .set("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, page.length);
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(page);
+            }
+        });
+        this.server.start();
+        this.url = "http://localhost:" + this.server.getAddress()
+                                                    .getPort()
+                + "/page.html";
+        this.crawler = MicroCrawler.newInstance()
+                                   .withMetrics(MetricsUtils.noop())
+                                   .withMaxNumberOfRequests(1)
+                                   .addMatcher(Matchers.EMAIL);
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        this.server.stop(0);
+    }
+
+    @Benchmark
+    public List<Match> analyze()
+    {
+        return this.crawler.analyze(this.url)
+                           .getMatches()
+                           .collect(Collectors.toList());
+    }
+
+    private static byte[] toByteArray(InputStream inputStream) throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int length;
+        while ((length = inputStream.read(buffer)) >= 0)
+        {
+            outputStream.write(buffer, 0, length);
+        }
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,109 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.benchmark;
+
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.omnaest.wiki.rest.WikiRESTUtils.Binding;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLExpression;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilterExpression;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilters;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Decoding of {@link SPARQLResult} pages and building of the queries. The page is the recorded fixture page repeated up to the given number
+ * of bindings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SPARQLBenchmark
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    @Param({ "100", "1000" })
+    private int numberOfBindings;
+
+    private byte[]                 page;
+    private SPARQLResult           result;
+    private SPARQLFilterExpression filterExpression;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        ObjectNode recordedPage;
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/fixtures/sparql-page.json"))
+        {
+            recordedPage = (ObjectNode) OBJECT_MAPPER.readTree(inputStream);
+        }
+        ArrayNode recordedBindings = (ArrayNode) recordedPage.path("results")
+                                                             .path("bindings");
+        ArrayNode bindings = OBJECT_MAPPER.createArrayNode();
+        for (int ii = 0; ii < this.numberOfBindings; ii++)
+        {
+            bindings.add(recordedBindings.get(ii % recordedBindings.size()));
+        }
+        ((ObjectNode) recordedPage.path("results")).set("bindings", bindings);
+
+        this.page = OBJECT_MAPPER.writeValueAsBytes(recordedPage);
+        this.result = OBJECT_MAPPER.readValue(this.page, SPARQLResult.class);
+        this.filterExpression = new SPARQLFilterExpression().addFilters(SPARQLFilters.INSTANCE_OF_HOSPITAL,
+                                                                        SPARQLFilters.INSTANCE_OF_UNIVERSITY_HOSPITAL);
+    }
+
+    @Benchmark
+    public SPARQLResult decode() throws Exception
+    {
+        return OBJECT_MAPPER.readValue(this.page, SPARQLResult.class);
+    }
+
+    @Benchmark
+    public List<Binding> getBindings()
+    {
+        return this.result.getBindings();
+    }
+
+    @Benchmark
+    public String asString()
+    {
+        return new SPARQLExpression().setFilterExpression(this.filterExpression)
+                                     .setOffset(this.numberOfBindings)
+                                     .setLimit(1000)
+                                     .asString();
+    }
+}
@@ -0,0 +1,128 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.omnaest.wiki.cache.LogStoreUtils.LogStore;
+
+public class LogStoreUtilsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPutGetAndRecovery() throws Exception
+    {
+        File directory = this.temporaryFolder.newFolder();
+        String text = StringUtils.repeat("Lorem ipsum dolor sit amet. ", 100);
+        try (LogStore store = LogStoreUtils.open(directory))
+        {
+            store.put("a", this.toBytes(text))
+                 .put("b", this.toBytes("b1"))
+                 .put("b", this.toBytes("b2"))
+                 .put("c", this.toBytes("c"))
+                 .remove("c");
+
+            assertEquals(text, this.toString(store.get("a")
+                                                  .get()));
+            assertEquals("b2", this.toString(store.get("b")
+                                                  .get()));
+            assertFalse(store.get("c")
+                             .isPresent());
+            assertEquals(2, store.size());
+            assertTrue(store.getSizeInBytes() < text.length() / 2);
+        }
+
+        // a torn write at the end is dropped when the store is opened again
+        try (RandomAccessFile file = new RandomAccessFile(new File(directory, "00000001.log"), "rw"))
+        {
+            file.seek(file.length());
+            file.writeInt(1000);
+            file.write(new byte[] { 1, 2, 3 });
+        }
+
+        try (LogStore store = LogStoreUtils.open(directory))
+        {
+            assertEquals(text, this.toString(store.get("a")
+                                                  .get()));
+            assertEquals("b2", this.toString(store.get("b")
+                                                  .get()));
+            assertFalse(store.contains("c"));
+            assertEquals(2, store.size());
+
+            store.put("d", this.toBytes("d"));
+            assertEquals("d", this.toString(store.get("d")
+                                                 .get()));
+        }
+    }
+
+    @Test
+    public void testCompaction() throws Exception
+    {
+        File directory = this.temporaryFolder.newFolder();
+        try (LogStore store = LogStoreUtils.open(directory)
+                                           .withMaxSegmentSize(200)
+                                           .withCompactionRatio(1.1))
+        {
+            for (int ii = 0; ii < 100; ii++)
+            {
+                store.put("key" + (ii % 10), this.toBytes("value" + ii));
+            }
+            store.remove("key0");
+
+            assertTrue(store.getNumberOfSegments() > 5);
+            assertTrue(store.getGarbageInBytes() > 0);
+
+            store.compact();
+            assertTrue(store.getNumberOfSegments() <= 2);
+            assertEquals(9, store.size());
+            assertEquals("value99", this.toString(store.get("key9")
+                                                       .get()));
+            assertFalse(store.contains("key0"));
+        }
+
+        try (LogStore store = LogStoreUtils.open(directory))
+        {
+            assertEquals(9, store.size());
+            assertArrayEquals(this.toBytes("value91"), store.get("key1")
+                                                            .get());
+            assertFalse(store.get("key0")
+                             .isPresent());
+        }
+    }
+
+    private byte[] toBytes(String text)
+    {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private String toString(byte[] data)
+    {
+        return new String(data, StandardCharsets.UTF_8);
+    }
+}
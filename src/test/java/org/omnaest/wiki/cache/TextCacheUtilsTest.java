@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.apache.commons.lang3.StringUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.omnaest.wiki.cache.TextCacheUtils.TextCache;
+
+public class TextCacheUtilsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testPutAndGet() throws Exception
+    {
+        TextCache cache = TextCacheUtils.newInstance();
+        String text = StringUtils.repeat("Lorem ipsum dolor sit amet. ", 1000);
+        cache.put("https://en.wikipedia.org", "Lorem", text);
+
+        assertEquals(text, cache.get("https://en.wikipedia.org", "Lorem")
+                                .get());
+        assertFalse(cache.get("https://de.wikipedia.org", "Lorem")
+                         .isPresent());
+        assertTrue(cache.getSizeInBytes() < text.length() / 10);
+    }
+
+    @Test
+    public void testEviction() throws Exception
+    {
+        TextCache cache = TextCacheUtils.newInstance(1000);
+        for (int ii = 0; ii < 100; ii++)
+        {
+            cache.put("url", "title" + ii, "text" + ii);
+        }
+
+        assertTrue(cache.getSizeInBytes() <= 1000);
+        assertTrue(cache.size() < 100);
+        assertFalse(cache.get("url", "title0")
+                         .isPresent());
+        assertEquals("text99", cache.get("url", "title99")
+                                    .get());
+    }
+
+    @Test
+    public void testDiskTier() throws Exception
+    {
+        File directory = this.temporaryFolder.newFolder();
+        TextCache cache = TextCacheUtils.newInstance(100)
+                                        .withDiskTier(directory);
+        for (int ii = 0; ii < 100; ii++)
+        {
+            cache.put("url", "title" + ii, "text" + ii);
+        }
+
+        assertEquals("text0", cache.get("url", "title0")
+                                   .get());
+        assertEquals("text1", TextCacheUtils.newInstance()
+                                            .withDiskTier(directory)
+                                            .computeIfAbsent("url", "title1", () -> "other"));
+    }
+}
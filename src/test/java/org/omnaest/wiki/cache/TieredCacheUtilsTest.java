@@ -0,0 +1,203 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.omnaest.wiki.cache.TieredCacheUtils.CacheTier;
+import org.omnaest.wiki.cache.TieredCacheUtils.Codec;
+import org.omnaest.wiki.cache.TieredCacheUtils.TierStatistic;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCache;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCacheFactory;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+
+public class TieredCacheUtilsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadThroughAndPromotion() throws Exception
+    {
+        File sharedDirectory = this.temporaryFolder.newFolder("shared");
+        TieredCache<String> cache = TieredCacheUtils.newFactory()
+                                                    .withOffHeapTier(this.temporaryFolder.newFolder("offheap"), 1024 * 1024)
+                                                    .withSharedTier(sharedDirectory)
+                                                    .newCache("test", Codec.string());
+
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals("value", cache.computeIfAbsent("key", () ->
+        {
+            loads.incrementAndGet();
+            return "value";
+        }));
+        assertEquals("value", cache.computeIfAbsent("key", () ->
+        {
+            loads.incrementAndGet();
+            return "other";
+        }));
+        assertEquals(1, loads.get());
+        cache.flush();
+
+        // a second process only sees the shared tier and promotes the value into its heap and off heap tier
+        TieredCache<String> otherCache = TieredCacheUtils.newFactory()
+                                                         .withOffHeapTier(this.temporaryFolder.newFolder("otherOffheap"), 1024 * 1024)
+                                                         .withSharedTier(sharedDirectory)
+                                                         .newCache("test", Codec.string());
+        assertEquals("value", otherCache.get("key")
+                                        .get());
+        otherCache.flush();
+        assertEquals("value", otherCache.get("key")
+                                        .get());
+
+        List<TierStatistic> statistics = otherCache.getStatistics();
+        assertEquals(Arrays.asList("heap", "off-heap", "shared"), Arrays.asList(statistics.get(0)
+                                                                                          .getName(),
+                                                                                statistics.get(1)
+                                                                                          .getName(),
+                                                                                statistics.get(2)
+                                                                                          .getName()));
+        assertEquals(1, statistics.get(0)
+                                  .getHits());
+        assertEquals(1, statistics.get(1)
+                                  .getWrites());
+        assertEquals(1, statistics.get(2)
+                                  .getHits());
+
+        otherCache.remove("key")
+                  .flush();
+        assertFalse(TieredCacheUtils.newFactory()
+                                    .withSharedTier(sharedDirectory)
+                                    .newBackingCache("test", Codec.string())
+                                    .get("key")
+                                    .isPresent());
+    }
+
+    @Test
+    public void testRemoveAfterPendingWrite() throws Exception
+    {
+        Map<String, byte[]> keyToData = new ConcurrentHashMap<>();
+        CountDownLatch writeLatch = new CountDownLatch(1);
+        TieredCache<String> cache = TieredCacheUtils.newFactory()
+                                                    .withTier(name -> new CacheTier()
+                                                    {
+                                                        @Override
+                                                        public Optional<byte[]> get(String key)
+                                                        {
+                                                            return Optional.ofNullable(keyToData.get(key));
+                                                        }
+
+                                                        @Override
+                                                        public void put(String key, byte[] value)
+                                                        {
+                                                            try
+                                                            {
+                                                                writeLatch.await();
+                                                            }
+                                                            catch (InterruptedException e)
+                                                            {
+                                                                Thread.currentThread()
+                                                                      .interrupt();
+                                                            }
+                                                            keyToData.put(key, value);
+                                                        }
+
+                                                        @Override
+                                                        public void remove(String key)
+                                                        {
+                                                            keyToData.remove(key);
+                                                        }
+
+                                                        @Override
+                                                        public TierStatistic getStatistic()
+                                                        {
+                                                            return null;
+                                                        }
+                                                    })
+                                                    .newBackingCache("pending", Codec.string());
+
+        // the write behind of the put is still pending when the value is removed
+        cache.put("key", "value");
+        cache.remove("key");
+        assertFalse(cache.get("key")
+                         .isPresent());
+
+        writeLatch.countDown();
+        cache.flush();
+        assertFalse(cache.get("key")
+                         .isPresent());
+        assertTrue(keyToData.isEmpty());
+    }
+
+    @Test
+    public void testOffHeapRingBufferOverwrite() throws Exception
+    {
+        TieredCacheFactory factory = TieredCacheUtils.newFactory()
+                                                     .withOffHeapTier(this.temporaryFolder.newFolder("offheap"), 100);
+        TieredCache<String> cache = factory.newBackingCache("ring", Codec.string());
+        for (int ii = 0; ii < 10; ii++)
+        {
+            cache.put("key" + ii, "value_" + ii);
+        }
+        cache.flush();
+
+        assertFalse(cache.get("key0")
+                         .isPresent());
+        assertEquals("value_9", cache.get("key9")
+                                     .get());
+        assertEquals(10, factory.getStatistics()
+                                .get("ring")
+                                .get(0)
+                                .getWrites());
+    }
+
+    @Test
+    public void testJsonCodec() throws Exception
+    {
+        Codec<List<String>> codec = Codec.json(new TypeReference<List<String>>()
+        {
+        });
+        List<String> values = Arrays.asList("Q1", "Q2");
+        assertEquals(values, codec.decode(codec.encode(values)));
+
+        TieredCache<List<String>> cache = TieredCacheUtils.newFactory()
+                                                          .withSharedTier(this.temporaryFolder.newFolder("shared"))
+                                                          .withHeapCapacity(0)
+                                                          .newCache("json", codec);
+        cache.put("key", values)
+             .flush();
+        assertEquals(values, cache.get("key")
+                                  .get());
+        assertTrue(cache.getStatistics()
+                        .get(0)
+                        .getHitRatio() > 0.99);
+    }
+}
@@ -0,0 +1,136 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.closure;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.omnaest.wiki.closure.SubclassClosureUtils.SubclassClosure;
+
+public class SubclassClosureUtilsTest
+{
+    private Map<String, List<String>> classToSubclasses   = new HashMap<>();
+    private Map<String, List<String>> classToSuperclasses = new HashMap<>();
+    private AtomicInteger             loadCounter         = new AtomicInteger();
+
+    private SubclassClosure closure = SubclassClosureUtils.newInstance(this.newResolver(this.classToSubclasses),
+                                                                       this.newResolver(this.classToSuperclasses));
+
+    private Function<String, List<String>> newResolver(Map<String, List<String>> classToRelatedClasses)
+    {
+        return classId ->
+        {
+            this.loadCounter.incrementAndGet();
+            return classToRelatedClasses.getOrDefault(classId, Collections.emptyList());
+        };
+    }
+
+    private void addSubclass(String classId, String subclassId)
+    {
+        this.classToSubclasses.computeIfAbsent(classId, id -> new ArrayList<>())
+                              .add(subclassId);
+        this.classToSuperclasses.computeIfAbsent(subclassId, id -> new ArrayList<>())
+                                .add(classId);
+    }
+
+    @Test
+    public void testClosure() throws Exception
+    {
+        this.addSubclass("Q16917", "Q1059324");
+        this.addSubclass("Q16917", "Q210999");
+        this.addSubclass("Q1059324", "Q1");
+        this.addSubclass("Q1", "Q16917");
+
+        assertEquals(new HashSet<>(Arrays.asList("Q16917", "Q1059324", "Q210999", "Q1")), this.closure.getSubclasses("Q16917")
+                                                                                                      .get());
+        assertEquals(new HashSet<>(Arrays.asList("Q1059324", "Q16917", "Q1")), this.closure.getSuperclasses("Q1059324"));
+
+        int numberOfLoads = this.loadCounter.get();
+        this.closure.getSubclasses("Q1059324");
+        assertEquals(numberOfLoads, this.loadCounter.get());
+
+        assertFalse(this.closure.withMaxSize(3)
+                                .getSubclasses("Q16917")
+                                .isPresent());
+    }
+
+    @Test
+    public void testRefresh() throws Exception
+    {
+        this.addSubclass("Q16917", "Q1059324");
+        assertEquals(2, this.closure.getSubclasses("Q16917")
+                                    .get()
+                                    .size());
+
+        this.addSubclass("Q16917", "Q210999");
+        assertEquals(2, this.closure.getSubclasses("Q16917")
+                                    .get()
+                                    .size());
+        assertEquals(3, this.closure.withTimeToLive(-1, TimeUnit.MILLISECONDS)
+                                    .getSubclasses("Q16917")
+                                    .get()
+                                    .size());
+    }
+
+    @Test
+    public void testBatchLoadingPerLevel() throws Exception
+    {
+        this.addSubclass("Q1", "Q2");
+        this.addSubclass("Q1", "Q3");
+        this.addSubclass("Q2", "Q4");
+        this.addSubclass("Q2", "Q5");
+        this.addSubclass("Q3", "Q6");
+
+        List<List<String>> requests = new ArrayList<>();
+        SubclassClosure closure = SubclassClosureUtils.newBatchInstance(classIds ->
+        {
+            requests.add(classIds);
+            return classIds.stream()
+                           .collect(Collectors.toMap(classId -> classId, classId -> this.classToSubclasses.getOrDefault(classId,
+                                                                                                                        Collections.emptyList())));
+        }, classIds -> Collections.emptyMap());
+
+        assertEquals(new HashSet<>(Arrays.asList("Q1", "Q2", "Q3", "Q4", "Q5", "Q6")), closure.getSubclasses("Q1")
+                                                                                          .get());
+        assertEquals(Arrays.asList(Arrays.asList("Q1"), Arrays.asList("Q2", "Q3"), Arrays.asList("Q4", "Q5", "Q6")), requests);
+    }
+
+    @Test
+    public void testBoundedSuperclasses() throws Exception
+    {
+        for (int ii = 1; ii < 10; ii++)
+        {
+            this.addSubclass("Q" + ii, "Q" + (ii + 1));
+        }
+
+        assertEquals(Arrays.asList("Q10", "Q9", "Q8"), new ArrayList<>(this.closure.withMaxSize(3)
+                                                                                   .getSuperclasses("Q10")));
+        assertEquals(3, this.loadCounter.get());
+    }
+}
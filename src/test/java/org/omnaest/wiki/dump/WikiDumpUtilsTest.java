@@ -0,0 +1,114 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.dump;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.omnaest.wiki.WikiUtils.Language;
+import org.omnaest.wiki.dump.WikiDumpUtils.IngestionStatistic;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLProperties;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+public class WikiDumpUtilsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testIngest() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newInMemoryStore();
+        IngestionStatistic statistic;
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            statistic = WikiDumpUtils.newIngestion()
+                                     .withChunkSize(1)
+                                     .withParallelism(2)
+                                     .ingest(inputStream, store);
+        }
+
+        assertEquals(3, statistic.getNumberOfItems());
+        assertEquals(1, statistic.getNumberOfSkippedEntities());
+        assertEquals(0, statistic.getNumberOfErrors());
+        assertEquals(3, store.getEntityIds()
+                             .count());
+        assertEquals("Berlin", store.get("Q64")
+                                    .get()
+                                    .getLabels()
+                                    .get("en")
+                                    .getText());
+        assertFalse(store.get("P31")
+                         .isPresent());
+    }
+
+    @Test
+    public void testIngestWithProjection() throws Exception
+    {
+        File dumpFile = this.temporaryFolder.newFile("dump.json.gz");
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json");
+                OutputStream outputStream = new GZIPOutputStream(new FileOutputStream(dumpFile)))
+        {
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, length);
+            }
+        }
+
+        EntityStore store = EntityStoreUtils.newInMemoryStore();
+        IngestionStatistic statistic = WikiDumpUtils.newIngestion()
+                                                    .withLanguages(Language.EN)
+                                                    .withProperties(SPARQLProperties.INSTANCE_OF)
+                                                    .withSiteLinks("enwiki")
+                                                    .ingest(dumpFile, store);
+
+        assertEquals(3, statistic.getNumberOfItems());
+
+        ItemDocument universe = store.get("Q1")
+                                     .get();
+        assertNotNull(universe.getLabels()
+                              .get("en"));
+        assertNull(universe.getLabels()
+                           .get("de"));
+        assertNotNull(universe.findStatementGroup("P31"));
+        assertNull(universe.findStatementGroup("P18"));
+        assertTrue(universe.getSiteLinks()
+                           .containsKey("enwiki"));
+        assertFalse(universe.getSiteLinks()
+                            .containsKey("dewiki"));
+        assertNull(store.get("Q64")
+                        .get()
+                        .findStatementGroup("P17"));
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.export;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.omnaest.wiki.WikiUtils;
+import org.omnaest.wiki.WikiUtils.Language;
+import org.omnaest.wiki.WikiUtils.WikiAccessor;
+import org.omnaest.wiki.dump.WikiDumpUtils;
+import org.omnaest.wiki.export.ExportUtils.ExportFormat;
+import org.omnaest.wiki.export.ExportUtils.ExportStatistic;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLProperties;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+
+public class ExportUtilsTest
+{
+    private WikiAccessor accessor;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newInMemoryStore();
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .ingest(inputStream, store);
+        }
+        this.accessor = WikiUtils.newInstance()
+                                 .connectToLocalStore(store);
+    }
+
+    @Test
+    public void testNdjson() throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        List<ExportStatistic> progress = new ArrayList<>();
+        ExportStatistic statistic = ExportUtils.newExport(() -> Stream.of("Q1", "Q64", "Q183")
+                                                                      .map(entityId -> this.accessor.findByEntityId(entityId)
+                                                                                                    .get()))
+                                               .withTitle(Language.EN, Language.DE)
+                                               .withDescription(Language.EN)
+                                               .withStatements(SPARQLProperties.COUNTRY, SPARQLProperties.OFFICIAL_WEBSITE)
+                                               .withBlockSize(1)
+                                               .withParallelism(2)
+                                               .withProgressListener(progress::add)
+                                               .writeTo(outputStream);
+
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"entityId\":\"Q1\",\"title_en\":\"universe\",\"title_de\":\"Universum\",\"description_en\":\"totality of space and all contents\",\"country\":[],\"official_website\":[]}",
+                     lines[0]);
+        assertEquals("{\"entityId\":\"Q64\",\"title_en\":\"Berlin\",\"title_de\":\"Berlin\",\"description_en\":\"capital and largest city of Germany\",\"country\":[\"Q183\"],\"official_website\":[\"https://www.berlin.de/\"]}",
+                     lines[1]);
+        assertEquals("Q183", lines[2].substring(13, 17));
+        assertEquals(3, statistic.getNumberOfItems());
+        assertEquals(outputStream.size(), statistic.getNumberOfBytes());
+        assertEquals(3, progress.size());
+    }
+
+    @Test
+    public void testColumnar() throws Exception
+    {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        ExportUtils.newExport(() -> Stream.of("Q1", "Q64", "Q183")
+                                          .map(entityId -> this.accessor.findByEntityId(entityId)
+                                                                        .get()))
+                   .withTitle(Language.EN)
+                   .withFormat(ExportFormat.COLUMNAR)
+                   .withBlockSize(2)
+                   .writeTo(outputStream);
+
+        String[] lines = new String(outputStream.toByteArray(), StandardCharsets.UTF_8).split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("{\"columns\":[\"entityId\",\"title_en\"]}", lines[0]);
+        assertEquals("{\"column\":\"entityId\",\"values\":[\"Q1\",\"Q64\"]}", lines[1]);
+        assertEquals("{\"column\":\"title_en\",\"values\":[\"universe\",\"Berlin\"]}", lines[2]);
+        assertEquals("{\"column\":\"entityId\",\"values\":[\"Q183\"]}", lines[3]);
+        assertEquals("{\"column\":\"title_en\",\"values\":[\"Germany\"]}", lines[4]);
+    }
+}
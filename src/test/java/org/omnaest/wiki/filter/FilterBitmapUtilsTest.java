@@ -0,0 +1,83 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.filter;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+import org.omnaest.wiki.filter.FilterBitmapUtils.FilterBitmapCache;
+import org.omnaest.wiki.filter.FilterBitmapUtils.FilterQuery;
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilterValueProvider;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilters;
+import org.roaringbitmap.RoaringBitmap;
+
+public class FilterBitmapUtilsTest
+{
+    private Map<String, RoaringBitmap> filterToBitmap = new HashMap<>();
+    private AtomicInteger              loadCounter    = new AtomicInteger();
+
+    private Function<SPARQLFilterValueProvider, RoaringBitmap> loader = filter ->
+    {
+        this.loadCounter.incrementAndGet();
+        return this.filterToBitmap.get(filter.get())
+                                  .clone();
+    };
+
+    @Test
+    public void testEvaluate() throws Exception
+    {
+        this.filterToBitmap.put(SPARQLFilters.INSTANCE_OF_HOSPITAL.get(), RoaringBitmap.bitmapOf(1, 2, 3, 4));
+        this.filterToBitmap.put(SPARQLFilters.COUNTRY_GERMANY.get(), RoaringBitmap.bitmapOf(2, 3, 4, 5));
+        this.filterToBitmap.put(SPARQLFilters.INSTANCE_OF_UNIVERSITY_HOSPITAL.get(), RoaringBitmap.bitmapOf(3, 6));
+
+        FilterBitmapCache cache = FilterBitmapUtils.newCache();
+        FilterQuery query = FilterQuery.of(SPARQLFilters.INSTANCE_OF_HOSPITAL)
+                                       .and(SPARQLFilters.COUNTRY_GERMANY)
+                                       .andNot(SPARQLFilters.INSTANCE_OF_UNIVERSITY_HOSPITAL);
+        assertArrayEquals(new int[] { 2, 4 }, cache.evaluate(query, this.loader)
+                                                   .toArray());
+        assertEquals(3, this.loadCounter.get());
+
+        FilterQuery otherQuery = FilterQuery.of(SPARQLFilters.COUNTRY_GERMANY)
+                                            .or(SPARQLFilters.INSTANCE_OF_UNIVERSITY_HOSPITAL);
+        assertArrayEquals(new int[] { 2, 3, 4, 5, 6 }, cache.evaluate(otherQuery, this.loader)
+                                                            .toArray());
+        assertArrayEquals(new int[] { 3 }, cache.evaluate(FilterQuery.allOf(SPARQLFilters.INSTANCE_OF_HOSPITAL, SPARQLFilters.COUNTRY_GERMANY,
+                                                                            SPARQLFilters.INSTANCE_OF_UNIVERSITY_HOSPITAL),
+                                                          this.loader)
+                                                .toArray());
+        assertEquals(3, this.loadCounter.get());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testToBitmap() throws Exception
+    {
+        RoaringBitmap bitmap = FilterBitmapUtils.toBitmap(LongStream.of(EntityIdUtils.parse("Q64"), EntityIdUtils.parse("P31"),
+                                                                        EntityIdUtils.parse("Q1"), EntityIdUtils.NO_ENTITY_ID));
+        assertArrayEquals(new int[] { 1, 64 }, bitmap.toArray());
+        assertArrayEquals(new long[] { EntityIdUtils.parse("Q1"), EntityIdUtils.parse("Q64") }, FilterBitmapUtils.toEntityIds(bitmap)
+                                                                                                                  .toArray());
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.id;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdSet;
+import org.omnaest.wiki.id.EntityIdUtils.EntityKind;
+
+public class EntityIdUtilsTest
+{
+    @Test
+    public void testParse() throws Exception
+    {
+        assertEquals(42L, EntityIdUtils.parse("Q42"));
+        assertEquals(EntityKind.PROPERTY, EntityIdUtils.kindOf(EntityIdUtils.parse("P31")));
+        assertEquals(31L, EntityIdUtils.numberOf(EntityIdUtils.parse("P31")));
+        assertEquals("P31", EntityIdUtils.toString(EntityIdUtils.parse("P31")));
+        assertEquals("L7", EntityIdUtils.toString(EntityIdUtils.parse("L7")));
+        assertEquals(EntityIdUtils.parse("Q64"), EntityIdUtils.parseFromUrl("http://www.wikidata.org/entity/Q64"));
+
+        assertEquals(EntityIdUtils.NO_ENTITY_ID, EntityIdUtils.parse(null));
+        assertEquals(EntityIdUtils.NO_ENTITY_ID, EntityIdUtils.parse("Q"));
+        assertEquals(EntityIdUtils.NO_ENTITY_ID, EntityIdUtils.parse("X42"));
+        assertEquals(EntityIdUtils.NO_ENTITY_ID, EntityIdUtils.parse("Q42a"));
+        assertEquals(EntityIdUtils.NO_ENTITY_ID, EntityIdUtils.parseFromUrl("http://www.wikidata.org/entity/"));
+    }
+
+    @Test
+    public void testFramed() throws Exception
+    {
+        List<String> blocks = EntityIdUtils.framed(2, LongStream.of(1, 2, 3, 4, 5))
+                                           .map(Arrays::toString)
+                                           .collect(Collectors.toList());
+        assertEquals(Arrays.asList("[1, 2]", "[3, 4]", "[5]"), blocks);
+    }
+
+    @Test
+    public void testMap() throws Exception
+    {
+        EntityIdMap<String> map = new EntityIdMap<>();
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int ii = 0; ii < 20000; ii++)
+        {
+            long entityId = random.nextInt(2000);
+            if (random.nextInt(3) == 0)
+            {
+                assertEquals(expected.remove(entityId), map.remove(entityId));
+            }
+            else
+            {
+                assertEquals(expected.put(entityId, "Q" + ii), map.put(entityId, "Q" + ii));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (long entityId = 0; entityId < 2000; entityId++)
+        {
+            assertEquals(expected.get(entityId), map.get(entityId));
+        }
+        assertNull(map.get(EntityIdUtils.NO_ENTITY_ID));
+    }
+
+    @Test
+    public void testSet() throws Exception
+    {
+        EntityIdSet set = new EntityIdSet();
+        assertTrue(set.add(EntityIdUtils.parse("Q1")));
+        assertTrue(set.add(EntityIdUtils.parse("P1")));
+        assertFalse(set.add(EntityIdUtils.parse("Q1")));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(EntityIdUtils.parse("Q1")));
+        assertFalse(set.contains(EntityIdUtils.parse("Q1")));
+        assertTrue(set.contains(EntityIdUtils.parse("P1")));
+        assertEquals(1, set.toArray().length);
+    }
+}
@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.omnaest.wiki.cache.TieredCacheUtils;
+import org.omnaest.wiki.cache.TieredCacheUtils.Codec;
+import org.omnaest.wiki.cache.TieredCacheUtils.TieredCache;
+import org.omnaest.wiki.metrics.MetricsUtils.HistogramSnapshot;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricsSnapshot;
+
+public class MetricsUtilsTest
+{
+    @Test
+    public void testCountersAndHistograms() throws Exception
+    {
+        MetricRegistry registry = MetricsUtils.newRegistry();
+        registry.counter("requests")
+                .increment();
+        registry.counter("requests")
+                .add(2);
+        IntStream.rangeClosed(1, 1000)
+                 .parallel()
+                 .forEach(value -> registry.histogram("sizes")
+                                           .record(value));
+        registry.timer("latency")
+                .record(5, TimeUnit.MILLISECONDS);
+        assertEquals("value", registry.timer("latency")
+                                      .time(() -> "value"));
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(3L, snapshot.getCounters()
+                                 .get("requests")
+                                 .longValue());
+
+        HistogramSnapshot sizes = snapshot.getHistograms()
+                                          .get("sizes");
+        assertEquals(1000, sizes.getCount());
+        assertEquals(1, sizes.getMin());
+        assertEquals(1000, sizes.getMax());
+        assertEquals(500.5, sizes.getMean(), 0.001);
+        assertEquals(1, sizes.getPercentile(0.0));
+        assertEquals(1000, sizes.getPercentile(1.0));
+        assertTrue(Math.abs(sizes.getPercentile(0.5) - 500) <= 500 / 8);
+        assertTrue(Math.abs(sizes.getPercentile(0.99) - 990) <= 990 / 8);
+
+        HistogramSnapshot latency = snapshot.getTimers()
+                                            .get("latency");
+        assertEquals(2, latency.getCount());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(5), latency.getMax());
+    }
+
+    @Test
+    public void testCacheMetrics() throws Exception
+    {
+        MetricRegistry registry = MetricsUtils.newRegistry();
+        TieredCache<String> cache = TieredCacheUtils.newFactory()
+                                                    .withMetrics(registry)
+                                                    .newCache("test", Codec.string());
+        cache.computeIfAbsent("key", () -> "value");
+        cache.computeIfAbsent("key", () -> "value");
+
+        MetricsSnapshot snapshot = registry.snapshot();
+        assertEquals(1L, snapshot.getCounters()
+                                 .get("cache.test.hits")
+                                 .longValue());
+        assertEquals(1L, snapshot.getCounters()
+                                 .get("cache.test.misses")
+                                 .longValue());
+        assertEquals(1, snapshot.getTimers()
+                                .get("cache.test.load")
+                                .getCount());
+    }
+
+    @Test
+    public void testNoop() throws Exception
+    {
+        MetricRegistry registry = MetricsUtils.noop();
+        registry.counter("requests")
+                .increment();
+        assertTrue(registry.snapshot()
+                           .getCounters()
+                           .isEmpty());
+    }
+}
@@ -0,0 +1,165 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.refresh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import org.junit.Test;
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.omnaest.wiki.refresh.RevisionRefreshUtils.RefreshStatistic;
+import org.omnaest.wiki.refresh.RevisionRefreshUtils.RefreshableCache;
+import org.omnaest.wiki.refresh.RevisionRefreshUtils.RevisionRefresher;
+import org.omnaest.wiki.rest.HttpTransportUtils;
+import org.omnaest.wiki.rest.WikibaseRESTUtils;
+import org.omnaest.wiki.rest.WikibaseRESTUtils.WikibaseRESTAccessor;
+import org.omnaest.wiki.standin.StandInServerUtils;
+import org.omnaest.wiki.standin.StandInServerUtils.StandInServer;
+import org.wikidata.wdtk.datamodel.helpers.Datamodel;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+public class RevisionRefreshUtilsTest
+{
+    private EntityIdMap<ItemDocument> cache           = new EntityIdMap<>();
+    private Map<String, Long>         remoteRevisions = new HashMap<>();
+
+    private RefreshableCache refreshableCache = new RefreshableCache()
+    {
+        @Override
+        public long[] getEntityIds()
+        {
+            return RevisionRefreshUtilsTest.this.cache.toArray();
+        }
+
+        @Override
+        public long getRevisionId(long entityId)
+        {
+            return Optional.ofNullable(RevisionRefreshUtilsTest.this.cache.get(entityId))
+                           .map(ItemDocument::getRevisionId)
+                           .orElse(RevisionRefreshUtils.NO_REVISION_ID);
+        }
+
+        @Override
+        public void replace(EntityIdMap<ItemDocument> entityIdToDocument)
+        {
+            RevisionRefreshUtilsTest.this.cache.putAll(entityIdToDocument);
+        }
+
+        @Override
+        public void remove(long[] entityIds)
+        {
+            for (long entityId : entityIds)
+            {
+                RevisionRefreshUtilsTest.this.cache.remove(entityId);
+            }
+        }
+    };
+
+    private static ItemDocument newDocument(String entityId, long revisionId)
+    {
+        return Datamodel.makeItemDocument(Datamodel.makeWikidataItemIdValue(entityId), Collections.emptyList(), Collections.emptyList(),
+                                          Collections.emptyList(), Collections.emptyList(), Collections.emptyMap(), revisionId);
+    }
+
+    private EntityIdMap<ItemDocument> download(long[] entityIds)
+    {
+        EntityIdMap<ItemDocument> result = new EntityIdMap<>();
+        for (long entityId : entityIds)
+        {
+            String id = EntityIdUtils.toString(entityId);
+            result.put(entityId, newDocument(id, this.remoteRevisions.get(id)));
+        }
+        return result;
+    }
+
+    private Map<String, Long> resolveRevisionIds(List<String> entityIds)
+    {
+        Map<String, Long> result = new HashMap<>();
+        entityIds.stream()
+                 .filter(this.remoteRevisions::containsKey)
+                 .forEach(entityId -> result.put(entityId, this.remoteRevisions.get(entityId)));
+        return result;
+    }
+
+    @Test
+    public void testRefresh() throws Exception
+    {
+        for (int ii = 1; ii <= 120; ii++)
+        {
+            this.cache.put(ii, newDocument("Q" + ii, 10));
+            this.remoteRevisions.put("Q" + ii, 10L);
+        }
+        this.remoteRevisions.put("Q7", 11L);
+        this.remoteRevisions.put("Q101", 12L);
+        this.remoteRevisions.remove("Q50");
+
+        RefreshStatistic statistic = RevisionRefreshUtils.newRefresher(this.refreshableCache, this::resolveRevisionIds, this::download)
+                                                         .withMaxRequestsPerSecond(1000)
+                                                         .refresh();
+
+        assertEquals(120, statistic.getNumberOfChecked());
+        assertEquals(2, statistic.getNumberOfChanged());
+        assertEquals(1, statistic.getNumberOfRemoved());
+        assertEquals(0, statistic.getNumberOfErrors());
+        assertEquals(11L, this.cache.get(7)
+                                    .getRevisionId());
+        assertEquals(12L, this.cache.get(101)
+                                    .getRevisionId());
+        assertEquals(10L, this.cache.get(8)
+                                    .getRevisionId());
+        assertFalse(this.cache.containsKey(50));
+    }
+
+    @Test
+    public void testRefreshWithApiError() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withApiError("ratelimited"))
+        {
+            // the recorded revisions of the stand in server
+            this.cache.put(1, newDocument("Q1", 1001));
+            this.cache.put(64, newDocument("Q64", 1003));
+            this.cache.put(183, newDocument("Q183", 1004));
+
+            WikibaseRESTAccessor accessor = WikibaseRESTUtils.newInstance()
+                                                             .connectTo(server.getUrl())
+                                                             .withTransport(HttpTransportUtils.newInstance());
+            try (RevisionRefresher refresher = RevisionRefreshUtils.newRefresher(this.refreshableCache, accessor::fetchRevisionIds, this::download)
+                                                                   .withMaxRequestsPerSecond(1000))
+            {
+                // the error answered with status 200 fails the batch instead of removing all its entities
+                RefreshStatistic statistic = refresher.refresh();
+                assertEquals(1, statistic.getNumberOfErrors());
+                assertEquals(0, statistic.getNumberOfRemoved());
+                assertEquals(3, this.cache.size());
+
+                server.withApiError(null);
+                statistic = refresher.refresh();
+                assertEquals(0, statistic.getNumberOfErrors());
+                assertEquals(0, statistic.getNumberOfChanged());
+                assertEquals(0, statistic.getNumberOfRemoved());
+                assertEquals(3, this.cache.size());
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omnaest.wiki.rest.HttpTransportUtils.DeadlineExceededException;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpStatusException;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class HttpTransportUtilsTest
+{
+    private HttpServer    server;
+    private String        url;
+    private Set<Integer>  clientPorts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private Set<String>   slowQueries = Collections.newSetFromMap(new ConcurrentHashMap<>());
+    private HttpTransport transport;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/w/api.php", exchange ->
+        {
+            this.clientPorts.add(exchange.getRemoteAddress()
+                                         .getPort());
+            String query = URLDecoder.decode(exchange.getRequestURI()
+                                                     .getRawQuery(),
+                                             "UTF-8");
+            if (query.contains("slow") && (!query.contains("once") || this.slowQueries.add(query)))
+            {
+                try
+                {
+                    Thread.sleep(2000);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread()
+                          .interrupt();
+                }
+            }
+            byte[] body = ("{\"query\":\"" + query + "\",\"agent\":\"" + exchange.getRequestHeaders()
+                                                                                 .getFirst("User-Agent")
+                    + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(query.contains("fail") ? 503 : 200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(body);
+            }
+        });
+        this.server.setExecutor(Executors.newCachedThreadPool());
+        this.server.start();
+        this.url = "http://localhost:" + this.server.getAddress()
+                                                    .getPort();
+        this.transport = HttpTransportUtils.newInstance()
+                                           .withMaxConnectionsPerHost(2)
+                                           .withUserAgent("test-agent");
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.transport.close();
+        this.server.stop(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testRequestsReuseConnections() throws Exception
+    {
+        for (int ii = 0; ii < 20; ii++)
+        {
+            Map<String, String> response = this.transport.request(this.url)
+                                                         .addPathToken("w")
+                                                         .addPathToken("api.php")
+                                                         .addQueryParameter("search", "Marie Curie " + ii)
+                                                         .get(Map.class);
+            assertEquals("search=Marie Curie " + ii, response.get("query"));
+            assertEquals("test-agent", response.get("agent"));
+        }
+
+        assertEquals(1, this.clientPorts.size());
+        assertEquals(20, this.transport.getStatistic()
+                                       .getNumberOfRequests());
+        assertEquals(1, this.transport.getStatistic()
+                                      .getNumberOfAvailableConnections());
+    }
+
+    @Test
+    public void testStatusException() throws Exception
+    {
+        try
+        {
+            this.transport.request(this.url + "/w/api.php")
+                          .addQueryParameter("action", "fail")
+                          .get();
+            fail();
+        }
+        catch (HttpStatusException e)
+        {
+            assertEquals(503, e.getStatusCode());
+        }
+
+        // the connection of the failed request is released back into the pool
+        assertTrue(this.transport.request(this.url + "/w/api.php")
+                                 .addQueryParameter("action", "ok")
+                                 .get()
+                                 .contains("action=ok"));
+        assertEquals(0, this.transport.getStatistic()
+                                      .getNumberOfLeasedConnections());
+    }
+
+    @Test
+    public void testDeadline() throws Exception
+    {
+        long startTime = System.currentTimeMillis();
+        try
+        {
+            this.transport.request(this.url + "/w/api.php")
+                          .addQueryParameter("action", "slow")
+                          .withDeadline(200)
+                          .get();
+            fail();
+        }
+        catch (DeadlineExceededException e)
+        {
+            assertEquals(200, e.getDeadline());
+        }
+        assertTrue(System.currentTimeMillis() - startTime < 1500);
+        assertEquals(1, this.transport.getStatistic()
+                                      .getNumberOfExceededDeadlines());
+    }
+
+    @Test
+    public void testHedging() throws Exception
+    {
+        this.transport.withHedging(0.9);
+        for (int ii = 0; ii < 25; ii++)
+        {
+            this.transport.request(this.url + "/w/api.php")
+                          .addQueryParameter("action", "warmup")
+                          .get();
+        }
+
+        // only the first request of the query is slow, so the hedged duplicate wins. Single warmup calls slower than the percentile are
+        // hedged as well.
+        long numberOfHedgedRequests = this.transport.getStatistic()
+                                                    .getNumberOfHedgedRequests();
+        long startTime = System.currentTimeMillis();
+        assertTrue(this.transport.request(this.url + "/w/api.php")
+                                 .addQueryParameter("action", "slow-once")
+                                 .get()
+                                 .contains("slow-once"));
+        assertTrue(System.currentTimeMillis() - startTime < 1500);
+        assertEquals(numberOfHedgedRequests + 1, this.transport.getStatistic()
+                                                               .getNumberOfHedgedRequests());
+    }
+
+    @Test
+    public void testHedgingAfterExceededDeadlines() throws Exception
+    {
+        this.transport.withHedging(0.5);
+        for (int ii = 0; ii < 20; ii++)
+        {
+            try
+            {
+                this.transport.request(this.url + "/w/api.php")
+                              .addQueryParameter("action", "slow")
+                              .withDeadline(50)
+                              .get();
+                fail();
+            }
+            catch (DeadlineExceededException e)
+            {
+                // expected
+            }
+        }
+
+        // the calls which exceeded their deadline are known latencies, so the next slow call is hedged
+        assertTrue(this.transport.request(this.url + "/w/api.php")
+                                 .addQueryParameter("action", "slow-once")
+                                 .withDeadline(1500)
+                                 .get()
+                                 .contains("slow-once"));
+        assertEquals(1, this.transport.getStatistic()
+                                      .getNumberOfHedgedRequests());
+    }
+}
@@ -15,10 +15,21 @@
  ******************************************************************************/
 package org.omnaest.wiki.rest;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.function.Consumer;
+
 import org.junit.Ignore;
 import org.junit.Test;
+import org.omnaest.wiki.cache.TieredCacheUtils;
+import org.omnaest.wiki.cache.TieredCacheUtils.Codec;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLExpression;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilters;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLResult;
 import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLResults;
+import org.omnaest.wiki.rest.WikiRESTUtils.WikiRESTAccessor;
+import org.omnaest.wiki.standin.StandInServerUtils;
+import org.omnaest.wiki.standin.StandInServerUtils.StandInServer;
 
 public class WikiRESTUtilsTest
 {
@@ -40,4 +51,33 @@ public class WikiRESTUtilsTest
               });
     }
 
+    @Test
+    public void testWithoutCache() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance())
+        {
+            WikiRESTAccessor accessor = WikiRESTUtils.newInstance()
+                                                     .connectTo(server.getUrl())
+                                                     .withTransport(HttpTransportUtils.newInstance())
+                                                     .withCache(TieredCacheUtils.newFactory()
+                                                                                .newCache("sparql", Codec.json(SPARQLResult.class)));
+            Consumer<SPARQLExpression> expression = pagedExpression -> pagedExpression.addFilter("item", "wdt:P31 ?class")
+                                                                                      .setLimit(10);
+            accessor.fetch(expression);
+            accessor.fetch(expression);
+            assertEquals(1L, server.getStatistic()
+                                   .getNumberOfRequestsByEndpoint()
+                                   .get("sparql")
+                                   .longValue());
+
+            // every query of the accessor without cache is sent to the server
+            WikiRESTAccessor uncachedAccessor = accessor.withoutCache();
+            uncachedAccessor.fetch(expression);
+            uncachedAccessor.fetch(expression);
+            assertEquals(3L, server.getStatistic()
+                                   .getNumberOfRequestsByEndpoint()
+                                   .get("sparql")
+                                   .longValue());
+        }
+    }
 }
@@ -0,0 +1,118 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omnaest.wiki.rest.WikibaseRESTUtils.WikibaseRESTAccessor;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class WikibaseRESTUtilsTest
+{
+    private static final String ENTITIES = "{\"entities\":{" + "\"Q42\":{\"type\":\"item\",\"id\":\"Q42\",\"lastrevid\":7,"
+            + "\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Douglas Adams\"}},\"descriptions\":[],\"aliases\":[],\"claims\":[],\"sitelinks\":[]},"
+            + "\"Q404\":{\"id\":\"Q404\",\"missing\":\"\"}}}";
+
+    private static final String REDIRECT = "{\"entities\":{\"Q1\":{\"type\":\"item\",\"id\":\"Q2\",\"lastrevid\":9,"
+            + "\"redirects\":{\"from\":\"Q1\",\"to\":\"Q2\"},\"labels\":{\"en\":{\"language\":\"en\",\"value\":\"Universe\"}},"
+            + "\"descriptions\":[],\"aliases\":[],\"claims\":[],\"sitelinks\":[]}}}";
+
+    private static final String SEARCH = "{\"search\":[{\"id\":\"Q42\",\"label\":\"Douglas Adams\"},{\"id\":\"Q5\"}]}";
+
+    private HttpServer           server;
+    private WikibaseRESTAccessor accessor;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        this.server.createContext("/w/api.php", exchange ->
+        {
+            String query = URLDecoder.decode(exchange.getRequestURI()
+                                                     .getRawQuery(),
+                                             "UTF-8");
+            String response = query.contains("action=wbsearchentities") ? SEARCH
+                    : query.contains("props=info") ? "{\"entities\":{\"Q42\":{\"id\":\"Q42\",\"lastrevid\":7}}}"
+                            : query.contains("ids=Q1&") || query.endsWith("ids=Q1") ? REDIRECT : ENTITIES;
+            byte[] body = response.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(body);
+            }
+        });
+        this.server.start();
+        this.accessor = WikibaseRESTUtils.newInstance()
+                                         .connectTo("http://localhost:" + this.server.getAddress()
+                                                                                     .getPort())
+                                         .withTransport(HttpTransportUtils.newInstance());
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.server.stop(0);
+    }
+
+    @Test
+    public void testFetchItemDocuments() throws Exception
+    {
+        Map<String, ItemDocument> entityIdToDocument = this.accessor.fetchItemDocuments(Arrays.asList("Q42", "Q404"));
+        assertEquals(1, entityIdToDocument.size());
+        ItemDocument document = entityIdToDocument.get("Q42");
+        assertEquals("Douglas Adams", document.findLabel("en"));
+        assertEquals(7, document.getRevisionId());
+
+        assertEquals(7l, this.accessor.fetchRevisionIds(Arrays.asList("Q42"))
+                                      .get("Q42")
+                                      .longValue());
+    }
+
+    @Test
+    public void testFetchRedirectedItemDocument() throws Exception
+    {
+        // Q1 redirects to Q2, the document is returned under the requested id
+        Map<String, ItemDocument> entityIdToDocument = this.accessor.fetchItemDocuments(Arrays.asList("Q1"));
+        assertEquals(Arrays.asList("Q1"), new ArrayList<>(entityIdToDocument.keySet()));
+        assertEquals("Q2", entityIdToDocument.get("Q1")
+                                             .getEntityId()
+                                             .getId());
+        assertEquals("Universe", entityIdToDocument.get("Q1")
+                                                   .findLabel("en"));
+    }
+
+    @Test
+    public void testSearchEntities() throws Exception
+    {
+        assertEquals(Arrays.asList("Q42", "Q5"), this.accessor.searchEntities("Douglas Adams", "en"));
+        assertTrue(this.accessor.searchEntities(" ", "en")
+                                .isEmpty());
+    }
+}
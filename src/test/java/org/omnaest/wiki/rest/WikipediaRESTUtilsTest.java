@@ -0,0 +1,104 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Ignore;
+import org.junit.Test;
+import org.omnaest.wiki.standin.StandInServerUtils;
+import org.omnaest.wiki.standin.StandInServerUtils.StandInServer;
+
+public class WikipediaRESTUtilsTest
+{
+
+    @Test
+    @Ignore
+    public void testFetchPlainTexts() throws Exception
+    {
+        Map<String, String> titleToText = WikipediaRESTUtils.newInstance()
+                                                            .usingLocalCache()
+                                                            .fetchPlainTexts(Arrays.asList("Albert Einstein", "Marie_Curie", "Charité"));
+
+        titleToText.forEach((title, text) ->
+        {
+            System.out.println("------------------------");
+            System.out.println(title);
+            System.out.println(text);
+        });
+    }
+
+    @Test
+    public void testFetchPlainTextsOffline() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withGeneratedItems(3)
+                                                      .withRedirect("Redirected item", "Item Q1000001"))
+        {
+            Map<String, String> titleToText = WikipediaRESTUtils.newInstance()
+                                                                .connectTo(server.getUrl())
+                                                                .withTransport(HttpTransportUtils.newInstance())
+                                                                .fetchPlainTexts(Arrays.asList("Item Q1000000", "redirected_item", "item_Q1000002",
+                                                                                               "Unknown title"));
+
+            // the results are keyed by the given titles, although the api answers with the normalized and redirected titles
+            assertEquals(Arrays.asList("Item Q1000000", "redirected_item", "item_Q1000002"), Arrays.asList(titleToText.keySet()
+                                                                                                                      .toArray()));
+            assertTrue(titleToText.get("redirected_item")
+                                  .startsWith("Item Q1000001 is "));
+            assertFalse(titleToText.containsKey("Unknown title"));
+
+            // whole articles are requested one title at a time
+            assertEquals(4L, (long) server.getStatistic()
+                                          .getNumberOfRequestsByEndpoint()
+                                          .get("query"));
+        }
+    }
+
+    @Test
+    public void testFetchIntroductionsOffline() throws Exception
+    {
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withGeneratedItems(30))
+        {
+            List<String> titles = IntStream.range(0, 30)
+                                           .mapToObj(ii -> "Item Q" + (1000000 + ii))
+                                           .collect(Collectors.toList());
+            Map<String, String> titleToText = WikipediaRESTUtils.newInstance()
+                                                                .connectTo(server.getUrl())
+                                                                .withTransport(HttpTransportUtils.newInstance())
+                                                                .usingIntroductionsOnly()
+                                                                .fetchPlainTexts(titles);
+
+            assertEquals(titles, Arrays.asList(titleToText.keySet()
+                                                          .toArray()));
+
+            // a single block of titles, the continuation fetches the introductions beyond the first 20
+            assertEquals(2L, (long) server.getStatistic()
+                                          .getNumberOfRequestsByEndpoint()
+                                          .get("query"));
+        }
+    }
+
+}
@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.omnaest.wiki.WikiUtils.Language;
+import org.omnaest.wiki.dump.WikiDumpUtils;
+import org.omnaest.wiki.search.LabelIndexUtils.LabelIndex;
+import org.omnaest.wiki.search.LabelIndexUtils.SearchHit;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+
+public class LabelIndexUtilsTest
+{
+    private LabelIndex index = LabelIndexUtils.newInstance()
+                                              .withLanguages(Language.EN, Language.DE);
+
+    @Before
+    public void setUp() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newInMemoryStore();
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .ingest(inputStream, store);
+        }
+        this.index.addAll(store.getEntityIds()
+                               .map(store::get)
+                               .map(document -> document.get()));
+    }
+
+    @Test
+    public void testSearch() throws Exception
+    {
+        assertEquals(3, this.index.size());
+        assertEquals(Arrays.asList("Q64"), this.search("berl"));
+        assertEquals(Arrays.asList("Q183", "Q64"), this.search("Germany"));
+        assertEquals(Arrays.asList("Q183"), this.search("federal rep"));
+        assertEquals(Arrays.asList("Q1"), this.search("Cosmos"));
+        assertEquals(Arrays.asList("Q1"), this.search("Universum"));
+        assertTrue(this.search("Univers").contains("Q1"));
+        assertEquals(Arrays.asList(), this.search("ensemble"));
+        assertEquals(Arrays.asList(), this.search("berlin cosmos"));
+    }
+
+    @Test
+    public void testLimit() throws Exception
+    {
+        assertEquals(Arrays.asList("Q183", "Q64"), this.search("Germany"));
+        List<SearchHit> hits = this.index.search("Germany", 1);
+        assertEquals(1, hits.size());
+        assertEquals("Q183", hits.get(0)
+                                 .getEntityId());
+    }
+
+    private List<String> search(String query)
+    {
+        return this.index.search(query, 10)
+                         .stream()
+                         .map(SearchHit::getEntityId)
+                         .collect(Collectors.toList());
+    }
+
+}
@@ -0,0 +1,95 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.snapshot;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.omnaest.wiki.dump.WikiDumpUtils;
+import org.omnaest.wiki.filter.FilterBitmapUtils;
+import org.omnaest.wiki.filter.FilterBitmapUtils.FilterBitmapCache;
+import org.omnaest.wiki.id.EntityIdUtils;
+import org.omnaest.wiki.id.EntityIdUtils.EntityIdMap;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilters;
+import org.omnaest.wiki.snapshot.SnapshotUtils.SnapshotStatistic;
+import org.omnaest.wiki.store.EntityStoreUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+import org.roaringbitmap.RoaringBitmap;
+import org.wikidata.wdtk.datamodel.interfaces.ItemDocument;
+
+public class SnapshotUtilsTest
+{
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void testWriteAndLoad() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newInMemoryStore();
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .ingest(inputStream, store);
+        }
+        List<ItemDocument> documents = store.getEntityIds()
+                                            .map(store::get)
+                                            .map(document -> document.get())
+                                            .collect(Collectors.toList());
+
+        FilterBitmapCache filterBitmapCache = FilterBitmapUtils.newCache()
+                                                               .put(SPARQLFilters.COUNTRY_GERMANY, RoaringBitmap.bitmapOf(64, 1055));
+
+        File file = new File(this.temporaryFolder.getRoot(), "snapshot.bin.gz");
+        SnapshotStatistic writeStatistic = SnapshotUtils.newWriter()
+                                                        .withDocuments(documents)
+                                                        .withFilterBitmaps(filterBitmapCache)
+                                                        .writeTo(file);
+        assertEquals(3, writeStatistic.getNumberOfEntities());
+        assertEquals(1, writeStatistic.getNumberOfFilters());
+
+        EntityIdMap<ItemDocument> loadedDocuments = new EntityIdMap<>();
+        FilterBitmapCache loadedFilterBitmapCache = FilterBitmapUtils.newCache();
+        SnapshotStatistic loadStatistic = SnapshotUtils.newLoader()
+                                                       .withChunkSize(1)
+                                                       .withParallelism(2)
+                                                       .load(file, entityIdToDocument ->
+                                                       {
+                                                           synchronized (loadedDocuments)
+                                                           {
+                                                               loadedDocuments.putAll(entityIdToDocument);
+                                                           }
+                                                       }, loadedFilterBitmapCache)
+                                                       .get();
+        assertEquals(3, loadStatistic.getNumberOfEntities());
+        assertEquals(3, loadedDocuments.size());
+        assertEquals("Berlin", loadedDocuments.get(EntityIdUtils.parse("Q64"))
+                                              .getLabels()
+                                              .get("en")
+                                              .getText());
+        assertArrayEquals(new int[] { 64, 1055 }, loadedFilterBitmapCache.get(SPARQLFilters.COUNTRY_GERMANY)
+                                                                         .get()
+                                                                         .toArray());
+    }
+}
@@ -0,0 +1,352 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.standin;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.omnaest.wiki.MicroCrawler;
+import org.omnaest.wiki.MicroCrawler.Matchers;
+import org.omnaest.wiki.WikiUtils;
+import org.omnaest.wiki.WikiUtils.Item;
+import org.omnaest.wiki.WikiUtils.WikiAccessor;
+import org.omnaest.wiki.metrics.MetricsUtils;
+import org.omnaest.wiki.metrics.MetricsUtils.Counter;
+import org.omnaest.wiki.metrics.MetricsUtils.HistogramSnapshot;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricRegistry;
+import org.omnaest.wiki.metrics.MetricsUtils.MetricsSnapshot;
+import org.omnaest.wiki.metrics.MetricsUtils.Timer;
+import org.omnaest.wiki.rest.HttpTransportUtils;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
+import org.omnaest.wiki.rest.WikiRESTUtils.SPARQLFilterValueProvider;
+import org.omnaest.wiki.standin.StandInServerUtils.StandInServer;
+
+/**
+ * Load test harness, which runs named scenarios from several threads for a given duration and reports the throughput, the latencies and the
+ * errors per scenario. The scenarios for {@link WikiAccessor}s and the {@link MicroCrawler} are meant to be run against a
+ * {@link StandInServer}, see {@link #main(String[])}.
+ */
+public class LoadTestUtils
+{
+    public static interface LoadTest
+    {
+        /**
+         * Default is 4
+         * 
+         * @param numberOfThreads
+         * @return
+         */
+        public LoadTest withThreads(int numberOfThreads);
+
+        /**
+         * Default is 10 seconds
+         * 
+         * @param duration
+         * @param timeUnit
+         * @return
+         */
+        public LoadTest withDuration(long duration, TimeUnit timeUnit);
+
+        /**
+         * Adds a scenario, the threads run all scenarios in turn
+         * 
+         * @param name
+         * @param operation
+         * @return
+         */
+        public LoadTest addScenario(String name, Runnable operation);
+
+        public LoadTestResult run();
+    }
+
+    public static interface LoadTestResult
+    {
+        public long getNumberOfOperations();
+
+        public long getNumberOfErrors();
+
+        /**
+         * Returns the number of operations per second
+         * 
+         * @return
+         */
+        public double getThroughput();
+
+        /**
+         * Returns the latencies in nanoseconds by scenario name
+         * 
+         * @return
+         */
+        public Map<String, HistogramSnapshot> getLatencies();
+
+        /**
+         * Returns the number of failed operations by scenario name
+         * 
+         * @return
+         */
+        public Map<String, Long> getErrors();
+    }
+
+    private static class LoadTestImpl implements LoadTest
+    {
+        private int                   numberOfThreads = 4;
+        private long                  duration        = TimeUnit.SECONDS.toMillis(10);
+        private Map<String, Runnable> scenarios       = new LinkedHashMap<>();
+
+        @Override
+        public LoadTest withThreads(int numberOfThreads)
+        {
+            this.numberOfThreads = numberOfThreads;
+            return this;
+        }
+
+        @Override
+        public LoadTest withDuration(long duration, TimeUnit timeUnit)
+        {
+            this.duration = timeUnit.toMillis(duration);
+            return this;
+        }
+
+        @Override
+        public LoadTest addScenario(String name, Runnable operation)
+        {
+            this.scenarios.put(name, operation);
+            return this;
+        }
+
+        @Override
+        public LoadTestResult run()
+        {
+            MetricRegistry registry = MetricsUtils.newRegistry();
+            List<String> names = new ArrayList<>(this.scenarios.keySet());
+            List<Runnable> operations = new ArrayList<>(this.scenarios.values());
+            List<Timer> latencies = names.stream()
+                                         .map(registry::timer)
+                                         .collect(Collectors.toList());
+            List<Counter> errors = names.stream()
+                                        .map(registry::counter)
+                                        .collect(Collectors.toList());
+
+            long startTime = System.currentTimeMillis();
+            long endTime = startTime + this.duration;
+            ExecutorService executor = Executors.newFixedThreadPool(this.numberOfThreads);
+            try
+            {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int thread = 0; thread < this.numberOfThreads; thread++)
+                {
+                    int firstScenario = thread;
+                    futures.add(executor.submit(() ->
+                    {
+                        for (int ii = firstScenario; System.currentTimeMillis() < endTime; ii++)
+                        {
+                            int scenario = ii % operations.size();
+                            long operationStartTime = System.nanoTime();
+                            try
+                            {
+                                operations.get(scenario)
+                                          .run();
+                                latencies.get(scenario)
+                                         .record(System.nanoTime() - operationStartTime, TimeUnit.NANOSECONDS);
+                            }
+                            catch (RuntimeException e)
+                            {
+                                errors.get(scenario)
+                                      .increment();
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures)
+                {
+                    future.get();
+                }
+            }
+            catch (Exception e)
+            {
+                throw new IllegalStateException("Load test failed", e);
+            }
+            finally
+            {
+                executor.shutdownNow();
+            }
+            long elapsedTime = Math.max(1, System.currentTimeMillis() - startTime);
+
+            MetricsSnapshot snapshot = registry.snapshot();
+            long numberOfErrors = snapshot.getCounters()
+                                          .values()
+                                          .stream()
+                                          .mapToLong(Long::longValue)
+                                          .sum();
+            long numberOfOperations = numberOfErrors + snapshot.getTimers()
+                                                               .values()
+                                                               .stream()
+                                                               .mapToLong(HistogramSnapshot::getCount)
+                                                               .sum();
+            return new LoadTestResult()
+            {
+                @Override
+                public long getNumberOfOperations()
+                {
+                    return numberOfOperations;
+                }
+
+                @Override
+                public long getNumberOfErrors()
+                {
+                    return numberOfErrors;
+                }
+
+                @Override
+                public double getThroughput()
+                {
+                    return numberOfOperations * 1000.0 / elapsedTime;
+                }
+
+                @Override
+                public Map<String, HistogramSnapshot> getLatencies()
+                {
+                    return snapshot.getTimers();
+                }
+
+                @Override
+                public Map<String, Long> getErrors()
+                {
+                    return snapshot.getCounters();
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "LoadTestResult [operations=" + numberOfOperations + ", errors=" + numberOfErrors + ", throughput=" + this.getThroughput()
+                            + "/s, latencies=" + snapshot.getTimers() + ", errorsByScenario=" + snapshot.getCounters() + "]";
+                }
+            };
+        }
+    }
+
+    public static LoadTest newLoadTest()
+    {
+        return new LoadTestImpl();
+    }
+
+    /**
+     * Resolves a random one of the given number of consecutive entity ids and its title
+     * 
+     * @param accessor
+     * @param firstEntityId
+     * @param numberOfItems
+     * @return
+     */
+    public static Runnable findRandomItem(WikiAccessor accessor, long firstEntityId, int numberOfItems)
+    {
+        return () -> accessor.findByEntityId("Q" + (firstEntityId + ThreadLocalRandom.current()
+                                                                                   .nextInt(numberOfItems)))
+                             .orElseThrow(() -> new IllegalStateException("Item not found"))
+                             .getTitle();
+    }
+
+    /**
+     * Searches for the given text and resolves the titles of the first hits
+     * 
+     * @param accessor
+     * @param text
+     * @param numberOfHits
+     * @return
+     */
+    public static Runnable searchFor(WikiAccessor accessor, String text, int numberOfHits)
+    {
+        return () -> accessor.searchFor(text)
+                             .stream()
+                             .limit(numberOfHits)
+                             .forEach(Item::getTitle);
+    }
+
+    /**
+     * Runs the given SPARQL filter and resolves the titles of the first items
+     * 
+     * @param accessor
+     * @param filter
+     * @param numberOfItems
+     * @return
+     */
+    public static Runnable searchFor(WikiAccessor accessor, SPARQLFilterValueProvider filter, int numberOfItems)
+    {
+        return () -> accessor.searchFor(filter)
+                             .stream()
+                             .limit(numberOfItems)
+                             .forEach(Item::getTitle);
+    }
+
+    /**
+     * Crawls from the given url with the given {@link MicroCrawler} and collects all matches
+     * 
+     * @param crawler
+     * @param url
+     * @return
+     */
+    public static Runnable crawl(MicroCrawler crawler, String url)
+    {
+        return () -> crawler.analyze(url)
+                            .getMatches()
+                            .count();
+    }
+
+    /**
+     * Runs all scenarios against a {@link StandInServer} with 10000 generated items and 5 to 20 milliseconds latency and prints the results.
+     * Optional arguments are the number of threads and the duration in seconds.
+     * 
+     * @param args
+     */
+    public static void main(String[] args)
+    {
+        int numberOfThreads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int duration = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int numberOfItems = 10000;
+        long firstEntityId = 1000000;
+        try (StandInServer server = StandInServerUtils.newInstance()
+                                                      .withGeneratedItems(numberOfItems)
+                                                      .withLatency(5, 20);
+                HttpTransport transport = HttpTransportUtils.newInstance())
+        {
+            WikiAccessor accessor = WikiUtils.newInstance()
+                                             .withTransport(transport)
+                                             .connectTo(server.getUrl(), server.getUrl(), server.getUrl());
+            MicroCrawler crawler = MicroCrawler.newInstance()
+                                               .withMaxNumberOfRequests(5)
+                                               .addMatcher(Matchers.EMAIL);
+            LoadTestResult result = newLoadTest().withThreads(numberOfThreads)
+                                                 .withDuration(duration, TimeUnit.SECONDS)
+                                                 .addScenario("findByEntityId", findRandomItem(accessor, firstEntityId, numberOfItems))
+                                                 .addScenario("searchForText", searchFor(accessor, "Item Q100", 10))
+                                                 .addScenario("searchForFilter", searchFor(accessor, () -> "wdt:P31 wd:Q36906466", 100))
+                                                 .addScenario("crawl", crawl(crawler, server.getUrl() + "/index.html"))
+                                                 .run();
+            System.out.println(result);
+            System.out.println(server.getStatistic());
+            System.out.println(MetricsUtils.shared()
+                                           .snapshot());
+        }
+    }
+}
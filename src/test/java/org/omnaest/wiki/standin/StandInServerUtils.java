@@ -0,0 +1,735 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.standin;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang3.StringUtils;
+import org.omnaest.wiki.WikiUtils.WikiAccessor;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Local stand-in for the wikidata and wikipedia endpoints, so {@link WikiAccessor}s and the {@link org.omnaest.wiki.MicroCrawler} can be
+ * driven without network access. The items are taken from the recorded sample dump and can be extended by generated copies. Served are<br>
+ * <br>
+ * <ul>
+ * <li>/sparql: all items in ascending order of their entity id, paged by the LIMIT and OFFSET of the query</li>
+ * <li>/w/api.php?action=wbgetentities: the item documents, or their revisions for props=info</li>
+ * <li>/w/api.php?action=wbsearchentities: the items with a label containing the search text</li>
+ * <li>/w/api.php?action=query&amp;prop=extracts: the descriptions of the items with a matching enwiki title as extracts. Like the TextExtracts
+ * api titles are normalized, redirects are followed and only one extract, or {@value #MAX_INTRO_EXTRACTS} with exintro, is returned per
+ * response together with a continuation.</li>
+ * <li>/wiki/&lt;title&gt;: the recorded html page for items with a matching enwiki title</li>
+ * <li>paths added by {@link StandInServer#withPage(String, String)}: the given html page</li>
+ * <li>any other path: the recorded html page, so crawled links always resolve</li>
+ * </ul>
+ * Latency, throttling, failures and api errors can be injected and changed while the server is running.
+ */
+public class StandInServerUtils
+{
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final long FIRST_GENERATED_ENTITY_ID = 1000000;
+
+    private static final int MAX_INTRO_EXTRACTS = 20;
+
+    private static final Pattern LIMIT  = Pattern.compile("LIMIT ([0-9]+)");
+    private static final Pattern OFFSET = Pattern.compile("OFFSET ([0-9]+)");
+
+    public static interface StandInServer extends AutoCloseable
+    {
+        /**
+         * Returns the base url, which serves as wikidata, wikipedia and wikibase url
+         * 
+         * @return
+         */
+        public String getUrl();
+
+        /**
+         * Delays every response by a random latency between the given minimum and maximum in milliseconds
+         * 
+         * @param minimum
+         * @param maximum
+         * @return
+         */
+        public StandInServer withLatency(long minimum, long maximum);
+
+        /**
+         * Answers requests exceeding the given number of requests per second with status 429. A value of 0 disables the throttling, which is
+         * the default.
+         * 
+         * @param maxRequestsPerSecond
+         * @return
+         */
+        public StandInServer withMaxRequestsPerSecond(int maxRequestsPerSecond);
+
+        /**
+         * Answers the given fraction of the requests with status 503
+         * 
+         * @param errorRate
+         *            between 0.0 and 1.0
+         * @return
+         */
+        public StandInServer withErrorRate(double errorRate);
+
+        /**
+         * Answers all api requests with status 200 and an error object with the given code instead of a result, like MediaWiki does e.g. for
+         * "ratelimited", "maxlag" or "readonly". A null code disables the errors, which is the default.
+         * 
+         * @param code
+         * @return
+         */
+        public StandInServer withApiError(String code);
+
+        /**
+         * Adds the given number of copies of the recorded "universe" item with the entity ids Q1000000, Q1000001, ... and the labels
+         * "Item Q1000000", ...
+         * 
+         * @param numberOfItems
+         * @return
+         */
+        public StandInServer withGeneratedItems(int numberOfItems);
+
+        /**
+         * Adds a redirect of the given wikipedia title to the target title
+         * 
+         * @param title
+         * @param targetTitle
+         * @return
+         */
+        public StandInServer withRedirect(String title, String targetTitle);
+
+        /**
+         * Serves the given html page for the given path instead of the recorded html page
+         * 
+         * @param path
+         * @param html
+         * @return
+         */
+        public StandInServer withPage(String path, String html);
+
+        public StandInServerStatistic getStatistic();
+
+        @Override
+        public void close();
+    }
+
+    public static interface StandInServerStatistic
+    {
+        public long getNumberOfRequests();
+
+        public long getNumberOfThrottledRequests();
+
+        public long getNumberOfInjectedErrors();
+
+        /**
+         * Returns the number of requests per endpoint, e.g. "sparql", "wbgetentities" or "wiki"
+         * 
+         * @return
+         */
+        public Map<String, Long> getNumberOfRequestsByEndpoint();
+    }
+
+    private static class StandInServerImpl implements StandInServer
+    {
+        private HttpServer                     server;
+        private ExecutorService                executor                  = Executors.newCachedThreadPool();
+        private NavigableMap<Long, ObjectNode> entities                  = new ConcurrentSkipListMap<>();
+        private byte[]                         page;
+        private volatile long                  minimumLatency            = 0;
+        private volatile long                  maximumLatency            = 0;
+        private volatile int                   maxRequestsPerSecond      = 0;
+        private volatile double                errorRate                 = 0.0;
+        private volatile String                apiErrorCode              = null;
+        private AtomicLong                     numberOfRequests          = new AtomicLong();
+        private AtomicLong                     numberOfThrottledRequests = new AtomicLong();
+        private AtomicLong                     numberOfInjectedErrors    = new AtomicLong();
+        private Map<String, AtomicLong>        endpointToRequests        = new ConcurrentHashMap<>();
+        private Map<String, String>            titleToRedirect           = new ConcurrentHashMap<>();
+        private Map<String, byte[]>            pathToPage                = new ConcurrentHashMap<>();
+        private ThrottlingWindow               throttlingWindow          = new ThrottlingWindow();
+
+        public StandInServerImpl()
+        {
+            super();
+            this.page = readResource("/fixtures/page.html");
+            this.addEntities(readResource("/wikidata-sample-dump.json"));
+            try
+            {
+                this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+            this.server.createContext("/", this::handle);
+            this.server.setExecutor(this.executor);
+            this.server.start();
+        }
+
+        private void addEntities(byte[] dump)
+        {
+            try
+            {
+                for (JsonNode entity : OBJECT_MAPPER.readTree(dump))
+                {
+                    if ("item".equals(entity.path("type")
+                                            .asText()))
+                    {
+                        this.entities.put(parseEntityId(entity.path("id")
+                                                              .asText()),
+                                          (ObjectNode) entity);
+                    }
+                }
+            }
+            catch (IOException e)
+            {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public String getUrl()
+        {
+            return "http://localhost:" + this.server.getAddress()
+                                                    .getPort();
+        }
+
+        @Override
+        public StandInServer withLatency(long minimum, long maximum)
+        {
+            this.minimumLatency = minimum;
+            this.maximumLatency = Math.max(minimum, maximum);
+            return this;
+        }
+
+        @Override
+        public StandInServer withMaxRequestsPerSecond(int maxRequestsPerSecond)
+        {
+            this.maxRequestsPerSecond = maxRequestsPerSecond;
+            return this;
+        }
+
+        @Override
+        public StandInServer withErrorRate(double errorRate)
+        {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        @Override
+        public StandInServer withApiError(String code)
+        {
+            this.apiErrorCode = code;
+            return this;
+        }
+
+        @Override
+        public StandInServer withGeneratedItems(int numberOfItems)
+        {
+            ObjectNode template = this.entities.get(1L);
+            for (int ii = 0; ii < numberOfItems; ii++)
+            {
+                String entityId = "Q" + (FIRST_GENERATED_ENTITY_ID + ii);
+                String label = "Item " + entityId;
+                ObjectNode entity = template.deepCopy();
+                entity.put("id", entityId);
+                entity.set("labels", OBJECT_MAPPER.createObjectNode()
+                                                  .set("en", OBJECT_MAPPER.createObjectNode()
+                                                                          .put("language", "en")
+                                                                          .put("value", label)));
+                entity.set("sitelinks", OBJECT_MAPPER.createObjectNode()
+                                                     .set("enwiki", OBJECT_MAPPER.createObjectNode()
+                                                                                 .put("site", "enwiki")
+                                                                                 .put("title", label)));
+                this.entities.put(FIRST_GENERATED_ENTITY_ID + ii, entity);
+            }
+            return this;
+        }
+
+        @Override
+        public StandInServer withRedirect(String title, String targetTitle)
+        {
+            this.titleToRedirect.put(title, targetTitle);
+            return this;
+        }
+
+        @Override
+        public StandInServer withPage(String path, String html)
+        {
+            this.pathToPage.put(path, html.getBytes(StandardCharsets.UTF_8));
+            return this;
+        }
+
+        @Override
+        public StandInServerStatistic getStatistic()
+        {
+            long numberOfRequests = this.numberOfRequests.get();
+            long numberOfThrottledRequests = this.numberOfThrottledRequests.get();
+            long numberOfInjectedErrors = this.numberOfInjectedErrors.get();
+            Map<String, Long> endpointToRequests = new TreeMap<>();
+            this.endpointToRequests.forEach((endpoint, requests) -> endpointToRequests.put(endpoint, requests.get()));
+            return new StandInServerStatistic()
+            {
+                @Override
+                public long getNumberOfRequests()
+                {
+                    return numberOfRequests;
+                }
+
+                @Override
+                public long getNumberOfThrottledRequests()
+                {
+                    return numberOfThrottledRequests;
+                }
+
+                @Override
+                public long getNumberOfInjectedErrors()
+                {
+                    return numberOfInjectedErrors;
+                }
+
+                @Override
+                public Map<String, Long> getNumberOfRequestsByEndpoint()
+                {
+                    return Collections.unmodifiableMap(endpointToRequests);
+                }
+
+                @Override
+                public String toString()
+                {
+                    return "StandInServerStatistic [requests=" + numberOfRequests + ", throttled=" + numberOfThrottledRequests + ", injectedErrors="
+                            + numberOfInjectedErrors + ", endpoints=" + endpointToRequests + "]";
+                }
+            };
+        }
+
+        @Override
+        public void close()
+        {
+            this.server.stop(0);
+            this.executor.shutdownNow();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException
+        {
+            try
+            {
+                this.numberOfRequests.incrementAndGet();
+                Map<String, String> parameters = parseQuery(exchange.getRequestURI()
+                                                                    .getRawQuery());
+                String path = exchange.getRequestURI()
+                                      .getPath();
+                String endpoint = path.equals("/w/api.php") ? parameters.getOrDefault("action", "api")
+                        : StringUtils.defaultIfBlank(StringUtils.substringBetween(path, "/", "/"), StringUtils.removeStart(path, "/"));
+                this.endpointToRequests.computeIfAbsent(endpoint, e -> new AtomicLong())
+                                       .incrementAndGet();
+
+                this.delay();
+                if (this.maxRequestsPerSecond > 0 && !this.throttlingWindow.tryAcquire(this.maxRequestsPerSecond))
+                {
+                    this.numberOfThrottledRequests.incrementAndGet();
+                    exchange.getResponseHeaders()
+                            .set("Retry-After", "1");
+                    this.send(exchange, 429, "text/plain", "Too many requests".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+                if (this.errorRate > 0.0 && ThreadLocalRandom.current()
+                                                             .nextDouble() < this.errorRate)
+                {
+                    this.numberOfInjectedErrors.incrementAndGet();
+                    this.send(exchange, 503, "text/plain", "Injected error".getBytes(StandardCharsets.UTF_8));
+                    return;
+                }
+
+                if (path.equals("/sparql"))
+                {
+                    this.sendJson(exchange, this.createSparqlResult(parameters.getOrDefault("query", "")));
+                }
+                else if (path.equals("/w/api.php"))
+                {
+                    this.handleApi(exchange, parameters);
+                }
+                else if (path.startsWith("/wiki/"))
+                {
+                    String title = StringUtils.removeStart(path, "/wiki/")
+                                              .replace('_', ' ');
+                    if (this.findByTitle(title)
+                            .isPresent())
+                    {
+                        this.send(exchange, 200, "text/html; charset=utf-8", this.page);
+                    }
+                    else
+                    {
+                        this.send(exchange, 404, "text/plain", "Unknown title".getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                else
+                {
+                    this.send(exchange, 200, "text/html; charset=utf-8", this.pathToPage.getOrDefault(path, this.page));
+                }
+            }
+            finally
+            {
+                exchange.close();
+            }
+        }
+
+        private void handleApi(HttpExchange exchange, Map<String, String> parameters) throws IOException
+        {
+            String action = parameters.getOrDefault("action", "");
+            String apiErrorCode = this.apiErrorCode;
+            if (apiErrorCode != null)
+            {
+                ObjectNode error = OBJECT_MAPPER.createObjectNode();
+                error.set("error", OBJECT_MAPPER.createObjectNode()
+                                                .put("code", apiErrorCode)
+                                                .put("info", "Injected api error"));
+                this.sendJson(exchange, error);
+            }
+            else if (action.equals("wbgetentities"))
+            {
+                this.sendJson(exchange, this.createEntities(splitTitles(parameters.get("ids")), "info".equals(parameters.get("props"))));
+            }
+            else if (action.equals("wbsearchentities"))
+            {
+                this.sendJson(exchange, this.createSearchHits(parameters.getOrDefault("search", ""), parameters.get("limit")));
+            }
+            else if (action.equals("query") && "extracts".equals(parameters.get("prop")))
+            {
+                this.sendJson(exchange, this.createExtracts(splitTitles(parameters.get("titles")), parameters.containsKey("redirects"),
+                                                            parameters.containsKey("exintro"), parameters.get("excontinue")));
+            }
+            else
+            {
+                this.send(exchange, 400, "text/plain", ("Unsupported action: " + action).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        private ObjectNode createSparqlResult(String query)
+        {
+            int limit = parseNumber(LIMIT, query, Integer.MAX_VALUE);
+            int offset = parseNumber(OFFSET, query, 0);
+
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            result.set("head", OBJECT_MAPPER.createObjectNode()
+                                            .set("vars", OBJECT_MAPPER.createArrayNode()
+                                                                      .add("item")
+                                                                      .add("itemLabel")));
+            ArrayNode bindings = OBJECT_MAPPER.createArrayNode();
+            this.entities.values()
+                         .stream()
+                         .skip(offset)
+                         .limit(limit)
+                         .forEach(entity ->
+                         {
+                             ObjectNode binding = bindings.addObject();
+                             binding.set("item", OBJECT_MAPPER.createObjectNode()
+                                                              .put("type", "uri")
+                                                              .put("value", "http://www.wikidata.org/entity/" + entity.path("id")
+                                                                                                                      .asText()));
+                             binding.set("itemLabel", OBJECT_MAPPER.createObjectNode()
+                                                                   .put("xml:lang", "en")
+                                                                   .put("type", "literal")
+                                                                   .put("value", determineLabel(entity)));
+                         });
+            result.set("results", OBJECT_MAPPER.createObjectNode()
+                                               .set("bindings", bindings));
+            return result;
+        }
+
+        private ObjectNode createEntities(List<String> entityIds, boolean onlyInfo)
+        {
+            ObjectNode entities = OBJECT_MAPPER.createObjectNode();
+            entityIds.forEach(entityId ->
+            {
+                ObjectNode entity = this.entities.get(parseEntityId(entityId));
+                if (entity == null)
+                {
+                    entities.set(entityId, OBJECT_MAPPER.createObjectNode()
+                                                        .put("id", entityId)
+                                                        .put("missing", ""));
+                }
+                else if (onlyInfo)
+                {
+                    entities.set(entityId, OBJECT_MAPPER.createObjectNode()
+                                                        .put("id", entityId)
+                                                        .put("lastrevid", entity.path("lastrevid")
+                                                                                .asLong()));
+                }
+                else
+                {
+                    entities.set(entityId, entity);
+                }
+            });
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            result.set("entities", entities);
+            return result;
+        }
+
+        private ObjectNode createSearchHits(String search, String limit)
+        {
+            String lowerCaseSearch = search.toLowerCase();
+            ArrayNode hits = OBJECT_MAPPER.createArrayNode();
+            this.entities.values()
+                         .stream()
+                         .filter(entity -> StringUtils.isNotBlank(lowerCaseSearch) && determineLabel(entity).toLowerCase()
+                                                                                                            .contains(lowerCaseSearch))
+                         .limit(StringUtils.isNumeric(limit) ? Long.parseLong(limit) : 7)
+                         .forEach(entity -> hits.addObject()
+                                                .put("id", entity.path("id")
+                                                                 .asText())
+                                                .put("label", determineLabel(entity)));
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            result.set("search", hits);
+            return result;
+        }
+
+        private ObjectNode createExtracts(List<String> titles, boolean followRedirects, boolean onlyIntroductions, String continuation)
+        {
+            ObjectNode query = OBJECT_MAPPER.createObjectNode();
+            ArrayNode normalized = query.putArray("normalized");
+            ArrayNode redirects = query.putArray("redirects");
+            ArrayNode pages = query.putArray("pages");
+
+            Set<String> resolvedTitles = new LinkedHashSet<>();
+            titles.forEach(title ->
+            {
+                String normalizedTitle = StringUtils.capitalize(title.replace('_', ' '));
+                if (!normalizedTitle.equals(title))
+                {
+                    normalized.addObject()
+                              .put("from", title)
+                              .put("to", normalizedTitle);
+                }
+                String resolvedTitle = normalizedTitle;
+                if (followRedirects && this.titleToRedirect.containsKey(normalizedTitle))
+                {
+                    resolvedTitle = this.titleToRedirect.get(normalizedTitle);
+                    redirects.addObject()
+                             .put("from", normalizedTitle)
+                             .put("to", resolvedTitle);
+                }
+                resolvedTitles.add(resolvedTitle);
+            });
+
+            int offset = StringUtils.isNumeric(continuation) ? Integer.parseInt(continuation) : 0;
+            int limit = onlyIntroductions ? MAX_INTRO_EXTRACTS : 1;
+            int index = 0;
+            for (String title : resolvedTitles)
+            {
+                Optional<ObjectNode> entity = this.findByTitle(title);
+                ObjectNode page = pages.addObject()
+                                       .put("title", title);
+                if (!entity.isPresent())
+                {
+                    page.put("missing", true);
+                }
+                else if (index++ >= offset && index <= offset + limit)
+                {
+                    page.put("extract", determineLabel(entity.get()) + " is " + entity.get()
+                                                                                      .path("descriptions")
+                                                                                      .path("en")
+                                                                                      .path("value")
+                                                                                      .asText("an item")
+                            + ".");
+                }
+            }
+
+            ObjectNode result = OBJECT_MAPPER.createObjectNode();
+            if (index > offset + limit)
+            {
+                result.set("continue", OBJECT_MAPPER.createObjectNode()
+                                                    .put("excontinue", String.valueOf(offset + limit))
+                                                    .put("continue", "||"));
+            }
+            result.set("query", query);
+            return result;
+        }
+
+        private Optional<ObjectNode> findByTitle(String title)
+        {
+            return this.entities.values()
+                                .stream()
+                                .filter(entity -> title.equals(entity.path("sitelinks")
+                                                                     .path("enwiki")
+                                                                     .path("title")
+                                                                     .asText()))
+                                .findFirst();
+        }
+
+        private void delay()
+        {
+            long maximumLatency = this.maximumLatency;
+            if (maximumLatency > 0)
+            {
+                try
+                {
+                    Thread.sleep(ThreadLocalRandom.current()
+                                                  .nextLong(this.minimumLatency, maximumLatency + 1));
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread()
+                          .interrupt();
+                }
+            }
+        }
+
+        private void sendJson(HttpExchange exchange, JsonNode node) throws IOException
+        {
+            this.send(exchange, 200, "application/json; charset=utf-8", OBJECT_MAPPER.writeValueAsBytes(node));
+        }
+
+        private void send(HttpExchange exchange, int statusCode, String contentType, byte[] body) throws IOException
+        {
+            exchange.getResponseHeaders()
+                    .set("Content-Type", contentType);
+            exchange.sendResponseHeaders(statusCode, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody())
+            {
+                outputStream.write(body);
+            }
+        }
+    }
+
+    /**
+     * Fixed window of one second
+     */
+    private static class ThrottlingWindow
+    {
+        private long second;
+        private int  numberOfRequests;
+
+        public synchronized boolean tryAcquire(int maxRequestsPerSecond)
+        {
+            long currentSecond = System.currentTimeMillis() / 1000;
+            if (currentSecond != this.second)
+            {
+                this.second = currentSecond;
+                this.numberOfRequests = 0;
+            }
+            return ++this.numberOfRequests <= maxRequestsPerSecond;
+        }
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery)
+    {
+        Map<String, String> parameters = new LinkedHashMap<>();
+        if (rawQuery != null)
+        {
+            for (String parameter : rawQuery.split("&"))
+            {
+                try
+                {
+                    parameters.put(URLDecoder.decode(StringUtils.substringBefore(parameter, "="), "UTF-8"),
+                                   URLDecoder.decode(StringUtils.substringAfter(parameter, "="), "UTF-8"));
+                }
+                catch (IOException e)
+                {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static List<String> splitTitles(String parameter)
+    {
+        return parameter != null ? Arrays.asList(parameter.split("\\|")) : new ArrayList<>();
+    }
+
+    private static int parseNumber(Pattern pattern, String query, int defaultValue)
+    {
+        Matcher matcher = pattern.matcher(query);
+        return matcher.find() ? (int) Math.min(Integer.MAX_VALUE, Long.parseLong(matcher.group(1))) : defaultValue;
+    }
+
+    private static long parseEntityId(String entityId)
+    {
+        String number = StringUtils.removeStart(entityId, "Q");
+        return StringUtils.isNumeric(number) && number.length() < 19 ? Long.parseLong(number) : -1;
+    }
+
+    private static String determineLabel(JsonNode entity)
+    {
+        return entity.path("labels")
+                     .path("en")
+                     .path("value")
+                     .asText("");
+    }
+
+    private static byte[] readResource(String resource)
+    {
+        try (InputStream inputStream = StandInServerUtils.class.getResourceAsStream(resource))
+        {
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) >= 0)
+            {
+                outputStream.write(buffer, 0, length);
+            }
+            return outputStream.toByteArray();
+        }
+        catch (IOException e)
+        {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts a new {@link StandInServer} on a free local port
+     * 
+     * @return
+     */
+    public static StandInServer newInstance()
+    {
+        return new StandInServerImpl();
+    }
+}
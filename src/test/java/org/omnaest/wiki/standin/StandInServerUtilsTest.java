@@ -0,0 +1,173 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.standin;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.omnaest.wiki.WikiUtils;
+import org.omnaest.wiki.WikiUtils.Item;
+import org.omnaest.wiki.WikiUtils.WikiAccessor;
+import org.omnaest.wiki.rest.HttpTransportUtils;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpStatusException;
+import org.omnaest.wiki.rest.HttpTransportUtils.HttpTransport;
+import org.omnaest.wiki.search.LabelIndexUtils;
+import org.omnaest.wiki.standin.LoadTestUtils.LoadTestResult;
+import org.omnaest.wiki.standin.StandInServerUtils.StandInServer;
+
+public class StandInServerUtilsTest
+{
+    private StandInServer server;
+    private HttpTransport transport;
+    private WikiAccessor  accessor;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.server = StandInServerUtils.newInstance()
+                                        .withGeneratedItems(100);
+        this.transport = HttpTransportUtils.newInstance();
+        this.accessor = WikiUtils.newInstance()
+                                 .withTransport(this.transport)
+                                 .connectTo(this.server.getUrl(), this.server.getUrl(), this.server.getUrl());
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.transport.close();
+        this.server.close();
+    }
+
+    @Test
+    public void testWikiAccessor() throws Exception
+    {
+        assertEquals("Berlin", this.accessor.findByEntityId("Q64")
+                                            .get()
+                                            .getTitle()
+                                            .get());
+        assertEquals("Q1000042", this.accessor.searchFor("Item Q1000042")
+                                              .stream()
+                                              .findFirst()
+                                              .get()
+                                              .getEntityId());
+
+        List<String> entityIds = this.accessor.searchFor(() -> "wdt:P31 wd:Q36906466")
+                                              .stream()
+                                              .map(Item::getEntityId)
+                                              .collect(Collectors.toList());
+        assertEquals(103, entityIds.size());
+        assertEquals("Q1", entityIds.get(0));
+        assertTrue(this.server.getStatistic()
+                              .getNumberOfRequestsByEndpoint()
+                              .get("sparql") >= 2);
+    }
+
+    @Test
+    public void testSearchWithIncompleteLabelIndex() throws Exception
+    {
+        // the index only holds the resolved item, so it does not hide the other hits of the remote search
+        this.accessor.usingLabelIndex(LabelIndexUtils.newInstance())
+                     .findByEntityId("Q1000001")
+                     .get();
+        List<String> entityIds = this.accessor.searchFor("Item")
+                                              .stream()
+                                              .map(Item::getEntityId)
+                                              .collect(Collectors.toList());
+        assertTrue(entityIds.contains("Q1000001"));
+        assertTrue(entityIds.size() > 1);
+        assertTrue(this.server.getStatistic()
+                              .getNumberOfRequestsByEndpoint()
+                              .get("wbsearchentities") >= 1);
+    }
+
+    @Test
+    public void testMissingEntity() throws Exception
+    {
+        // an entity absent in the block result is not fetched a second time
+        assertFalse(this.accessor.findByEntityId("Q999")
+                                 .isPresent());
+        assertEquals(1, this.server.getStatistic()
+                                   .getNumberOfRequestsByEndpoint()
+                                   .get("wbgetentities")
+                                   .longValue());
+    }
+
+    @Test
+    public void testErrorInjectionAndThrottling() throws Exception
+    {
+        this.server.withErrorRate(1.0);
+        try
+        {
+            this.transport.request(this.server.getUrl())
+                          .addPathToken("sparql")
+                          .get();
+            fail();
+        }
+        catch (HttpStatusException e)
+        {
+            assertEquals(503, e.getStatusCode());
+        }
+
+        this.server.withErrorRate(0.0)
+                   .withMaxRequestsPerSecond(1);
+        int statusCode = 0;
+        for (int ii = 0; ii < 3 && statusCode == 0; ii++)
+        {
+            try
+            {
+                this.transport.request(this.server.getUrl())
+                              .addPathToken("sparql")
+                              .get();
+            }
+            catch (HttpStatusException e)
+            {
+                statusCode = e.getStatusCode();
+            }
+        }
+        assertEquals(429, statusCode);
+        assertEquals(1, this.server.getStatistic()
+                                   .getNumberOfInjectedErrors());
+        assertTrue(this.server.getStatistic()
+                              .getNumberOfThrottledRequests() >= 1);
+    }
+
+    @Test
+    public void testLoadTest() throws Exception
+    {
+        this.server.withLatency(1, 5);
+        LoadTestResult result = LoadTestUtils.newLoadTest()
+                                             .withThreads(4)
+                                             .withDuration(1, TimeUnit.SECONDS)
+                                             .addScenario("findByEntityId", LoadTestUtils.findRandomItem(this.accessor, 1000000, 100))
+                                             .addScenario("searchForFilter", LoadTestUtils.searchFor(this.accessor, () -> "wdt:P31 wd:Q36906466", 10))
+                                             .run();
+        assertEquals(0, result.getNumberOfErrors());
+        assertTrue(result.getNumberOfOperations() > 0);
+        assertTrue(result.getLatencies()
+                         .get("findByEntityId")
+                         .getCount() > 0);
+    }
+}
@@ -0,0 +1,91 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.store;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.stream.Collectors;
+
+import org.junit.Test;
+import org.omnaest.utils.CacheUtils;
+import org.omnaest.wiki.dump.WikiDumpUtils;
+import org.omnaest.wiki.store.EntityStoreUtils.EntityStore;
+
+public class EntityStoreUtilsTest
+{
+
+    @Test
+    public void testIndexedStore() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newIndexedStore(EntityStoreUtils.newInMemoryStore(), CacheUtils.newConcurrentInMemoryCache(),
+                                                             EntityStoreUtils.DEFAULT_INDEXED_PROPERTIES);
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .ingest(inputStream, store);
+        }
+
+        assertTrue(store.isComplete());
+        assertTrue(store.isIndexed("P31"));
+        assertFalse(store.isIndexed("P856"));
+        assertEquals(0, store.findByPropertyValue("P856", "Q183")
+                             .count());
+        assertEquals(Arrays.asList("Q64"), store.findByPropertyValue("P17", "Q183")
+                                                .collect(Collectors.toList()));
+        assertEquals(Arrays.asList("Q183"), store.findByPropertyValue("P31", "Q6256")
+                                                 .collect(Collectors.toList()));
+        assertEquals(0, store.findByPropertyValue("P31", "Q5")
+                             .count());
+
+        store.put(store.get("Q183")
+                       .get());
+        assertEquals(1, store.findByPropertyValue("P31", "Q6256")
+                             .count());
+    }
+
+    @Test
+    public void testIncompleteStore() throws Exception
+    {
+        EntityStore store = EntityStoreUtils.newIndexedStore(EntityStoreUtils.newInMemoryStore(), CacheUtils.newConcurrentInMemoryCache(),
+                                                             EntityStoreUtils.DEFAULT_INDEXED_PROPERTIES);
+        assertFalse(store.isComplete());
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .withCompleteDump(false)
+                         .ingest(inputStream, store);
+        }
+        assertFalse(store.isComplete());
+
+        // a restriction of the properties leaves the statements of the store incomplete
+        EntityStore filteredStore = EntityStoreUtils.newInMemoryStore();
+        try (InputStream inputStream = this.getClass()
+                                           .getResourceAsStream("/wikidata-sample-dump.json"))
+        {
+            WikiDumpUtils.newIngestion()
+                         .withProperties("P31")
+                         .ingest(inputStream, filteredStore);
+        }
+        assertFalse(filteredStore.isComplete());
+    }
+
+}
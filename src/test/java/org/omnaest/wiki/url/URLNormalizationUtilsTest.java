@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2021 Danny Kunz
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not
+ * use this file except in compliance with the License.  You may obtain a copy
+ * of the License at
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.  See the
+ * License for the specific language governing permissions and limitations under
+ * the License.
+ ******************************************************************************/
+package org.omnaest.wiki.url;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+import org.omnaest.wiki.url.URLNormalizationUtils.SeenURLFilter;
+import org.omnaest.wiki.url.URLNormalizationUtils.URLNormalizer;
+
+public class URLNormalizationUtilsTest
+{
+    private URLNormalizer normalizer = URLNormalizationUtils.newNormalizer();
+
+    @Test
+    public void testNormalize() throws Exception
+    {
+        assertEquals(Optional.of("http://www.example.org/"), this.normalizer.normalize("HTTP://WWW.Example.org:80"));
+        assertEquals(Optional.of("https://example.org:8443/a/c.html"), this.normalizer.normalize("https://example.org:8443/a/b/../c.html#top"));
+        assertEquals(Optional.of("https://example.org/search?a=2&b=1&q=x"),
+                     this.normalizer.normalize("https://example.org:443/search?q=x&utm_source=news&b=1&fbclid=abc&a=2"));
+        assertEquals(Optional.of("https://example.org/"), this.normalizer.normalize("https://example.org/?utm_medium=mail"));
+
+        assertEquals(Optional.empty(), this.normalizer.normalize(null));
+        assertEquals(Optional.empty(), this.normalizer.normalize("mailto:info@example.org"));
+        assertEquals(Optional.empty(), this.normalizer.normalize("/relative/path"));
+        assertEquals(Optional.empty(), this.normalizer.normalize("http://exa mple.org/"));
+
+        assertEquals(Optional.of("https://example.org/?b=1"), URLNormalizationUtils.newNormalizer()
+                                                                                   .withStrippedParameters("session*")
+                                                                                   .normalize("https://example.org/?sessionId=1&b=1"));
+    }
+
+    @Test
+    public void testSeenFilter() throws Exception
+    {
+        SeenURLFilter filter = URLNormalizationUtils.newSeenFilter(64 * 1024, 10000);
+        assertEquals(64 * 1024, filter.getMemory());
+
+        int numberOfNewURLs = (int) IntStream.range(0, 10000)
+                                             .filter(ii -> filter.add("https://example.org/page/" + ii))
+                                             .count();
+        assertTrue(numberOfNewURLs > 9900);
+        assertTrue(IntStream.range(0, 10000)
+                            .allMatch(ii -> filter.contains("https://example.org/page/" + ii)));
+        assertFalse(filter.add("https://example.org/page/1"));
+
+        long numberOfFalsePositives = IntStream.range(10000, 20000)
+                                               .filter(ii -> filter.contains("https://example.org/page/" + ii))
+                                               .count();
+        assertTrue(numberOfFalsePositives < 100);
+    }
+}